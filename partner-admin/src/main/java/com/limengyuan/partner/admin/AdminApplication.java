@@ -3,11 +3,13 @@ package com.limengyuan.partner.admin;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * 管理员服务启动类
  */
 @SpringBootApplication
+@EnableScheduling
 @MapperScan("com.limengyuan.partner.admin.mapper")
 public class AdminApplication {
 
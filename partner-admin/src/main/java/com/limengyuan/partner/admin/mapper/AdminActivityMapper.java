@@ -28,7 +28,7 @@ public interface AdminActivityMapper extends BaseMapper<Activity> {
             "  a.start_time, a.end_time, a.max_participants, a.payment_type, " +
             "  a.status, a.created_at, " +
             "  u.user_id AS initiator_id, u.nickname AS initiator_nickname, u.avatar_url AS initiator_avatar, " +
-            "  (SELECT COUNT(*) FROM participants p WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants " +
+            "  a.approved_count AS current_participants " +
             "FROM activities a " +
             "LEFT JOIN users u ON a.initiator_id = u.user_id " +
             "<where>" +
@@ -78,12 +78,50 @@ public interface AdminActivityMapper extends BaseMapper<Activity> {
             "  a.status, a.created_at, " +
             "  u.user_id AS initiator_id, u.nickname AS initiator_nickname, u.avatar_url AS initiator_avatar, " +
             "  u.credit_score AS initiator_credit_score, " +
-            "  (SELECT COUNT(*) FROM participants p WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants " +
+            "  a.approved_count AS current_participants " +
             "FROM activities a " +
             "LEFT JOIN users u ON a.initiator_id = u.user_id " +
             "WHERE a.activity_id = #{activityId}")
     ActivityVO findActivityById(Long activityId);
 
+    /**
+     * 在给定的活动ID中按状态和发起人筛选（用于全文检索命中后的二次过滤）
+     *
+     * @param ids    候选活动ID
+     * @param status 活动状态（可为 null）
+     * @param userId 发起人ID（可为 null）
+     * @return 满足条件的活动ID（无序）
+     */
+    @Select("<script>" +
+            "SELECT activity_id FROM activities " +
+            "WHERE activity_id IN " +
+            "  <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "  <if test='status != null'>" +
+            "    AND status = #{status}" +
+            "  </if>" +
+            "  <if test='userId != null'>" +
+            "    AND initiator_id = #{userId}" +
+            "  </if>" +
+            "</script>")
+    List<Long> filterActivityIds(List<Long> ids, Integer status, Long userId);
+
+    /**
+     * 根据活动ID列表批量查询（包含发起人信息，无序）
+     */
+    @Select("<script>" +
+            "SELECT a.activity_id, a.title, a.description, a.images, " +
+            "  a.location_name, a.location_address, a.category_ids, " +
+            "  a.start_time, a.end_time, a.max_participants, a.payment_type, " +
+            "  a.status, a.created_at, " +
+            "  u.user_id AS initiator_id, u.nickname AS initiator_nickname, u.avatar_url AS initiator_avatar, " +
+            "  a.approved_count AS current_participants " +
+            "FROM activities a " +
+            "LEFT JOIN users u ON a.initiator_id = u.user_id " +
+            "WHERE a.activity_id IN " +
+            "  <foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>" +
+            "</script>")
+    List<ActivityVO> findActivitiesByIds(List<Long> ids);
+
     /**
      * 更新活动状态（下架/恢复）
      *
@@ -0,0 +1,83 @@
+package com.limengyuan.partner.admin.service;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.admin.mapper.AdminActivityMapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.common.search.AbstractActivitySearchIndex;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 管理员端 - 活动全文检索索引
+ *
+ * 与用户端不同，管理后台需要检索所有状态的活动；
+ * 管理服务收不到帖子服务的变更事件，因此依靠 updated_at 水位每 30 秒增量追平
+ */
+@Component
+public class AdminActivitySearchIndex extends AbstractActivitySearchIndex {
+
+    private static final String[] COLUMNS = {
+            "activity_id", "title", "description", "location_name", "status", "updated_at"};
+
+    private static final String INDEX_NAME = "admin-all-activities";
+
+    private final AdminActivityMapper adminActivityMapper;
+
+    public AdminActivitySearchIndex(AdminActivityMapper adminActivityMapper,
+                                    @Value("${partner.search.snapshot-path:}") String snapshotPath) {
+        super(INDEX_NAME, snapshotPath);
+        this.adminActivityMapper = adminActivityMapper;
+    }
+
+    @Override
+    protected List<Activity> loadAll() {
+        QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+        wrapper.select(COLUMNS);
+        return adminActivityMapper.selectList(wrapper);
+    }
+
+    @Override
+    protected List<Activity> loadChangedSince(LocalDateTime since) {
+        QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+        wrapper.ge("updated_at", since).select(COLUMNS);
+        return adminActivityMapper.selectList(wrapper);
+    }
+
+    @Override
+    protected boolean isIndexable(Activity activity) {
+        return true;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        initialize();
+    }
+
+    /**
+     * 每 30 秒按水位增量追平
+     */
+    @Scheduled(initialDelay = 30000, fixedDelay = 30000)
+    public void scheduledCatchUp() {
+        catchUp();
+    }
+
+    /**
+     * 每小时全量重建一次（兜底）
+     */
+    @Scheduled(initialDelay = 3600000, fixedRate = 3600000)
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        saveSnapshot();
+    }
+}
@@ -1,41 +1,92 @@
 package com.limengyuan.partner.admin.service;
 
 import com.limengyuan.partner.admin.mapper.AdminActivityMapper;
+import com.limengyuan.partner.common.cache.CacheNames;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.common.event.ActivityChangeChannel;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.search.AbstractActivitySearchIndex;
+import com.limengyuan.partner.common.search.InvertedIndex;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 /**
  * 管理员端 - 活动管理服务
  */
+@Slf4j
 @Service
 public class AdminActivityService {
 
     private final AdminActivityMapper adminActivityMapper;
+    private final AdminActivitySearchIndex adminActivitySearchIndex;
+    private final StringRedisTemplate redisTemplate;
 
-    public AdminActivityService(AdminActivityMapper adminActivityMapper) {
+    public AdminActivityService(AdminActivityMapper adminActivityMapper,
+                                AdminActivitySearchIndex adminActivitySearchIndex,
+                                StringRedisTemplate redisTemplate) {
         this.adminActivityMapper = adminActivityMapper;
+        this.adminActivitySearchIndex = adminActivitySearchIndex;
+        this.redisTemplate = redisTemplate;
     }
 
     /**
      * 分页查询活动列表
      *
-     * @param keyword 搜索关键词（标题）
+     * @param keyword 搜索关键词（标题、描述、地点名称，按相关度排序；索引未就绪时退化为标题模糊匹配）
      * @param status  活动状态筛选（可为 null）
      * @param userId  用户ID筛选（可为 null）
      * @param page    页码，从0开始
      * @param size    每页数量
      */
     public Result<PageResult<ActivityVO>> getActivityList(String keyword, Integer status, Long userId, int page, int size) {
+        if (keyword != null && !keyword.isBlank() && adminActivitySearchIndex.isReady()) {
+            return searchActivityList(keyword.trim(), status, userId, page, size);
+        }
+
         int offset = page * size;
         List<ActivityVO> activities = adminActivityMapper.findActivitiesPage(keyword, status, userId, size, offset);
         long total = adminActivityMapper.countActivities(keyword, status, userId);
         return Result.success(PageResult.of(activities, total, page, size));
     }
 
+    /**
+     * 基于全文检索索引的活动列表：索引给出相关度排序的候选ID，数据库只做状态/发起人过滤和本页回查
+     */
+    private Result<PageResult<ActivityVO>> searchActivityList(String keyword, Integer status, Long userId,
+                                                              int page, int size) {
+        List<Long> rankedIds = adminActivitySearchIndex.search(keyword, AbstractActivitySearchIndex.MAX_HITS)
+                .stream().map(InvertedIndex.Hit::docId).toList();
+        if (!rankedIds.isEmpty() && (status != null || userId != null)) {
+            Set<Long> matched = new HashSet<>(adminActivityMapper.filterActivityIds(rankedIds, status, userId));
+            rankedIds = rankedIds.stream().filter(matched::contains).toList();
+        }
+
+        int from = Math.min(page * size, rankedIds.size());
+        int to = Math.min(from + size, rankedIds.size());
+        List<Long> pageIds = rankedIds.subList(from, to);
+        if (pageIds.isEmpty()) {
+            return Result.success(PageResult.of(List.of(), rankedIds.size(), page, size));
+        }
+
+        Map<Long, Integer> order = new HashMap<>(pageIds.size() * 2);
+        for (int i = 0; i < pageIds.size(); i++) {
+            order.put(pageIds.get(i), i);
+        }
+        List<ActivityVO> activities = adminActivityMapper.findActivitiesByIds(pageIds);
+        activities.sort(Comparator.comparingInt(a -> order.get(a.getActivityId())));
+        return Result.success(PageResult.of(activities, rankedIds.size(), page, size));
+    }
+
     /**
      * 根据活动ID查询详情
      *
@@ -50,24 +101,40 @@ public class AdminActivityService {
     }
 
     /**
-     * 下架活动（设置状态为已取消）
+     * 下架活动（设置状态为已取消），同时失效帖子服务的活动详情缓存并通知其刷新索引
      */
+    @CacheEvict(cacheNames = CacheNames.ACTIVITY_DETAIL, key = "#activityId")
     public Result<Void> cancelActivity(Long activityId) {
         int rows = adminActivityMapper.updateActivityStatus(activityId, 3);
         if (rows == 0) {
             return Result.error("活动不存在");
         }
+        notifyChanged(activityId);
         return Result.success("已下架该活动", null);
     }
 
     /**
-     * 恢复活动（设置状态为招募中）
+     * 恢复活动（设置状态为招募中），同时失效帖子服务的活动详情缓存并通知其刷新索引
      */
+    @CacheEvict(cacheNames = CacheNames.ACTIVITY_DETAIL, key = "#activityId")
     public Result<Void> restoreActivity(Long activityId) {
         int rows = adminActivityMapper.updateActivityStatus(activityId, 0);
         if (rows == 0) {
             return Result.error("活动不存在");
         }
+        notifyChanged(activityId);
         return Result.success("已恢复该活动", null);
     }
+
+    /**
+     * 通知帖子服务活动状态已变化（筛选、地理、全文检索索引即时刷新）
+     * 通知失败不影响本次操作，帖子服务的定时重建会兜底
+     */
+    private void notifyChanged(Long activityId) {
+        try {
+            redisTemplate.convertAndSend(ActivityChangeChannel.NAME, String.valueOf(activityId));
+        } catch (Exception e) {
+            log.warn("[活动管理] 发布活动变更通知失败, activityId={}", activityId, e);
+        }
+    }
 }
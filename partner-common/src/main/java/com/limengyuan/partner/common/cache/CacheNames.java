@@ -0,0 +1,13 @@
+package com.limengyuan.partner.common.cache;
+
+/**
+ * 缓存名称常量（各服务共用，保证写入方与失效方使用同一个名称）
+ */
+public final class CacheNames {
+
+    /** 活动详情（含已通过的参与者），key 为 activityId */
+    public static final String ACTIVITY_DETAIL = "activityDetail";
+
+    private CacheNames() {
+    }
+}
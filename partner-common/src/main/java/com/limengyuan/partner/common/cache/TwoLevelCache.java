@@ -0,0 +1,251 @@
+package com.limengyuan.partner.common.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.support.AbstractValueAdaptingCache;
+import org.springframework.cache.support.NullValue;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 二级缓存：本地 Caffeine（L1）+ Redis（L2）
+ *
+ * - 读：L1 → L2 → 加载，L2 命中后回填 L1
+ * - 写/删：同时写/删 L1 与 L2，并通过 Redis 频道广播，通知其他实例丢弃各自的 L1
+ * - Redis 不可用时降级为只用 L1，不影响业务读写
+ *
+ * key 统一转为字符串，保证广播消息中的 key 能与各实例 L1 中的 key 对上。
+ * 值在 L2 中以带类型信息的 JSON 存储，L1 中直接存对象引用，调用方不应修改取到的值
+ */
+@Slf4j
+public class TwoLevelCache extends AbstractValueAdaptingCache {
+
+    /** L2 中表示 null 值的占位串 */
+    private static final String NULL_PLACEHOLDER = "\u0000null";
+
+    private final String name;
+    private final com.github.benmanes.caffeine.cache.Cache<String, Object> local;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final TwoLevelCacheProperties.Spec spec;
+    private final String redisKeyPrefix;
+    private final String invalidationChannel;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * 缓存命中统计
+     */
+    public record Stats(long localHits, long remoteHits, long misses, long localSize) {
+    }
+
+    public TwoLevelCache(String name, TwoLevelCacheProperties.Spec spec, StringRedisTemplate redisTemplate,
+                         ObjectMapper objectMapper, String keyPrefix, String invalidationChannel) {
+        super(true);
+        this.name = name;
+        this.spec = spec;
+        this.local = Caffeine.newBuilder()
+                .maximumSize(spec.getLocalMaxSize())
+                .expireAfterWrite(spec.getLocalTtl())
+                .build();
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.redisKeyPrefix = keyPrefix + name + ":";
+        this.invalidationChannel = invalidationChannel;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public Object getNativeCache() {
+        return local;
+    }
+
+    public Stats stats() {
+        return new Stats(localHits.sum(), remoteHits.sum(), misses.sum(), local.estimatedSize());
+    }
+
+    @Override
+    protected Object lookup(Object key) {
+        String k = String.valueOf(key);
+        Object value = local.getIfPresent(k);
+        if (value != null) {
+            localHits.increment();
+            return value;
+        }
+        value = getRemote(k);
+        if (value != null) {
+            remoteHits.increment();
+            local.put(k, value);
+            return value;
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 带加载的读取（@Cacheable(sync = true) 走这里）
+     * 同一实例内同一 key 只有一个线程去查 L2/加载，其余线程等待结果，避免缓存击穿
+     */
+    @Override
+    @SuppressWarnings("unchecked")
+    public <T> T get(Object key, Callable<T> valueLoader) {
+        String k = String.valueOf(key);
+        Object cached = local.getIfPresent(k);
+        if (cached != null) {
+            localHits.increment();
+            return (T) fromStoreValue(cached);
+        }
+        Object value = local.get(k, ignored -> {
+            Object remote = getRemote(k);
+            if (remote != null) {
+                remoteHits.increment();
+                return remote;
+            }
+            misses.increment();
+            Object storeValue;
+            try {
+                storeValue = toStoreValue(valueLoader.call());
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            putRemote(k, storeValue);
+            return storeValue;
+        });
+        return (T) fromStoreValue(value);
+    }
+
+    @Override
+    public void put(Object key, Object value) {
+        String k = String.valueOf(key);
+        Object storeValue = toStoreValue(value);
+        local.put(k, storeValue);
+        putRemote(k, storeValue);
+        publish(k);
+    }
+
+    @Override
+    public void evict(Object key) {
+        String k = String.valueOf(key);
+        local.invalidate(k);
+        try {
+            redisTemplate.delete(redisKeyPrefix + k);
+        } catch (Exception e) {
+            log.warn("[二级缓存] 删除 Redis 缓存失败, cache={}, key={}: {}", name, k, e.getMessage());
+        }
+        publish(k);
+    }
+
+    @Override
+    public void clear() {
+        local.invalidateAll();
+        try {
+            List<byte[]> keys = redisTemplate.execute((RedisCallback<List<byte[]>>) connection -> scanKeys(connection));
+            if (keys != null && !keys.isEmpty()) {
+                redisTemplate.execute((RedisCallback<Long>) connection ->
+                        connection.keyCommands().del(keys.toArray(new byte[0][])));
+            }
+        } catch (Exception e) {
+            log.warn("[二级缓存] 清空 Redis 缓存失败, cache={}: {}", name, e.getMessage());
+        }
+        publish(null);
+    }
+
+    /**
+     * 收到其他实例的失效广播后，只丢弃本地 L1（L2 已由发送方处理）
+     *
+     * @param key 为 null 表示清空整个缓存
+     */
+    void evictLocal(String key) {
+        if (key == null) {
+            local.invalidateAll();
+        } else {
+            local.invalidate(key);
+        }
+    }
+
+    // ============================
+    // L2 读写与广播
+    // ============================
+
+    private Object getRemote(String key) {
+        try {
+            String json = redisTemplate.opsForValue().get(redisKeyPrefix + key);
+            if (json == null) {
+                return null;
+            }
+            return NULL_PLACEHOLDER.equals(json) ? NullValue.INSTANCE : objectMapper.readValue(json, Object.class);
+        } catch (Exception e) {
+            log.warn("[二级缓存] 读取 Redis 缓存失败, cache={}, key={}: {}", name, key, e.getMessage());
+            return null;
+        }
+    }
+
+    private void putRemote(String key, Object storeValue) {
+        try {
+            String json = storeValue == NullValue.INSTANCE
+                    ? NULL_PLACEHOLDER : objectMapper.writeValueAsString(storeValue);
+            redisTemplate.opsForValue().set(redisKeyPrefix + key, json, spec.getRemoteTtl());
+        } catch (Exception e) {
+            log.warn("[二级缓存] 写入 Redis 缓存失败, cache={}, key={}: {}", name, key, e.getMessage());
+        }
+    }
+
+    private void publish(String key) {
+        try {
+            redisTemplate.convertAndSend(invalidationChannel, InvalidationMessage.encode(name, key));
+        } catch (Exception e) {
+            log.warn("[二级缓存] 广播失效消息失败, cache={}, key={}: {}", name, key, e.getMessage());
+        }
+    }
+
+    private List<byte[]> scanKeys(RedisConnection connection) {
+        List<byte[]> keys = new ArrayList<>();
+        ScanOptions options = ScanOptions.scanOptions().match(redisKeyPrefix + "*").count(1000).build();
+        try (Cursor<byte[]> cursor = connection.keyCommands().scan(options)) {
+            cursor.forEachRemaining(keys::add);
+        }
+        return keys;
+    }
+
+    /**
+     * 失效广播消息格式：缓存名 + '\n' + key；清空整个缓存时没有 key 部分
+     */
+    static final class InvalidationMessage {
+
+        private static final char SEPARATOR = '\n';
+
+        private InvalidationMessage() {
+        }
+
+        static String encode(String cacheName, String key) {
+            return key == null ? cacheName : cacheName + SEPARATOR + key;
+        }
+
+        /**
+         * @return [缓存名, key]，key 可能为 null
+         */
+        static String[] decode(byte[] body) {
+            String message = new String(body, StandardCharsets.UTF_8);
+            int index = message.indexOf(SEPARATOR);
+            return index < 0
+                    ? new String[]{message, null}
+                    : new String[]{message.substring(0, index), message.substring(index + 1)};
+        }
+    }
+}
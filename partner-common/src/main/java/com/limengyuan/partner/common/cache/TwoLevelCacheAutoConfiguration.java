@@ -0,0 +1,94 @@
+package com.limengyuan.partner.common.cache;
+
+import com.fasterxml.jackson.annotation.JsonTypeInfo;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.jsontype.BasicPolymorphicTypeValidator;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.AutoConfiguration;
+import org.springframework.boot.autoconfigure.cache.CacheAutoConfiguration;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.data.redis.RedisAutoConfiguration;
+import org.springframework.boot.autoconfigure.jackson.JacksonAutoConfiguration;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+/**
+ * 二级缓存自动配置
+ *
+ * 仅在服务同时引入了 Caffeine 和 Redis 时生效（partner-post、partner-admin），
+ * 其余服务（如 Gateway、partner-user）不受影响。可通过 partner.cache.enabled=false 关闭
+ */
+@AutoConfiguration(after = {RedisAutoConfiguration.class, JacksonAutoConfiguration.class},
+        before = CacheAutoConfiguration.class)
+@ConditionalOnClass({Caffeine.class, RedisConnectionFactory.class})
+@ConditionalOnBean(RedisConnectionFactory.class)
+@ConditionalOnProperty(prefix = "partner.cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+@EnableCaching
+@EnableConfigurationProperties(TwoLevelCacheProperties.class)
+public class TwoLevelCacheAutoConfiguration {
+
+    @Bean
+    @ConditionalOnMissingBean(CacheManager.class)
+    public TwoLevelCacheManager cacheManager(TwoLevelCacheProperties properties,
+                                             RedisConnectionFactory connectionFactory,
+                                             ObjectProvider<ObjectMapper> objectMapper) {
+        TwoLevelCacheManager cacheManager = new TwoLevelCacheManager(properties,
+                new StringRedisTemplate(connectionFactory),
+                cacheValueMapper(objectMapper.getIfAvailable(ObjectMapper::new)));
+        cacheManager.setTransactionAware(true);
+        return cacheManager;
+    }
+
+    @Bean
+    @ConditionalOnBean(TwoLevelCacheManager.class)
+    public RedisMessageListenerContainer twoLevelCacheInvalidationContainer(RedisConnectionFactory connectionFactory,
+                                                                           TwoLevelCacheManager cacheManager,
+                                                                           TwoLevelCacheProperties properties) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(cacheManager, new ChannelTopic(properties.getInvalidationChannel()));
+        return container;
+    }
+
+    @Configuration(proxyBeanMethods = false)
+    @ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+    static class MetricsConfiguration {
+
+        @Bean
+        @ConditionalOnBean(TwoLevelCacheManager.class)
+        public TwoLevelCacheMetrics twoLevelCacheMetrics(TwoLevelCacheManager cacheManager) {
+            return new TwoLevelCacheMetrics(cacheManager);
+        }
+    }
+
+    /**
+     * L2 值序列化：在应用 ObjectMapper 的基础上写入类型信息，读回时还原为原始类型（如 Result&lt;ActivityVO&gt;）
+     */
+    private static ObjectMapper cacheValueMapper(ObjectMapper base) {
+        ObjectMapper mapper = base.copy();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.activateDefaultTyping(
+                BasicPolymorphicTypeValidator.builder()
+                        .allowIfSubType("com.limengyuan.partner.")
+                        .allowIfSubType("java.util.")
+                        .allowIfSubType("java.time.")
+                        .allowIfSubType("java.math.")
+                        .allowIfSubType("java.lang.")
+                        .build(),
+                ObjectMapper.DefaultTyping.NON_FINAL,
+                JsonTypeInfo.As.PROPERTY);
+        return mapper;
+    }
+}
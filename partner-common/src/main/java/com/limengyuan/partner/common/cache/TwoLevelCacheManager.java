@@ -0,0 +1,77 @@
+package com.limengyuan.partner.common.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.transaction.AbstractTransactionSupportingCacheManager;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 二级缓存管理器
+ *
+ * - partner.cache.specs 中声明的缓存在启动时创建，其余缓存首次使用时按默认规格创建
+ * - 开启事务感知后，@Transactional 方法内的写入/失效延迟到事务提交后执行，避免其他实例读到未提交的旧数据后回填
+ * - 同时作为失效频道的消息监听器，收到广播后丢弃本地 L1
+ */
+@Slf4j
+public class TwoLevelCacheManager extends AbstractTransactionSupportingCacheManager implements MessageListener {
+
+    private final TwoLevelCacheProperties properties;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+
+    /** 未经事务装饰的原始缓存，供失效广播和监控使用 */
+    private final Map<String, TwoLevelCache> rawCaches = new ConcurrentHashMap<>();
+
+    public TwoLevelCacheManager(TwoLevelCacheProperties properties, StringRedisTemplate redisTemplate,
+                                ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+    }
+
+    @Override
+    protected Collection<? extends Cache> loadCaches() {
+        List<Cache> caches = new ArrayList<>();
+        properties.getSpecs().forEach((name, spec) -> caches.add(createCache(name, spec)));
+        return caches;
+    }
+
+    @Override
+    protected Cache getMissingCache(String name) {
+        return createCache(name, properties.getDefaults());
+    }
+
+    /**
+     * 获取原始缓存（不存在时返回 null）
+     */
+    public TwoLevelCache getRawCache(String name) {
+        return rawCaches.get(name);
+    }
+
+    /**
+     * 收到失效广播：丢弃本地 L1
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String[] parts = TwoLevelCache.InvalidationMessage.decode(message.getBody());
+        TwoLevelCache cache = rawCaches.get(parts[0]);
+        if (cache != null) {
+            cache.evictLocal(parts[1]);
+            log.debug("[二级缓存] 收到失效广播, cache={}, key={}", parts[0], parts[1]);
+        }
+    }
+
+    private TwoLevelCache createCache(String name, TwoLevelCacheProperties.Spec spec) {
+        return rawCaches.computeIfAbsent(name, n -> new TwoLevelCache(n, spec, redisTemplate, objectMapper,
+                properties.getKeyPrefix(), properties.getInvalidationChannel()));
+    }
+}
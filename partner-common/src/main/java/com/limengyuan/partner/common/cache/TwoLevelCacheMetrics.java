@@ -0,0 +1,51 @@
+package com.limengyuan.partner.common.cache;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 二级缓存监控指标（/actuator/metrics 中查看）
+ *
+ * - partner.cache.gets{cache, result=local_hit|remote_hit|miss}
+ * - partner.cache.local.size{cache}
+ *
+ * 只绑定启动时已创建的缓存，即 partner.cache.specs 中声明过的缓存
+ */
+public class TwoLevelCacheMetrics implements MeterBinder {
+
+    private final TwoLevelCacheManager cacheManager;
+
+    public TwoLevelCacheMetrics(TwoLevelCacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        for (String name : cacheManager.getCacheNames()) {
+            TwoLevelCache cache = cacheManager.getRawCache(name);
+            if (cache == null) {
+                continue;
+            }
+            counter(registry, cache, "local_hit", c -> c.stats().localHits());
+            counter(registry, cache, "remote_hit", c -> c.stats().remoteHits());
+            counter(registry, cache, "miss", c -> c.stats().misses());
+            Gauge.builder("partner.cache.local.size", cache, c -> c.stats().localSize())
+                    .tag("cache", name)
+                    .description("本地缓存条目数")
+                    .register(registry);
+        }
+    }
+
+    private static void counter(MeterRegistry registry, TwoLevelCache cache, String result,
+                                ToDoubleFunction<TwoLevelCache> f) {
+        FunctionCounter.builder("partner.cache.gets", cache, f)
+                .tag("cache", cache.getName())
+                .tag("result", result)
+                .description("二级缓存读取次数")
+                .register(registry);
+    }
+}
@@ -0,0 +1,46 @@
+package com.limengyuan.partner.common.cache;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 二级缓存配置
+ *
+ * 示例：
+ * partner.cache.specs.activityDetail.local-ttl=30s
+ * partner.cache.specs.activityDetail.local-max-size=5000
+ * partner.cache.specs.activityDetail.remote-ttl=5m
+ */
+@Data
+@ConfigurationProperties(prefix = "partner.cache")
+public class TwoLevelCacheProperties {
+
+    /** Redis 键前缀，完整键为 前缀 + 缓存名 + ":" + key */
+    private String keyPrefix = "partner:cache:";
+
+    /** 失效广播的 Redis 频道 */
+    private String invalidationChannel = "partner:cache:invalidation";
+
+    /** 未在 specs 中声明的缓存使用的默认规格 */
+    private Spec defaults = new Spec();
+
+    /** 按缓存名单独配置的规格（声明过的缓存在启动时创建，并注册监控指标） */
+    private Map<String, Spec> specs = new LinkedHashMap<>();
+
+    @Data
+    public static class Spec {
+
+        /** 本地缓存（L1）写入后过期时间 */
+        private Duration localTtl = Duration.ofMinutes(1);
+
+        /** 本地缓存（L1）最大条目数 */
+        private long localMaxSize = 10_000;
+
+        /** Redis 缓存（L2）过期时间 */
+        private Duration remoteTtl = Duration.ofMinutes(10);
+    }
+}
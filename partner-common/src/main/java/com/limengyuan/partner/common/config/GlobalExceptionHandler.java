@@ -1,6 +1,7 @@
 package com.limengyuan.partner.common.config;
 
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
 import jakarta.validation.ConstraintViolation;
 import jakarta.validation.ConstraintViolationException;
 import lombok.extern.slf4j.Slf4j;
@@ -84,6 +85,15 @@ public class GlobalExceptionHandler {
         return Result.error(405, "不支持的请求方法: " + ex.getMethod());
     }
 
+    /**
+     * 分页游标格式不合法（前端篡改或截断了游标）
+     */
+    @ExceptionHandler(CursorHelper.InvalidCursorException.class)
+    public Result<Void> handleInvalidCursor(CursorHelper.InvalidCursorException ex) {
+        log.warn("[分页游标无效] {}", ex.getMessage());
+        return Result.error(400, ex.getMessage());
+    }
+
     /**
      * 数据库唯一键冲突等数据完整性异常（如重复报名、重复关注等）
      * 使用 RuntimeException 匹配，避免对 spring-dao 的编译期依赖
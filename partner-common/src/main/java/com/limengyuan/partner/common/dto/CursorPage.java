@@ -0,0 +1,75 @@
+package com.limengyuan.partner.common.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 游标分页结果 DTO（Keyset 分页）
+ *
+ * 与 PageResult 的 LIMIT/OFFSET 不同，游标分页通过上一页最后一条记录的排序键定位下一页，
+ * 无论翻到多深，数据库都只扫描本页所需的行
+ *
+ * @param <T> 列表元素类型
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPage<T> {
+
+    /**
+     * 数据列表
+     */
+    private List<T> list;
+
+    /**
+     * 下一页游标（不透明字符串），没有更多数据时为 null
+     */
+    private String nextCursor;
+
+    /**
+     * 是否还有下一页
+     */
+    private boolean hasMore;
+
+    /**
+     * 每页数量
+     */
+    private int size;
+
+    /**
+     * 便捷构造方法
+     *
+     * @param rows     按 size + 1 条查询出的结果，多出的一条仅用于判断是否还有下一页
+     * @param size     每页数量
+     * @param cursorOf 根据本页最后一条记录生成下一页游标
+     */
+    public static <T> CursorPage<T> of(List<T> rows, int size, Function<T, String> cursorOf) {
+        boolean hasMore = rows.size() > size;
+        List<T> list = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = hasMore && !list.isEmpty() ? cursorOf.apply(list.get(list.size() - 1)) : null;
+        return CursorPage.<T>builder()
+                .list(list)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(size)
+                .build();
+    }
+
+    /**
+     * 批量转换列表元素，保留游标信息（用于先按关系表分页、再批量回查详情的场景）
+     */
+    public <R> CursorPage<R> mapList(Function<List<T>, List<R>> mapper) {
+        return CursorPage.<R>builder()
+                .list(mapper.apply(list))
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(size)
+                .build();
+    }
+}
@@ -105,6 +105,11 @@ public class ActivityVO {
      */
     private Integer status;
 
+    /**
+     * 浏览人数（去重后的近似值）
+     */
+    private Integer viewCount;
+
     /**
      * 创建时间
      */
@@ -137,6 +142,11 @@ public class ActivityVO {
      */
     private Integer currentParticipants;
 
+    /**
+     * 与查询位置的距离（公里），仅附近活动搜索时返回
+     */
+    private Double distanceKm;
+
     // ==================== 参与者列表 ====================
 
     /**
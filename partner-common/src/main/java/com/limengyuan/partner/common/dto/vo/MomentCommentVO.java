@@ -80,6 +80,12 @@ public class MomentCommentVO {
 
     /**
      * 该评论下的回复列表 (仅一级评论才有, 二级评论此字段为 null)
+     * 游标分页接口中只包含前几条预览，其余通过回复分页接口展开
      */
     private List<MomentCommentVO> replies;
+
+    /**
+     * 该评论下的回复总数 (仅一级评论才有)
+     */
+    private Integer replyCount;
 }
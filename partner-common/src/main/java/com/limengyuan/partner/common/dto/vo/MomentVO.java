@@ -64,7 +64,7 @@ public class MomentVO {
     private Integer commentCount;
 
     /**
-     * 浏览数
+     * 浏览人数（去重后的近似值）
      */
     private Integer viewCount;
 
@@ -90,6 +90,16 @@ public class Activity {
      */
     private Integer maxParticipants;
 
+    /**
+     * 已通过的参与人数 (冗余计数，不含发起人)
+     */
+    private Integer approvedCount;
+
+    /**
+     * 浏览人数 (去重后的近似值，由 UniqueViewCounter 定期合并)
+     */
+    private Integer viewCount;
+
     /**
      * 费用方式: 1-AA制, 2-发起人请客, 3-免费, 4-各付各的
      */
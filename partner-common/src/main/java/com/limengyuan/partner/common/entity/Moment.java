@@ -67,7 +67,7 @@ public class Moment {
     private Integer commentCount;
 
     /**
-     * 浏览数 (冗余字段)
+     * 浏览人数 (去重后的近似值，由 UniqueViewCounter 定期合并)
      */
     private Integer viewCount;
 
@@ -0,0 +1,15 @@
+package com.limengyuan.partner.common.event;
+
+/**
+ * 跨服务的活动变更通知频道（Redis Pub/Sub）
+ *
+ * 管理服务下架/恢复活动后向该频道发布活动ID，帖子服务收到后转为本地的活动变更事件，
+ * 筛选、地理、全文检索索引与详情缓存随之刷新。Pub/Sub 不保证送达，各索引仍保留定时重建兜底
+ */
+public final class ActivityChangeChannel {
+
+    public static final String NAME = "partner:activity:changed";
+
+    private ActivityChangeChannel() {
+    }
+}
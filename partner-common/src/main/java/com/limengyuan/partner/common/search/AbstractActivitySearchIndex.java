@@ -0,0 +1,203 @@
+package com.limengyuan.partner.common.search;
+
+import com.limengyuan.partner.common.entity.Activity;
+import lombok.extern.slf4j.Slf4j;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.List;
+
+/**
+ * 活动全文检索索引的公共骨架
+ *
+ * 索引字段：标题（权重 2）、地点名称（权重 1.5）、描述（权重 1）
+ *
+ * 数据同步基于 activities.updated_at 水位：
+ * - rebuild()：全量加载可索引的活动，构建新索引后整体替换
+ * - catchUp()：只拉取 updated_at ≥ 水位 - COMMIT_LAG 的活动，逐条写入或移除。
+ *   updated_at 在语句执行时取值，长事务提交时该值可能已落后于水位，回看一段时间避免漏掉；
+ *   重复拉取的活动按最新数据覆盖写入，结果不变
+ * - 配置了快照路径时，启动优先加载快照再 catchUp，避免每次重启都全量扫描；
+ *   快照文件头记录索引名称，名称不符（如误配成其他服务的快照）时改为全量重建
+ *
+ * 各服务只需实现数据加载方式和"哪些活动应被索引"
+ */
+@Slf4j
+public abstract class AbstractActivitySearchIndex {
+
+    /** 单次检索最多返回的命中数 */
+    public static final int MAX_HITS = 1000;
+
+    private static final float TITLE_BOOST = 2.0f;
+    private static final float LOCATION_BOOST = 1.5f;
+    private static final float DESCRIPTION_BOOST = 1.0f;
+
+    /** 增量追平时水位的回看时长，覆盖提交慢于 updated_at 的事务 */
+    private static final Duration COMMIT_LAG = Duration.ofMinutes(2);
+
+    private final String name;
+    private final Path snapshotPath;
+
+    private volatile InvertedIndex index = new InvertedIndex();
+    private volatile LocalDateTime watermark;
+    private volatile boolean ready = false;
+
+    /**
+     * @param name         索引名称，写入快照文件头用于校验
+     * @param snapshotPath 快照文件路径，为空表示不启用快照
+     */
+    protected AbstractActivitySearchIndex(String name, String snapshotPath) {
+        this.name = name;
+        this.snapshotPath = snapshotPath == null || snapshotPath.isBlank() ? null : Path.of(snapshotPath);
+    }
+
+    /**
+     * 全量加载应被索引的活动（需包含 activity_id、title、description、location_name、status、updated_at）
+     */
+    protected abstract List<Activity> loadAll();
+
+    /**
+     * 加载 updated_at ≥ since 的活动（不区分状态，字段要求同 loadAll）
+     */
+    protected abstract List<Activity> loadChangedSince(LocalDateTime since);
+
+    /**
+     * 活动是否应出现在索引中
+     */
+    protected abstract boolean isIndexable(Activity activity);
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 检索，返回按相关度排序的活动ID
+     */
+    public List<InvertedIndex.Hit> search(String keyword, int limit) {
+        return index.search(keyword, Math.min(limit, MAX_HITS));
+    }
+
+    /**
+     * 启动初始化：优先加载快照并增量追平，快照不可用时全量重建
+     */
+    public void initialize() {
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            try {
+                InvertedIndex loaded = new InvertedIndex();
+                long millis = loaded.loadSnapshot(snapshotPath, name);
+                index = loaded;
+                watermark = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+                ready = true;
+                log.info("[全文检索] 已加载索引快照 {}，共 {} 个文档，水位 {}", snapshotPath, loaded.size(), watermark);
+                catchUp();
+                return;
+            } catch (Exception e) {
+                log.warn("[全文检索] 索引快照加载失败，改为全量重建: {}", e.getMessage());
+            }
+        }
+        rebuild();
+    }
+
+    /**
+     * 全量重建，完成后追平重建期间的变更并写快照
+     */
+    public synchronized void rebuild() {
+        try {
+            long start = System.currentTimeMillis();
+            List<Activity> activities = loadAll();
+            InvertedIndex rebuilt = new InvertedIndex();
+            LocalDateTime newWatermark = null;
+            for (Activity activity : activities) {
+                rebuilt.put(activity.getActivityId(), fieldsOf(activity));
+                newWatermark = max(newWatermark, activity.getUpdatedAt());
+            }
+            index = rebuilt;
+            watermark = newWatermark;
+            ready = true;
+            log.info("[全文检索] 全量重建完成，共 {} 个文档，耗时 {} ms",
+                    activities.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[全文检索] 全量重建失败", e);
+            return;
+        }
+        catchUp();
+        saveSnapshot();
+    }
+
+    /**
+     * 按 updated_at 水位增量追平
+     */
+    public synchronized void catchUp() {
+        if (!ready) {
+            return;
+        }
+        try {
+            LocalDateTime since = watermark != null
+                    ? watermark.minus(COMMIT_LAG) : LocalDateTime.of(1970, 1, 1, 0, 0);
+            List<Activity> changed = loadChangedSince(since);
+            LocalDateTime newWatermark = watermark;
+            for (Activity activity : changed) {
+                apply(activity);
+                newWatermark = max(newWatermark, activity.getUpdatedAt());
+            }
+            watermark = newWatermark;
+            if (!changed.isEmpty()) {
+                log.debug("[全文检索] 增量同步 {} 个活动，水位推进到 {}", changed.size(), watermark);
+            }
+        } catch (Exception e) {
+            log.error("[全文检索] 增量同步失败", e);
+        }
+    }
+
+    /**
+     * 按活动最新数据写入或移除单个文档
+     */
+    public void apply(Activity activity) {
+        if (isIndexable(activity)) {
+            index.put(activity.getActivityId(), fieldsOf(activity));
+        } else {
+            index.remove(activity.getActivityId());
+        }
+    }
+
+    /**
+     * 移除单个文档（活动已不存在时使用）
+     */
+    public void remove(Long activityId) {
+        index.remove(activityId);
+    }
+
+    /**
+     * 写索引快照（未配置路径时跳过）
+     */
+    public void saveSnapshot() {
+        if (snapshotPath == null || !ready) {
+            return;
+        }
+        try {
+            long millis = watermark != null ? watermark.toInstant(ZoneOffset.UTC).toEpochMilli() : 0L;
+            index.saveSnapshot(snapshotPath, name, millis);
+            log.info("[全文检索] 索引快照已写入 {}", snapshotPath);
+        } catch (Exception e) {
+            log.warn("[全文检索] 索引快照写入失败: {}", e.getMessage());
+        }
+    }
+
+    private static List<InvertedIndex.Field> fieldsOf(Activity activity) {
+        return List.of(
+                new InvertedIndex.Field(activity.getTitle(), TITLE_BOOST),
+                new InvertedIndex.Field(activity.getLocationName(), LOCATION_BOOST),
+                new InvertedIndex.Field(activity.getDescription(), DESCRIPTION_BOOST));
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,265 @@
+package com.limengyuan.partner.common.search;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 内存倒排索引（BM25 排序）
+ *
+ * - 每个文档由若干字段组成，字段可设置权重（如标题权重高于正文），词频按权重累加
+ * - 查询词之间为"至少命中一半"的 OR 语义：二元组切分会产生跨词的无意义组合，
+ *   要求全部命中会导致召回过低，只命中一个又会引入噪声
+ * - 支持增量 put/remove，以及快照落盘/加载（用于服务快速重启）
+ *
+ * 线程安全：读写锁保护，查询之间互不阻塞
+ */
+public class InvertedIndex {
+
+    /** BM25 参数 */
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    /** 快照文件头 */
+    private static final int SNAPSHOT_MAGIC = 0x50534958;
+    private static final int SNAPSHOT_VERSION = 2;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 词 → (文档ID → 加权词频) */
+    private final Map<String, Map<Long, Float>> postings = new HashMap<>();
+    /** 文档ID → 文档信息（删除时据此清理倒排表） */
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private double totalLength = 0;
+
+    /**
+     * 文档字段
+     *
+     * @param text  字段文本
+     * @param boost 字段权重
+     */
+    public record Field(String text, float boost) {
+    }
+
+    /**
+     * 命中结果
+     */
+    public record Hit(long docId, double score) {
+    }
+
+    private record Doc(float length, Map<String, Float> termFreqs) {
+    }
+
+    /**
+     * 写入或覆盖文档
+     */
+    public void put(long docId, List<Field> fields) {
+        Map<String, Float> termFreqs = new HashMap<>();
+        float length = 0;
+        for (Field field : fields) {
+            for (String token : NgramTokenizer.tokenizeForIndex(field.text())) {
+                termFreqs.merge(token, field.boost(), Float::sum);
+                length += field.boost();
+            }
+        }
+
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+            putInternal(docId, new Doc(length, termFreqs));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 删除文档
+     */
+    public void remove(long docId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 文档数量
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 检索
+     *
+     * @param query 查询文本
+     * @param limit 最多返回条数
+     * @return 按 BM25 得分降序（同分按文档ID降序）
+     */
+    public List<Hit> search(String query, int limit) {
+        Set<String> terms = new LinkedHashSet<>(NgramTokenizer.tokenizeForQuery(query));
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+        int minMatch = (terms.size() + 1) / 2;
+
+        Map<Long, double[]> acc = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int n = docs.size();
+            if (n == 0) {
+                return List.of();
+            }
+            double avgLength = totalLength / n;
+            for (String term : terms) {
+                Map<Long, Float> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (n - posting.size() + 0.5) / (posting.size() + 0.5));
+                for (Map.Entry<Long, Float> e : posting.entrySet()) {
+                    double tf = e.getValue();
+                    double norm = K1 * (1 - B + B * docs.get(e.getKey()).length() / avgLength);
+                    double[] scoreAndMatches = acc.computeIfAbsent(e.getKey(), k -> new double[2]);
+                    scoreAndMatches[0] += idf * tf * (K1 + 1) / (tf + norm);
+                    scoreAndMatches[1] += 1;
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Hit> hits = new ArrayList<>();
+        for (Map.Entry<Long, double[]> e : acc.entrySet()) {
+            if (e.getValue()[1] >= minMatch) {
+                hits.add(new Hit(e.getKey(), e.getValue()[0]));
+            }
+        }
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed()
+                .thenComparing(Comparator.comparingLong(Hit::docId).reversed()));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    /**
+     * 将索引写入快照文件（先写临时文件再原子替换）
+     *
+     * @param name      索引名称，写入文件头，加载时校验，防止不同索引误用同一个快照
+     * @param watermark 调用方自定义的水位（如数据最后更新时间），加载时原样返回
+     */
+    public void saveSnapshot(Path path, String name, long watermark) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+
+        lock.readLock().lock();
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeUTF(name);
+            out.writeLong(watermark);
+            out.writeInt(docs.size());
+            for (Map.Entry<Long, Doc> e : docs.entrySet()) {
+                out.writeLong(e.getKey());
+                out.writeFloat(e.getValue().length());
+                out.writeInt(e.getValue().termFreqs().size());
+                for (Map.Entry<String, Float> tf : e.getValue().termFreqs().entrySet()) {
+                    out.writeUTF(tf.getKey());
+                    out.writeFloat(tf.getValue());
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 从快照文件加载索引（会先清空当前内容）
+     *
+     * @param name 期望的索引名称，与文件头不一致时拒绝加载
+     * @return 保存快照时传入的水位
+     * @throws IOException 文件不存在、格式不正确或属于其他索引
+     */
+    public long loadSnapshot(Path path, String name) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) {
+                throw new IOException("不支持的索引快照格式: " + path);
+            }
+            String snapshotName = in.readUTF();
+            if (!snapshotName.equals(name)) {
+                throw new IOException("索引快照属于 " + snapshotName + "，当前索引为 " + name + ": " + path);
+            }
+            long watermark = in.readLong();
+            int docCount = in.readInt();
+            Map<Long, Doc> loaded = new HashMap<>(docCount * 2);
+            for (int i = 0; i < docCount; i++) {
+                long docId = in.readLong();
+                float length = in.readFloat();
+                int termCount = in.readInt();
+                Map<String, Float> termFreqs = new HashMap<>(termCount * 2);
+                for (int j = 0; j < termCount; j++) {
+                    termFreqs.put(in.readUTF(), in.readFloat());
+                }
+                loaded.put(docId, new Doc(length, termFreqs));
+            }
+
+            lock.writeLock().lock();
+            try {
+                postings.clear();
+                docs.clear();
+                totalLength = 0;
+                loaded.forEach(this::putInternal);
+            } finally {
+                lock.writeLock().unlock();
+            }
+            return watermark;
+        }
+    }
+
+    private void putInternal(long docId, Doc doc) {
+        docs.put(docId, doc);
+        totalLength += doc.length();
+        for (Map.Entry<String, Float> e : doc.termFreqs().entrySet()) {
+            postings.computeIfAbsent(e.getKey(), k -> new HashMap<>()).put(docId, e.getValue());
+        }
+    }
+
+    private void removeInternal(long docId) {
+        Doc old = docs.remove(docId);
+        if (old == null) {
+            return;
+        }
+        totalLength -= old.length();
+        for (String term : old.termFreqs().keySet()) {
+            Map<Long, Float> posting = postings.get(term);
+            if (posting != null) {
+                posting.remove(docId);
+                if (posting.isEmpty()) {
+                    postings.remove(term);
+                }
+            }
+        }
+    }
+}
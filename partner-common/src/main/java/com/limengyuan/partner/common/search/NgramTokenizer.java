@@ -0,0 +1,87 @@
+package com.limengyuan.partner.common.search;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 中文 N-gram 分词器
+ *
+ * - 连续的汉字按二元组（bigram）切分，建索引时额外保留单字，使单字查询也能命中
+ * - 连续的字母/数字作为一个词，统一转小写
+ * - 其余字符（标点、空白、表情等）视为分隔符
+ *
+ * 不依赖词典，对口语化的活动标题、地名同样有效
+ */
+public final class NgramTokenizer {
+
+    private NgramTokenizer() {
+    }
+
+    /**
+     * 建索引用分词：汉字输出单字 + 二元组
+     */
+    public static List<String> tokenizeForIndex(String text) {
+        return tokenize(text, true);
+    }
+
+    /**
+     * 查询用分词：汉字只输出二元组（仅一个汉字时输出单字）
+     */
+    public static List<String> tokenizeForQuery(String text) {
+        return tokenize(text, false);
+    }
+
+    private static List<String> tokenize(String text, boolean withUnigrams) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return tokens;
+        }
+
+        int i = 0;
+        int len = text.length();
+        while (i < len) {
+            int cp = text.codePointAt(i);
+            if (isHan(cp)) {
+                int start = i;
+                while (i < len && isHan(text.codePointAt(i))) {
+                    i += Character.charCount(text.codePointAt(i));
+                }
+                emitHanRun(text.substring(start, i), withUnigrams, tokens);
+            } else if (Character.isLetterOrDigit(cp)) {
+                int start = i;
+                while (i < len) {
+                    int c = text.codePointAt(i);
+                    if (!Character.isLetterOrDigit(c) || isHan(c)) {
+                        break;
+                    }
+                    i += Character.charCount(c);
+                }
+                tokens.add(text.substring(start, i).toLowerCase(Locale.ROOT));
+            } else {
+                i += Character.charCount(cp);
+            }
+        }
+        return tokens;
+    }
+
+    private static void emitHanRun(String run, boolean withUnigrams, List<String> tokens) {
+        int[] cps = run.codePoints().toArray();
+        if (cps.length == 1) {
+            tokens.add(run);
+            return;
+        }
+        for (int j = 0; j < cps.length; j++) {
+            if (withUnigrams) {
+                tokens.add(new String(cps, j, 1));
+            }
+            if (j + 1 < cps.length) {
+                tokens.add(new String(cps, j, 2));
+            }
+        }
+    }
+
+    private static boolean isHan(int cp) {
+        return Character.UnicodeScript.of(cp) == Character.UnicodeScript.HAN;
+    }
+}
@@ -0,0 +1,273 @@
+package com.limengyuan.partner.common.store;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 用户展示信息快照存储（userId → 昵称、头像、信用分、性别）
+ *
+ * 专为列表 VO 回填设计，替代各查询中仅为取昵称头像而做的 LEFT JOIN users：
+ * - 索引：基础类型 long[] 开放寻址哈希表（线性探测，负载因子 ≤ 0.5），userId → 记录偏移量，无装箱
+ * - 数据：堆外 DirectByteBuffer 顺序追加，记录变长编码，不占用堆内存、不增加 GC 扫描压力
+ * - 更新：追加新记录并改写偏移量，旧记录成为垃圾；垃圾超过一半时整体压缩
+ *
+ * 记录格式：creditScore(int) | gender(byte) | nicknameLen(short) | nickname(UTF-8) | avatarLen(short) | avatar(UTF-8)
+ * 空值：creditScore 用 Integer.MIN_VALUE，gender 用 -1，字符串长度用 -1 表示
+ *
+ * 线程安全：读写锁保护，读之间并发
+ */
+public class UserSnapshotStore {
+
+    /** 用户ID从 1 开始自增，0 作为空槽标记 */
+    private static final long EMPTY_KEY = 0L;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final byte NULL_BYTE = -1;
+    private static final short NULL_LENGTH = -1;
+    /** 单个字符串最大字节数（超出部分截断） */
+    private static final int MAX_STRING_BYTES = Short.MAX_VALUE;
+    /** 触发压缩的最小数据区大小 */
+    private static final int COMPACT_MIN_BYTES = 1 << 20;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private long[] keys;
+    private int[] offsets;
+    private int size;
+
+    private ByteBuffer data;
+    /** 有效记录占用的字节数（不含被覆盖的旧记录） */
+    private long liveBytes;
+
+    /**
+     * 用户展示信息
+     */
+    public record UserSnapshot(String nickname, String avatarUrl, Integer creditScore, Integer gender) {
+    }
+
+    public UserSnapshotStore() {
+        this(1024);
+    }
+
+    /**
+     * @param expectedUsers 预估用户数，用于预分配容量
+     */
+    public UserSnapshotStore(int expectedUsers) {
+        int capacity = Integer.highestOneBit(Math.max(16, expectedUsers * 2 - 1)) << 1;
+        keys = new long[capacity];
+        offsets = new int[capacity];
+        data = ByteBuffer.allocateDirect(Math.max(4096, expectedUsers * 64));
+    }
+
+    /**
+     * 写入或覆盖用户快照
+     */
+    public void put(long userId, String nickname, String avatarUrl, Integer creditScore, Integer gender) {
+        if (userId == EMPTY_KEY) {
+            throw new IllegalArgumentException("userId 不能为 0");
+        }
+        byte[] nicknameBytes = encode(nickname);
+        byte[] avatarBytes = encode(avatarUrl);
+        int recordLength = recordLength(nicknameBytes, avatarBytes);
+
+        lock.writeLock().lock();
+        try {
+            ensureDataCapacity(recordLength);
+            int offset = data.position();
+            data.putInt(creditScore != null ? creditScore : NULL_INT);
+            data.put(gender != null ? gender.byteValue() : NULL_BYTE);
+            putString(nicknameBytes);
+            putString(avatarBytes);
+
+            int slot = findSlot(userId);
+            if (keys[slot] == userId) {
+                liveBytes -= recordLengthAt(offsets[slot]);
+            } else {
+                keys[slot] = userId;
+                size++;
+            }
+            offsets[slot] = offset;
+            liveBytes += recordLength;
+
+            if (size * 2 > keys.length) {
+                rehash(keys.length << 1);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 查询用户快照
+     *
+     * @return 不存在时返回 null
+     */
+    public UserSnapshot get(long userId) {
+        lock.readLock().lock();
+        try {
+            int slot = findSlot(userId);
+            if (keys[slot] != userId) {
+                return null;
+            }
+            // 使用 duplicate 独立读位置，允许多个读线程并发访问同一个缓冲区
+            ByteBuffer buf = data.duplicate();
+            buf.position(offsets[slot]);
+            int credit = buf.getInt();
+            byte gender = buf.get();
+            String nickname = readString(buf);
+            String avatar = readString(buf);
+            return new UserSnapshot(nickname, avatar,
+                    credit != NULL_INT ? credit : null,
+                    gender != NULL_BYTE ? (int) gender : null);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 已存储的用户数
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 当前占用的内存（字节）：哈希表（堆内）+ 数据区（堆外）
+     */
+    public long memoryBytes() {
+        lock.readLock().lock();
+        try {
+            return (long) keys.length * (Long.BYTES + Integer.BYTES) + data.capacity();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    /**
+     * 线性探测查找槽位：返回 userId 所在槽，或第一个空槽
+     */
+    private int findSlot(long userId) {
+        int mask = keys.length - 1;
+        int slot = mix(userId) & mask;
+        while (keys[slot] != EMPTY_KEY && keys[slot] != userId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void rehash(int newCapacity) {
+        long[] oldKeys = keys;
+        int[] oldOffsets = offsets;
+        keys = new long[newCapacity];
+        offsets = new int[newCapacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY_KEY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                offsets[slot] = oldOffsets[i];
+            }
+        }
+    }
+
+    /**
+     * 保证数据区有足够空间：垃圾超过一半时原地压缩，否则扩容
+     */
+    private void ensureDataCapacity(int recordLength) {
+        if (data.remaining() >= recordLength) {
+            return;
+        }
+        long required = liveBytes + recordLength;
+        long newCapacity = data.capacity();
+        if (data.position() < COMPACT_MIN_BYTES || required * 2 > data.capacity()) {
+            newCapacity = Math.max((long) data.capacity() * 2, required * 2);
+        }
+        if (newCapacity > Integer.MAX_VALUE - 8) {
+            throw new IllegalStateException("用户快照数据区超过 2GB 上限");
+        }
+        compactInto(ByteBuffer.allocateDirect((int) newCapacity));
+    }
+
+    /**
+     * 只拷贝有效记录到新缓冲区，并更新偏移量
+     */
+    private void compactInto(ByteBuffer target) {
+        ByteBuffer source = data.duplicate();
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] == EMPTY_KEY) {
+                continue;
+            }
+            int length = recordLengthAt(offsets[i]);
+            source.limit(offsets[i] + length).position(offsets[i]);
+            int newOffset = target.position();
+            target.put(source);
+            source.limit(source.capacity());
+            offsets[i] = newOffset;
+        }
+        data = target;
+    }
+
+    private int recordLengthAt(int offset) {
+        int pos = offset + Integer.BYTES + 1;
+        short nicknameLength = data.getShort(pos);
+        pos += Short.BYTES + Math.max(0, nicknameLength);
+        short avatarLength = data.getShort(pos);
+        pos += Short.BYTES + Math.max(0, avatarLength);
+        return pos - offset;
+    }
+
+    private static int recordLength(byte[] nickname, byte[] avatar) {
+        return Integer.BYTES + 1
+                + Short.BYTES + (nickname != null ? nickname.length : 0)
+                + Short.BYTES + (avatar != null ? avatar.length : 0);
+    }
+
+    private static byte[] encode(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            // 截断到合法的 UTF-8 边界
+            String truncated = new String(bytes, 0, MAX_STRING_BYTES, StandardCharsets.UTF_8);
+            bytes = truncated.getBytes(StandardCharsets.UTF_8);
+            while (bytes.length > MAX_STRING_BYTES) {
+                truncated = truncated.substring(0, truncated.length() - 1);
+                bytes = truncated.getBytes(StandardCharsets.UTF_8);
+            }
+        }
+        return bytes;
+    }
+
+    private void putString(byte[] bytes) {
+        if (bytes == null) {
+            data.putShort(NULL_LENGTH);
+        } else {
+            data.putShort((short) bytes.length);
+            data.put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer buf) {
+        short length = buf.getShort();
+        if (length == NULL_LENGTH) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,78 @@
+package com.limengyuan.partner.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+
+/**
+ * 游标编解码工具类
+ * 游标由 (排序键, 主键ID) 两部分组成，Base64 编码后作为不透明字符串返回给前端，
+ * 前端原样回传即可，不需要理解其内容
+ */
+public class CursorHelper {
+
+    private static final String SEPARATOR = "_";
+
+    /**
+     * 解码后的游标
+     *
+     * @param key 排序键（时间类游标为毫秒时间戳）
+     * @param id  主键ID，用于同一排序键下的二次排序，保证翻页不重不漏
+     */
+    public record Cursor(long key, long id) {
+
+        /**
+         * 将排序键还原为时间（仅时间类游标使用）
+         */
+        public LocalDateTime time() {
+            return LocalDateTime.ofInstant(Instant.ofEpochMilli(key), ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * 游标格式不合法，由全局异常处理器统一转换为 400 响应
+     */
+    public static class InvalidCursorException extends IllegalArgumentException {
+
+        public InvalidCursorException(String message, Throwable cause) {
+            super(message, cause);
+        }
+    }
+
+    /**
+     * 编码游标
+     */
+    public static String encode(long key, long id) {
+        String raw = key + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 以 (时间, ID) 编码游标
+     */
+    public static String encode(LocalDateTime time, Long id) {
+        return encode(time.toInstant(ZoneOffset.UTC).toEpochMilli(), id);
+    }
+
+    /**
+     * 解码游标
+     *
+     * @param cursor 前端回传的游标，为空表示第一页
+     * @return 解码后的游标，第一页返回 null
+     * @throws InvalidCursorException 游标格式不合法
+     */
+    public static Cursor decode(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
+        }
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int idx = raw.indexOf(SEPARATOR);
+            return new Cursor(Long.parseLong(raw.substring(0, idx)), Long.parseLong(raw.substring(idx + 1)));
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("无效的分页游标", e);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.limengyuan.partner.common.search;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class InvertedIndexTest {
+
+    @Test
+    void ranksBoostedTitleMatchesFirst() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("周末聚餐", "吃完饭去附近公园爬山"));
+        index.put(2, doc("周末爬山", "早上八点集合"));
+        index.put(3, doc("桌游局", "狼人杀剧本杀"));
+
+        List<InvertedIndex.Hit> hits = index.search("爬山", 10);
+
+        assertThat(hits).extracting(InvertedIndex.Hit::docId).containsExactly(2L, 1L);
+        assertThat(hits.get(0).score()).isGreaterThan(hits.get(1).score());
+    }
+
+    @Test
+    void requiresAtLeastHalfOfQueryTerms() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("羽毛球双打", ""));
+        index.put(2, doc("羽毛", ""));
+
+        // 查询词：羽毛、毛球、球双、双打，至少命中 2 个
+        assertThat(index.search("羽毛球双打", 10)).extracting(InvertedIndex.Hit::docId).containsExactly(1L);
+        // 查询词：羽毛、毛球，命中 1 个即可
+        assertThat(index.search("羽毛球", 10)).extracting(InvertedIndex.Hit::docId).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void singleCharacterQueryHitsUnigrams() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("去爬山", ""));
+
+        assertThat(index.search("山", 10)).extracting(InvertedIndex.Hit::docId).containsExactly(1L);
+    }
+
+    @Test
+    void putOverwritesAndRemoveDeletes() {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("周末爬山", ""));
+        index.put(1, doc("桌游局", ""));
+
+        assertThat(index.size()).isEqualTo(1);
+        assertThat(index.search("爬山", 10)).isEmpty();
+        assertThat(index.search("桌游", 10)).extracting(InvertedIndex.Hit::docId).containsExactly(1L);
+
+        index.remove(1);
+        index.remove(42);
+        assertThat(index.size()).isZero();
+        assertThat(index.search("桌游", 10)).isEmpty();
+    }
+
+    @Test
+    void tiesOrderedByNewestDocAndLimited() {
+        InvertedIndex index = new InvertedIndex();
+        for (long id = 1; id <= 5; id++) {
+            index.put(id, doc("周末爬山", ""));
+        }
+
+        assertThat(index.search("爬山", 3)).extracting(InvertedIndex.Hit::docId).containsExactly(5L, 4L, 3L);
+        assertThat(index.search("，", 3)).isEmpty();
+    }
+
+    @Test
+    void snapshotRoundTripKeepsDocsAndWatermark(@TempDir Path dir) throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("周末爬山", "早上八点集合"));
+        index.put(2, doc("桌游局", "狼人杀"));
+        Path file = dir.resolve("nested/index.snap");
+
+        index.saveSnapshot(file, "post-recruiting-activities", 1234567L);
+        InvertedIndex restored = new InvertedIndex();
+        restored.put(99, doc("会被清空", ""));
+        long watermark = restored.loadSnapshot(file, "post-recruiting-activities");
+
+        assertThat(watermark).isEqualTo(1234567L);
+        assertThat(restored.size()).isEqualTo(2);
+        assertThat(restored.search("会被清空", 10)).isEmpty();
+        assertThat(restored.search("爬山", 10)).isEqualTo(index.search("爬山", 10));
+        assertThat(Files.exists(dir.resolve("nested/index.snap.tmp"))).isFalse();
+    }
+
+    @Test
+    void snapshotOfAnotherIndexIsRejected(@TempDir Path dir) throws IOException {
+        InvertedIndex index = new InvertedIndex();
+        index.put(1, doc("周末爬山", ""));
+        Path file = dir.resolve("index.snap");
+        index.saveSnapshot(file, "admin-all-activities", 1L);
+
+        InvertedIndex other = new InvertedIndex();
+        other.put(7, doc("桌游局", ""));
+
+        assertThatThrownBy(() -> other.loadSnapshot(file, "post-recruiting-activities"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("admin-all-activities");
+        // 拒绝加载时保留原有内容
+        assertThat(other.size()).isEqualTo(1);
+    }
+
+    @Test
+    void snapshotWithOldVersionIsRejected(@TempDir Path dir) throws IOException {
+        Path file = dir.resolve("index.snap");
+        try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(file))) {
+            out.writeInt(0x50534958);
+            out.writeInt(1);
+            out.writeLong(1L);
+            out.writeInt(0);
+        }
+
+        assertThatThrownBy(() -> new InvertedIndex().loadSnapshot(file, "post-recruiting-activities"))
+                .isInstanceOf(IOException.class)
+                .hasMessageContaining("不支持");
+    }
+
+    private static List<InvertedIndex.Field> doc(String title, String description) {
+        return List.of(new InvertedIndex.Field(title, 3f), new InvertedIndex.Field(description, 1f));
+    }
+}
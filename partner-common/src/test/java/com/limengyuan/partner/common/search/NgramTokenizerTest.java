@@ -0,0 +1,50 @@
+package com.limengyuan.partner.common.search;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NgramTokenizerTest {
+
+    @Test
+    void hanRunIndexedAsUnigramsAndBigrams() {
+        assertThat(NgramTokenizer.tokenizeForIndex("周末爬山"))
+                .containsExactly("周", "周末", "末", "末爬", "爬", "爬山", "山");
+    }
+
+    @Test
+    void hanRunQueriedAsBigramsOnly() {
+        assertThat(NgramTokenizer.tokenizeForQuery("周末爬山")).containsExactly("周末", "末爬", "爬山");
+    }
+
+    @Test
+    void singleHanCharacterKeptInBothModes() {
+        assertThat(NgramTokenizer.tokenizeForIndex("山")).containsExactly("山");
+        assertThat(NgramTokenizer.tokenizeForQuery("山")).containsExactly("山");
+    }
+
+    @Test
+    void latinAndDigitsFormLowercaseWords() {
+        assertThat(NgramTokenizer.tokenizeForQuery("KTV 2024年 CityWalk"))
+                .containsExactly("ktv", "2024", "年", "citywalk");
+    }
+
+    @Test
+    void punctuationAndEmojiSplitRuns() {
+        assertThat(NgramTokenizer.tokenizeForQuery("羽毛球，约！😀篮球"))
+                .containsExactly("羽毛", "毛球", "约", "篮球");
+    }
+
+    @Test
+    void supplementaryHanCharactersHandledByCodePoint() {
+        // 𠀀 为扩展 B 区汉字，占两个 char
+        assertThat(NgramTokenizer.tokenizeForIndex("𠀀山")).containsExactly("𠀀", "𠀀山", "山");
+    }
+
+    @Test
+    void emptyInput() {
+        assertThat(NgramTokenizer.tokenizeForIndex(null)).isEmpty();
+        assertThat(NgramTokenizer.tokenizeForQuery("")).isEmpty();
+        assertThat(NgramTokenizer.tokenizeForQuery("，。！ ")).isEmpty();
+    }
+}
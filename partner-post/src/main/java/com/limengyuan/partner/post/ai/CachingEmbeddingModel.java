@@ -0,0 +1,238 @@
+package com.limengyuan.partner.post.ai;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.Embedding;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.embedding.EmbeddingRequest;
+import org.springframework.ai.embedding.EmbeddingResponse;
+import org.springframework.ai.embedding.EmbeddingResponseMetadata;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 带内容哈希缓存的 EmbeddingModel 包装
+ *
+ * 相同模型 + 相同文本的向量不会变化，按 SHA-256(模型名 + 维度 + 文本) 缓存：
+ * - L1：本地 Caffeine，保存 float[]
+ * - L2：Redis，保存半精度（fp16）字节，1024 维向量约 2KB，比 JSON 小一个数量级，进程重启后仍可命中
+ *
+ * 所有走 call(EmbeddingRequest) 的调用（VectorStore.add 的批量向量化、similaritySearch 的查询向量化）都会经过缓存，
+ * 一次请求中只把未命中的文本发给远程模型。缓存读写失败时直接调用远程模型，不影响业务
+ */
+@Slf4j
+public class CachingEmbeddingModel implements EmbeddingModel {
+
+    private static final String KEY_PREFIX = "embedding:";
+
+    private final EmbeddingModel delegate;
+    private final RedisTemplate<String, byte[]> redisTemplate;
+    private final String defaultModel;
+    private final Duration remoteTtl;
+    private final Cache<String, float[]> localCache;
+
+    private final LongAdder localHits = new LongAdder();
+    private final LongAdder remoteHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public CachingEmbeddingModel(EmbeddingModel delegate, RedisTemplate<String, byte[]> redisTemplate,
+                                 String defaultModel, long localMaxSize, Duration remoteTtl) {
+        this.delegate = delegate;
+        this.redisTemplate = redisTemplate;
+        this.defaultModel = defaultModel;
+        this.remoteTtl = remoteTtl;
+        this.localCache = Caffeine.newBuilder().maximumSize(localMaxSize).build();
+    }
+
+    @Override
+    public EmbeddingResponse call(EmbeddingRequest request) {
+        List<String> texts = request.getInstructions();
+        String model = resolveModel(request.getOptions());
+        float[][] vectors = new float[texts.size()][];
+        String[] keys = new String[texts.size()];
+
+        // 1. 本地缓存
+        List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < texts.size(); i++) {
+            keys[i] = cacheKey(model, request.getOptions(), texts.get(i));
+            vectors[i] = localCache.getIfPresent(keys[i]);
+            if (vectors[i] != null) {
+                localHits.increment();
+            } else {
+                pending.add(i);
+            }
+        }
+
+        // 2. Redis
+        if (!pending.isEmpty()) {
+            pending = loadRemote(pending, keys, vectors);
+        }
+
+        // 3. 远程模型：只发送未命中的文本，同一请求中重复的文本只算一次
+        EmbeddingResponseMetadata metadata = new EmbeddingResponseMetadata();
+        if (!pending.isEmpty()) {
+            Map<String, List<Integer>> positions = new HashMap<>();
+            List<String> missTexts = new ArrayList<>();
+            List<String> missKeys = new ArrayList<>();
+            for (Integer i : pending) {
+                List<Integer> slots = positions.computeIfAbsent(keys[i], k -> new ArrayList<>());
+                if (slots.isEmpty()) {
+                    missTexts.add(texts.get(i));
+                    missKeys.add(keys[i]);
+                }
+                slots.add(i);
+            }
+            misses.add(missTexts.size());
+
+            EmbeddingResponse response = delegate.call(new EmbeddingRequest(missTexts, request.getOptions()));
+            metadata = response.getMetadata();
+            Map<String, float[]> loaded = new HashMap<>();
+            for (Embedding embedding : response.getResults()) {
+                String key = missKeys.get(embedding.getIndex());
+                float[] vector = embedding.getOutput();
+                loaded.put(key, vector);
+                localCache.put(key, vector);
+                for (Integer i : positions.get(key)) {
+                    vectors[i] = vector;
+                }
+            }
+            storeRemote(loaded);
+        }
+
+        List<Embedding> embeddings = new ArrayList<>(vectors.length);
+        for (int i = 0; i < vectors.length; i++) {
+            embeddings.add(new Embedding(vectors[i], i));
+        }
+        return new EmbeddingResponse(embeddings, metadata);
+    }
+
+    @Override
+    public float[] embed(Document document) {
+        return delegate.embed(document);
+    }
+
+    @Override
+    public int dimensions() {
+        return delegate.dimensions();
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public Stats stats() {
+        return new Stats(localHits.sum(), remoteHits.sum(), misses.sum(), localCache.estimatedSize());
+    }
+
+    public record Stats(long localHits, long remoteHits, long misses, long localSize) {
+
+        /**
+         * 命中率（L1 + L2）
+         */
+        public double hitRatio() {
+            long total = localHits + remoteHits + misses;
+            return total == 0 ? 0D : (double) (localHits + remoteHits) / total;
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    /**
+     * 批量读取 Redis，返回仍未命中的位置
+     */
+    private List<Integer> loadRemote(List<Integer> pending, String[] keys, float[][] vectors) {
+        try {
+            List<byte[]> values = redisTemplate.opsForValue().multiGet(pending.stream().map(i -> keys[i]).toList());
+            if (values == null) {
+                return pending;
+            }
+            List<Integer> remaining = new ArrayList<>();
+            for (int j = 0; j < pending.size(); j++) {
+                int i = pending.get(j);
+                byte[] value = values.get(j);
+                if (value == null) {
+                    remaining.add(i);
+                    continue;
+                }
+                vectors[i] = decode(value);
+                localCache.put(keys[i], vectors[i]);
+                remoteHits.increment();
+            }
+            return remaining;
+        } catch (Exception e) {
+            log.warn("[向量缓存] 读取 Redis 失败，直接调用向量模型: {}", e.getMessage());
+            return pending;
+        }
+    }
+
+    private void storeRemote(Map<String, float[]> vectors) {
+        try {
+            Map<String, byte[]> encoded = new HashMap<>();
+            vectors.forEach((key, vector) -> encoded.put(key, encode(vector)));
+            redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings("unchecked")
+                public <K, V> Object execute(RedisOperations<K, V> operations) {
+                    encoded.forEach((key, value) -> operations.opsForValue().set((K) key, (V) value, remoteTtl));
+                    return null;
+                }
+            });
+        } catch (Exception e) {
+            log.warn("[向量缓存] 写入 Redis 失败: {}", e.getMessage());
+        }
+    }
+
+    private String resolveModel(EmbeddingOptions options) {
+        return options != null && options.getModel() != null ? options.getModel() : defaultModel;
+    }
+
+    /**
+     * 缓存键：SHA-256(模型名 + 维度 + 文本)，维度不同的向量不能互相复用
+     */
+    private static String cacheKey(String model, EmbeddingOptions options, String text) {
+        Integer dimensions = options != null ? options.getDimensions() : null;
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update((model + "\n" + dimensions + "\n").getBytes(StandardCharsets.UTF_8));
+            digest.update(text.getBytes(StandardCharsets.UTF_8));
+            return KEY_PREFIX + HexFormat.of().formatHex(digest.digest());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static byte[] encode(float[] vector) {
+        ByteBuffer buffer = ByteBuffer.allocate(vector.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (float v : vector) {
+            buffer.putShort(Float.floatToFloat16(v));
+        }
+        return buffer.array();
+    }
+
+    private static float[] decode(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+        float[] vector = new float[bytes.length / 2];
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] = Float.float16ToFloat(buffer.getShort());
+        }
+        return vector;
+    }
+}
@@ -0,0 +1,78 @@
+package com.limengyuan.partner.post.ai;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializer;
+
+import java.time.Duration;
+
+/**
+ * 向量缓存配置
+ *
+ * 通过 BeanPostProcessor 把容器中的 EmbeddingModel 替换为 {@link CachingEmbeddingModel}，
+ * 向量库、推荐等所有注入 EmbeddingModel 的地方无需改动。
+ * OpenAI 自动配置的 EmbeddingModel 带 @ConditionalOnMissingBean，不能再额外声明一个同类型的 Bean 来包装
+ *
+ * 配置项（partner.embedding-cache.*）：enabled、local-max-size、remote-ttl
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "partner.embedding-cache", name = "enabled", havingValue = "true", matchIfMissing = true)
+public class EmbeddingCacheConfig {
+
+    @Bean
+    public static BeanPostProcessor cachingEmbeddingModelPostProcessor(
+            ObjectProvider<RedisConnectionFactory> connectionFactory, Environment environment) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof EmbeddingModel model) || bean instanceof CachingEmbeddingModel) {
+                    return bean;
+                }
+                RedisTemplate<String, byte[]> redisTemplate = new RedisTemplate<>();
+                redisTemplate.setConnectionFactory(connectionFactory.getObject());
+                redisTemplate.setKeySerializer(RedisSerializer.string());
+                redisTemplate.setValueSerializer(RedisSerializer.byteArray());
+                redisTemplate.afterPropertiesSet();
+                return new CachingEmbeddingModel(model, redisTemplate,
+                        environment.getProperty("spring.ai.openai.embedding.options.model", "default"),
+                        environment.getProperty("partner.embedding-cache.local-max-size", Long.class, 10000L),
+                        environment.getProperty("partner.embedding-cache.remote-ttl", Duration.class, Duration.ofDays(30)));
+            }
+        };
+    }
+
+    /**
+     * 向量缓存监控指标（/actuator/metrics 中查看）
+     *
+     * - partner.embedding.cache.gets{result=local_hit|remote_hit|miss}
+     * - partner.embedding.cache.hit.ratio
+     */
+    @Bean
+    public MeterBinder embeddingCacheMetrics(EmbeddingModel embeddingModel) {
+        return registry -> {
+            if (!(embeddingModel instanceof CachingEmbeddingModel cache)) {
+                return;
+            }
+            FunctionCounter.builder("partner.embedding.cache.gets", cache, c -> c.stats().localHits())
+                    .tag("result", "local_hit").description("向量缓存读取次数").register(registry);
+            FunctionCounter.builder("partner.embedding.cache.gets", cache, c -> c.stats().remoteHits())
+                    .tag("result", "remote_hit").description("向量缓存读取次数").register(registry);
+            FunctionCounter.builder("partner.embedding.cache.gets", cache, c -> c.stats().misses())
+                    .tag("result", "miss").description("向量缓存读取次数").register(registry);
+            Gauge.builder("partner.embedding.cache.hit.ratio", cache, c -> c.stats().hitRatio())
+                    .description("向量缓存命中率（L1 + L2）").register(registry);
+            Gauge.builder("partner.embedding.cache.local.size", cache, c -> c.stats().localSize())
+                    .description("本地向量缓存条目数").register(registry);
+        };
+    }
+}
@@ -0,0 +1,71 @@
+package com.limengyuan.partner.post.ai;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 流式 JSON 数组解析：逐段喂入大模型输出，每当数组中的一个对象完整到达时返回该对象的 JSON 文本
+ *
+ * 只跟踪括号深度和字符串转义，不做完整校验；第一个 '[' 之前的内容（如 ```json 代码块标记）被忽略。
+ * 非线程安全，每个流使用一个实例
+ */
+public class JsonArrayStreamParser {
+
+    private final StringBuilder current = new StringBuilder();
+    private boolean inArray;
+    private boolean done;
+    private int depth;
+    private boolean inString;
+    private boolean escaped;
+
+    /**
+     * 喂入一段输出
+     *
+     * @return 本段内完整到达的对象（可能为空）
+     */
+    public List<String> feed(String chunk) {
+        List<String> completed = new ArrayList<>();
+        if (chunk == null || done) {
+            return completed;
+        }
+        for (int i = 0; i < chunk.length(); i++) {
+            char c = chunk.charAt(i);
+            if (!inArray) {
+                inArray = c == '[';
+                continue;
+            }
+            if (depth == 0) {
+                if (c == '{') {
+                    depth = 1;
+                    current.setLength(0);
+                    current.append(c);
+                } else if (c == ']') {
+                    done = true;
+                    break;
+                }
+                continue;
+            }
+
+            current.append(c);
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                if (depth == 0) {
+                    completed.add(current.toString());
+                }
+            }
+        }
+        return completed;
+    }
+}
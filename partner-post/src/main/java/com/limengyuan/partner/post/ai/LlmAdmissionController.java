@@ -0,0 +1,319 @@
+package com.limengyuan.partner.post.ai;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.DoubleSupplier;
+
+/**
+ * 大模型调用准入控制：限制同时进行的 DeepSeek 调用数，避免 AI 流量高峰占满 Tomcat 线程、拖垮普通接口
+ *
+ * - 全局并发上限自适应：每次调用结束后，用本次延迟与该场景的延迟基线之比（平滑后）判断是否拥塞，
+ *   超过 latencyTolerance 或调用失败时乘性收缩，并发已打满且延迟正常时加性增长（AIMD）
+ * - 优先级：排队按优先级、再按到达顺序放行；后台请求最多占用 backgroundShare 比例的并发名额
+ * - 场景配额：quotas 中配置的场景（如 plan-trip）同时最多占用的名额
+ * - 快速失败：排队已满立即拒绝，排队超时拒绝，均抛出 LlmRejectedException
+ *
+ * 只在真正调用大模型时占用名额，命中 LlmGateway 缓存的请求不经过这里。
+ *
+ * 监控指标（/actuator/metrics）：
+ * - partner.llm.admission.limit / inflight / queued
+ * - partner.llm.admission.rejected{reason=queue_full|timeout}
+ * - partner.llm.admission.queue.wait{priority}
+ */
+@Slf4j
+@Component
+@EnableConfigurationProperties(LlmAdmissionProperties.class)
+public class LlmAdmissionController {
+
+    /** 调用失败时的收缩系数 */
+    private static final double FAILURE_BACKOFF = 0.8;
+    /** 延迟超标时的收缩系数 */
+    private static final double LATENCY_BACKOFF = 0.95;
+    /** 延迟比值的平滑系数 */
+    private static final double RATIO_SMOOTHING = 0.2;
+
+    private final LlmAdmissionProperties properties;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final TreeSet<Waiter> waiters = new TreeSet<>(Comparator
+            .comparingInt((Waiter w) -> w.priority().ordinal())
+            .thenComparingLong(Waiter::sequence));
+    private final Map<String, Integer> inFlightByNamespace = new HashMap<>();
+    /** 各场景的延迟基线（纳秒）：下降快、上升慢，近似最近的正常延迟 */
+    private final Map<String, Double> baselineNanos = new HashMap<>();
+    private double limit;
+    private double latencyRatio = 1.0;
+    private int inFlight;
+    private long sequence;
+
+    private final LongAdder rejectedQueueFull = new LongAdder();
+    private final LongAdder rejectedTimeout = new LongAdder();
+    private final Map<LlmPriority, Timer> queueWait = new EnumMap<>(LlmPriority.class);
+
+    private record Waiter(String namespace, LlmPriority priority, long sequence, long enqueuedAt,
+                          CompletableFuture<Permit> future) {
+    }
+
+    public LlmAdmissionController(LlmAdmissionProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.limit = Math.max(properties.getMinLimit(), Math.min(properties.getMaxLimit(), properties.getInitialLimit()));
+
+        Gauge.builder("partner.llm.admission.limit", this, c -> c.locked(() -> c.limit))
+                .description("大模型调用并发上限（自适应）").register(meterRegistry);
+        Gauge.builder("partner.llm.admission.inflight", this, c -> c.locked(() -> (double) c.inFlight))
+                .description("进行中的大模型调用数").register(meterRegistry);
+        Gauge.builder("partner.llm.admission.queued", this, c -> c.locked(() -> (double) c.waiters.size()))
+                .description("排队中的大模型调用数").register(meterRegistry);
+        FunctionCounter.builder("partner.llm.admission.rejected", rejectedQueueFull, LongAdder::sum)
+                .tag("reason", "queue_full").description("被拒绝的大模型调用数").register(meterRegistry);
+        FunctionCounter.builder("partner.llm.admission.rejected", rejectedTimeout, LongAdder::sum)
+                .tag("reason", "timeout").description("被拒绝的大模型调用数").register(meterRegistry);
+        for (LlmPriority priority : LlmPriority.values()) {
+            queueWait.put(priority, Timer.builder("partner.llm.admission.queue.wait")
+                    .tag("priority", priority.name().toLowerCase())
+                    .description("大模型调用排队耗时").register(meterRegistry));
+        }
+    }
+
+    /**
+     * 阻塞获取调用名额
+     *
+     * @throws LlmRejectedException 排队已满、排队超时或线程被中断
+     */
+    public Permit acquire(LlmRequest request) {
+        CompletableFuture<Permit> future = acquireAsync(request);
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(false);
+            Thread.currentThread().interrupt();
+            throw new LlmRejectedException(request.namespace(), "interrupted", "等待大模型调用名额时被中断");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    /**
+     * 异步获取调用名额（流式调用使用，排队期间不占用线程）
+     *
+     * 返回的 Future 以 LlmRejectedException 异常结束表示被拒绝；取消 Future 即放弃排队
+     */
+    public CompletableFuture<Permit> acquireAsync(LlmRequest request) {
+        if (!properties.isEnabled()) {
+            return CompletableFuture.completedFuture(new Permit(null, System.nanoTime(), false));
+        }
+
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        Waiter waiter;
+        List<Grant> grants;
+        lock.lock();
+        try {
+            if (waiters.size() >= properties.getQueueCapacity()) {
+                rejectedQueueFull.increment();
+                log.warn("[LLM准入] 排队已满，拒绝请求, namespace={}, priority={}, inFlight={}, limit={}",
+                        request.namespace(), request.priority(), inFlight, (int) limit);
+                return CompletableFuture.failedFuture(new LlmRejectedException(
+                        request.namespace(), "queue_full", "大模型调用排队已满"));
+            }
+            waiter = new Waiter(request.namespace(), request.priority(), sequence++, System.nanoTime(), future);
+            waiters.add(waiter);
+            grants = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        complete(grants);
+
+        if (!future.isDone()) {
+            Duration timeout = request.priority() == LlmPriority.BACKGROUND
+                    ? properties.getBackgroundQueueTimeout() : properties.getInteractiveQueueTimeout();
+            CompletableFuture.delayedExecutor(timeout.toMillis(), TimeUnit.MILLISECONDS).execute(() -> {
+                // 先在锁内出队并计数，再通知调用方：调用方看到超时拒绝时，排队数与拒绝计数已经更新
+                lock.lock();
+                try {
+                    if (!waiters.remove(waiter)) {
+                        return;
+                    }
+                    rejectedTimeout.increment();
+                } finally {
+                    lock.unlock();
+                }
+                log.warn("[LLM准入] 排队超时（{}ms），拒绝请求, namespace={}, priority={}",
+                        timeout.toMillis(), request.namespace(), request.priority());
+                future.completeExceptionally(new LlmRejectedException(
+                        request.namespace(), "timeout", "大模型调用排队超时"));
+            });
+            // 调用方取消后移出队列
+            future.whenComplete((permit, e) -> {
+                if (e != null) {
+                    lock.lock();
+                    try {
+                        waiters.remove(waiter);
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            });
+        }
+        return future;
+    }
+
+    /**
+     * 调用名额，调用结束后必须 release
+     */
+    public final class Permit {
+
+        private final String namespace;
+        private final long grantedAt;
+        /** 获得名额时并发是否已打满，只有打满时才允许增长上限 */
+        private final boolean saturated;
+        private final AtomicBoolean released = new AtomicBoolean();
+        private volatile long firstResponseNanos = -1;
+
+        private Permit(String namespace, long grantedAt, boolean saturated) {
+            this.namespace = namespace;
+            this.grantedAt = grantedAt;
+            this.saturated = saturated;
+        }
+
+        /**
+         * 记录首个响应到达（流式调用以首包延迟作为拥塞信号，而不是整个生成过程的耗时）
+         */
+        public void onFirstResponse() {
+            if (firstResponseNanos < 0) {
+                firstResponseNanos = System.nanoTime() - grantedAt;
+            }
+        }
+
+        /**
+         * 释放名额
+         *
+         * @param failed 调用是否失败（超时、限流、服务端错误等），失败会收缩并发上限；调用方主动取消不算失败
+         */
+        public void release(boolean failed) {
+            if (namespace == null || !released.compareAndSet(false, true)) {
+                return;
+            }
+            long latency = firstResponseNanos >= 0 ? firstResponseNanos : System.nanoTime() - grantedAt;
+            List<Grant> grants;
+            lock.lock();
+            try {
+                inFlight--;
+                inFlightByNamespace.merge(namespace, -1, Integer::sum);
+                adjustLimit(namespace, latency, failed, saturated);
+                grants = dispatch();
+            } finally {
+                lock.unlock();
+            }
+            complete(grants);
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private record Grant(Waiter waiter, Permit permit) {
+    }
+
+    /**
+     * 按优先级顺序放行可以获得名额的请求（需持有锁）；返回的 Future 在释放锁后再完成，避免在锁内执行调用方的回调
+     */
+    private List<Grant> dispatch() {
+        List<Grant> grants = new ArrayList<>();
+        Iterator<Waiter> it = waiters.iterator();
+        while (it.hasNext() && inFlight < (int) limit) {
+            Waiter waiter = it.next();
+            if (!admissible(waiter)) {
+                continue;
+            }
+            it.remove();
+            inFlight++;
+            inFlightByNamespace.merge(waiter.namespace(), 1, Integer::sum);
+            grants.add(new Grant(waiter, new Permit(waiter.namespace(), System.nanoTime(),
+                    inFlight >= (int) limit)));
+        }
+        return grants;
+    }
+
+    private boolean admissible(Waiter waiter) {
+        if (waiter.priority() == LlmPriority.BACKGROUND
+                && inFlight >= Math.max(1, (int) (limit * properties.getBackgroundShare()))) {
+            return false;
+        }
+        Integer quota = properties.getQuotas().get(waiter.namespace());
+        return quota == null || inFlightByNamespace.getOrDefault(waiter.namespace(), 0) < quota;
+    }
+
+    private void complete(List<Grant> grants) {
+        for (Grant grant : grants) {
+            Waiter waiter = grant.waiter();
+            if (waiter.future().complete(grant.permit())) {
+                queueWait.get(waiter.priority()).record(System.nanoTime() - waiter.enqueuedAt(), TimeUnit.NANOSECONDS);
+            } else {
+                // 放行的同时已超时或被取消，归还名额
+                grant.permit().release(false);
+            }
+        }
+    }
+
+    /**
+     * AIMD 调整并发上限（需持有锁）
+     */
+    private void adjustLimit(String namespace, long latencyNanos, boolean failed, boolean saturated) {
+        double before = limit;
+        if (failed) {
+            limit = Math.max(properties.getMinLimit(), limit * FAILURE_BACKOFF);
+        } else {
+            double baseline = baselineNanos.getOrDefault(namespace, (double) latencyNanos);
+            // 单次比值封顶，避免个别极慢的调用把上限长时间压到最低
+            double ratio = Math.min(latencyNanos / baseline, properties.getLatencyTolerance() * 2);
+            latencyRatio += RATIO_SMOOTHING * (ratio - latencyRatio);
+            baselineNanos.put(namespace, latencyNanos < baseline
+                    ? baseline + 0.5 * (latencyNanos - baseline)
+                    : baseline + 0.01 * (latencyNanos - baseline));
+
+            if (latencyRatio > properties.getLatencyTolerance()) {
+                limit = Math.max(properties.getMinLimit(), limit * LATENCY_BACKOFF);
+            } else if (saturated) {
+                limit = Math.min(properties.getMaxLimit(), limit + 1.0 / limit);
+            }
+        }
+        if ((int) before != (int) limit) {
+            log.info("[LLM准入] 并发上限 {} -> {}, failed={}, latencyRatio={}",
+                    (int) before, (int) limit, failed, String.format("%.2f", latencyRatio));
+        }
+    }
+
+    private double locked(DoubleSupplier supplier) {
+        lock.lock();
+        try {
+            return supplier.getAsDouble();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
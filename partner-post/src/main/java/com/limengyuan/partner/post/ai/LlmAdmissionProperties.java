@@ -0,0 +1,50 @@
+package com.limengyuan.partner.post.ai;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 大模型调用准入控制配置
+ *
+ * 示例：
+ * partner.llm.admission.initial-limit=8
+ * partner.llm.admission.quotas.plan-trip=4
+ */
+@Data
+@ConfigurationProperties(prefix = "partner.llm.admission")
+public class LlmAdmissionProperties {
+
+    /** 是否启用（关闭后不限制并发） */
+    private boolean enabled = true;
+
+    /** 初始并发上限 */
+    private int initialLimit = 8;
+
+    /** 自适应调整的并发上限下界 */
+    private int minLimit = 2;
+
+    /** 自适应调整的并发上限上界 */
+    private int maxLimit = 32;
+
+    /** 排队请求数上限，超过后直接拒绝 */
+    private int queueCapacity = 100;
+
+    /** 在线请求的最长排队时间（期间占用 Tomcat 线程，宜短） */
+    private Duration interactiveQueueTimeout = Duration.ofSeconds(3);
+
+    /** 后台请求的最长排队时间 */
+    private Duration backgroundQueueTimeout = Duration.ofSeconds(60);
+
+    /** 后台请求最多占用的并发上限比例，其余名额留给在线请求 */
+    private double backgroundShare = 0.5;
+
+    /** 延迟超过基线的倍数后开始收缩并发上限 */
+    private double latencyTolerance = 2.0;
+
+    /** 按业务场景（namespace）限制的最大并发数，未配置的场景只受全局上限约束 */
+    private Map<String, Integer> quotas = new LinkedHashMap<>();
+}
@@ -0,0 +1,442 @@
+package com.limengyuan.partner.post.ai;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.metadata.Usage;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.core.scheduler.Schedulers;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * 大模型调用网关：partner-post 中所有 DeepSeek 调用的统一入口，带响应缓存
+ *
+ * - 精确缓存：SHA-256(模型 + 温度 + 规范化后的 Prompt) 作为 key，L1 本地 Caffeine + L2 Redis，
+ *   相同的润色、行程规划等请求直接返回上次的结果，不再重复计费和等待
+ * - 近似缓存（默认关闭）：请求携带 similarityText 时，对该输入求向量，与同一场景、且 Prompt 其余部分完全相同的
+ *   历史输入比较余弦相似度，超过阈值且数字完全一致时复用其结果。向量索引只在本实例内存中
+ * - 结构化输出的结果解析失败时删除对应缓存，避免坏结果被反复返回
+ * - 未命中缓存、需要真正调用大模型时，先经 LlmAdmissionController 获取并发名额，被拒绝时抛出 LlmRejectedException
+ *
+ * 监控指标（/actuator/metrics）：
+ * - partner.llm.cache.requests{result=hit|semantic_hit|miss}
+ * - partner.llm.cache.hit.ratio
+ * - partner.llm.cache.saved.tokens：命中缓存节省的 token 数（按原始调用的 usage 统计，流式调用无 usage 时按字符数估算）
+ */
+@Slf4j
+@Component
+public class LlmGateway {
+
+    private static final String KEY_PREFIX = "llm:completion:";
+
+    private final ChatClient chatClient;
+    private final LlmAdmissionController admissionController;
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    private final ObjectProvider<EmbeddingModel> embeddingModel;
+
+    private final boolean cacheEnabled;
+    private final Duration ttl;
+    private final String modelSignature;
+    private final boolean semanticEnabled;
+    private final double semanticThreshold;
+    private final int semanticMaxEntries;
+
+    private final Cache<String, Completion> localCache;
+    /** 近似匹配索引：场景 + Prompt 其余部分的哈希 → 最近的输入 */
+    private final Map<String, SemanticIndex> semanticIndexes = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder semanticHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder savedTokens = new LongAdder();
+
+    /**
+     * 缓存的响应
+     *
+     * @param content 响应文本
+     * @param tokens  原始调用消耗的 token 数
+     */
+    record Completion(String content, long tokens) {
+    }
+
+    public LlmGateway(ChatClient.Builder chatClientBuilder,
+                      LlmAdmissionController admissionController,
+                      StringRedisTemplate redisTemplate,
+                      ObjectMapper objectMapper,
+                      ObjectProvider<EmbeddingModel> embeddingModel,
+                      MeterRegistry meterRegistry,
+                      @Value("${spring.ai.openai.chat.options.model:default}") String model,
+                      @Value("${spring.ai.openai.chat.options.temperature:}") String temperature,
+                      @Value("${partner.llm-cache.enabled:true}") boolean cacheEnabled,
+                      @Value("${partner.llm-cache.local-max-size:2000}") long localMaxSize,
+                      @Value("${partner.llm-cache.ttl:1d}") Duration ttl,
+                      @Value("${partner.llm-cache.semantic.enabled:false}") boolean semanticEnabled,
+                      @Value("${partner.llm-cache.semantic.threshold:0.97}") double semanticThreshold,
+                      @Value("${partner.llm-cache.semantic.max-entries:1000}") int semanticMaxEntries) {
+        this.chatClient = chatClientBuilder.build();
+        this.admissionController = admissionController;
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.embeddingModel = embeddingModel;
+        this.cacheEnabled = cacheEnabled;
+        this.ttl = ttl;
+        this.modelSignature = model + "|" + temperature;
+        this.semanticEnabled = semanticEnabled;
+        this.semanticThreshold = semanticThreshold;
+        this.semanticMaxEntries = semanticMaxEntries;
+        this.localCache = Caffeine.newBuilder()
+                .maximumSize(localMaxSize)
+                .expireAfterWrite(ttl.compareTo(Duration.ofMinutes(10)) < 0 ? ttl : Duration.ofMinutes(10))
+                .build();
+
+        FunctionCounter.builder("partner.llm.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").description("大模型响应缓存读取次数").register(meterRegistry);
+        FunctionCounter.builder("partner.llm.cache.requests", semanticHits, LongAdder::sum)
+                .tag("result", "semantic_hit").description("大模型响应缓存读取次数").register(meterRegistry);
+        FunctionCounter.builder("partner.llm.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").description("大模型响应缓存读取次数").register(meterRegistry);
+        Gauge.builder("partner.llm.cache.hit.ratio", this, LlmGateway::hitRatio)
+                .description("大模型响应缓存命中率（含近似命中）").register(meterRegistry);
+        FunctionCounter.builder("partner.llm.cache.saved.tokens", savedTokens, LongAdder::sum)
+                .description("命中缓存节省的 token 数").register(meterRegistry);
+    }
+
+    /**
+     * 文本补全
+     */
+    public String call(LlmRequest request) {
+        return complete(request).content();
+    }
+
+    /**
+     * 结构化输出（在 Prompt 末尾追加 JSON Schema 约束，与 ChatClient.entity 一致）
+     */
+    public <T> T entity(LlmRequest request, Class<T> type) {
+        return entity(request, new BeanOutputConverter<>(type));
+    }
+
+    public <T> T entity(LlmRequest request, ParameterizedTypeReference<T> type) {
+        return entity(request, new BeanOutputConverter<>(type));
+    }
+
+    /**
+     * 流式文本补全；命中缓存时一次性返回完整文本，未命中时边生成边返回，结束后写入缓存
+     */
+    public Flux<String> stream(LlmRequest request) {
+        if (!cacheEnabled || !request.cacheable()) {
+            return invokeStream(request, null);
+        }
+        return Flux.defer(() -> {
+            Lookup lookup = lookup(request);
+            if (lookup.completion() != null) {
+                return Flux.just(lookup.completion().content());
+            }
+            return invokeStream(request, completion -> store(request, lookup, completion));
+        }).subscribeOn(Schedulers.boundedElastic());
+    }
+
+    /**
+     * 结构化输出的 JSON Schema 约束（流式调用需要手动拼接到 Prompt 中）
+     */
+    public static String formatOf(ParameterizedTypeReference<?> type) {
+        return new BeanOutputConverter<>(type).getFormat();
+    }
+
+    public static String formatOf(Class<?> type) {
+        return new BeanOutputConverter<>(type).getFormat();
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private <T> T entity(LlmRequest request, BeanOutputConverter<T> converter) {
+        LlmRequest formatted = request.withPrompt(request.prompt() + "\n" + converter.getFormat());
+        String content = complete(formatted).content();
+        try {
+            return converter.convert(content);
+        } catch (RuntimeException e) {
+            if (cacheEnabled && formatted.cacheable()) {
+                evict(formatted);
+            }
+            throw e;
+        }
+    }
+
+    private Completion complete(LlmRequest request) {
+        if (!cacheEnabled || !request.cacheable()) {
+            return invoke(request);
+        }
+        Lookup lookup = lookup(request);
+        if (lookup.completion() != null) {
+            return lookup.completion();
+        }
+        Completion completion = invoke(request);
+        store(request, lookup, completion);
+        return completion;
+    }
+
+    /**
+     * 查找缓存：先精确匹配，再近似匹配
+     *
+     * @param key    精确缓存 key
+     * @param vector 输入的向量（近似匹配未启用时为 null），未命中时随结果写入索引
+     */
+    private record Lookup(String key, float[] vector, Completion completion) {
+    }
+
+    private Lookup lookup(LlmRequest request) {
+        String key = cacheKey(request.prompt());
+        Completion completion = read(key);
+        if (completion != null) {
+            hits.increment();
+            savedTokens.add(completion.tokens());
+            return new Lookup(key, null, completion);
+        }
+
+        float[] vector = null;
+        if (semanticEnabled && request.similarityText() != null && !request.similarityText().isBlank()) {
+            try {
+                vector = normalize(embeddingModel.getObject().embed(request.similarityText()));
+                String matchedKey = semanticIndex(request).find(vector, digitsOf(request.similarityText()), semanticThreshold);
+                Completion matched = matchedKey != null ? read(matchedKey) : null;
+                if (matched != null) {
+                    semanticHits.increment();
+                    savedTokens.add(matched.tokens());
+                    log.info("[LLM网关] 近似命中, namespace={}", request.namespace());
+                    return new Lookup(key, null, matched);
+                }
+            } catch (Exception e) {
+                log.warn("[LLM网关] 近似匹配失败，按未命中处理, namespace={}", request.namespace(), e);
+            }
+        }
+        misses.increment();
+        return new Lookup(key, vector, null);
+    }
+
+    private void store(LlmRequest request, Lookup lookup, Completion completion) {
+        if (completion.content() == null || completion.content().isBlank()) {
+            return;
+        }
+        localCache.put(lookup.key(), completion);
+        try {
+            redisTemplate.opsForValue().set(KEY_PREFIX + lookup.key(), objectMapper.writeValueAsString(completion), ttl);
+        } catch (Exception e) {
+            log.warn("[LLM网关] 写入缓存失败, namespace={}", request.namespace(), e);
+        }
+        if (lookup.vector() != null) {
+            semanticIndex(request).add(lookup.vector(), digitsOf(request.similarityText()), lookup.key());
+        }
+    }
+
+    private Completion read(String key) {
+        Completion completion = localCache.getIfPresent(key);
+        if (completion != null) {
+            return completion;
+        }
+        try {
+            String cached = redisTemplate.opsForValue().get(KEY_PREFIX + key);
+            if (cached != null) {
+                completion = objectMapper.readValue(cached, Completion.class);
+                localCache.put(key, completion);
+                return completion;
+            }
+        } catch (Exception e) {
+            log.warn("[LLM网关] 读取缓存失败", e);
+        }
+        return null;
+    }
+
+    private void evict(LlmRequest request) {
+        String key = cacheKey(request.prompt());
+        localCache.invalidate(key);
+        try {
+            redisTemplate.delete(KEY_PREFIX + key);
+        } catch (Exception e) {
+            log.warn("[LLM网关] 删除缓存失败, namespace={}", request.namespace(), e);
+        }
+    }
+
+    private Completion invoke(LlmRequest request) {
+        LlmAdmissionController.Permit permit = admissionController.acquire(request);
+        boolean failed = true;
+        try {
+            ChatResponse response = chatClient.prompt().user(request.prompt()).call().chatResponse();
+            failed = false;
+            String content = response != null && response.getResult() != null
+                    ? response.getResult().getOutput().getText() : null;
+            return new Completion(content, tokensOf(response, request.prompt(), content));
+        } finally {
+            // 调用方超时取消（线程被中断）不算失败，不收缩并发上限
+            permit.release(failed && !Thread.currentThread().isInterrupted());
+        }
+    }
+
+    private Flux<String> invokeStream(LlmRequest request, Consumer<Completion> onComplete) {
+        String prompt = request.prompt();
+        StringBuilder output = new StringBuilder();
+        AtomicInteger usageTokens = new AtomicInteger(-1);
+        // 排队期间不占用线程；取消订阅即放弃排队或释放名额
+        return Mono.fromFuture(() -> admissionController.acquireAsync(request))
+                .flatMapMany(permit -> chatClient.prompt().user(prompt).stream().chatResponse()
+                        .doOnNext(response -> permit.onFirstResponse())
+                        .doFinally(signal -> permit.release(signal == SignalType.ON_ERROR)))
+                // 获得名额的同时被取消，名额未交给下游时归还
+                .doOnDiscard(LlmAdmissionController.Permit.class, permit -> permit.release(false))
+                .doOnNext(response -> {
+                    Usage usage = response.getMetadata() != null ? response.getMetadata().getUsage() : null;
+                    if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                        usageTokens.set(usage.getTotalTokens());
+                    }
+                })
+                .mapNotNull(response -> response.getResult() != null ? response.getResult().getOutput().getText() : null)
+                .filter(delta -> !delta.isEmpty())
+                .doOnNext(output::append)
+                .doOnComplete(() -> {
+                    if (onComplete != null) {
+                        String content = output.toString();
+                        long tokens = usageTokens.get() > 0 ? usageTokens.get() : estimateTokens(prompt, content);
+                        onComplete.accept(new Completion(content, tokens));
+                    }
+                });
+    }
+
+    private static long tokensOf(ChatResponse response, String prompt, String content) {
+        if (response != null && response.getMetadata() != null) {
+            Usage usage = response.getMetadata().getUsage();
+            if (usage != null && usage.getTotalTokens() != null && usage.getTotalTokens() > 0) {
+                return usage.getTotalTokens();
+            }
+        }
+        return estimateTokens(prompt, content);
+    }
+
+    /**
+     * 粗略估算：中文约 0.6 token/字
+     */
+    private static long estimateTokens(String prompt, String content) {
+        long chars = (prompt != null ? prompt.length() : 0) + (content != null ? content.length() : 0);
+        return Math.round(chars * 0.6);
+    }
+
+    /**
+     * 精确缓存 key：统一换行、去掉每行行尾空白和首尾空行后，与模型参数一起求哈希
+     */
+    private String cacheKey(String prompt) {
+        return sha256(modelSignature + "\n" + normalize(prompt));
+    }
+
+    private static String normalize(String prompt) {
+        return prompt.replace("\r\n", "\n").replaceAll("[ \\t]+\n", "\n").strip();
+    }
+
+    private SemanticIndex semanticIndex(LlmRequest request) {
+        // Prompt 去掉用户输入后的其余部分（模板、日期、分类等）必须完全一致
+        String context = request.namespace() + ":" + sha256(modelSignature + "\n"
+                + normalize(request.prompt().replace(request.similarityText(), "")));
+        return semanticIndexes.computeIfAbsent(context, k -> new SemanticIndex(semanticMaxEntries));
+    }
+
+    private double hitRatio() {
+        long hit = hits.sum() + semanticHits.sum();
+        long total = hit + misses.sum();
+        return total == 0 ? 0 : (double) hit / total;
+    }
+
+    private static String digitsOf(String text) {
+        return text.replaceAll("\\D+", " ").strip();
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] result = new float[vector.length];
+        for (int i = 0; i < vector.length; i++) {
+            result[i] = norm == 0 ? 0 : (float) (vector[i] / norm);
+        }
+        return result;
+    }
+
+    private static String sha256(String text) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(text.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 近似匹配索引：保留最近 maxEntries 个输入，线性扫描（向量已归一化，点积即余弦相似度）
+     * 输入中的数字（日期、人数、金额等）必须完全一致，避免"3号"与"4号"这类语义接近但结果不同的输入误命中
+     */
+    private static final class SemanticIndex {
+
+        private record Item(float[] vector, String digits, String key) {
+        }
+
+        private final int maxEntries;
+        private final Deque<Item> items = new ArrayDeque<>();
+
+        SemanticIndex(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        synchronized String find(float[] vector, String digits, double threshold) {
+            String best = null;
+            double bestScore = threshold;
+            for (Item item : items) {
+                if (item.vector().length != vector.length || !item.digits().equals(digits)) {
+                    continue;
+                }
+                double dot = 0;
+                for (int i = 0; i < vector.length; i++) {
+                    dot += vector[i] * item.vector()[i];
+                }
+                if (dot >= bestScore) {
+                    bestScore = dot;
+                    best = item.key();
+                }
+            }
+            return best;
+        }
+
+        synchronized void add(float[] vector, String digits, String key) {
+            items.addFirst(new Item(vector, digits, key));
+            while (items.size() > maxEntries) {
+                items.removeLast();
+            }
+        }
+    }
+}
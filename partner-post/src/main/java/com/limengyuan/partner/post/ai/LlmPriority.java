@@ -0,0 +1,13 @@
+package com.limengyuan.partner.post.ai;
+
+/**
+ * 大模型调用优先级，排队时高优先级（序号小）先获得并发名额
+ */
+public enum LlmPriority {
+
+    /** 用户在线等待的请求（润色、行程规划、推荐理由等） */
+    INTERACTIVE,
+
+    /** 后台任务（离线预计算等），只能使用部分并发名额，排队超时也更长 */
+    BACKGROUND
+}
@@ -0,0 +1,22 @@
+package com.limengyuan.partner.post.ai;
+
+import lombok.Getter;
+
+/**
+ * 大模型调用被准入控制拒绝（排队已满或排队超时），调用方应直接降级，不要重试
+ */
+@Getter
+public class LlmRejectedException extends RuntimeException {
+
+    /** 被拒绝请求的业务场景 */
+    private final String namespace;
+
+    /** 拒绝原因：queue_full、timeout */
+    private final String reason;
+
+    public LlmRejectedException(String namespace, String reason, String message) {
+        super(message);
+        this.namespace = namespace;
+        this.reason = reason;
+    }
+}
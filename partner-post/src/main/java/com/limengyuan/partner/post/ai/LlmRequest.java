@@ -0,0 +1,40 @@
+package com.limengyuan.partner.post.ai;
+
+/**
+ * 大模型调用请求
+ *
+ * @param namespace      业务场景（如 polish、plan-trip），用于日志、指标、场景配额和近似匹配的分组
+ * @param prompt         完整的用户 Prompt
+ * @param similarityText 参与近似匹配的用户输入（为空则只做精确匹配）；Prompt 中除该输入外的部分必须完全相同才会近似命中
+ * @param cacheable      是否允许读写响应缓存
+ * @param priority       准入控制的排队优先级
+ */
+public record LlmRequest(String namespace, String prompt, String similarityText, boolean cacheable,
+                         LlmPriority priority) {
+
+    public static LlmRequest of(String namespace, String prompt) {
+        return new LlmRequest(namespace, prompt, null, true, LlmPriority.INTERACTIVE);
+    }
+
+    public LlmRequest withSimilarityText(String similarityText) {
+        return new LlmRequest(namespace, prompt, similarityText, cacheable, priority);
+    }
+
+    public LlmRequest withPrompt(String prompt) {
+        return new LlmRequest(namespace, prompt, similarityText, cacheable, priority);
+    }
+
+    /**
+     * 不读写缓存（如离线评估需要真实的调用耗时）
+     */
+    public LlmRequest uncached() {
+        return new LlmRequest(namespace, prompt, similarityText, false, priority);
+    }
+
+    /**
+     * 后台任务发起的调用，排队时让位于在线请求
+     */
+    public LlmRequest background() {
+        return new LlmRequest(namespace, prompt, similarityText, cacheable, LlmPriority.BACKGROUND);
+    }
+}
@@ -0,0 +1,33 @@
+package com.limengyuan.partner.post.ai;
+
+import org.springframework.http.codec.ServerSentEvent;
+
+/**
+ * AI 流式接口的 SSE 事件
+ *
+ * - delta：一段增量文本（大模型输出的 token）
+ * - result：阶段性或最终的结构化结果（JSON）
+ * - error：错误信息，之后流结束
+ * - done：正常结束
+ */
+public final class SseEvents {
+
+    private SseEvents() {
+    }
+
+    public static ServerSentEvent<Object> delta(String text) {
+        return ServerSentEvent.<Object>builder(text).event("delta").build();
+    }
+
+    public static ServerSentEvent<Object> result(Object data) {
+        return ServerSentEvent.builder(data).event("result").build();
+    }
+
+    public static ServerSentEvent<Object> error(String message) {
+        return ServerSentEvent.<Object>builder(message).event("error").build();
+    }
+
+    public static ServerSentEvent<Object> done() {
+        return ServerSentEvent.<Object>builder("[DONE]").event("done").build();
+    }
+}
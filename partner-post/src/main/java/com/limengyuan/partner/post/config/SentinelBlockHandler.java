@@ -2,6 +2,7 @@ package com.limengyuan.partner.post.config;
 
 import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.post.ai.LlmRejectedException;
 import lombok.extern.slf4j.Slf4j;
 
 /**
@@ -9,6 +10,7 @@ import lombok.extern.slf4j.Slf4j;
  * <p>
  * 当接口触发 Sentinel 限流或熔断降级时，自动调用此类中对应的处理方法，
  * 返回友好的错误提示，而不是直接抛出异常。
+ * 大模型调用被 LlmAdmissionController 拒绝时同样走这里的降级处理。
  */
 @Slf4j
 public class SentinelBlockHandler {
@@ -60,4 +62,12 @@ public class SentinelBlockHandler {
         log.warn("[Sentinel] 评价接口被限流/降级", ex);
         return Result.error("系统繁忙，请稍后再试");
     }
+
+    /**
+     * AI 相关 - 降级处理（大模型调用排队已满或排队超时）
+     */
+    public static <T> Result<T> llmRejectedHandler(LlmRejectedException ex) {
+        log.warn("[Sentinel] AI 调用被准入控制拒绝, namespace={}, reason={}", ex.getNamespace(), ex.getReason());
+        return Result.error("系统繁忙，请稍后再试");
+    }
 }
@@ -6,16 +6,23 @@ import com.limengyuan.partner.common.dto.vo.ActivityVO;
 import com.limengyuan.partner.common.dto.vo.RecommendedActivityVO;
 import com.limengyuan.partner.common.dto.vo.TravelMemoryVO;
 import com.limengyuan.partner.common.dto.request.CreateActivityRequest;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.PageHelper;
 import com.limengyuan.partner.common.util.UserContextHolder;
+import com.limengyuan.partner.post.index.ActivityFacetQuery;
 import com.limengyuan.partner.post.service.ActivityRecommendService;
 import com.limengyuan.partner.post.service.ActivityService;
 import com.limengyuan.partner.post.service.TravelMemoryService;
+import com.limengyuan.partner.post.service.UniqueViewCounter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDate;
 import java.util.List;
 
 /**
@@ -26,16 +33,22 @@ import java.util.List;
 @RequestMapping("/api/activities")
 public class ActivityController {
 
+    /** 附近搜索的最大半径（公里） */
+    private static final int MAX_NEARBY_RADIUS_KM = 50;
+
     private final ActivityService activityService;
     private final ActivityRecommendService recommendService;
     private final TravelMemoryService travelMemoryService;
+    private final UniqueViewCounter uniqueViewCounter;
 
     public ActivityController(ActivityService activityService,
                               ActivityRecommendService recommendService,
-                              TravelMemoryService travelMemoryService) {
+                              TravelMemoryService travelMemoryService,
+                              UniqueViewCounter uniqueViewCounter) {
         this.activityService = activityService;
         this.recommendService = recommendService;
         this.travelMemoryService = travelMemoryService;
+        this.uniqueViewCounter = uniqueViewCounter;
     }
 
     /**
@@ -52,13 +65,20 @@ public class ActivityController {
     }
 
     /**
-     * 获取活动详情
+     * 获取活动详情（同时记录浏览人数）
      * GET /api/activities/{id}
+     *
+     * 详情走二级缓存，返回的 viewCount 是缓存中的值，不在这里改写缓存对象
      */
     @GetMapping("/{id:\\d+}")
     @SentinelResource(value = "getActivity", blockHandler = "getActivityBlockHandler")
-    public Result<ActivityVO> getActivity(@PathVariable("id") Long activityId) {
-        return activityService.getActivity(activityId);
+    public Result<ActivityVO> getActivity(@PathVariable("id") Long activityId, HttpServletRequest request) {
+        Result<ActivityVO> result = activityService.getActivity(activityId);
+        if (result.getData() != null) {
+            uniqueViewCounter.record(UniqueViewCounter.Target.ACTIVITY, activityId,
+                    UniqueViewCounter.viewerOf(UserContextHolder.getPrincipalId(), request));
+        }
+        return result;
     }
 
     /**
@@ -108,7 +128,91 @@ public class ActivityController {
             @RequestParam(value = "categoryId", required = false) Integer categoryId) {
         return activityService.getAllActivities(page, size, categoryId);
     }
+
+    /**
+     * 游标分页获取活动列表（支持按分类筛选，适合无限滚动）
+     * GET /api/activities/cursor?cursor=xxx&size=5&categoryId=1
+     *
+     * 第一页不传 cursor，之后每次回传上一页返回的 nextCursor
+     */
+    @GetMapping("/cursor")
+    @SentinelResource(value = "listActivitiesByCursor", blockHandler = "listActivitiesByCursorBlockHandler")
+    public Result<CursorPage<ActivityVO>> getActivitiesByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "5") int size,
+            @RequestParam(value = "categoryId", required = false) Integer categoryId) {
+        size = PageHelper.safeSize(size);
+        return activityService.getActivitiesByCursor(cursor, size, categoryId);
+    }
     
+    /**
+     * 多维筛选招募中的活动（分页）
+     * GET /api/activities/filter?categoryIds=1,2&paymentTypes=1&startFrom=2026-05-01&startTo=2026-05-07&page=0&size=5
+     *
+     * 同一维度内多个取值为 OR，不同维度之间为 AND
+     */
+    @GetMapping("/filter")
+    @SentinelResource(value = "filterActivities", blockHandler = "filterActivitiesBlockHandler")
+    public Result<PageResult<ActivityVO>> filterActivities(
+            @RequestParam(value = "categoryIds", required = false) List<Integer> categoryIds,
+            @RequestParam(value = "paymentTypes", required = false) List<Integer> paymentTypes,
+            @RequestParam(value = "startFrom", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startFrom,
+            @RequestParam(value = "startTo", required = false)
+            @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate startTo,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "5") int size) {
+        page = PageHelper.safePage(page);
+        size = PageHelper.safeSize(size);
+        ActivityFacetQuery query = ActivityFacetQuery.builder()
+                .categoryIds(categoryIds)
+                .paymentTypes(paymentTypes)
+                .startFrom(startFrom)
+                .startTo(startTo)
+                .build();
+        return activityService.filterActivities(query, page, size);
+    }
+
+    /**
+     * 关键词搜索招募中的活动（标题、描述、地点名称，按相关度排序）
+     * GET /api/activities/search?keyword=火锅&page=0&size=5
+     */
+    @GetMapping("/search")
+    @SentinelResource(value = "searchActivities", blockHandler = "searchActivitiesBlockHandler")
+    public Result<PageResult<ActivityVO>> searchActivities(
+            @RequestParam("keyword") String keyword,
+            @RequestParam(value = "page", defaultValue = "0") int page,
+            @RequestParam(value = "size", defaultValue = "5") int size) {
+        if (keyword == null || keyword.isBlank()) {
+            return Result.error(400, "搜索关键词不能为空");
+        }
+        page = PageHelper.safePage(page);
+        size = PageHelper.safeSize(size);
+        return activityService.searchActivities(keyword.trim(), page, size);
+    }
+
+    /**
+     * 查询附近招募中的活动（按距离由近到远，游标分页）
+     * GET /api/activities/nearby?lat=31.23&lng=121.47&radiusKm=5&cursor=xxx&size=10
+     */
+    @GetMapping("/nearby")
+    @SentinelResource(value = "nearbyActivities", blockHandler = "nearbyActivitiesBlockHandler")
+    public Result<CursorPage<ActivityVO>> getNearbyActivities(
+            @RequestParam("lat") double lat,
+            @RequestParam("lng") double lng,
+            @RequestParam(value = "radiusKm", defaultValue = "5") double radiusKm,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+        if (lat < -90 || lat > 90 || lng < -180 || lng > 180) {
+            return Result.error(400, "经纬度不合法");
+        }
+        if (radiusKm <= 0 || radiusKm > MAX_NEARBY_RADIUS_KM) {
+            return Result.error(400, "搜索半径需在 0~" + MAX_NEARBY_RADIUS_KM + " 公里之间");
+        }
+        size = PageHelper.safeSize(size);
+        return activityService.getNearbyActivities(lat, lng, radiusKm, cursor, size);
+    }
+
     // ==================== AI 旅行回忆 ====================
 
     /**
@@ -126,7 +230,8 @@ public class ActivityController {
 
     // ==================== Sentinel 降级处理方法 ====================
 
-    public Result<ActivityVO> getActivityBlockHandler(Long activityId, BlockException ex) {
+    public Result<ActivityVO> getActivityBlockHandler(Long activityId, HttpServletRequest request,
+                                                      BlockException ex) {
         log.warn("[Sentinel] 获取活动详情接口被限流/降级, activityId={}", activityId, ex);
         return Result.error("系统繁忙，请稍后再试");
     }
@@ -136,4 +241,29 @@ public class ActivityController {
         log.warn("[Sentinel] 获取活动列表接口被限流/降级", ex);
         return Result.error("系统繁忙，请稍后再试");
     }
+
+    public Result<CursorPage<ActivityVO>> listActivitiesByCursorBlockHandler(
+            String cursor, int size, Integer categoryId, BlockException ex) {
+        log.warn("[Sentinel] 游标获取活动列表接口被限流/降级", ex);
+        return Result.error("系统繁忙，请稍后再试");
+    }
+
+    public Result<PageResult<ActivityVO>> filterActivitiesBlockHandler(
+            List<Integer> categoryIds, List<Integer> paymentTypes, LocalDate startFrom, LocalDate startTo,
+            int page, int size, BlockException ex) {
+        log.warn("[Sentinel] 多维筛选活动接口被限流/降级", ex);
+        return Result.error("系统繁忙，请稍后再试");
+    }
+
+    public Result<CursorPage<ActivityVO>> nearbyActivitiesBlockHandler(
+            double lat, double lng, double radiusKm, String cursor, int size, BlockException ex) {
+        log.warn("[Sentinel] 附近活动接口被限流/降级", ex);
+        return Result.error("系统繁忙，请稍后再试");
+    }
+
+    public Result<PageResult<ActivityVO>> searchActivitiesBlockHandler(
+            String keyword, int page, int size, BlockException ex) {
+        log.warn("[Sentinel] 活动搜索接口被限流/降级, keyword={}", keyword, ex);
+        return Result.error("系统繁忙，请稍后再试");
+    }
 }
@@ -2,10 +2,17 @@ package com.limengyuan.partner.post.controller;
 
 import com.limengyuan.partner.common.dto.vo.TripPlanVO;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.UserContextHolder;
+import com.limengyuan.partner.post.ai.SseEvents;
+import com.limengyuan.partner.post.service.ActivityRecommendService;
 import com.limengyuan.partner.post.service.ContentPolishService;
 import com.limengyuan.partner.post.service.TripPlanService;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
 import java.util.Map;
 
@@ -19,11 +26,14 @@ public class AiController {
 
     private final ContentPolishService contentPolishService;
     private final TripPlanService tripPlanService;
+    private final ActivityRecommendService recommendService;
 
     public AiController(ContentPolishService contentPolishService,
-                        TripPlanService tripPlanService) {
+                        TripPlanService tripPlanService,
+                        ActivityRecommendService recommendService) {
         this.contentPolishService = contentPolishService;
         this.tripPlanService = tripPlanService;
+        this.recommendService = recommendService;
     }
 
     /**
@@ -54,4 +64,59 @@ public class AiController {
         String input = request.get("input");
         return tripPlanService.planTrip(input);
     }
+
+    // ============================
+    // 流式接口（SSE）
+    // 事件: delta（增量文本）、result（结构化结果）、error（错误信息）、done（结束）
+    // ============================
+
+    /**
+     * AI 内容润色（流式）
+     * POST /api/ai/polish/stream
+     *
+     * 请求体同 /api/ai/polish，润色文本以 delta 事件逐段推送
+     */
+    @PostMapping(value = "/polish/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> polishContentStream(@RequestBody Map<String, String> request,
+                                                             HttpServletResponse response) {
+        disableProxyBuffering(response);
+        return contentPolishService.polishContentStream(request.get("content"), request.get("type"));
+    }
+
+    /**
+     * AI 行程规划（流式）
+     * POST /api/ai/plan-trip/stream
+     *
+     * 请求体同 /api/ai/plan-trip，大模型输出以 delta 事件逐段推送，最后以 result 事件推送 TripPlanVO
+     */
+    @PostMapping(value = "/plan-trip/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> planTripStream(@RequestBody Map<String, String> request,
+                                                        HttpServletResponse response) {
+        disableProxyBuffering(response);
+        return tripPlanService.planTripStream(request.get("input"));
+    }
+
+    /**
+     * AI 个性化推荐活动（流式）
+     * GET /api/ai/recommend/stream
+     *
+     * 先推送本地排序的推荐列表，之后每生成一条 AI 推荐理由推送一次更新后的列表（均为 result 事件）
+     */
+    @GetMapping(value = "/recommend/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<ServerSentEvent<Object>> recommendStream(HttpServletResponse response) {
+        Long userId = UserContextHolder.getPrincipalId();
+        if (userId == null) {
+            return Flux.just(SseEvents.error("未登录或 Token 无效"));
+        }
+        disableProxyBuffering(response);
+        return recommendService.streamRecommendations(userId);
+    }
+
+    /**
+     * 告知 Nginx 等反向代理不要缓冲响应
+     */
+    private void disableProxyBuffering(HttpServletResponse response) {
+        response.setHeader("Cache-Control", "no-cache");
+        response.setHeader("X-Accel-Buffering", "no");
+    }
 }
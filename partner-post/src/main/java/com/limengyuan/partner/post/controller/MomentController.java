@@ -5,12 +5,16 @@ import com.alibaba.csp.sentinel.slots.block.BlockException;
 import com.limengyuan.partner.common.dto.request.CreateMomentRequest;
 import com.limengyuan.partner.common.dto.vo.MomentCommentVO;
 import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.dto.request.UpdateMomentRequest;
 import com.limengyuan.partner.common.result.Result;
 import com.limengyuan.partner.common.util.PageHelper;
 import com.limengyuan.partner.common.util.UserContextHolder;
+import com.limengyuan.partner.post.service.FollowingTimelineService;
 import com.limengyuan.partner.post.service.MomentService;
+import com.limengyuan.partner.post.service.UniqueViewCounter;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.web.bind.annotation.*;
@@ -26,9 +30,11 @@ import java.util.List;
 public class MomentController {
 
     private final MomentService momentService;
+    private final FollowingTimelineService followingTimelineService;
 
-    public MomentController(MomentService momentService) {
+    public MomentController(MomentService momentService, FollowingTimelineService followingTimelineService) {
         this.momentService = momentService;
+        this.followingTimelineService = followingTimelineService;
     }
 
     // ==================== 动态 CRUD ====================
@@ -56,18 +62,48 @@ public class MomentController {
             @RequestParam(value = "size", defaultValue = "10") int size) {
         page = PageHelper.safePage(page);
         size = PageHelper.safeSize(size);
-        return momentService.getMomentList(page, size);
+        return momentService.getMomentList(page, size, UserContextHolder.getPrincipalId());
     }
 
     /**
-     * 查看动态详情（同时增加浏览数）
+     * 动态广场 - 游标分页获取公开动态（适合无限滚动）
+     * GET /api/moments/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/cursor")
+    @SentinelResource(value = "listMomentsByCursor", blockHandler = "listMomentsByCursorBlockHandler")
+    public Result<CursorPage<MomentVO>> getMomentListByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+        size = PageHelper.safeSize(size);
+        return momentService.getMomentListByCursor(cursor, size, UserContextHolder.getPrincipalId());
+    }
+
+    /**
+     * 关注时间线 - 游标分页获取我关注的人发布的动态
+     * GET /api/moments/following?cursor=xxx&size=10
+     */
+    @GetMapping("/following")
+    public Result<CursorPage<MomentVO>> getFollowingTimeline(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+        Long userId = UserContextHolder.getPrincipalId();
+        if (userId == null) {
+            return Result.error(401, "未登录或 Token 无效");
+        }
+        size = PageHelper.safeSize(size);
+        return followingTimelineService.getTimeline(userId, cursor, size);
+    }
+
+    /**
+     * 查看动态详情（同时记录浏览人数）
      * GET /api/moments/{id}
      */
     @GetMapping("/{id}")
     @SentinelResource(value = "getMoment", blockHandler = "getMomentBlockHandler")
-    public Result<MomentVO> getMoment(@PathVariable("id") Long momentId) {
+    public Result<MomentVO> getMoment(@PathVariable("id") Long momentId, HttpServletRequest request) {
         Long currentUserId = UserContextHolder.getPrincipalId();
-        return momentService.getMoment(momentId, currentUserId);
+        return momentService.getMoment(momentId, currentUserId,
+                UniqueViewCounter.viewerOf(currentUserId, request));
     }
 
     /**
@@ -89,7 +125,7 @@ public class MomentController {
      */
     @GetMapping("/user/{userId}")
     public Result<List<MomentVO>> getUserMoments(@PathVariable("userId") Long userId) {
-        return momentService.getUserMoments(userId);
+        return momentService.getUserMoments(userId, UserContextHolder.getPrincipalId());
     }
 
     /**
@@ -163,6 +199,32 @@ public class MomentController {
         return momentService.getComments(momentId);
     }
 
+    /**
+     * 游标分页获取动态的一级评论（每条附带前几条回复预览和回复总数）
+     * GET /api/moments/{id}/comments/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/{id}/comments/cursor")
+    public Result<CursorPage<MomentCommentVO>> getCommentsByCursor(
+            @PathVariable("id") Long momentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+        size = PageHelper.safeSize(size);
+        return momentService.getCommentsByCursor(momentId, cursor, size);
+    }
+
+    /**
+     * 游标分页展开某条评论下的回复
+     * GET /api/moments/comments/{commentId}/replies?cursor=xxx&size=10
+     */
+    @GetMapping("/comments/{commentId}/replies")
+    public Result<CursorPage<MomentCommentVO>> getReplies(
+            @PathVariable("commentId") Long commentId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+        size = PageHelper.safeSize(size);
+        return momentService.getRepliesByCursor(commentId, cursor, size);
+    }
+
     /**
      * 发表评论或回复
      * POST /api/moments/{id}/comments
@@ -208,11 +270,20 @@ public class MomentController {
         return Result.error("系统繁忙，请稍后再试");
     }
 
+    /**
+     * 游标获取动态列表 - 限流降级处理
+     */
+    public Result<CursorPage<MomentVO>> listMomentsByCursorBlockHandler(
+            String cursor, int size, BlockException ex) {
+        log.warn("[Sentinel] 游标获取动态列表接口被限流/降级", ex);
+        return Result.error("系统繁忙，请稍后再试");
+    }
+
     /**
      * 获取动态详情 - 限流降级处理
      */
     public Result<MomentVO> getMomentBlockHandler(
-            Long momentId, BlockException ex) {
+            Long momentId, HttpServletRequest request, BlockException ex) {
         // [修复参数签名错位问题]
         log.warn("[Sentinel] 获取动态详情接口被限流/降级, momentId={}", momentId, ex);
         return Result.error("系统繁忙，请稍后再试");
@@ -1,12 +1,15 @@
 package com.limengyuan.partner.post.controller;
 
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.vo.ActivityWithApplicationsVO;
 import com.limengyuan.partner.common.dto.request.JoinActivityRequest;
 import com.limengyuan.partner.common.dto.vo.MyApplicationVO;
 import com.limengyuan.partner.common.dto.vo.ParticipantPageVO;
+import com.limengyuan.partner.common.dto.vo.ParticipantVO;
 import com.limengyuan.partner.common.dto.request.ReviewRequest;
 import com.limengyuan.partner.common.entity.Participant;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.PageHelper;
 import com.limengyuan.partner.common.util.UserContextHolder;
 import com.limengyuan.partner.post.service.ParticipantService;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -57,6 +60,24 @@ public class ParticipantController {
         return participantService.getParticipantsPaged(activityId, page, size);
     }
 
+    /**
+     * 游标分页获取活动参与者列表
+     * GET /api/activities/{id}/participants/cursor?cursor=xxx&size=7
+     */
+    @GetMapping("/activities/{id}/participants/cursor")
+    public Result<CursorPage<ParticipantVO>> getParticipantsByCursor(
+            @PathVariable("id") Long activityId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "7") int size) {
+
+        Long userId = UserContextHolder.getPrincipalId();
+        if (userId == null) {
+            return Result.error("请先登录");
+        }
+        size = PageHelper.safeSize(size, 7, PageHelper.MAX_SIZE);
+        return participantService.getParticipantsByCursor(activityId, cursor, size);
+    }
+
     /**
      * 统一审核接口
      * PUT /api/participants/{id}/review
@@ -132,4 +153,21 @@ public class ParticipantController {
         }
         return participantService.getMyActivitiesWithApplications(userId);
     }
+
+    /**
+     * 游标分页获取我发布的活动及其申请列表
+     * GET /api/my/activities-with-applications/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/my/activities-with-applications/cursor")
+    public Result<CursorPage<ActivityWithApplicationsVO>> getMyActivitiesWithApplicationsByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        Long userId = UserContextHolder.getPrincipalId();
+        if (userId == null) {
+            return Result.error("请先登录");
+        }
+        size = PageHelper.safeSize(size);
+        return participantService.getMyActivitiesWithApplicationsByCursor(userId, cursor, size);
+    }
 }
@@ -1,5 +1,6 @@
 package com.limengyuan.partner.post.controller;
 
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.vo.ReviewVO;
 import com.limengyuan.partner.common.dto.request.SubmitReviewRequest;
 import com.limengyuan.partner.common.dto.vo.UserReviewPageVO;
@@ -71,4 +72,19 @@ public class ReviewController {
         return reviewService.getUserReviews(userId, page, size);
     }
 
+    /**
+     * 游标分页获取某用户收到的评价（适合无限滚动）
+     * GET /api/reviews/user/{userId}/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/user/{userId}/cursor")
+    public Result<CursorPage<ReviewVO>> getUserReviewsByCursor(
+            @PathVariable("userId") Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        size = PageHelper.safeSize(size);
+
+        return reviewService.getUserReviewsByCursor(userId, cursor, size);
+    }
+
 }
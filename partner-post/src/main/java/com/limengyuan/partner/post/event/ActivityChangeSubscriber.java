@@ -0,0 +1,50 @@
+package com.limengyuan.partner.post.event;
+
+import com.limengyuan.partner.common.event.ActivityChangeChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 订阅其他服务（管理后台下架/恢复活动）发布的活动变更通知，转为本地的 {@link ActivityChangedEvent}
+ *
+ * 不在事务中发布，@TransactionalEventListener(fallbackExecution = true) 的监听方会立即执行
+ */
+@Slf4j
+@Configuration(proxyBeanMethods = false)
+public class ActivityChangeSubscriber implements MessageListener {
+
+    private final ApplicationEventPublisher eventPublisher;
+
+    public ActivityChangeSubscriber(ApplicationEventPublisher eventPublisher) {
+        this.eventPublisher = eventPublisher;
+    }
+
+    @Bean
+    public RedisMessageListenerContainer activityChangeListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        container.addMessageListener(this, new ChannelTopic(ActivityChangeChannel.NAME));
+        return container;
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        try {
+            Long activityId = Long.valueOf(body);
+            log.debug("[活动变更通知] 收到其他服务的变更, activityId={}", activityId);
+            eventPublisher.publishEvent(new ActivityChangedEvent(activityId));
+        } catch (NumberFormatException e) {
+            log.warn("[活动变更通知] 无法解析的消息: {}", body);
+        }
+    }
+}
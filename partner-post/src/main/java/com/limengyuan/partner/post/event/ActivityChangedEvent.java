@@ -0,0 +1,12 @@
+package com.limengyuan.partner.post.event;
+
+/**
+ * 活动变更事件
+ *
+ * 活动创建、状态变化（满员/恢复招募/结束等）、已通过人数变化后发布，只携带活动ID，
+ * 监听方按需回查数据库获取最新状态，避免事件内容与数据库不一致
+ *
+ * @param activityId 发生变更的活动ID
+ */
+public record ActivityChangedEvent(Long activityId) {
+}
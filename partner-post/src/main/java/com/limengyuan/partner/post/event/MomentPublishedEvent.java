@@ -0,0 +1,12 @@
+package com.limengyuan.partner.post.event;
+
+/**
+ * 动态发布事件
+ *
+ * 发布公开或仅关注者可见的动态后发布，由关注时间线在事务提交后推送到粉丝收件箱
+ *
+ * @param momentId 新动态ID
+ * @param authorId 发布者用户ID
+ */
+public record MomentPublishedEvent(Long momentId, Long authorId) {
+}
@@ -0,0 +1,305 @@
+package com.limengyuan.partner.post.index;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.roaringbitmap.RoaringBitmap;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 招募中活动的内存位图倒排索引
+ *
+ * 每个筛选维度的每个取值对应一个 Roaring 位图，bit 下标即 activityId：
+ * - 分类：category_ids 中的每个分类ID
+ * - 费用方式：payment_type
+ * - 开始日期：start_time 按天分桶（epochDay），日期区间筛选对桶做 OR
+ *
+ * 多维筛选只需对位图做 AND/OR，计数取 cardinality，不再依赖无法走索引的 JSON_CONTAINS；
+ * 分页结果只是一组活动ID，详情仍由 MySQL 按 ID 回查。
+ * 招募中的活动只占全部 activityId 的一小段且越来越稀疏，Roaring 位图按 65536 个ID分块、
+ * 稀疏块用有序数组存储，空间与取值下的活动数成正比，不会像 BitSet 那样每个取值都按最大 activityId 分配。
+ *
+ * 数据新鲜度：
+ * - 活动创建/状态变化、管理后台下架/恢复（经 ActivityChangeSubscriber 转发）时通过
+ *   {@link ActivityChangedEvent} 增量刷新单个活动
+ * - 启动时与每 5 分钟全量重建一次，兜底覆盖漏掉的通知（如 Redis 短暂不可用）
+ */
+@Slf4j
+@Component
+public class ActivityFacetIndex {
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
+
+    private final ActivityMapper activityMapper;
+    private final ObjectMapper objectMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** 所有招募中的活动 */
+    private RoaringBitmap all = new RoaringBitmap();
+    private Map<Integer, RoaringBitmap> byCategory = new HashMap<>();
+    private Map<Integer, RoaringBitmap> byPaymentType = new HashMap<>();
+    private TreeMap<Long, RoaringBitmap> byStartDay = new TreeMap<>();
+    /** activityId → 已写入的维度取值，用于删除时精确清除对应 bit */
+    private Map<Integer, Facets> facetsById = new HashMap<>();
+
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = false;
+    /** 全量重建期间收到的增量变更，重建完成后补偿刷新，避免被旧快照覆盖 */
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 单个活动在索引中的维度取值
+     */
+    private record Facets(List<Integer> categoryIds, Integer paymentType, Long startDay) {
+    }
+
+    /**
+     * 筛选结果
+     *
+     * @param ids   本页活动ID（按 activityId 倒序，即发布时间倒序）
+     * @param total 命中总数
+     */
+    public record Page(List<Long> ids, long total) {
+    }
+
+    public ActivityFacetIndex(ActivityMapper activityMapper, ObjectMapper objectMapper) {
+        this.activityMapper = activityMapper;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 索引是否已完成首次构建，未就绪时调用方应回退到数据库查询
+     */
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 多维筛选并分页
+     *
+     * @param offset 跳过的条数
+     * @param limit  本页条数
+     */
+    public Page query(ActivityFacetQuery query, int offset, int limit) {
+        lock.readLock().lock();
+        try {
+            RoaringBitmap result = all.clone();
+            if (query.getCategoryIds() != null && !query.getCategoryIds().isEmpty()) {
+                result.and(union(query.getCategoryIds().stream().map(byCategory::get).toList()));
+            }
+            if (query.getPaymentTypes() != null && !query.getPaymentTypes().isEmpty()) {
+                result.and(union(query.getPaymentTypes().stream().map(byPaymentType::get).toList()));
+            }
+            if (query.getStartFrom() != null || query.getStartTo() != null) {
+                long from = query.getStartFrom() != null ? query.getStartFrom().toEpochDay() : Long.MIN_VALUE;
+                long to = query.getStartTo() != null ? query.getStartTo().toEpochDay() : Long.MAX_VALUE;
+                result.and(from > to ? new RoaringBitmap() : union(byStartDay.subMap(from, true, to, true).values()));
+            }
+
+            // 按 activityId 倒序分页：第 offset 条即升序下标 total - 1 - offset，select 直接定位，无需逐个跳过
+            long total = result.getLongCardinality();
+            List<Long> ids = new ArrayList<>(limit);
+            for (long rank = total - 1 - offset; rank >= 0 && ids.size() < limit; rank--) {
+                ids.add(Integer.toUnsignedLong(result.select((int) rank)));
+            }
+            return new Page(ids, total);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 服务启动完成后构建索引
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    /**
+     * 每 5 分钟全量重建一次（兜底）
+     */
+    @Scheduled(initialDelay = 300000, fixedRate = 300000)
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * 活动变更后增量刷新（事务提交后执行，确保能读到最新数据）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        if (rebuilding) {
+            changedDuringRebuild.add(event.activityId());
+        }
+        try {
+            refresh(event.activityId());
+        } catch (Exception e) {
+            log.error("[筛选索引] 增量刷新失败, activityId={}", event.activityId(), e);
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引，构建完成后整体替换
+     */
+    public void rebuild() {
+        rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+            wrapper.eq("status", STATUS_RECRUITING)
+                    .select("activity_id", "category_ids", "payment_type", "start_time");
+            List<Activity> activities = activityMapper.selectList(wrapper);
+
+            RoaringBitmap newAll = new RoaringBitmap();
+            Map<Integer, RoaringBitmap> newByCategory = new HashMap<>();
+            Map<Integer, RoaringBitmap> newByPaymentType = new HashMap<>();
+            TreeMap<Long, RoaringBitmap> newByStartDay = new TreeMap<>();
+            Map<Integer, Facets> newFacetsById = new HashMap<>(activities.size() * 2);
+            for (Activity activity : activities) {
+                int bit = Math.toIntExact(activity.getActivityId());
+                Facets facets = toFacets(activity);
+                newAll.add(bit);
+                setBits(bit, facets, newByCategory, newByPaymentType, newByStartDay);
+                newFacetsById.put(bit, facets);
+            }
+
+            lock.writeLock().lock();
+            try {
+                all = newAll;
+                byCategory = newByCategory;
+                byPaymentType = newByPaymentType;
+                byStartDay = newByStartDay;
+                facetsById = newFacetsById;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("[筛选索引] 全量重建完成，共 {} 个招募中活动，耗时 {} ms",
+                    activities.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[筛选索引] 全量重建失败", e);
+        } finally {
+            rebuilding = false;
+        }
+
+        // 补偿重建期间发生的增量变更
+        for (Long activityId : List.copyOf(changedDuringRebuild)) {
+            changedDuringRebuild.remove(activityId);
+            try {
+                refresh(activityId);
+            } catch (Exception e) {
+                log.error("[筛选索引] 补偿刷新失败, activityId={}", activityId, e);
+            }
+        }
+    }
+
+    /**
+     * 按数据库最新状态刷新单个活动：招募中则写入，否则移除
+     */
+    public void refresh(Long activityId) {
+        Activity activity = activityMapper.selectById(activityId);
+        int bit = Math.toIntExact(activityId);
+
+        lock.writeLock().lock();
+        try {
+            Facets old = facetsById.remove(bit);
+            if (old != null) {
+                all.remove(bit);
+                clearBits(bit, old);
+            }
+            if (activity != null && activity.getStatus() != null && activity.getStatus() == STATUS_RECRUITING) {
+                Facets facets = toFacets(activity);
+                all.add(bit);
+                setBits(bit, facets, byCategory, byPaymentType, byStartDay);
+                facetsById.put(bit, facets);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ============================
+    // 内部辅助方法
+    // ============================
+
+    private Facets toFacets(Activity activity) {
+        Long startDay = activity.getStartTime() != null ? activity.getStartTime().toLocalDate().toEpochDay() : null;
+        return new Facets(parseCategoryIds(activity.getCategoryIds()), activity.getPaymentType(), startDay);
+    }
+
+    private List<Integer> parseCategoryIds(String categoryIdsJson) {
+        if (categoryIdsJson == null || categoryIdsJson.isBlank()) {
+            return List.of();
+        }
+        try {
+            return objectMapper.readValue(categoryIdsJson, new TypeReference<List<Integer>>() {});
+        } catch (Exception e) {
+            log.warn("[筛选索引] 分类ID解析失败: {}", categoryIdsJson);
+            return List.of();
+        }
+    }
+
+    private static void setBits(int bit, Facets facets, Map<Integer, RoaringBitmap> byCategory,
+                                Map<Integer, RoaringBitmap> byPaymentType, Map<Long, RoaringBitmap> byStartDay) {
+        for (Integer categoryId : facets.categoryIds()) {
+            byCategory.computeIfAbsent(categoryId, k -> new RoaringBitmap()).add(bit);
+        }
+        if (facets.paymentType() != null) {
+            byPaymentType.computeIfAbsent(facets.paymentType(), k -> new RoaringBitmap()).add(bit);
+        }
+        if (facets.startDay() != null) {
+            byStartDay.computeIfAbsent(facets.startDay(), k -> new RoaringBitmap()).add(bit);
+        }
+    }
+
+    private void clearBits(int bit, Facets facets) {
+        for (Integer categoryId : facets.categoryIds()) {
+            clearBit(byCategory, categoryId, bit);
+        }
+        if (facets.paymentType() != null) {
+            clearBit(byPaymentType, facets.paymentType(), bit);
+        }
+        if (facets.startDay() != null) {
+            clearBit(byStartDay, facets.startDay(), bit);
+        }
+    }
+
+    /**
+     * 清除 bit，位图为空时移除该取值，避免按天分桶无限增长
+     */
+    private static <K> void clearBit(Map<K, RoaringBitmap> map, K key, int bit) {
+        RoaringBitmap bits = map.get(key);
+        if (bits != null) {
+            bits.remove(bit);
+            if (bits.isEmpty()) {
+                map.remove(key);
+            }
+        }
+    }
+
+    private static RoaringBitmap union(Collection<RoaringBitmap> bitmaps) {
+        return RoaringBitmap.or(bitmaps.stream().filter(Objects::nonNull).iterator());
+    }
+}
@@ -0,0 +1,41 @@
+package com.limengyuan.partner.post.index;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 活动多维筛选条件
+ *
+ * 同一维度内多个取值为 OR，不同维度之间为 AND；为空的维度不参与筛选
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ActivityFacetQuery {
+
+    /**
+     * 分类ID（命中任一即可）
+     */
+    private List<Integer> categoryIds;
+
+    /**
+     * 费用方式（命中任一即可）
+     */
+    private List<Integer> paymentTypes;
+
+    /**
+     * 开始日期下限（含）
+     */
+    private LocalDate startFrom;
+
+    /**
+     * 开始日期上限（含）
+     */
+    private LocalDate startTo;
+}
@@ -0,0 +1,343 @@
+package com.limengyuan.partner.post.index;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 招募中活动的内存地理网格索引（Geohash 网格）
+ *
+ * 按 Geohash 精度 3~6 将经纬度划分为网格，每个精度维护 网格 → 活动ID 集合。
+ * 网格坐标与同精度 Geohash 单元完全一致，只是直接用 (经度格号, 纬度格号) 作为键，省去字符串编解码。
+ *
+ * 半径查询时选择"网格宽高均不小于半径"的最细精度，圆形区域必然落在中心网格及其 8 个邻居内，
+ * 只需对这 9 个网格中的候选点计算球面距离，不再依赖无法处理半径查询的 (latitude, longitude) 联合索引。
+ * 高纬度地区网格东西宽度按 cos(纬度) 收缩，最粗精度也不够宽时改为向东西两侧多扫几圈网格（靠近极点时扫描整圈）。
+ *
+ * 数据新鲜度与 {@link ActivityFacetIndex} 一致：事件增量刷新 + 定时全量重建
+ */
+@Slf4j
+@Component
+public class ActivityGeoIndex {
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
+    /** 支持的 Geohash 精度范围 */
+    private static final int MIN_PRECISION = 3;
+    private static final int MAX_PRECISION = 6;
+    /** 地球平均半径（米） */
+    private static final double EARTH_RADIUS_METERS = 6_371_008.8;
+    /** 每度纬度对应的公里数 */
+    private static final double KM_PER_DEGREE = 111.32;
+
+    private final ActivityMapper activityMapper;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /** cells[precision - MIN_PRECISION]：网格键 → 活动ID 集合 */
+    private List<Map<Long, Set<Long>>> cells = emptyCells();
+    /** activityId → 坐标 */
+    private Map<Long, double[]> points = new HashMap<>();
+
+    private volatile boolean ready = false;
+    private volatile boolean rebuilding = false;
+    private final Set<Long> changedDuringRebuild = ConcurrentHashMap.newKeySet();
+
+    /**
+     * 命中结果
+     *
+     * @param activityId     活动ID
+     * @param distanceMeters 与查询点的距离（米，取整后参与排序与游标）
+     */
+    public record Hit(long activityId, long distanceMeters) {
+    }
+
+    public ActivityGeoIndex(ActivityMapper activityMapper) {
+        this.activityMapper = activityMapper;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /**
+     * 半径查询，按 (距离, activityId) 升序返回游标之后的 limit 条
+     *
+     * @param afterDistance 上一页最后一条的距离（米），第一页传 null
+     * @param afterId       上一页最后一条的活动ID
+     */
+    public List<Hit> nearby(double lat, double lng, double radiusKm,
+                            Long afterDistance, Long afterId, int limit) {
+        double radiusMeters = radiusKm * 1000;
+        int precision = choosePrecision(lat, radiusKm);
+        int lonBits = lonBits(precision);
+        int latBits = latBits(precision);
+        long cx = lonCell(lng, lonBits);
+        long cy = latCell(lat, latBits);
+        long lonCells = 1L << lonBits;
+        long latCells = 1L << latBits;
+        long lonRings = lonRings(precision, lat, radiusKm);
+        // 东西方向要扫描的网格覆盖整圈时，从第 0 列扫到最后一列，避免回绕后重复
+        boolean wholeRow = lonRings * 2 + 1 >= lonCells;
+        long fromX = wholeRow ? 0 : cx - lonRings;
+        long toX = wholeRow ? lonCells - 1 : cx + lonRings;
+
+        List<Hit> hits = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            Map<Long, Set<Long>> grid = cells.get(precision - MIN_PRECISION);
+            for (long gx = fromX; gx <= toX; gx++) {
+                // 经度方向跨越 ±180° 时回绕
+                long x = Math.floorMod(gx, lonCells);
+                for (long dy = -1; dy <= 1; dy++) {
+                    long y = cy + dy;
+                    if (y < 0 || y >= latCells) {
+                        continue;
+                    }
+                    Set<Long> ids = grid.get(cellKey(x, y));
+                    if (ids == null) {
+                        continue;
+                    }
+                    for (Long id : ids) {
+                        double[] point = points.get(id);
+                        double d = haversineMeters(lat, lng, point[0], point[1]);
+                        if (d > radiusMeters) {
+                            continue;
+                        }
+                        long meters = Math.round(d);
+                        if (afterDistance != null && (meters < afterDistance
+                                || (meters == afterDistance && id <= afterId))) {
+                            continue;
+                        }
+                        hits.add(new Hit(id, meters));
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        hits.sort(Comparator.comparingLong(Hit::distanceMeters).thenComparingLong(Hit::activityId));
+        return hits.size() > limit ? new ArrayList<>(hits.subList(0, limit)) : hits;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        rebuild();
+    }
+
+    /**
+     * 每 5 分钟全量重建一次（兜底）
+     */
+    @Scheduled(initialDelay = 300000, fixedRate = 300000)
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * 活动变更后增量刷新（事务提交后执行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        if (rebuilding) {
+            changedDuringRebuild.add(event.activityId());
+        }
+        try {
+            refresh(event.activityId());
+        } catch (Exception e) {
+            log.error("[地理索引] 增量刷新失败, activityId={}", event.activityId(), e);
+        }
+    }
+
+    /**
+     * 从数据库全量重建索引，构建完成后整体替换
+     */
+    public void rebuild() {
+        rebuilding = true;
+        try {
+            long start = System.currentTimeMillis();
+            QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+            wrapper.eq("status", STATUS_RECRUITING)
+                    .isNotNull("latitude")
+                    .isNotNull("longitude")
+                    .select("activity_id", "latitude", "longitude");
+            List<Activity> activities = activityMapper.selectList(wrapper);
+
+            List<Map<Long, Set<Long>>> newCells = emptyCells();
+            Map<Long, double[]> newPoints = new HashMap<>(activities.size() * 2);
+            for (Activity activity : activities) {
+                double[] point = {activity.getLatitude().doubleValue(), activity.getLongitude().doubleValue()};
+                newPoints.put(activity.getActivityId(), point);
+                addToCells(newCells, activity.getActivityId(), point);
+            }
+
+            lock.writeLock().lock();
+            try {
+                cells = newCells;
+                points = newPoints;
+            } finally {
+                lock.writeLock().unlock();
+            }
+            ready = true;
+            log.info("[地理索引] 全量重建完成，共 {} 个带坐标的招募中活动，耗时 {} ms",
+                    activities.size(), System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[地理索引] 全量重建失败", e);
+        } finally {
+            rebuilding = false;
+        }
+
+        for (Long activityId : List.copyOf(changedDuringRebuild)) {
+            changedDuringRebuild.remove(activityId);
+            try {
+                refresh(activityId);
+            } catch (Exception e) {
+                log.error("[地理索引] 补偿刷新失败, activityId={}", activityId, e);
+            }
+        }
+    }
+
+    /**
+     * 按数据库最新状态刷新单个活动：招募中且有坐标则写入，否则移除
+     */
+    public void refresh(Long activityId) {
+        Activity activity = activityMapper.selectById(activityId);
+
+        lock.writeLock().lock();
+        try {
+            double[] old = points.remove(activityId);
+            if (old != null) {
+                removeFromCells(cells, activityId, old);
+            }
+            if (activity != null && activity.getStatus() != null && activity.getStatus() == STATUS_RECRUITING
+                    && activity.getLatitude() != null && activity.getLongitude() != null) {
+                double[] point = {activity.getLatitude().doubleValue(), activity.getLongitude().doubleValue()};
+                points.put(activityId, point);
+                addToCells(cells, activityId, point);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ============================
+    // 网格与距离计算
+    // ============================
+
+    /**
+     * 选择网格宽高均不小于半径的最细精度
+     * 经度方向宽度随纬度收缩，按查询圆最靠近极点一侧的纬度计算；高纬度下最粗精度也可能不够宽，
+     * 此时返回最粗精度，由 {@link #lonRings} 补足东西方向的扫描范围
+     */
+    static int choosePrecision(double lat, double radiusKm) {
+        for (int p = MAX_PRECISION; p > MIN_PRECISION; p--) {
+            if (cellHeightKm(p) >= radiusKm && cellWidthKm(p, lat, radiusKm) >= radiusKm) {
+                return p;
+            }
+        }
+        return MIN_PRECISION;
+    }
+
+    /**
+     * 东西方向需要向两侧各扫描的网格数：网格宽度不小于半径时为 1，否则按半径与宽度之比放大，
+     * 最多为一整圈的网格数（查询圆触及极点时宽度趋近 0）
+     */
+    static long lonRings(int precision, double lat, double radiusKm) {
+        long lonCells = 1L << lonBits(precision);
+        double widthKm = cellWidthKm(precision, lat, radiusKm);
+        if (widthKm * lonCells <= radiusKm) {
+            return lonCells;
+        }
+        return Math.max(1, (long) Math.ceil(radiusKm / widthKm));
+    }
+
+    private static double cellHeightKm(int precision) {
+        return 180.0 / (1L << latBits(precision)) * KM_PER_DEGREE;
+    }
+
+    private static double cellWidthKm(int precision, double lat, double radiusKm) {
+        double edgeLat = Math.min(90, Math.abs(lat) + radiusKm / KM_PER_DEGREE);
+        return 360.0 / (1L << lonBits(precision)) * KM_PER_DEGREE * Math.cos(Math.toRadians(edgeLat));
+    }
+
+    /**
+     * 球面距离（Haversine 公式），单位：米
+     */
+    static double haversineMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * EARTH_RADIUS_METERS * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /** Geohash 每个字符 5 bit，经度占奇数位时多 1 bit */
+    private static int lonBits(int precision) {
+        return (precision * 5 + 1) / 2;
+    }
+
+    private static int latBits(int precision) {
+        return precision * 5 / 2;
+    }
+
+    private static long lonCell(double lng, int bits) {
+        long cell = (long) Math.floor((lng + 180) / 360 * (1L << bits));
+        return Math.min(cell, (1L << bits) - 1);
+    }
+
+    private static long latCell(double lat, int bits) {
+        long cell = (long) Math.floor((lat + 90) / 180 * (1L << bits));
+        return Math.min(cell, (1L << bits) - 1);
+    }
+
+    private static long cellKey(long x, long y) {
+        return (x << 32) | y;
+    }
+
+    private static List<Map<Long, Set<Long>>> emptyCells() {
+        List<Map<Long, Set<Long>>> list = new ArrayList<>();
+        for (int p = MIN_PRECISION; p <= MAX_PRECISION; p++) {
+            list.add(new HashMap<>());
+        }
+        return list;
+    }
+
+    private static void addToCells(List<Map<Long, Set<Long>>> cells, Long activityId, double[] point) {
+        for (int p = MIN_PRECISION; p <= MAX_PRECISION; p++) {
+            long key = cellKey(lonCell(point[1], lonBits(p)), latCell(point[0], latBits(p)));
+            cells.get(p - MIN_PRECISION).computeIfAbsent(key, k -> new HashSet<>()).add(activityId);
+        }
+    }
+
+    private static void removeFromCells(List<Map<Long, Set<Long>>> cells, Long activityId, double[] point) {
+        for (int p = MIN_PRECISION; p <= MAX_PRECISION; p++) {
+            long key = cellKey(lonCell(point[1], lonBits(p)), latCell(point[0], latBits(p)));
+            Map<Long, Set<Long>> grid = cells.get(p - MIN_PRECISION);
+            Set<Long> ids = grid.get(key);
+            if (ids != null) {
+                ids.remove(activityId);
+                if (ids.isEmpty()) {
+                    grid.remove(key);
+                }
+            }
+        }
+    }
+}
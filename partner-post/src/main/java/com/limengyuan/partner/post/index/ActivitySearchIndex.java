@@ -0,0 +1,109 @@
+package com.limengyuan.partner.post.index;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.common.search.AbstractActivitySearchIndex;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 招募中活动的全文检索索引（标题、描述、地点名称）
+ *
+ * - 活动创建/状态变化时通过 {@link ActivityChangedEvent} 即时刷新
+ * - 每分钟按 updated_at 水位增量追平，覆盖其他服务（如管理后台下架/恢复）的修改
+ * - 每小时全量重建一次
+ * - 配置 partner.search.snapshot-path 后，重建完成与服务停止时写快照，重启时从快照恢复
+ */
+@Slf4j
+@Component
+public class ActivitySearchIndex extends AbstractActivitySearchIndex {
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
+
+    private static final String[] COLUMNS = {
+            "activity_id", "title", "description", "location_name", "status", "updated_at"};
+
+    private static final String INDEX_NAME = "post-recruiting-activities";
+
+    private final ActivityMapper activityMapper;
+
+    public ActivitySearchIndex(ActivityMapper activityMapper,
+                               @Value("${partner.search.snapshot-path:}") String snapshotPath) {
+        super(INDEX_NAME, snapshotPath);
+        this.activityMapper = activityMapper;
+    }
+
+    @Override
+    protected List<Activity> loadAll() {
+        QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+        wrapper.eq("status", STATUS_RECRUITING).select(COLUMNS);
+        return activityMapper.selectList(wrapper);
+    }
+
+    @Override
+    protected List<Activity> loadChangedSince(LocalDateTime since) {
+        QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+        wrapper.ge("updated_at", since).select(COLUMNS);
+        return activityMapper.selectList(wrapper);
+    }
+
+    @Override
+    protected boolean isIndexable(Activity activity) {
+        return activity.getStatus() != null && activity.getStatus() == STATUS_RECRUITING;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        initialize();
+    }
+
+    /**
+     * 每分钟按水位增量追平
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void scheduledCatchUp() {
+        catchUp();
+    }
+
+    /**
+     * 每小时全量重建一次（兜底）
+     */
+    @Scheduled(initialDelay = 3600000, fixedRate = 3600000)
+    public void scheduledRebuild() {
+        rebuild();
+    }
+
+    /**
+     * 活动变更后即时刷新（事务提交后执行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        try {
+            Activity activity = activityMapper.selectById(event.activityId());
+            if (activity != null) {
+                apply(activity);
+            } else {
+                remove(event.activityId());
+            }
+        } catch (Exception e) {
+            log.error("[全文检索] 增量刷新失败, activityId={}", event.activityId(), e);
+        }
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        saveSnapshot();
+    }
+}
@@ -0,0 +1,290 @@
+package com.limengyuan.partner.post.lifecycle;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.service.ActivityVectorService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 活动生命周期引擎：按时间自动推进活动状态
+ *
+ * - 报名截止或活动开始时：招募中 → 已满员（关闭报名，移出广场和 Milvus 推荐）
+ * - 活动结束时：招募中/已满员 → 活动结束
+ *
+ * 到期时间放在内存分层时间轮中，到期后按批执行条件 UPDATE，不需要每分钟扫全表：
+ * - 启动时从数据库加载所有招募中/已满员活动的关键时间（重启后自动恢复，停机期间错过的立即补执行）
+ * - 本服务内的活动变更通过 {@link ActivityChangedEvent} 即时登记
+ * - 每 5 分钟按 updated_at 水位增量追平其他服务（如管理后台恢复活动）的修改
+ *
+ * 状态变更 SQL 自带时间与状态条件，多实例同时触发或时间轮中的旧任务都不会误改数据
+ */
+@Slf4j
+@Component
+public class ActivityLifecycleEngine {
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
+    /** 状态: 已满员 */
+    private static final int STATUS_FULL = 1;
+
+    /** 时间轮第一层每格 1 秒、60 格，上层按需扩展 */
+    private static final long TICK_MS = 1000L;
+    private static final int WHEEL_SIZE = 60;
+
+    /** 单条 SQL 最多处理的活动数 */
+    private static final int BATCH_SIZE = 500;
+
+    private static final String[] COLUMNS = {
+            "activity_id", "status", "start_time", "end_time", "registration_end_time", "updated_at"};
+
+    /**
+     * 生命周期流转类型
+     */
+    enum Transition {
+        /** 关闭报名 */
+        CLOSE_REGISTRATION,
+        /** 活动结束 */
+        END
+    }
+
+    record Task(Long activityId, Transition transition) {
+    }
+
+    private final ActivityMapper activityMapper;
+    private final ActivityVectorService activityVectorService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final HierarchicalTimingWheel<Task> wheel =
+            new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, System.currentTimeMillis());
+
+    /** 已登记的到期时间，避免同一活动反复变更时在时间轮中堆积重复任务 */
+    private final Map<Long, Long> scheduledClose = new ConcurrentHashMap<>();
+    private final Map<Long, Long> scheduledEnd = new ConcurrentHashMap<>();
+
+    private volatile LocalDateTime watermark;
+    private volatile boolean running = true;
+    private Thread driver;
+
+    public ActivityLifecycleEngine(ActivityMapper activityMapper, ActivityVectorService activityVectorService,
+                                   ApplicationEventPublisher eventPublisher) {
+        this.activityMapper = activityMapper;
+        this.activityVectorService = activityVectorService;
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * 启动时加载并开启驱动线程
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+            wrapper.in("status", STATUS_RECRUITING, STATUS_FULL).select(COLUMNS);
+            List<Activity> activities = activityMapper.selectList(wrapper);
+            List<Task> due = new ArrayList<>();
+            LocalDateTime newWatermark = null;
+            for (Activity activity : activities) {
+                schedule(activity, due);
+                newWatermark = max(newWatermark, activity.getUpdatedAt());
+            }
+            watermark = newWatermark != null ? newWatermark : LocalDateTime.now();
+            log.info("[生命周期] 已加载 {} 个活动，时间轮待执行 {} 个任务，已到期 {} 个",
+                    activities.size(), wheel.size(), due.size());
+            fire(due);
+        } catch (Exception e) {
+            log.error("[生命周期] 启动加载失败，将在下次增量追平时重试", e);
+        }
+
+        driver = new Thread(this::runLoop, "activity-lifecycle");
+        driver.setDaemon(true);
+        driver.start();
+    }
+
+    @PreDestroy
+    public void onShutdown() {
+        running = false;
+        if (driver != null) {
+            driver.interrupt();
+        }
+    }
+
+    /**
+     * 本服务内活动变更后重新登记（事务提交后执行）
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        try {
+            Activity activity = activityMapper.selectById(event.activityId());
+            if (activity != null) {
+                List<Task> due = new ArrayList<>();
+                schedule(activity, due);
+                fire(due);
+            }
+        } catch (Exception e) {
+            log.error("[生命周期] 登记活动失败, activityId={}", event.activityId(), e);
+        }
+    }
+
+    /**
+     * 每 5 分钟按 updated_at 水位增量追平
+     */
+    @Scheduled(initialDelay = 300000, fixedDelay = 300000)
+    public void catchUp() {
+        try {
+            LocalDateTime since = watermark != null ? watermark : LocalDateTime.of(1970, 1, 1, 0, 0);
+            QueryWrapper<Activity> wrapper = new QueryWrapper<>();
+            wrapper.ge("updated_at", since).in("status", STATUS_RECRUITING, STATUS_FULL).select(COLUMNS);
+            List<Activity> changed = activityMapper.selectList(wrapper);
+            List<Task> due = new ArrayList<>();
+            LocalDateTime newWatermark = watermark;
+            for (Activity activity : changed) {
+                schedule(activity, due);
+                newWatermark = max(newWatermark, activity.getUpdatedAt());
+            }
+            watermark = newWatermark;
+            fire(due);
+        } catch (Exception e) {
+            log.error("[生命周期] 增量追平失败", e);
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void runLoop() {
+        while (running) {
+            try {
+                fire(wheel.poll(TICK_MS * WHEEL_SIZE));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("[生命周期] 执行到期任务失败", e);
+            }
+        }
+    }
+
+    /**
+     * 登记活动的到期时间，已到期的任务放入 due 由调用方立即执行
+     */
+    private void schedule(Activity activity, List<Task> due) {
+        Long activityId = activity.getActivityId();
+        Integer status = activity.getStatus();
+        if (status == null || (status != STATUS_RECRUITING && status != STATUS_FULL)) {
+            scheduledClose.remove(activityId);
+            scheduledEnd.remove(activityId);
+            return;
+        }
+
+        if (status == STATUS_RECRUITING) {
+            LocalDateTime closeAt = earliest(activity.getRegistrationEndTime(), activity.getStartTime());
+            register(scheduledClose, new Task(activityId, Transition.CLOSE_REGISTRATION), closeAt, due);
+        }
+        register(scheduledEnd, new Task(activityId, Transition.END), activity.getEndTime(), due);
+    }
+
+    private void register(Map<Long, Long> scheduled, Task task, LocalDateTime at, List<Task> due) {
+        if (at == null) {
+            return;
+        }
+        long deadline = at.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        Long previous = scheduled.put(task.activityId(), deadline);
+        if (previous != null && previous == deadline) {
+            return;
+        }
+        if (!wheel.add(deadline, task)) {
+            due.add(task);
+        }
+    }
+
+    /**
+     * 批量执行到期任务
+     */
+    private void fire(List<Task> tasks) {
+        if (tasks.isEmpty()) {
+            return;
+        }
+        Set<Long> closeIds = new LinkedHashSet<>();
+        Set<Long> endIds = new LinkedHashSet<>();
+        for (Task task : tasks) {
+            if (task.transition() == Transition.CLOSE_REGISTRATION) {
+                scheduledClose.remove(task.activityId());
+                closeIds.add(task.activityId());
+            } else {
+                scheduledEnd.remove(task.activityId());
+                endIds.add(task.activityId());
+            }
+        }
+
+        // 先处理结束，已结束的活动无需再关闭报名
+        List<Long> ended = applyInBatches(new ArrayList<>(endIds), Transition.END);
+        closeIds.removeAll(ended);
+        List<Long> closed = applyInBatches(new ArrayList<>(closeIds), Transition.CLOSE_REGISTRATION);
+
+        List<Long> changed = new ArrayList<>(ended);
+        changed.addAll(closed);
+        if (changed.isEmpty()) {
+            return;
+        }
+        activityVectorService.removeActivities(changed);
+        for (Long activityId : changed) {
+            eventPublisher.publishEvent(new ActivityChangedEvent(activityId));
+        }
+        log.info("[生命周期] 关闭报名 {} 个活动，结束 {} 个活动", closed.size(), ended.size());
+    }
+
+    private List<Long> applyInBatches(List<Long> ids, Transition transition) {
+        List<Long> changed = new ArrayList<>();
+        // 时间格按起点到期，任务最多提前一格触发，判断是否到期时放宽一格，避免任务被提前消费后不再执行
+        LocalDateTime now = LocalDateTime.now().plusNanos(TICK_MS * 1_000_000);
+        for (int from = 0; from < ids.size(); from += BATCH_SIZE) {
+            List<Long> batch = ids.subList(from, Math.min(from + BATCH_SIZE, ids.size()));
+            List<Long> dueIds = transition == Transition.END
+                    ? activityMapper.findIdsDueForEnd(batch, now)
+                    : activityMapper.findIdsDueForClose(batch, now);
+            if (dueIds.isEmpty()) {
+                continue;
+            }
+            if (transition == Transition.END) {
+                activityMapper.markEnded(dueIds, now);
+            } else {
+                activityMapper.closeRegistration(dueIds, now);
+            }
+            changed.addAll(dueIds);
+        }
+        return changed;
+    }
+
+    private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isBefore(b) ? a : b;
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -0,0 +1,204 @@
+package com.limengyuan.partner.post.lifecycle;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 分层时间轮
+ *
+ * - 第一层每格 tickMs、共 wheelSize 格；超出本层范围的任务放入上一层（每格 = 下层一整圈），上层按需创建
+ * - 只有非空的格子才进入 DelayQueue，驱动线程在没有到期任务时阻塞等待，不会空转扫描
+ * - 上层格子到期时把任务重新插入下层，逐级降到第一层后到期执行
+ *
+ * 新增任务 O(1)，到期时一次性取出所有到期任务，便于调用方批量处理。
+ * 已过期的任务（deadline 早于当前时间一格以内）在 add 时直接返回 false，由调用方立即处理
+ *
+ * @param <T> 任务负载类型
+ */
+public class HierarchicalTimingWheel<T> {
+
+    private final DelayQueue<Bucket<T>> queue = new DelayQueue<>();
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Wheel<T> root;
+    private final AtomicLong size = new AtomicLong();
+
+    /**
+     * @param tickMs    第一层每格时长（毫秒）
+     * @param wheelSize 每层格数
+     * @param startMs   起始时间（毫秒时间戳）
+     */
+    public HierarchicalTimingWheel(long tickMs, int wheelSize, long startMs) {
+        this.root = new Wheel<>(tickMs, wheelSize, startMs, queue);
+    }
+
+    /**
+     * 添加任务
+     *
+     * @return false 表示任务已到期，未放入时间轮，调用方应立即处理
+     */
+    public boolean add(long deadlineMs, T payload) {
+        lock.lock();
+        try {
+            boolean added = root.add(new Entry<>(deadlineMs, payload));
+            if (added) {
+                size.incrementAndGet();
+            }
+            return added;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 等待并取出所有到期任务
+     *
+     * @param timeoutMs 最长等待时间
+     * @return 到期任务负载（超时无到期任务时为空列表）
+     */
+    public List<T> poll(long timeoutMs) throws InterruptedException {
+        Bucket<T> bucket = queue.poll(timeoutMs, TimeUnit.MILLISECONDS);
+        if (bucket == null) {
+            return List.of();
+        }
+        List<T> expired = new ArrayList<>();
+        lock.lock();
+        try {
+            while (bucket != null) {
+                root.advanceClock(bucket.getExpiration());
+                for (Entry<T> entry : bucket.drain()) {
+                    // 上层格子到期后尝试降级到下层，已到期的直接交给调用方
+                    if (!root.add(entry)) {
+                        expired.add(entry.payload());
+                        size.decrementAndGet();
+                    }
+                }
+                bucket = queue.poll();
+            }
+        } finally {
+            lock.unlock();
+        }
+        return expired;
+    }
+
+    /**
+     * 时间轮中待到期的任务数
+     */
+    public long size() {
+        return size.get();
+    }
+
+    // ============================
+    // 内部结构
+    // ============================
+
+    private record Entry<T>(long deadlineMs, T payload) {
+    }
+
+    /**
+     * 单层时间轮
+     */
+    private static final class Wheel<T> {
+
+        private final long tickMs;
+        private final int wheelSize;
+        private final long interval;
+        private final Bucket<T>[] buckets;
+        private final DelayQueue<Bucket<T>> queue;
+        /** 当前时间，向下取整到 tickMs 的整数倍 */
+        private long currentTime;
+        private Wheel<T> overflow;
+
+        @SuppressWarnings("unchecked")
+        Wheel(long tickMs, int wheelSize, long startMs, DelayQueue<Bucket<T>> queue) {
+            this.tickMs = tickMs;
+            this.wheelSize = wheelSize;
+            this.interval = tickMs * wheelSize;
+            this.queue = queue;
+            this.currentTime = startMs - (startMs % tickMs);
+            this.buckets = new Bucket[wheelSize];
+            for (int i = 0; i < wheelSize; i++) {
+                buckets[i] = new Bucket<>();
+            }
+        }
+
+        boolean add(Entry<T> entry) {
+            long deadline = entry.deadlineMs();
+            if (deadline < currentTime + tickMs) {
+                return false;
+            }
+            if (deadline < currentTime + interval) {
+                long virtualId = deadline / tickMs;
+                Bucket<T> bucket = buckets[(int) (virtualId % wheelSize)];
+                bucket.add(entry);
+                // 格子被复用到新的一轮时重新入队
+                if (bucket.setExpiration(virtualId * tickMs)) {
+                    queue.offer(bucket);
+                }
+                return true;
+            }
+            return overflow().add(entry);
+        }
+
+        void advanceClock(long timeMs) {
+            if (timeMs >= currentTime + tickMs) {
+                currentTime = timeMs - (timeMs % tickMs);
+                if (overflow != null) {
+                    overflow.advanceClock(currentTime);
+                }
+            }
+        }
+
+        private Wheel<T> overflow() {
+            if (overflow == null) {
+                overflow = new Wheel<>(interval, wheelSize, currentTime, queue);
+            }
+            return overflow;
+        }
+    }
+
+    /**
+     * 时间格：同一到期时间的一组任务
+     */
+    private static final class Bucket<T> implements Delayed {
+
+        private final AtomicLong expiration = new AtomicLong(-1L);
+        private List<Entry<T>> entries = new ArrayList<>();
+
+        synchronized void add(Entry<T> entry) {
+            entries.add(entry);
+        }
+
+        synchronized List<Entry<T>> drain() {
+            List<Entry<T>> drained = entries;
+            entries = new ArrayList<>();
+            expiration.set(-1L);
+            return drained;
+        }
+
+        /**
+         * @return true 表示到期时间发生变化（格子需要重新入队）
+         */
+        boolean setExpiration(long expirationMs) {
+            return expiration.getAndSet(expirationMs) != expirationMs;
+        }
+
+        long getExpiration() {
+            return expiration.get();
+        }
+
+        @Override
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(Math.max(expiration.get() - System.currentTimeMillis(), 0), TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public int compareTo(Delayed other) {
+            return Long.compare(expiration.get(), ((Bucket<?>) other).expiration.get());
+        }
+    }
+}
@@ -9,7 +9,10 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 活动数据访问层 - MyBatis-Plus
@@ -23,50 +26,58 @@ import java.util.List;
 public interface ActivityMapper extends BaseMapper<Activity> {
 
     /**
-     * 根据ID查询活动，包含发布者信息
+     * 根据ID查询活动，发布者信息由 UserHydrator 回填
      */
     @Select("""
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.activity_id = #{activityId}
             """)
     ActivityVO findByIdWithUser(@Param("activityId") Long activityId);
 
     /**
-     * 根据发起人ID查询活动列表，包含发布者信息
+     * 根据发起人ID查询活动列表，发布者信息由 UserHydrator 回填
      */
     @Select("""
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.initiator_id = #{initiatorId}
             ORDER BY a.created_at DESC
             """)
     List<ActivityVO> findByInitiatorIdWithUser(@Param("initiatorId") Long initiatorId);
 
     /**
-     * 分页查询所有活动，包含发布者信息（不按分类筛选）
+     * 游标分页查询发起人的活动（Keyset 分页，按 (created_at, activity_id) 倒序定位）
+     * cursorTime 为 null 表示第一页；发布者信息由 UserHydrator 回填
+     */
+    @Select("""
+            <script>
+            SELECT a.*,
+                   a.approved_count AS current_participants
+            FROM activities a
+            WHERE a.initiator_id = #{initiatorId}
+            <if test="cursorTime != null">
+                AND (a.created_at &lt; #{cursorTime}
+                     OR (a.created_at = #{cursorTime} AND a.activity_id &lt; #{cursorId}))
+            </if>
+            ORDER BY a.created_at DESC, a.activity_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ActivityVO> findByInitiatorIdByCursor(@Param("initiatorId") Long initiatorId,
+                                               @Param("cursorTime") LocalDateTime cursorTime,
+                                               @Param("cursorId") Long cursorId,
+                                               @Param("limit") int limit);
+
+    /**
+     * 分页查询所有活动，发布者信息由 UserHydrator 回填（不按分类筛选）
      */
     @Select("""
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.status = 0
             ORDER BY a.created_at DESC
             LIMIT #{size} OFFSET #{offset}
@@ -74,17 +85,12 @@ public interface ActivityMapper extends BaseMapper<Activity> {
     List<ActivityVO> findAllWithUser(@Param("size") int size, @Param("offset") int offset);
 
     /**
-     * 分页查询指定分类的活动，包含发布者信息
+     * 分页查询指定分类的活动，发布者信息由 UserHydrator 回填
      */
     @Select("""
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.status = 0 AND JSON_CONTAINS(a.category_ids, JSON_ARRAY(#{categoryId}))
             ORDER BY a.created_at DESC
             LIMIT #{size} OFFSET #{offset}
@@ -105,25 +111,118 @@ public interface ActivityMapper extends BaseMapper<Activity> {
     @Select("SELECT COUNT(*) FROM activities WHERE status = 0 AND JSON_CONTAINS(category_ids, JSON_ARRAY(#{categoryId}))")
     long countAllByCategory(@Param("categoryId") Integer categoryId);
 
+    /**
+     * 游标分页查询活动（Keyset 分页，按 (created_at, activity_id) 倒序定位），可选按分类筛选
+     * cursorTime 为 null 表示第一页；limit 通常为 size + 1，多取的一条用于判断是否还有下一页
+     */
+    @Select("""
+            <script>
+            SELECT a.*,
+                   a.approved_count AS current_participants
+            FROM activities a
+            WHERE a.status = 0
+            <if test="categoryId != null">
+                AND JSON_CONTAINS(a.category_ids, JSON_ARRAY(#{categoryId}))
+            </if>
+            <if test="cursorTime != null">
+                AND (a.created_at &lt; #{cursorTime}
+                     OR (a.created_at = #{cursorTime} AND a.activity_id &lt; #{cursorId}))
+            </if>
+            ORDER BY a.created_at DESC, a.activity_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ActivityVO> findAllWithUserByCursor(@Param("categoryId") Integer categoryId,
+                                             @Param("cursorTime") LocalDateTime cursorTime,
+                                             @Param("cursorId") Long cursorId,
+                                             @Param("limit") int limit);
+
     /**
      * 查询用户的标签和城市信息（用于 AI 推荐构建用户画像）
      */
     @Select("SELECT tags, city FROM users WHERE user_id = #{userId}")
     java.util.Map<String, Object> findUserTagsAndCity(@Param("userId") Long userId);
 
+    /**
+     * 查询 since 之后有过行为（发起活动、报名、发动态、点赞）的正常用户，按最近一次行为时间倒序
+     * 用于推荐预计算任务，越活跃的用户越先计算
+     */
+    @Select("""
+            SELECT t.user_id
+            FROM (
+                SELECT initiator_id AS user_id, created_at AS active_at FROM activities WHERE created_at >= #{since}
+                UNION ALL
+                SELECT user_id, updated_at FROM participants WHERE updated_at >= #{since}
+                UNION ALL
+                SELECT user_id, created_at FROM moments WHERE created_at >= #{since}
+                UNION ALL
+                SELECT user_id, created_at FROM moment_likes WHERE created_at >= #{since}
+            ) t
+            JOIN users u ON u.user_id = t.user_id AND u.status = 1
+            GROUP BY t.user_id
+            ORDER BY MAX(t.active_at) DESC
+            LIMIT #{limit}
+            """)
+    List<Long> findRecentlyActiveUserIds(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 查询 since 之后的报名记录（不含发起人自己），按报名时间倒序
+     * 用于推荐排序的离线评估：用户实际报名的活动作为正样本
+     */
+    @Select("""
+            SELECT p.user_id, p.activity_id, p.created_at
+            FROM participants p
+            JOIN activities a ON a.activity_id = p.activity_id
+            WHERE p.created_at >= #{since}
+              AND a.initiator_id <> p.user_id
+            ORDER BY p.created_at DESC
+            LIMIT #{limit}
+            """)
+    List<Map<String, Object>> findRecentApplications(@Param("since") LocalDateTime since, @Param("limit") int limit);
+
+    /**
+     * 查询某一时刻仍可报名的其他活动（已发布、尚未开始、未取消），按创建时间倒序
+     * 用于推荐排序的离线评估：作为与正样本同时可见的负样本
+     */
+    @Select("""
+            SELECT a.*,
+                   a.approved_count AS current_participants
+            FROM activities a
+            WHERE a.created_at <= #{at}
+              AND (a.start_time IS NULL OR a.start_time > #{at})
+              AND a.status <> 3
+              AND a.activity_id <> #{excludeActivityId}
+              AND a.initiator_id <> #{userId}
+            ORDER BY a.created_at DESC
+            LIMIT #{limit}
+            """)
+    List<ActivityVO> findOpenActivitiesAt(@Param("at") LocalDateTime at,
+                                          @Param("userId") Long userId,
+                                          @Param("excludeActivityId") Long excludeActivityId,
+                                          @Param("limit") int limit);
+
+    /**
+     * 批量查询用户所在城市（活动本身没有城市字段，向量元数据中以发起人城市作为活动城市）
+     */
+    @Select("""
+            <script>
+            SELECT user_id, city FROM users
+            WHERE user_id IN
+            <foreach collection="userIds" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+            </script>
+            """)
+    List<Map<String, Object>> findCitiesByUserIds(@Param("userIds") Collection<Long> userIds);
+
     /**
      * 查询所有招募中的活动（status=0），按创建时间倒序，取最近 limit 条
      * 作为 AI 推荐的候选集
      */
     @Select("""
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.status = 0
             ORDER BY a.created_at DESC
             LIMIT #{limit}
@@ -131,19 +230,14 @@ public interface ActivityMapper extends BaseMapper<Activity> {
     List<ActivityVO> findRecruitingActivities(@Param("limit") int limit);
 
     /**
-     * 根据活动ID列表批量查询活动（包含发布者信息）
+     * 根据活动ID列表批量查询活动（发布者信息由 UserHydrator 回填）
      * 用于 RAG 向量召回后，回查完整的活动业务数据
      */
     @Select("""
             <script>
             SELECT a.*,
-                   u.nickname AS initiator_nickname,
-                   u.avatar_url AS initiator_avatar,
-                   u.credit_score AS initiator_credit_score,
-                   (SELECT COUNT(*) FROM participants p
-                    WHERE p.activity_id = a.activity_id AND p.status = 1) AS current_participants
+                   a.approved_count AS current_participants
             FROM activities a
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE a.activity_id IN
             <foreach collection="ids" item="id" open="(" separator="," close=")">
                 #{id}
@@ -152,6 +246,55 @@ public interface ActivityMapper extends BaseMapper<Activity> {
             """)
     List<ActivityVO> findByIds(@Param("ids") List<Long> ids);
 
+    /**
+     * 按 (updated_at, activity_id) 游标查询水位之后变更过的活动（向量增量同步）
+     * sinceTime 为空时从头遍历全表；只取 until 之前的修改，给进行中的事务留出提交时间
+     */
+    @Select("""
+            <script>
+            SELECT a.*,
+                   a.approved_count AS current_participants
+            FROM activities a
+            WHERE a.updated_at &lt; #{until}
+            <if test="sinceTime != null">
+                AND (a.updated_at &gt; #{sinceTime}
+                     OR (a.updated_at = #{sinceTime} AND a.activity_id &gt; #{sinceId}))
+            </if>
+            ORDER BY a.updated_at ASC, a.activity_id ASC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ActivityVO> findChangedSince(@Param("sinceTime") LocalDateTime sinceTime,
+                                      @Param("sinceId") Long sinceId,
+                                      @Param("until") LocalDateTime until,
+                                      @Param("limit") int limit);
+
+    /**
+     * 按 activity_id 分桶统计招募中活动的条数与校验和（向量对账）
+     * 校验和 = 桶内 CRC32("activityId@yyyyMMddHHmmss") 的异或，与向量元数据中的版本按同样方式计算
+     */
+    @Select("""
+            SELECT activity_id % #{buckets} AS bucket,
+                   COUNT(*) AS total,
+                   BIT_XOR(CRC32(CONCAT(activity_id, '@', DATE_FORMAT(updated_at, '%Y%m%d%H%i%s')))) AS checksum
+            FROM activities
+            WHERE status = 0
+            GROUP BY bucket
+            """)
+    List<Map<String, Object>> sumRecruitingBuckets(@Param("buckets") int buckets);
+
+    /**
+     * 查询某个桶内招募中活动的 ID 与版本（向量对账时仅对不一致的桶调用）
+     */
+    @Select("""
+            SELECT activity_id,
+                   DATE_FORMAT(updated_at, '%Y%m%d%H%i%s') AS version
+            FROM activities
+            WHERE status = 0 AND activity_id % #{buckets} = #{bucket}
+            """)
+    List<Map<String, Object>> findRecruitingVersionsInBucket(@Param("buckets") int buckets,
+                                                             @Param("bucket") int bucket);
+
     /**
      * 查询所有招募中活动的 ID 列表（用于向量同步对比）
      */
@@ -166,16 +309,158 @@ public interface ActivityMapper extends BaseMapper<Activity> {
     @Update("UPDATE activities SET status = #{status}, updated_at = NOW() WHERE activity_id = #{activityId}")
     boolean updateStatus(@Param("activityId") Long activityId, @Param("status") Integer status);
 
+    /**
+     * 原子占用一个名额：仅在未满员时将已通过人数 +1
+     * 判断与自增在同一条 UPDATE 中完成，多实例并发下也不会超员
+     *
+     * @return 1-占用成功，0-已满员
+     */
+    @Update("""
+            UPDATE activities SET approved_count = approved_count + 1
+            WHERE activity_id = #{activityId} AND approved_count < max_participants - 1
+            """)
+    int tryIncrementApprovedCount(@Param("activityId") Long activityId);
+
+    /**
+     * 已通过人数 -1，已为 0 时不更新
+     */
+    @Update("UPDATE activities SET approved_count = approved_count - 1 WHERE activity_id = #{activityId} AND approved_count > 0")
+    int decrementApprovedCount(@Param("activityId") Long activityId);
+
+    /**
+     * 已满员时将招募中的活动标记为已满员
+     *
+     * @return 1-本次完成标记，0-未满员或已被其他请求标记
+     */
+    @Update("""
+            UPDATE activities SET status = 1, updated_at = NOW()
+            WHERE activity_id = #{activityId} AND status = 0 AND approved_count >= max_participants - 1
+            """)
+    int markFullIfReached(@Param("activityId") Long activityId);
+
+    /**
+     * 有空余名额时将已满员的活动恢复为招募中
+     * 已过报名截止时间或已开始的活动不再恢复（由生命周期引擎关闭报名）
+     *
+     * @return 1-本次完成恢复，0-仍满员、活动不处于已满员状态或报名已截止
+     */
+    @Update("""
+            UPDATE activities SET status = 0, updated_at = NOW()
+            WHERE activity_id = #{activityId} AND status = 1 AND approved_count < max_participants - 1
+              AND (registration_end_time IS NULL OR registration_end_time > NOW())
+              AND (start_time IS NULL OR start_time > NOW())
+            """)
+    int reopenIfAvailable(@Param("activityId") Long activityId);
+
+    // ==================== 生命周期流转（ActivityLifecycleEngine） ====================
+
+    /**
+     * 从给定活动中筛出已到报名截止或开始时间、仍在招募中的活动
+     */
+    @Select("""
+            <script>
+            SELECT activity_id FROM activities
+            WHERE activity_id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+              AND status = 0
+              AND (registration_end_time &lt;= #{now} OR start_time &lt;= #{now})
+            </script>
+            """)
+    List<Long> findIdsDueForClose(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 批量关闭报名：招募中 → 已满员（不再出现在广场和推荐中）
+     * 条件与 findIdsDueForClose 相同，时间轮中的过期任务不会误改数据
+     */
+    @Update("""
+            <script>
+            UPDATE activities SET status = 1, updated_at = NOW()
+            WHERE activity_id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+              AND status = 0
+              AND (registration_end_time &lt;= #{now} OR start_time &lt;= #{now})
+            </script>
+            """)
+    int closeRegistration(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 从给定活动中筛出已到结束时间、尚未结束的活动
+     */
+    @Select("""
+            <script>
+            SELECT activity_id FROM activities
+            WHERE activity_id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+              AND status IN (0, 1)
+              AND end_time &lt;= #{now}
+            </script>
+            """)
+    List<Long> findIdsDueForEnd(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 批量结束活动：招募中/已满员 → 活动结束
+     */
+    @Update("""
+            <script>
+            UPDATE activities SET status = 2, updated_at = NOW()
+            WHERE activity_id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+              AND status IN (0, 1)
+              AND end_time &lt;= #{now}
+            </script>
+            """)
+    int markEnded(@Param("ids") Collection<Long> ids, @Param("now") LocalDateTime now);
+
+    /**
+     * 按 participants 表重新校准已通过人数，只更新存在偏差的行
+     *
+     * @return 被修复的活动数量
+     */
+    @Update("""
+            UPDATE activities a
+            LEFT JOIN (
+                SELECT activity_id, COUNT(*) AS cnt
+                FROM participants
+                WHERE status = 1
+                GROUP BY activity_id
+            ) p ON p.activity_id = a.activity_id
+            SET a.approved_count = COALESCE(p.cnt, 0)
+            WHERE a.approved_count <> COALESCE(p.cnt, 0)
+            """)
+    int reconcileApprovedCount();
+
+    /**
+     * 批量合并去重浏览人数（UniqueViewCounter 定期合并，key 为活动ID，value 为 HyperLogLog 估算值）
+     * 只增不减；显式保留 updated_at，避免触发全文检索、生命周期引擎、向量同步的增量处理
+     */
+    @Update("""
+            <script>
+            UPDATE activities
+            SET view_count = GREATEST(view_count, CASE activity_id
+                    <foreach collection="counts" index="id" item="count">WHEN #{id} THEN #{count} </foreach>
+                    ELSE 0 END),
+                updated_at = updated_at
+            WHERE activity_id IN
+            <foreach collection="counts" index="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int mergeViewCounts(@Param("counts") Map<Long, Long> counts);
+
     /**
      * 查询活动群聊中的文本消息（用于 AI 旅行回忆生成）
      * 只取文本消息（msg_type=1），按时间正序排列
      */
     @Select("""
-            SELECT m.message_id, m.sender_id, m.content, m.msg_type, m.created_at,
-                   u.nickname AS sender_nickname,
-                   u.avatar_url AS sender_avatar_url
+            SELECT m.message_id, m.sender_id, m.content, m.msg_type, m.created_at
             FROM chat_messages m
-            LEFT JOIN users u ON m.sender_id = u.user_id
             WHERE m.activity_id = #{activityId} AND m.msg_type = 1
             ORDER BY m.created_at ASC
             LIMIT #{limit}
@@ -23,28 +23,22 @@ import java.util.List;
 public interface ExpenseMapper extends BaseMapper<ActivityExpense> {
 
     /**
-     * 根据活动ID查询所有支出记录（包含付款人信息）
+     * 根据活动ID查询所有支出记录（付款人信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT e.*,
-                   u.nickname AS payer_nickname,
-                   u.avatar_url AS payer_avatar
+            SELECT e.*
             FROM activity_expenses e
-            LEFT JOIN users u ON e.payer_id = u.user_id
             WHERE e.activity_id = #{activityId}
             ORDER BY e.created_at DESC
             """)
     List<ExpenseVO> findByActivityIdWithPayer(@Param("activityId") Long activityId);
 
     /**
-     * 根据ID查询支出详情（包含付款人信息）
+     * 根据ID查询支出详情（付款人信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT e.*,
-                   u.nickname AS payer_nickname,
-                   u.avatar_url AS payer_avatar
+            SELECT e.*
             FROM activity_expenses e
-            LEFT JOIN users u ON e.payer_id = u.user_id
             WHERE e.expense_id = #{expenseId}
             """)
     ExpenseVO findByIdWithPayer(@Param("expenseId") Long expenseId);
@@ -29,14 +29,11 @@ public interface ExpenseSplitMapper extends BaseMapper<ExpenseSplit> {
     boolean settle(@Param("splitId") Long splitId);
 
     /**
-     * 根据支出ID查询所有分摊记录（包含用户信息）
+     * 根据支出ID查询所有分摊记录（用户信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT s.*,
-                   u.nickname,
-                   u.avatar_url
+            SELECT s.*
             FROM expense_splits s
-            LEFT JOIN users u ON s.user_id = u.user_id
             WHERE s.expense_id = #{expenseId}
             ORDER BY s.created_at ASC
             """)
@@ -46,11 +43,8 @@ public interface ExpenseSplitMapper extends BaseMapper<ExpenseSplit> {
      * 查询某用户所有未结清的分摊记录
      */
     @Select("""
-            SELECT s.*,
-                   u.nickname,
-                   u.avatar_url
+            SELECT s.*
             FROM expense_splits s
-            LEFT JOIN users u ON s.user_id = u.user_id
             WHERE s.user_id = #{userId} AND s.is_settled = 0
             ORDER BY s.created_at DESC
             """)
@@ -71,12 +65,9 @@ public interface ExpenseSplitMapper extends BaseMapper<ExpenseSplit> {
      * 查询某活动中所有分摊记录（用于结算汇总计算）
      */
     @Select("""
-            SELECT s.*,
-                   u.nickname,
-                   u.avatar_url
+            SELECT s.*
             FROM expense_splits s
             INNER JOIN activity_expenses e ON s.expense_id = e.expense_id
-            LEFT JOIN users u ON s.user_id = u.user_id
             WHERE e.activity_id = #{activityId}
             ORDER BY s.created_at ASC
             """)
@@ -6,7 +6,10 @@ import com.limengyuan.partner.common.dto.vo.MomentVO;
 import com.limengyuan.partner.common.entity.Moment;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 动态数据访问层 - MyBatis-Plus
@@ -15,7 +18,7 @@ import java.util.List;
  * - insert(entity)       → 插入动态（自动回填 momentId）
  * - selectById(id)       → 根据ID查询
  *
- * 本 Mapper 同时操作 moments、moment_likes、moment_comments 三张表
+ * 本 Mapper 同时操作 moments、moment_likes、moment_comments 三张表（关注时间线另外只读 user_follows）
  */
 @Mapper
 public interface MomentMapper extends BaseMapper<Moment> {
@@ -23,35 +26,48 @@ public interface MomentMapper extends BaseMapper<Moment> {
     // ==================== moments 表查询 ====================
 
     /**
-     * 根据ID查询动态（含发布者信息）
+     * 根据ID查询动态（发布者信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT m.*,
-                   u.nickname  AS user_nickname,
-                   u.avatar_url AS user_avatar,
-                   u.credit_score AS user_credit_score
+            SELECT m.*
             FROM moments m
-            LEFT JOIN users u ON m.user_id = u.user_id
             WHERE m.moment_id = #{momentId} AND m.status = 1
             """)
     MomentVO findByIdWithUser(@Param("momentId") Long momentId);
 
     /**
-     * 分页查询所有公开动态（含发布者信息）
+     * 分页查询所有公开动态（发布者信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT m.*,
-                   u.nickname   AS user_nickname,
-                   u.avatar_url AS user_avatar,
-                   u.credit_score AS user_credit_score
+            SELECT m.*
             FROM moments m
-            LEFT JOIN users u ON m.user_id = u.user_id
             WHERE m.status = 1 AND m.visibility = 0
             ORDER BY m.created_at DESC
             LIMIT #{size} OFFSET #{offset}
             """)
     List<MomentVO> findAllPublicWithUser(@Param("size") int size, @Param("offset") long offset);
 
+    /**
+     * 游标分页查询公开动态（Keyset 分页，按 (created_at, moment_id) 倒序定位）
+     * cursorTime 为 null 表示第一页
+     */
+    @Select("""
+            <script>
+            SELECT m.*
+            FROM moments m
+            WHERE m.status = 1 AND m.visibility = 0
+            <if test="cursorTime != null">
+                AND (m.created_at &lt; #{cursorTime}
+                     OR (m.created_at = #{cursorTime} AND m.moment_id &lt; #{cursorId}))
+            </if>
+            ORDER BY m.created_at DESC, m.moment_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<MomentVO> findAllPublicWithUserByCursor(@Param("cursorTime") LocalDateTime cursorTime,
+                                                 @Param("cursorId") Long cursorId,
+                                                 @Param("limit") int limit);
+
     /**
      * 统计所有公开动态数量
      */
@@ -59,45 +75,172 @@ public interface MomentMapper extends BaseMapper<Moment> {
     long countAllPublic();
 
     /**
-     * 查询指定用户发布的动态列表（含发布者信息）
+     * 查询指定用户发布的动态列表（发布者信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT m.*,
-                   u.nickname   AS user_nickname,
-                   u.avatar_url AS user_avatar,
-                   u.credit_score AS user_credit_score
+            SELECT m.*
             FROM moments m
-            LEFT JOIN users u ON m.user_id = u.user_id
             WHERE m.user_id = #{userId} AND m.status = 1
             ORDER BY m.created_at DESC
             """)
     List<MomentVO> findByUserIdWithUser(@Param("userId") Long userId);
 
+    // ==================== 关注时间线 ====================
+
+    /**
+     * 批量查询动态（关注时间线回查详情，只返回关注者可见的动态；发布者信息由 UserHydrator 回填）
+     */
+    @Select("""
+            <script>
+            SELECT m.*
+            FROM moments m
+            WHERE m.status = 1 AND m.visibility IN (0, 1)
+              AND m.moment_id IN
+            <foreach collection="momentIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    List<MomentVO> findVisibleToFollowersByIds(@Param("momentIds") Collection<Long> momentIds);
+
+    /**
+     * 查询多个作者最新的 limit 条关注者可见动态ID（按动态ID倒序，总数不超过 limit）
+     * cursorId 为 null 表示从最新开始
+     */
+    @Select("""
+            <script>
+            SELECT m.moment_id
+            FROM moments m
+            WHERE m.user_id IN
+            <foreach collection="authorIds" item="a" open="(" separator="," close=")">#{a}</foreach>
+              AND m.status = 1 AND m.visibility IN (0, 1)
+            <if test="cursorId != null">AND m.moment_id &lt; #{cursorId}</if>
+            ORDER BY m.moment_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<Long> findRecentIdsByAuthors(@Param("authorIds") Collection<Long> authorIds,
+                                      @Param("cursorId") Long cursorId,
+                                      @Param("limit") int limit);
+
+    /**
+     * 查询用户关注的所有人（走 uniq_follow 覆盖索引）
+     */
+    @Select("SELECT followee_id FROM user_follows WHERE follower_id = #{userId}")
+    List<Long> findFolloweeIds(@Param("userId") Long userId);
+
+    /**
+     * 查询用户的粉丝，最多 limit 个（推送收件箱用；超过推送上限的作者只需知道数量超限）
+     */
+    @Select("SELECT follower_id FROM user_follows WHERE followee_id = #{userId} LIMIT #{limit}")
+    List<Long> findFollowerIds(@Param("userId") Long userId, @Param("limit") int limit);
+
     // ==================== moments 表更新 ====================
 
     /**
-     * 浏览数 +1
+     * 批量累加点赞数、评论数（MomentCounterBuffer 定期刷写，一条语句更新多行）
+     * 点赞增量可能为负，先转为有符号数再计算，最小为0
      */
-    @Update("UPDATE moments SET view_count = view_count + 1 WHERE moment_id = #{momentId}")
-    void incrementViewCount(@Param("momentId") Long momentId);
+    @Update("""
+            <script>
+            UPDATE moments
+            SET like_count = GREATEST(CAST(like_count AS SIGNED) + CASE moment_id
+                    <foreach collection="deltas" item="d">WHEN #{d.momentId} THEN #{d.likes} </foreach>
+                    ELSE 0 END, 0),
+                comment_count = comment_count + CASE moment_id
+                    <foreach collection="deltas" item="d">WHEN #{d.momentId} THEN #{d.comments} </foreach>
+                    ELSE 0 END
+            WHERE moment_id IN
+            <foreach collection="deltas" item="d" open="(" separator="," close=")">#{d.momentId}</foreach>
+            </script>
+            """)
+    int applyCounterDeltas(@Param("deltas") List<CounterDelta> deltas);
 
     /**
-     * 点赞数 +1
+     * 批量合并去重浏览人数（UniqueViewCounter 定期合并，key 为动态ID，value 为 HyperLogLog 估算值）
+     * 只增不减：浏览记录过期重新累计、或历史按次统计的值更大时保留原值；不改变 updated_at
+     * 切换到去重统计前的动态 view_count 是按请求次数累计的，作为下限保留，去重人数超过后才继续增长
      */
-    @Update("UPDATE moments SET like_count = like_count + 1 WHERE moment_id = #{momentId}")
-    void incrementLikeCount(@Param("momentId") Long momentId);
+    @Update("""
+            <script>
+            UPDATE moments
+            SET view_count = GREATEST(COALESCE(view_count, 0), CASE moment_id
+                    <foreach collection="counts" index="id" item="count">WHEN #{id} THEN #{count} </foreach>
+                    ELSE 0 END),
+                updated_at = updated_at
+            WHERE moment_id IN
+            <foreach collection="counts" index="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    int mergeViewCounts(@Param("counts") Map<Long, Long> counts);
 
     /**
-     * 点赞数 -1（最小为0）
+     * 查询点赞数、评论数与 moment_likes、moment_comments 明细的偏差（计数减明细，只返回有偏差的行）
+     *
+     * @param momentIds 只检查这些动态，为 null 表示全表检查
      */
-    @Update("UPDATE moments SET like_count = GREATEST(like_count - 1, 0) WHERE moment_id = #{momentId}")
-    void decrementLikeCount(@Param("momentId") Long momentId);
+    @Select("""
+            <script>
+            SELECT m.moment_id,
+                   CAST(m.like_count AS SIGNED) - COALESCE(l.cnt, 0)    AS like_drift,
+                   CAST(m.comment_count AS SIGNED) - COALESCE(c.cnt, 0) AS comment_drift
+            FROM moments m
+            LEFT JOIN (
+                SELECT moment_id, COUNT(*) AS cnt
+                FROM moment_likes
+                <if test="momentIds != null">WHERE moment_id IN
+                <foreach collection="momentIds" item="id" open="(" separator="," close=")">#{id}</foreach></if>
+                GROUP BY moment_id
+            ) l ON l.moment_id = m.moment_id
+            LEFT JOIN (
+                SELECT moment_id, COUNT(*) AS cnt
+                FROM moment_comments
+                WHERE status = 1
+                <if test="momentIds != null">AND moment_id IN
+                <foreach collection="momentIds" item="id" open="(" separator="," close=")">#{id}</foreach></if>
+                GROUP BY moment_id
+            ) c ON c.moment_id = m.moment_id
+            WHERE (m.like_count != COALESCE(l.cnt, 0) OR m.comment_count != COALESCE(c.cnt, 0))
+            <if test="momentIds != null">AND m.moment_id IN
+            <foreach collection="momentIds" item="id" open="(" separator="," close=")">#{id}</foreach></if>
+            </script>
+            """)
+    List<CounterDrift> findCounterDrifts(@Param("momentIds") Collection<Long> momentIds);
 
     /**
-     * 评论数 +1
+     * 把点赞数、评论数改回明细数量，仅当当前偏差仍等于传入的偏差时才修改
+     * （偏差已被其他实例修复、或期间有新增量刷写进来的行保持不变）
+     *
+     * @return 被修复的动态数量
      */
-    @Update("UPDATE moments SET comment_count = comment_count + 1 WHERE moment_id = #{momentId}")
-    void incrementCommentCount(@Param("momentId") Long momentId);
+    @Update("""
+            <script>
+            UPDATE moments m
+            LEFT JOIN (
+                SELECT moment_id, COUNT(*) AS cnt
+                FROM moment_likes
+                WHERE moment_id IN
+                <foreach collection="drifts" item="d" open="(" separator="," close=")">#{d.momentId}</foreach>
+                GROUP BY moment_id
+            ) l ON l.moment_id = m.moment_id
+            LEFT JOIN (
+                SELECT moment_id, COUNT(*) AS cnt
+                FROM moment_comments
+                WHERE status = 1 AND moment_id IN
+                <foreach collection="drifts" item="d" open="(" separator="," close=")">#{d.momentId}</foreach>
+                GROUP BY moment_id
+            ) c ON c.moment_id = m.moment_id
+            SET m.like_count    = COALESCE(l.cnt, 0),
+                m.comment_count = COALESCE(c.cnt, 0)
+            WHERE m.moment_id IN
+            <foreach collection="drifts" item="d" open="(" separator="," close=")">#{d.momentId}</foreach>
+              AND CAST(m.like_count AS SIGNED) - COALESCE(l.cnt, 0) = CASE m.moment_id
+                    <foreach collection="drifts" item="d">WHEN #{d.momentId} THEN #{d.likeDrift} </foreach>
+                    END
+              AND CAST(m.comment_count AS SIGNED) - COALESCE(c.cnt, 0) = CASE m.moment_id
+                    <foreach collection="drifts" item="d">WHEN #{d.momentId} THEN #{d.commentDrift} </foreach>
+                    END
+            </script>
+            """)
+    int repairCounterDrifts(@Param("drifts") List<CounterDrift> drifts);
 
     /**
      * 软删除动态（只有发布者本人可以删除）
@@ -109,9 +252,11 @@ public interface MomentMapper extends BaseMapper<Moment> {
 
     /**
      * 插入点赞记录
+     *
+     * @return 1-新增点赞，0-已点赞过（并发重复点赞被 IGNORE）
      */
     @Insert("INSERT IGNORE INTO moment_likes (moment_id, user_id) VALUES (#{momentId}, #{userId})")
-    void insertLike(@Param("momentId") Long momentId, @Param("userId") Long userId);
+    int insertLike(@Param("momentId") Long momentId, @Param("userId") Long userId);
 
     /**
      * 删除点赞记录
@@ -125,6 +270,25 @@ public interface MomentMapper extends BaseMapper<Moment> {
     @Select("SELECT COUNT(*) FROM moment_likes WHERE moment_id = #{momentId} AND user_id = #{userId}")
     Long existsLikeCount(@Param("momentId") Long momentId, @Param("userId") Long userId);
 
+    /**
+     * 查询用户点赞过的全部动态ID（MomentLikeIndex 预热用，走 idx_user_likes）
+     */
+    @Select("SELECT moment_id FROM moment_likes WHERE user_id = #{userId}")
+    List<Long> findLikedMomentIdsByUser(@Param("userId") Long userId);
+
+    /**
+     * 批量查询用户点赞过其中哪些动态（MomentLikeIndex 在 Redis 不可用时的回退）
+     */
+    @Select("""
+            <script>
+            SELECT moment_id FROM moment_likes
+            WHERE user_id = #{userId}
+              AND moment_id IN
+            <foreach collection="momentIds" item="id" open="(" separator="," close=")">#{id}</foreach>
+            </script>
+            """)
+    List<Long> findLikedMomentIds(@Param("userId") Long userId, @Param("momentIds") List<Long> momentIds);
+
     // ==================== moment_comments 表操作 ====================
 
     /**
@@ -138,34 +302,132 @@ public interface MomentMapper extends BaseMapper<Moment> {
     void insertComment(MomentComment momentComment);
 
     /**
-     * 查询某动态的所有一级评论（含评论人信息）
+     * 查询某动态的所有一级评论（评论人信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT c.*,
-                   u.nickname    AS user_nickname,
-                   u.avatar_url  AS user_avatar
+            SELECT c.*
             FROM moment_comments c
-            LEFT JOIN users u ON c.user_id = u.user_id
             WHERE c.moment_id = #{momentId} AND c.parent_id IS NULL AND c.status = 1
-            ORDER BY c.created_at ASC
+            ORDER BY c.created_at ASC, c.comment_id ASC
             """)
     List<MomentCommentVO> findTopCommentsByMomentId(@Param("momentId") Long momentId);
 
     /**
-     * 查询某条一级评论下的所有回复（含评论人和被回复人信息）
+     * 查询某动态下的所有回复（评论人和被回复人信息由 UserHydrator 回填），由业务层按 parent_id 分组挂到一级评论下
+     */
+    @Select("""
+            SELECT c.*
+            FROM moment_comments c
+            WHERE c.moment_id = #{momentId} AND c.parent_id IS NOT NULL AND c.status = 1
+            ORDER BY c.created_at ASC, c.comment_id ASC
+            """)
+    List<MomentCommentVO> findRepliesByMomentId(@Param("momentId") Long momentId);
+
+    /**
+     * 游标分页查询某动态的一级评论（Keyset 分页，按 (created_at, comment_id) 正序定位）
+     * cursorTime 为 null 表示第一页
      */
     @Select("""
-            SELECT c.*,
-                   u.nickname    AS user_nickname,
-                   u.avatar_url  AS user_avatar,
-                   ru.nickname   AS reply_to_nickname
+            <script>
+            SELECT c.*
+            FROM moment_comments c
+            WHERE c.moment_id = #{momentId} AND c.parent_id IS NULL AND c.status = 1
+            <if test="cursorTime != null">
+                AND (c.created_at &gt; #{cursorTime}
+                     OR (c.created_at = #{cursorTime} AND c.comment_id &gt; #{cursorId}))
+            </if>
+            ORDER BY c.created_at ASC, c.comment_id ASC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<MomentCommentVO> findTopCommentsByMomentIdByCursor(@Param("momentId") Long momentId,
+                                                            @Param("cursorTime") LocalDateTime cursorTime,
+                                                            @Param("cursorId") Long cursorId,
+                                                            @Param("limit") int limit);
+
+    /**
+     * 批量查询多条一级评论各自最早的 limit 条回复（窗口函数，一次查询代替按评论循环）
+     * 每行的 reply_count 为该评论的回复总数；结果按 parent_id、回复时间正序排列
+     */
+    @Select("""
+            <script>
+            SELECT t.*
+            FROM (
+                SELECT c.*,
+                       ROW_NUMBER() OVER (PARTITION BY c.parent_id
+                                          ORDER BY c.created_at ASC, c.comment_id ASC) AS rn,
+                       COUNT(*) OVER (PARTITION BY c.parent_id) AS reply_count
+                FROM moment_comments c
+                WHERE c.status = 1
+                  AND c.parent_id IN
+                <foreach collection="parentIds" item="id" open="(" separator="," close=")">
+                    #{id}
+                </foreach>
+            ) t
+            WHERE t.rn &lt;= #{limit}
+            ORDER BY t.parent_id, t.rn
+            </script>
+            """)
+    List<MomentCommentVO> findReplyPreviewsByParentIds(@Param("parentIds") Collection<Long> parentIds,
+                                                       @Param("limit") int limit);
+
+    /**
+     * 游标分页查询某条一级评论下的回复（按 (created_at, comment_id) 正序定位）
+     * cursorTime 为 null 表示第一页
+     */
+    @Select("""
+            <script>
+            SELECT c.*
             FROM moment_comments c
-            LEFT JOIN users u  ON c.user_id      = u.user_id
-            LEFT JOIN users ru ON c.reply_to_id  = ru.user_id
             WHERE c.parent_id = #{parentId} AND c.status = 1
-            ORDER BY c.created_at ASC
+            <if test="cursorTime != null">
+                AND (c.created_at &gt; #{cursorTime}
+                     OR (c.created_at = #{cursorTime} AND c.comment_id &gt; #{cursorId}))
+            </if>
+            ORDER BY c.created_at ASC, c.comment_id ASC
+            LIMIT #{limit}
+            </script>
             """)
-    List<MomentCommentVO> findRepliesByParentId(@Param("parentId") Long parentId);
+    List<MomentCommentVO> findRepliesByParentIdByCursor(@Param("parentId") Long parentId,
+                                                        @Param("cursorTime") LocalDateTime cursorTime,
+                                                        @Param("cursorId") Long cursorId,
+                                                        @Param("limit") int limit);
+
+    /**
+     * 计数增量内部类（用于 applyCounterDeltas 方法的参数传递）
+     */
+    class CounterDelta {
+        private final Long momentId;
+        private final long likes;
+        private final long comments;
+
+        public CounterDelta(Long momentId, long likes, long comments) {
+            this.momentId = momentId;
+            this.likes = likes;
+            this.comments = comments;
+        }
+
+        public Long getMomentId() { return momentId; }
+        public long getLikes() { return likes; }
+        public long getComments() { return comments; }
+    }
+
+    /**
+     * 计数偏差内部类（findCounterDrifts 的查询结果，也作为 repairCounterDrifts 的参数）
+     * 偏差 = 计数 - 明细数量，正数表示计数偏多
+     */
+    class CounterDrift {
+        private Long momentId;
+        private long likeDrift;
+        private long commentDrift;
+
+        public Long getMomentId() { return momentId; }
+        public void setMomentId(Long momentId) { this.momentId = momentId; }
+        public long getLikeDrift() { return likeDrift; }
+        public void setLikeDrift(long likeDrift) { this.likeDrift = likeDrift; }
+        public long getCommentDrift() { return commentDrift; }
+        public void setCommentDrift(long commentDrift) { this.commentDrift = commentDrift; }
+    }
 
     /**
      * 评论参数内部类（用于 insertComment 方法的参数传递）
@@ -9,7 +9,10 @@ import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 import org.apache.ibatis.annotations.Update;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 活动参与记录数据访问层 - MyBatis-Plus
@@ -29,6 +32,19 @@ public interface ParticipantMapper extends BaseMapper<Participant> {
     @Update("UPDATE participants SET status = #{status}, updated_at = NOW() WHERE participant_id = #{participantId}")
     boolean updateStatus(@Param("participantId") Long participantId, @Param("status") Integer status);
 
+    /**
+     * 条件更新参与状态：仅当当前状态为 expectedStatus 时才更新，用于并发下的状态流转
+     *
+     * @return 1-流转成功，0-状态已被其他请求修改
+     */
+    @Update("""
+            UPDATE participants SET status = #{status}, updated_at = NOW()
+            WHERE participant_id = #{participantId} AND status = #{expectedStatus}
+            """)
+    int updateStatusIfMatch(@Param("participantId") Long participantId,
+                            @Param("expectedStatus") Integer expectedStatus,
+                            @Param("status") Integer status);
+
     /**
      * 更新申请留言
      */
@@ -36,32 +52,22 @@ public interface ParticipantMapper extends BaseMapper<Participant> {
     boolean updateApplyMsg(@Param("participantId") Long participantId, @Param("applyMsg") String applyMsg);
 
     /**
-     * 根据活动ID查询所有参与者（带用户信息）
+     * 根据活动ID查询所有参与者（用户信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT p.*,
-                   u.nickname,
-                   u.avatar_url,
-                   u.credit_score,
-                   u.gender
+            SELECT p.*
             FROM participants p
-            LEFT JOIN users u ON p.user_id = u.user_id
             WHERE p.activity_id = #{activityId}
             ORDER BY p.created_at ASC
             """)
     List<ParticipantVO> findByActivityIdWithUser(@Param("activityId") Long activityId);
 
     /**
-     * 根据活动ID查询已通过的参与者（带用户信息）
+     * 根据活动ID查询已通过的参与者（用户信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT p.*,
-                   u.nickname,
-                   u.avatar_url,
-                   u.credit_score,
-                   u.gender
+            SELECT p.*
             FROM participants p
-            LEFT JOIN users u ON p.user_id = u.user_id
             WHERE p.activity_id = #{activityId} AND p.status = 1
             ORDER BY p.created_at ASC
             """)
@@ -78,31 +84,22 @@ public interface ParticipantMapper extends BaseMapper<Participant> {
                    a.location_name,
                    a.start_time,
                    a.initiator_id,
-                   u.nickname      AS initiator_nickname,
-                   u.avatar_url    AS initiator_avatar,
-                   u.credit_score  AS initiator_credit_score,
                    p.status,
                    p.apply_msg,
                    p.created_at
             FROM participants p
             LEFT JOIN activities a ON p.activity_id = a.activity_id
-            LEFT JOIN users u ON a.initiator_id = u.user_id
             WHERE p.user_id = #{userId}
             ORDER BY p.created_at DESC
             """)
     List<MyApplicationVO> findByUserIdWithActivity(@Param("userId") Long userId);
 
     /**
-     * 分页查询活动的参与者（带用户信息）
+     * 分页查询活动的参与者（用户信息由 UserHydrator 回填）
      */
     @Select("""
-            SELECT p.*,
-                   u.nickname,
-                   u.avatar_url,
-                   u.credit_score,
-                   u.gender
+            SELECT p.*
             FROM participants p
-            LEFT JOIN users u ON p.user_id = u.user_id
             WHERE p.activity_id = #{activityId}
             ORDER BY p.created_at ASC
             LIMIT #{limit} OFFSET #{offset}
@@ -110,4 +107,68 @@ public interface ParticipantMapper extends BaseMapper<Participant> {
     List<ParticipantVO> findByActivityIdWithUserPaged(@Param("activityId") Long activityId,
                                                       @Param("offset") int offset,
                                                       @Param("limit") int limit);
+
+    /**
+     * 游标分页查询活动的参与者（Keyset 分页，按 (created_at, participant_id) 正序定位）
+     * cursorTime 为 null 表示第一页
+     */
+    @Select("""
+            <script>
+            SELECT p.*
+            FROM participants p
+            WHERE p.activity_id = #{activityId}
+            <if test="cursorTime != null">
+                AND (p.created_at &gt; #{cursorTime}
+                     OR (p.created_at = #{cursorTime} AND p.participant_id &gt; #{cursorId}))
+            </if>
+            ORDER BY p.created_at ASC, p.participant_id ASC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ParticipantVO> findByActivityIdWithUserByCursor(@Param("activityId") Long activityId,
+                                                         @Param("cursorTime") LocalDateTime cursorTime,
+                                                         @Param("cursorId") Long cursorId,
+                                                         @Param("limit") int limit);
+
+    /**
+     * 批量查询多个活动各自最早的 limit 条申请（窗口函数，一次查询代替按活动循环）
+     * 结果按 activity_id、报名时间正序排列；用户信息由 UserHydrator 回填
+     */
+    @Select("""
+            <script>
+            SELECT t.*
+            FROM (
+                SELECT p.*,
+                       ROW_NUMBER() OVER (PARTITION BY p.activity_id
+                                          ORDER BY p.created_at ASC, p.participant_id ASC) AS rn
+                FROM participants p
+                WHERE p.activity_id IN
+                <foreach collection="activityIds" item="id" open="(" separator="," close=")">
+                    #{id}
+                </foreach>
+            ) t
+            WHERE t.rn &lt;= #{limit}
+            ORDER BY t.activity_id, t.rn
+            </script>
+            """)
+    List<ParticipantVO> findTopByActivityIds(@Param("activityIds") Collection<Long> activityIds,
+                                             @Param("limit") int limit);
+
+    /**
+     * 批量统计多个活动的申请总数
+     *
+     * @return 每行包含 activity_id、total 两列（没有申请的活动不出现）
+     */
+    @Select("""
+            <script>
+            SELECT activity_id, COUNT(*) AS total
+            FROM participants
+            WHERE activity_id IN
+            <foreach collection="activityIds" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+            GROUP BY activity_id
+            </script>
+            """)
+    List<Map<String, Object>> countGroupByActivityIds(@Param("activityIds") Collection<Long> activityIds);
 }
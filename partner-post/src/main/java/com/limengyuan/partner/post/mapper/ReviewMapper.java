@@ -7,7 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
-
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -22,38 +22,26 @@ import java.util.List;
 public interface ReviewMapper extends BaseMapper<Review> {
 
     /**
-     * 查询某个活动下的所有评价（带评价人和被评价人信息）
+     * 查询某个活动下的所有评价（评价人和被评价人信息由 UserHydrator 回填）
      */
     @Select("""
             SELECT r.*,
-                   a.title AS activity_title,
-                   reviewer.nickname AS reviewer_nickname,
-                   reviewer.avatar_url AS reviewer_avatar,
-                   reviewee.nickname AS reviewee_nickname,
-                   reviewee.avatar_url AS reviewee_avatar
+                   a.title AS activity_title
             FROM reviews r
             LEFT JOIN activities a ON r.activity_id = a.activity_id
-            LEFT JOIN users reviewer ON r.reviewer_id = reviewer.user_id
-            LEFT JOIN users reviewee ON r.reviewee_id = reviewee.user_id
             WHERE r.activity_id = #{activityId}
             ORDER BY r.created_at DESC
             """)
     List<ReviewVO> findByActivityId(@Param("activityId") Long activityId);
 
     /**
-     * 分页查询某用户收到的评价（带评价人信息和活动标题）
+     * 分页查询某用户收到的评价（带活动标题，用户信息由 UserHydrator 回填）
      */
     @Select("""
             SELECT r.*,
-                   a.title AS activity_title,
-                   reviewer.nickname AS reviewer_nickname,
-                   reviewer.avatar_url AS reviewer_avatar,
-                   reviewee.nickname AS reviewee_nickname,
-                   reviewee.avatar_url AS reviewee_avatar
+                   a.title AS activity_title
             FROM reviews r
             LEFT JOIN activities a ON r.activity_id = a.activity_id
-            LEFT JOIN users reviewer ON r.reviewer_id = reviewer.user_id
-            LEFT JOIN users reviewee ON r.reviewee_id = reviewee.user_id
             WHERE r.reviewee_id = #{revieweeId}
             ORDER BY r.created_at DESC
             LIMIT #{limit} OFFSET #{offset}
@@ -62,6 +50,30 @@ public interface ReviewMapper extends BaseMapper<Review> {
                                          @Param("offset") int offset,
                                          @Param("limit") int limit);
 
+    /**
+     * 游标分页查询某用户收到的评价（Keyset 分页，按 (created_at, review_id) 倒序定位）
+     * cursorTime 为 null 表示第一页
+     */
+    @Select("""
+            <script>
+            SELECT r.*,
+                   a.title AS activity_title
+            FROM reviews r
+            LEFT JOIN activities a ON r.activity_id = a.activity_id
+            WHERE r.reviewee_id = #{revieweeId}
+            <if test="cursorTime != null">
+                AND (r.created_at &lt; #{cursorTime}
+                     OR (r.created_at = #{cursorTime} AND r.review_id &lt; #{cursorId}))
+            </if>
+            ORDER BY r.created_at DESC, r.review_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<ReviewVO> findByRevieweeIdByCursor(@Param("revieweeId") Long revieweeId,
+                                            @Param("cursorTime") LocalDateTime cursorTime,
+                                            @Param("cursorId") Long cursorId,
+                                            @Param("limit") int limit);
+
     /**
      * 查询某用户的平均评分
      */
@@ -0,0 +1,67 @@
+package com.limengyuan.partner.post.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.limengyuan.partner.common.entity.User;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 用户展示信息数据访问层（只读）
+ *
+ * 仅查询回填 VO 所需的字段，供 UserHydrator 构建和刷新用户快照
+ */
+@Mapper
+public interface UserSnapshotMapper extends BaseMapper<User> {
+
+    /**
+     * 按 user_id 分批全量加载
+     *
+     * @param afterId 上一批最后一个用户ID，首批传 0
+     */
+    @Select("""
+            SELECT user_id, nickname, avatar_url, credit_score, gender, updated_at
+            FROM users
+            WHERE user_id > #{afterId}
+            ORDER BY user_id ASC
+            LIMIT #{limit}
+            """)
+    List<User> findBatchAfter(@Param("afterId") long afterId, @Param("limit") int limit);
+
+    /**
+     * 按 (updated_at, user_id) 游标分页查询 updated_at ≥ since 的用户（增量刷新）
+     *
+     * @param since   首页传回看后的水位，后续页传上一页最后一个用户的 updated_at
+     * @param afterId 首页传 0，后续页传上一页最后一个用户ID
+     */
+    @Select("""
+            SELECT user_id, nickname, avatar_url, credit_score, gender, updated_at
+            FROM users
+            WHERE updated_at > #{since}
+               OR (updated_at = #{since} AND user_id > #{afterId})
+            ORDER BY updated_at ASC, user_id ASC
+            LIMIT #{limit}
+            """)
+    List<User> findUpdatedSince(@Param("since") LocalDateTime since,
+                                @Param("afterId") long afterId,
+                                @Param("limit") int limit);
+
+    /**
+     * 按ID批量查询（快照未命中时回源）
+     */
+    @Select("""
+            <script>
+            SELECT user_id, nickname, avatar_url, credit_score, gender, updated_at
+            FROM users
+            WHERE user_id IN
+            <foreach collection="ids" item="id" open="(" separator="," close=")">
+                #{id}
+            </foreach>
+            </script>
+            """)
+    List<User> findByIds(@Param("ids") Collection<Long> ids);
+}
@@ -0,0 +1,28 @@
+package com.limengyuan.partner.post.recommend;
+
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+
+import java.util.List;
+
+/**
+ * 推荐候选活动排序器
+ *
+ * 输入为召回阶段的候选活动（按召回相关度排列），输出按推荐优先级从高到低排列的结果，每项附带推荐理由。
+ * 默认实现为本地打分的 ScoringActivityRanker，替换时声明另一个 ActivityRanker Bean 并标注 @Primary 即可
+ */
+public interface ActivityRanker {
+
+    /**
+     * 排序器名称（用于日志和离线评估报告）
+     */
+    String name();
+
+    /**
+     * 对候选活动排序
+     *
+     * @param context    用户画像与排序基准时间
+     * @param candidates 候选活动（已回填发起人信息）
+     * @return 排序后的全部候选
+     */
+    List<RankedActivity> rank(RankingContext context, List<ActivityVO> candidates);
+}
@@ -0,0 +1,113 @@
+package com.limengyuan.partner.post.recommend;
+
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.ai.LlmRequest;
+import com.limengyuan.partner.post.service.ActivityRecommendService.AiRecommendation;
+import org.springframework.core.ParameterizedTypeReference;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 大模型排序器：把全部候选交给大模型排序（原线上方案）
+ *
+ * 单次调用需要数秒，线上已改为 ScoringActivityRanker，这里保留用于离线评估对比。
+ * 大模型漏掉的候选按原顺序追加在末尾
+ */
+public class LlmActivityRanker implements ActivityRanker {
+
+    private final LlmGateway llmGateway;
+
+    public LlmActivityRanker(LlmGateway llmGateway) {
+        this.llmGateway = llmGateway;
+    }
+
+    @Override
+    public String name() {
+        return "llm";
+    }
+
+    @Override
+    public List<RankedActivity> rank(RankingContext context, List<ActivityVO> candidates) {
+        String prompt = String.format("""
+                你是一个活动推荐助手。请根据用户的兴趣标签和所在城市，对候选活动按推荐优先级从高到低排序。
+
+                ## 用户信息
+                - 兴趣标签: %s
+                - 所在城市: %s
+
+                ## 候选活动列表
+                %s
+
+                ## 要求
+                1. 返回全部候选活动，按推荐优先级从高到低排列
+                2. 每个活动附带简短的推荐理由（一句话即可）
+                3. activityId 必须是候选活动列表中真实存在的 ID
+                """,
+                context.tags().isEmpty() ? "无" : String.join(",", context.tags()),
+                context.city() != null ? context.city() : "未知",
+                summarize(candidates));
+
+        // 评估需要真实的调用耗时，不走缓存
+        List<AiRecommendation> recommendations = llmGateway.entity(LlmRequest.of("llm-rank", prompt).uncached(),
+                new ParameterizedTypeReference<List<AiRecommendation>>() {});
+
+        Map<Long, ActivityVO> byId = new HashMap<>();
+        candidates.forEach(a -> byId.put(a.getActivityId(), a));
+        Set<Long> seen = new LinkedHashSet<>();
+        List<RankedActivity> ranked = new ArrayList<>(candidates.size());
+        if (recommendations != null) {
+            for (AiRecommendation rec : recommendations) {
+                ActivityVO activity = byId.get(rec.activityId());
+                if (activity != null && seen.add(rec.activityId())) {
+                    ranked.add(new RankedActivity(activity, candidates.size() - ranked.size(), rec.reason()));
+                }
+            }
+        }
+        for (ActivityVO activity : candidates) {
+            if (seen.add(activity.getActivityId())) {
+                ranked.add(new RankedActivity(activity, candidates.size() - ranked.size(), "为你推荐"));
+            }
+        }
+        return ranked;
+    }
+
+    /**
+     * 构建候选活动摘要（给 AI 参考的简化信息）
+     */
+    public static String summarize(List<ActivityVO> candidates) {
+        StringBuilder sb = new StringBuilder();
+        for (ActivityVO activity : candidates) {
+            sb.append(String.format("ID:%d | 标题:%s | 分类:%s | 地点:%s | 时间:%s | 人数:%d/%d | 费用方式:%s\n",
+                    activity.getActivityId(),
+                    activity.getTitle(),
+                    activity.getCategoryIds(),
+                    activity.getLocationName(),
+                    activity.getStartTime() != null ? activity.getStartTime().toString() : "未定",
+                    activity.getCurrentParticipants() != null ? activity.getCurrentParticipants() : 0,
+                    activity.getMaxParticipants() != null ? activity.getMaxParticipants() : 0,
+                    getPaymentTypeText(activity.getPaymentType())
+            ));
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 费用方式文本转换
+     */
+    private static String getPaymentTypeText(Integer paymentType) {
+        if (paymentType == null) return "未知";
+        return switch (paymentType) {
+            case 1 -> "AA制";
+            case 2 -> "发起人请客";
+            case 3 -> "免费";
+            case 4 -> "各付各的";
+            default -> "未知";
+        };
+    }
+}
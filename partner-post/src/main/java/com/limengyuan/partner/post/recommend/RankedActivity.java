@@ -0,0 +1,13 @@
+package com.limengyuan.partner.post.recommend;
+
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+
+/**
+ * 排序结果
+ *
+ * @param activity 活动
+ * @param score    排序得分（越大越靠前，不同排序器之间不可比较）
+ * @param reason   推荐理由
+ */
+public record RankedActivity(ActivityVO activity, double score, String reason) {
+}
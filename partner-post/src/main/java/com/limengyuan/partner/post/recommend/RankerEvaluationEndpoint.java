@@ -0,0 +1,192 @@
+package com.limengyuan.partner.post.recommend;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.service.UserHydrator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 推荐排序离线评估（GET /actuator/rankereval?cases=50&llm=true）
+ *
+ * 以历史报名记录回放：对每条报名，取报名时刻仍可报名的其他活动作为负样本，与用户实际报名的活动一起
+ * 交给各排序器排序（基准时间为报名时间，候选顺序随机打乱），统计正样本的 HitRate@3、MRR、NDCG@10 和排序耗时。
+ * 活动的人数、状态等字段取当前值而非报名当时的值，结果用于排序器之间的相对比较。
+ * 会真实调用大模型，默认不暴露，需要时在 management.endpoints.web.exposure.include 中加入 rankereval
+ */
+@Slf4j
+@Component
+@Endpoint(id = "rankereval")
+public class RankerEvaluationEndpoint {
+
+    private static final int DEFAULT_CASES = 50;
+    /** 每条样本的负样本数 */
+    private static final int NEGATIVES = 19;
+    /** 报名记录回溯天数 */
+    private static final int LOOKBACK_DAYS = 90;
+
+    private final ActivityMapper activityMapper;
+    private final UserHydrator userHydrator;
+    private final ActivityRanker activityRanker;
+    private final LlmGateway llmGateway;
+    private final ObjectMapper objectMapper;
+
+    public RankerEvaluationEndpoint(ActivityMapper activityMapper,
+                                    UserHydrator userHydrator,
+                                    ActivityRanker activityRanker,
+                                    LlmGateway llmGateway,
+                                    ObjectMapper objectMapper) {
+        this.activityMapper = activityMapper;
+        this.userHydrator = userHydrator;
+        this.activityRanker = activityRanker;
+        this.llmGateway = llmGateway;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * 评估报告
+     *
+     * @param cases      样本数
+     * @param candidates 每条样本的平均候选数
+     * @param rankers    各排序器的指标
+     */
+    public record EvaluationReport(int cases, double candidates, List<RankerMetrics> rankers) {
+    }
+
+    /**
+     * 单个排序器的指标
+     *
+     * @param failures 排序失败（如大模型调用异常）的样本数，按未命中计
+     */
+    public record RankerMetrics(String ranker, double hitRateAt3, double mrr, double ndcgAt10,
+                                double p50Millis, double p95Millis, int failures) {
+    }
+
+    private record Case(RankingContext context, Long positiveId, List<ActivityVO> candidates) {
+    }
+
+    @ReadOperation
+    public EvaluationReport evaluate(@Nullable Integer cases, @Nullable Boolean llm) {
+        List<Case> samples = loadCases(cases != null ? cases : DEFAULT_CASES);
+        List<ActivityRanker> rankers = new ArrayList<>();
+        rankers.add(activityRanker);
+        if (llm == null || llm) {
+            rankers.add(new LlmActivityRanker(llmGateway));
+        }
+
+        List<RankerMetrics> metrics = new ArrayList<>();
+        for (ActivityRanker ranker : rankers) {
+            metrics.add(evaluate(ranker, samples));
+            log.info("[推荐评估] {}", metrics.get(metrics.size() - 1));
+        }
+        double avgCandidates = samples.stream().mapToInt(c -> c.candidates().size()).average().orElse(0);
+        return new EvaluationReport(samples.size(), avgCandidates, metrics);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private List<Case> loadCases(int limit) {
+        List<Case> samples = new ArrayList<>();
+        for (Map<String, Object> row : activityMapper.findRecentApplications(
+                LocalDateTime.now().minusDays(LOOKBACK_DAYS), limit)) {
+            Long userId = ((Number) row.get("user_id")).longValue();
+            Long activityId = ((Number) row.get("activity_id")).longValue();
+            LocalDateTime appliedAt = toLocalDateTime(row.get("created_at"));
+            Map<String, Object> userProfile = activityMapper.findUserTagsAndCity(userId);
+            if (userProfile == null || appliedAt == null) {
+                continue;
+            }
+
+            List<ActivityVO> candidates = new ArrayList<>(
+                    activityMapper.findOpenActivitiesAt(appliedAt, userId, activityId, NEGATIVES));
+            if (candidates.isEmpty()) {
+                continue;
+            }
+            candidates.addAll(activityMapper.findByIds(List.of(activityId)));
+            userHydrator.fillActivities(candidates);
+            // 评估时没有召回顺序，固定种子打乱，避免正样本位置泄露
+            Collections.shuffle(candidates, new Random(userId * 31 + activityId));
+            samples.add(new Case(RankingContext.of(userId, userProfile, appliedAt, objectMapper), activityId, candidates));
+        }
+        return samples;
+    }
+
+    private RankerMetrics evaluate(ActivityRanker ranker, List<Case> samples) {
+        double hits = 0;
+        double reciprocalRank = 0;
+        double ndcg = 0;
+        int failures = 0;
+        double[] latencies = new double[samples.size()];
+
+        for (int i = 0; i < samples.size(); i++) {
+            Case sample = samples.get(i);
+            long start = System.nanoTime();
+            List<RankedActivity> ranked;
+            try {
+                ranked = ranker.rank(sample.context(), sample.candidates());
+            } catch (Exception e) {
+                log.warn("[推荐评估] {} 排序失败, userId={}", ranker.name(), sample.context().userId(), e);
+                failures++;
+                latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+                continue;
+            }
+            latencies[i] = (System.nanoTime() - start) / 1_000_000.0;
+
+            int rank = 0;
+            for (int j = 0; j < ranked.size(); j++) {
+                if (sample.positiveId().equals(ranked.get(j).activity().getActivityId())) {
+                    rank = j + 1;
+                    break;
+                }
+            }
+            if (rank == 0) {
+                continue;
+            }
+            if (rank <= 3) {
+                hits++;
+            }
+            reciprocalRank += 1.0 / rank;
+            if (rank <= 10) {
+                ndcg += 1.0 / (Math.log(rank + 1) / Math.log(2));
+            }
+        }
+
+        int n = Math.max(samples.size(), 1);
+        Arrays.sort(latencies);
+        return new RankerMetrics(ranker.name(), hits / n, reciprocalRank / n, ndcg / n,
+                percentile(latencies, 0.5), percentile(latencies, 0.95), failures);
+    }
+
+    private static double percentile(double[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+        return sorted[Math.min(sorted.length - 1, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+    private static LocalDateTime toLocalDateTime(Object value) {
+        if (value instanceof LocalDateTime time) {
+            return time;
+        }
+        if (value instanceof Timestamp timestamp) {
+            return timestamp.toLocalDateTime();
+        }
+        return null;
+    }
+}
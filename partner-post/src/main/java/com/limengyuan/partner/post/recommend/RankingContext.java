@@ -0,0 +1,40 @@
+package com.limengyuan.partner.post.recommend;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 排序上下文
+ *
+ * @param userId 用户ID
+ * @param tags   用户兴趣标签
+ * @param city   用户所在城市（可能为空）
+ * @param now    排序基准时间（线上为当前时间，离线评估时为用户报名的时间）
+ */
+public record RankingContext(Long userId, List<String> tags, String city, LocalDateTime now) {
+
+    /**
+     * 由 ActivityMapper.findUserTagsAndCity 的查询结果构造
+     */
+    public static RankingContext of(Long userId, Map<String, Object> userProfile, LocalDateTime now,
+                                    ObjectMapper objectMapper) {
+        return new RankingContext(userId, parseTags((String) userProfile.get("tags"), objectMapper),
+                (String) userProfile.get("city"), now);
+    }
+
+    private static List<String> parseTags(String tagsJson, ObjectMapper objectMapper) {
+        if (tagsJson == null || tagsJson.isBlank()) {
+            return List.of();
+        }
+        try {
+            List<String> tags = objectMapper.readValue(tagsJson, new TypeReference<List<String>>() {});
+            return tags != null ? tags : List.of();
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.cache.CacheNames;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * 活动变更后失效活动详情缓存
+ *
+ * 监听在事务提交后执行，此时直接失效（evictIfPresent 不会再被事务装饰器延迟），
+ * 失效会同步删除 Redis 中的副本并广播给其他实例
+ */
+@Slf4j
+@Component
+public class ActivityDetailCacheEvictor {
+
+    private final CacheManager cacheManager;
+
+    public ActivityDetailCacheEvictor(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onActivityChanged(ActivityChangedEvent event) {
+        Cache cache = cacheManager.getCache(CacheNames.ACTIVITY_DETAIL);
+        if (cache != null) {
+            cache.evictIfPresent(event.activityId());
+            log.debug("[活动详情缓存] 已失效, activityId={}", event.activityId());
+        }
+    }
+}
@@ -0,0 +1,48 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.cache.CacheNames;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.common.dto.vo.ParticipantVO;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.mapper.ParticipantMapper;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 活动详情加载（含已通过审核的参与者列表）
+ *
+ * 二级缓存中只存活动 VO，不存 Result，错误响应不会被缓存。活动不存在时缓存 null，
+ * 新建活动会发布 ActivityChangedEvent，由 ActivityDetailCacheEvictor 失效对应的 key。
+ * 缓存注解需要经过代理，所以单独成类，由 ActivityService 调用
+ */
+@Component
+public class ActivityDetailLoader {
+
+    private final ActivityMapper activityMapper;
+    private final ParticipantMapper participantMapper;
+    private final UserHydrator userHydrator;
+
+    public ActivityDetailLoader(ActivityMapper activityMapper, ParticipantMapper participantMapper,
+                                UserHydrator userHydrator) {
+        this.activityMapper = activityMapper;
+        this.participantMapper = participantMapper;
+        this.userHydrator = userHydrator;
+    }
+
+    /**
+     * @return 活动详情，活动不存在时返回 null
+     */
+    @Cacheable(cacheNames = CacheNames.ACTIVITY_DETAIL, key = "#activityId", sync = true)
+    public ActivityVO load(Long activityId) {
+        ActivityVO activity = userHydrator.fillActivity(activityMapper.findByIdWithUser(activityId));
+        if (activity == null) {
+            return null;
+        }
+        List<ParticipantVO> participants = participantMapper.findApprovedByActivityIdWithUser(activityId);
+        userHydrator.fillParticipants(participants);
+        activity.setParticipants(participants);
+        return activity;
+    }
+}
@@ -1,23 +1,45 @@
 package com.limengyuan.partner.post.service;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
 import com.limengyuan.partner.common.dto.vo.RecommendedActivityVO;
 import com.limengyuan.partner.common.result.Result;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.post.ai.JsonArrayStreamParser;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.ai.LlmPriority;
+import com.limengyuan.partner.post.ai.LlmRejectedException;
+import com.limengyuan.partner.post.ai.LlmRequest;
+import com.limengyuan.partner.post.ai.SseEvents;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.recommend.ActivityRanker;
+import com.limengyuan.partner.post.recommend.LlmActivityRanker;
+import com.limengyuan.partner.post.recommend.RankedActivity;
+import com.limengyuan.partner.post.recommend.RankingContext;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.ParameterizedTypeReference;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import java.util.stream.Collectors;
 
 /**
  * AI 活动推荐服务 - 基于 DeepSeek + Spring AI 实现个性化推荐
+ *
+ * 向量召回候选 → ActivityRanker 本地排序 → 大模型为前 3 名生成推荐理由（限时，超时不影响返回）
  */
 @Slf4j
 @Service
@@ -25,27 +47,50 @@ public class ActivityRecommendService {
 
     /** 候选活动最大数量 */
     private static final int CANDIDATE_LIMIT = 20;
-    /** 缓存 key 前缀 */
-    private static final String CACHE_KEY_PREFIX = "recommend:user:";
-    /** 缓存过期时间：30 分钟 */
-    private static final Duration CACHE_TTL = Duration.ofMinutes(30);
+    /** 返回的推荐数量 */
+    private static final int RESULT_LIMIT = 10;
+    /** 由大模型生成推荐理由的数量 */
+    private static final int REASON_LIMIT = 3;
+    /** 流式接口等待推荐理由的最长时间（列表已先行推送，可以比同步接口等得更久） */
+    private static final Duration STREAM_REASON_TIMEOUT = Duration.ofSeconds(15);
+    /**
+     * 离线预计算等待推荐理由的最长时间（后台请求需要排队，没有用户在等）
+     * 必须小于 RecommendationCache 的计算锁过期时间（60s），否则锁过期后其他实例会重复计算同一用户
+     */
+    private static final Duration BACKGROUND_REASON_TIMEOUT = Duration.ofSeconds(45);
 
-    private final ChatClient chatClient;
+    private final LlmGateway llmGateway;
     private final ActivityMapper activityMapper;
-    private final ObjectMapper objectMapper;
-    private final StringRedisTemplate redisTemplate;
+    private final RecommendationCache recommendationCache;
     private final ActivityVectorService activityVectorService;
+    private final UserHydrator userHydrator;
+    private final ActivityRanker activityRanker;
+    private final ObjectMapper objectMapper;
+    /** 生成推荐理由的最长等待时间 */
+    private final Duration reasonTimeout;
+    private final ExecutorService llmExecutor = Executors.newVirtualThreadPerTaskExecutor();
 
-    public ActivityRecommendService(ChatClient.Builder chatClientBuilder,
+    public ActivityRecommendService(LlmGateway llmGateway,
                                      ActivityMapper activityMapper,
+                                     RecommendationCache recommendationCache,
+                                     ActivityVectorService activityVectorService,
+                                     UserHydrator userHydrator,
+                                     ActivityRanker activityRanker,
                                      ObjectMapper objectMapper,
-                                     StringRedisTemplate redisTemplate,
-                                     ActivityVectorService activityVectorService) {
-        this.chatClient = chatClientBuilder.build();
+                                     @Value("${partner.recommend.reason-timeout:2s}") Duration reasonTimeout) {
+        this.llmGateway = llmGateway;
         this.activityMapper = activityMapper;
-        this.objectMapper = objectMapper;
-        this.redisTemplate = redisTemplate;
+        this.recommendationCache = recommendationCache;
         this.activityVectorService = activityVectorService;
+        this.userHydrator = userHydrator;
+        this.activityRanker = activityRanker;
+        this.objectMapper = objectMapper;
+        this.reasonTimeout = reasonTimeout;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        llmExecutor.shutdownNow();
     }
 
     /**
@@ -55,141 +100,231 @@ public class ActivityRecommendService {
      * @return 推荐活动列表（包含推荐理由）
      */
     public Result<List<RecommendedActivityVO>> getRecommendations(Long userId) {
-        // 1. 先查 Redis 缓存
-        String cacheKey = CACHE_KEY_PREFIX + userId;
-        try {
-            String cached = redisTemplate.opsForValue().get(cacheKey);
+        // 走推荐缓存：新鲜直接返回，过期先返回旧结果再后台刷新，同一用户只会有一次计算
+        return recommendationCache.get(userId, () -> computeRecommendations(userId, LlmPriority.INTERACTIVE));
+    }
+
+    /**
+     * 预计算推荐结果并写入缓存（供离线预计算任务调用），大模型调用以后台优先级排队
+     *
+     * @return 是否实际执行了计算（结果仍新鲜或其他实例正在计算时跳过）
+     */
+    public boolean precompute(Long userId) {
+        return recommendationCache.refresh(userId, () -> computeRecommendations(userId, LlmPriority.BACKGROUND));
+    }
+
+    /**
+     * 获取 AI 推荐的活动列表（流式）
+     *
+     * 缓存新鲜时直接推送缓存结果；否则先推送本地排序结果（推荐理由来自排序器），
+     * 随后大模型每生成一条推荐理由就推送一次更新后的完整列表，全部结束后写入缓存。
+     * 每次推送都是 result 事件，data 为完整的推荐列表
+     */
+    public Flux<ServerSentEvent<Object>> streamRecommendations(Long userId) {
+        return Flux.defer(() -> {
+            List<RecommendedActivityVO> cached = recommendationCache.getIfFresh(userId);
             if (cached != null) {
-                log.info("[AI推荐] 命中缓存, userId={}", userId);
-                List<RecommendedActivityVO> cachedResult = objectMapper.readValue(
-                        cached, new TypeReference<List<RecommendedActivityVO>>() {});
-                return Result.success(cachedResult);
+                return Flux.just(SseEvents.result(cached), SseEvents.done());
             }
-        } catch (Exception e) {
-            log.warn("[AI推荐] 读取缓存失败, 将重新调用AI, userId={}", userId, e);
+
+            Ranking ranking = rank(userId);
+            if (ranking == null) {
+                return Flux.just(SseEvents.error("用户不存在"));
+            }
+            List<RankedActivity> ranked = ranking.ranked();
+            if (ranked.isEmpty()) {
+                return Flux.just(SseEvents.result(Collections.emptyList()), SseEvents.done());
+            }
+
+            List<ActivityVO> top = ranked.stream().limit(REASON_LIMIT).map(RankedActivity::activity).toList();
+            Set<Long> topIds = top.stream().map(ActivityVO::getActivityId).collect(Collectors.toSet());
+            Map<Long, String> aiReasons = new HashMap<>();
+            JsonArrayStreamParser parser = new JsonArrayStreamParser();
+            // 流式调用不会自动追加 JSON Schema 约束，需要手动拼接
+            String prompt = buildPrompt(ranking.userTags(), ranking.userCity(), LlmActivityRanker.summarize(top))
+                    + "\n" + LlmGateway.formatOf(new ParameterizedTypeReference<List<AiRecommendation>>() {});
+
+            Flux<ServerSentEvent<Object>> updates = llmGateway.stream(LlmRequest.of("recommend-reason", prompt))
+                    .concatMapIterable(parser::feed)
+                    .mapNotNull(json -> {
+                        AiRecommendation rec = parseRecommendation(json);
+                        if (rec == null || !topIds.contains(rec.activityId())
+                                || rec.reason() == null || rec.reason().isBlank()) {
+                            return null;
+                        }
+                        aiReasons.put(rec.activityId(), rec.reason());
+                        return SseEvents.result(toRecommendations(ranked, aiReasons));
+                    })
+                    .take(STREAM_REASON_TIMEOUT)
+                    .onErrorResume(e -> {
+                        if (e instanceof LlmRejectedException) {
+                            log.warn("[AI推荐] 大模型调用被准入控制拒绝，使用排序器理由, userId={}", userId);
+                            return Flux.empty();
+                        }
+                        log.error("[AI推荐] 流式调用 DeepSeek API 失败，使用排序器理由, userId={}", userId, e);
+                        return Flux.empty();
+                    });
+
+            return Flux.just(SseEvents.result(toRecommendations(ranked, Map.of())))
+                    .concatWith(updates)
+                    .concatWith(Mono.fromCallable(() -> {
+                        recommendationCache.put(userId, toRecommendations(ranked, aiReasons));
+                        return SseEvents.done();
+                    }));
+        }).subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    log.error("[AI推荐] 流式推荐失败, userId={}", userId, e);
+                    return Flux.just(SseEvents.error("AI 推荐服务暂时不可用，请稍后再试"));
+                });
+    }
+
+    /**
+     * 计算推荐结果（向量召回 + 本地排序 + 大模型生成推荐理由），由 RecommendationCache 负责缓存
+     */
+    private Result<List<RecommendedActivityVO>> computeRecommendations(Long userId, LlmPriority priority) {
+        Ranking ranking = rank(userId);
+        if (ranking == null) {
+            return Result.error("用户不存在");
         }
+        if (ranking.ranked().isEmpty()) {
+            return Result.success("暂无可推荐的活动", Collections.emptyList());
+        }
+
+        // 大模型只为前几名生成推荐理由，超时则使用排序器给出的理由
+        Map<Long, String> aiReasons = generateReasons(userId, ranking.userTags(), ranking.userCity(),
+                ranking.ranked().stream().limit(REASON_LIMIT).map(RankedActivity::activity).toList(), priority);
+        return Result.success(toRecommendations(ranking.ranked(), aiReasons));
+    }
 
-        // 2. 获取用户画像信息
+    /**
+     * 召回与排序结果
+     *
+     * @param ranked 排序后的前 RESULT_LIMIT 个活动，没有候选时为空
+     */
+    private record Ranking(String userTags, String userCity, List<RankedActivity> ranked) {
+    }
+
+    /**
+     * 向量召回候选并本地排序（不调用大模型）
+     *
+     * @return 排序结果，用户不存在时返回 null
+     */
+    private Ranking rank(Long userId) {
+        // 1. 获取用户画像信息
         Map<String, Object> userProfile = activityMapper.findUserTagsAndCity(userId);
         if (userProfile == null) {
-            return Result.error("用户不存在");
+            return null;
         }
 
         String userTags = (String) userProfile.get("tags");
         String userCity = (String) userProfile.get("city");
 
-        // 3. 通过 Milvus 向量相似度搜索，召回与用户画像最匹配的候选活动
+        // 2. 通过向量相似度搜索，召回与用户画像最匹配的候选活动
+        //    状态、开始时间、城市在向量库检索阶段过滤，召回结果都是有效候选，只需一次回表
         String userProfileText = String.format("兴趣:%s 城市:%s",
                 userTags != null ? userTags : "无",
                 userCity != null ? userCity : "未知");
-        List<Long> candidateIds = activityVectorService.searchSimilar(userProfileText, CANDIDATE_LIMIT);
+        List<Long> candidateIds = activityVectorService.searchSimilar(userProfileText, CANDIDATE_LIMIT,
+                ActivityVectorService.VectorFilter.recruiting().withCity(userCity));
 
-        List<ActivityVO> candidates;
+        List<ActivityVO> candidates = Collections.emptyList();
         if (candidateIds != null && !candidateIds.isEmpty()) {
-            // 向量召回成功，回 MySQL 查完整活动信息
-            List<ActivityVO> rawCandidates = activityMapper.findByIds(candidateIds);
-            
-            // 过滤掉已经在 MySQL 中变为非招募状态的脏数据活动（保障实效性）
-            candidates = rawCandidates.stream()
+            // 回 MySQL 查完整活动信息；向量元数据与数据库之间仍有同步延迟，按状态做一次兜底校验
+            // 保持召回顺序，排序器会参考召回相关度
+            Map<Long, Integer> recallOrder = new HashMap<>();
+            for (int i = 0; i < candidateIds.size(); i++) {
+                recallOrder.putIfAbsent(candidateIds.get(i), i);
+            }
+            candidates = activityMapper.findByIds(candidateIds).stream()
                     .filter(a -> a.getStatus() != null && a.getStatus() == 0)
+                    .sorted(Comparator.comparingInt(a -> recallOrder.getOrDefault(a.getActivityId(), Integer.MAX_VALUE)))
                     .collect(Collectors.toList());
-                    
-            log.info("[AI推荐] 向量召回成功, userId={}, 原始召回={}, 过滤后有效={}", 
-                    userId, rawCandidates.size(), candidates.size());
-
-            if (candidates.isEmpty()) {
-                // 召回的内容全都是过期活动的情况，触发兜底
-                log.warn("[AI推荐] 向量召回活动已全部过期, 回退到SQL查询, userId={}", userId);
-                candidates = activityMapper.findRecruitingActivities(CANDIDATE_LIMIT);
-            }
-        } else {
-            // 向量召回为空时，回退到 SQL 查询作为兜底
+            log.info("[AI推荐] 向量召回成功, userId={}, 召回={}, 有效={}",
+                    userId, candidateIds.size(), candidates.size());
+        }
+        if (candidates.isEmpty()) {
+            // 向量库不可用或没有符合条件的活动时，回退到 SQL 查询作为兜底
             log.warn("[AI推荐] 向量召回为空, 回退到SQL查询, userId={}", userId);
             candidates = activityMapper.findRecruitingActivities(CANDIDATE_LIMIT);
         }
 
         if (candidates == null || candidates.isEmpty()) {
-            return Result.success("暂无可推荐的活动", Collections.emptyList());
+            return new Ranking(userTags, userCity, Collections.emptyList());
         }
+        userHydrator.fillActivities(candidates);
 
-        // 4. 构建候选活动摘要（给 AI 看的简化信息）
-        String activitiesSummary = buildActivitiesSummary(candidates);
-
-        // 5. 构造 Prompt
-        String prompt = buildPrompt(userTags, userCity, activitiesSummary);
-
-        // 6. 调用 DeepSeek AI，使用 Structured Output 自动解析为 Java 对象
-        List<AiRecommendation> recommendations;
-        try {
-            recommendations = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .entity(new ParameterizedTypeReference<List<AiRecommendation>>() {});
-            log.info("[AI推荐] 用户ID={}, AI返回推荐数量: {}", userId,
-                    recommendations != null ? recommendations.size() : 0);
-        } catch (Exception e) {
-            log.error("[AI推荐] 调用 DeepSeek API 失败, userId={}", userId, e);
-            return Result.error("AI 推荐服务暂时不可用，请稍后再试");
-        }
-
-        // 7. 将 AI 推荐结果与候选活动匹配，组装最终列表
-        Map<Long, ActivityVO> activityMap = candidates.stream()
-                .collect(Collectors.toMap(ActivityVO::getActivityId, a -> a));
-
-        List<RecommendedActivityVO> result = new ArrayList<>();
-        if (recommendations != null) {
-            for (AiRecommendation rec : recommendations) {
-                ActivityVO activity = activityMap.get(rec.activityId());
-                if (activity != null) {
-                    result.add(RecommendedActivityVO.builder()
-                            .activity(activity)
-                            .reason(rec.reason())
-                            .build());
-                }
-            }
+        // 3. 本地打分排序，毫秒内完成
+        RankingContext context = RankingContext.of(userId, userProfile, LocalDateTime.now(), objectMapper);
+        List<RankedActivity> ranked = activityRanker.rank(context, candidates);
+        if (ranked.size() > RESULT_LIMIT) {
+            ranked = ranked.subList(0, RESULT_LIMIT);
         }
+        return new Ranking(userTags, userCity, ranked);
+    }
 
-        // 如果 AI 返回为空，兜底返回前5个候选活动
-        if (result.isEmpty()) {
-            result = candidates.stream()
-                    .limit(5)
-                    .map(a -> RecommendedActivityVO.builder()
-                            .activity(a)
-                            .reason("为你推荐")
-                            .build())
-                    .collect(Collectors.toList());
-        }
+    private List<RecommendedActivityVO> toRecommendations(List<RankedActivity> ranked, Map<Long, String> aiReasons) {
+        return ranked.stream()
+                .map(r -> RecommendedActivityVO.builder()
+                        .activity(r.activity())
+                        .reason(aiReasons.getOrDefault(r.activity().getActivityId(), r.reason()))
+                        .build())
+                .collect(Collectors.toList());
+    }
 
-        // 8. 将结果写入 Redis 缓存（30 分钟过期）
+    private AiRecommendation parseRecommendation(String json) {
         try {
-            String json = objectMapper.writeValueAsString(result);
-            redisTemplate.opsForValue().set(cacheKey, json, CACHE_TTL);
-            log.info("[AI推荐] 缓存已写入, userId={}, TTL=30min", userId);
+            return objectMapper.readValue(json, AiRecommendation.class);
         } catch (Exception e) {
-            log.warn("[AI推荐] 写入缓存失败, userId={}", userId, e);
+            log.warn("[AI推荐] 推荐理由解析失败: {}", json);
+            return null;
         }
-
-        return Result.success(result);
     }
 
     /**
-     * 构建候选活动摘要（给 AI 参考的简化信息）
+     * 调用 DeepSeek 为排序靠前的活动生成推荐理由，超过 reasonTimeout（后台调用为 BACKGROUND_REASON_TIMEOUT）未返回则放弃
+     *
+     * @return 活动ID → 推荐理由（失败或超时返回空 Map）
      */
-    private String buildActivitiesSummary(List<ActivityVO> candidates) {
-        StringBuilder sb = new StringBuilder();
-        for (ActivityVO activity : candidates) {
-            sb.append(String.format("ID:%d | 标题:%s | 分类:%s | 地点:%s | 时间:%s | 人数:%d/%d | 费用方式:%s\n",
-                    activity.getActivityId(),
-                    activity.getTitle(),
-                    activity.getCategoryIds(),
-                    activity.getLocationName(),
-                    activity.getStartTime() != null ? activity.getStartTime().toString() : "未定",
-                    activity.getCurrentParticipants() != null ? activity.getCurrentParticipants() : 0,
-                    activity.getMaxParticipants() != null ? activity.getMaxParticipants() : 0,
-                    getPaymentTypeText(activity.getPaymentType())
-            ));
+    private Map<Long, String> generateReasons(Long userId, String userTags, String userCity, List<ActivityVO> top,
+                                              LlmPriority priority) {
+        if (top.isEmpty()) {
+            return Map.of();
+        }
+        String prompt = buildPrompt(userTags, userCity, LlmActivityRanker.summarize(top));
+        // 用 submit 而不是 CompletableFuture：超时后 cancel(true) 要能中断调用线程，
+        // 仍在排队的请求放弃排队，已获得名额的调用尽快结束并归还名额
+        Future<List<AiRecommendation>> future = llmExecutor.submit(() -> llmGateway.entity(
+                priority == LlmPriority.BACKGROUND
+                        ? LlmRequest.of("recommend-reason", prompt).background()
+                        : LlmRequest.of("recommend-reason", prompt),
+                new ParameterizedTypeReference<List<AiRecommendation>>() {}));
+        Duration timeout = priority == LlmPriority.BACKGROUND ? BACKGROUND_REASON_TIMEOUT : reasonTimeout;
+        try {
+            List<AiRecommendation> recommendations = future.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+            Map<Long, String> reasons = new HashMap<>();
+            if (recommendations != null) {
+                for (AiRecommendation rec : recommendations) {
+                    if (rec.activityId() != null && rec.reason() != null && !rec.reason().isBlank()) {
+                        reasons.put(rec.activityId(), rec.reason());
+                    }
+                }
+            }
+            return reasons;
+        } catch (TimeoutException e) {
+            future.cancel(true);
+            log.warn("[AI推荐] 生成推荐理由超时（{}ms），使用排序器理由, userId={}", timeout.toMillis(), userId);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof LlmRejectedException) {
+                log.warn("[AI推荐] 大模型调用被准入控制拒绝，使用排序器理由, userId={}", userId);
+            } else {
+                log.error("[AI推荐] 调用 DeepSeek API 失败，使用排序器理由, userId={}", userId, e.getCause());
+            }
+        } catch (Exception e) {
+            log.error("[AI推荐] 调用 DeepSeek API 失败，使用排序器理由, userId={}", userId, e);
         }
-        return sb.toString();
+        return Map.of();
     }
 
     /**
@@ -199,20 +334,18 @@ public class ActivityRecommendService {
         // Structured Output 会自动在 Prompt 中追加 JSON Schema 约束，
         // 因此不需要手动写 JSON 格式说明
         return String.format("""
-                你是一个活动推荐助手。请根据用户的兴趣标签和所在城市，从候选活动中推荐最合适的活动。
+                你是一个活动推荐助手。以下活动已按匹配度为用户排好序，请根据用户的兴趣标签和所在城市，为每个活动写推荐理由。
                 
                 ## 用户信息
                 - 兴趣标签: %s
                 - 所在城市: %s
                 
-                ## 候选活动列表
+                ## 活动列表
                 %s
                 
                 ## 要求
-                1. 从候选活动中选出最适合该用户的 3 个活动
-                2. 按推荐优先级从高到低排列
-                3. 每个推荐附带简短的推荐理由（一句话即可）
-                4. activityId 必须是候选活动列表中真实存在的 ID
+                1. 每个活动附带简短的推荐理由（一句话即可）
+                2. activityId 必须是活动列表中真实存在的 ID
                 """,
                 userTags != null ? userTags : "无",
                 userCity != null ? userCity : "未知",
@@ -228,18 +361,4 @@ public class ActivityRecommendService {
      * @param reason     推荐理由
      */
     public record AiRecommendation(Long activityId, String reason) {}
-
-    /**
-     * 费用方式文本转换
-     */
-    private String getPaymentTypeText(Integer paymentType) {
-        if (paymentType == null) return "未知";
-        return switch (paymentType) {
-            case 1 -> "AA制";
-            case 2 -> "发起人请客";
-            case 3 -> "免费";
-            case 4 -> "各付各的";
-            default -> "未知";
-        };
-    }
 }
@@ -4,16 +4,28 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
 import com.limengyuan.partner.common.dto.request.CreateActivityRequest;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
-import com.limengyuan.partner.common.dto.vo.ParticipantVO;
 import com.limengyuan.partner.common.entity.Activity;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.search.AbstractActivitySearchIndex;
+import com.limengyuan.partner.common.search.InvertedIndex;
+import com.limengyuan.partner.common.util.CursorHelper;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
+import com.limengyuan.partner.post.index.ActivityFacetIndex;
+import com.limengyuan.partner.post.index.ActivityGeoIndex;
+import com.limengyuan.partner.post.index.ActivitySearchIndex;
+import com.limengyuan.partner.post.index.ActivityFacetQuery;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
-import com.limengyuan.partner.post.mapper.ParticipantMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 活动服务层 - 封装业务逻辑
@@ -30,16 +42,28 @@ public class ActivityService {
     private static final int STATUS_RECRUITING = 0;
 
     private final ActivityMapper activityMapper;
-    private final ParticipantMapper participantMapper;
     private final ObjectMapper objectMapper;
     private final ActivityVectorService activityVectorService;
+    private final ActivityFacetIndex activityFacetIndex;
+    private final ActivityGeoIndex activityGeoIndex;
+    private final ActivitySearchIndex activitySearchIndex;
+    private final ApplicationEventPublisher eventPublisher;
+    private final UserHydrator userHydrator;
+    private final ActivityDetailLoader activityDetailLoader;
 
-    public ActivityService(ActivityMapper activityMapper, ParticipantMapper participantMapper,
-            ObjectMapper objectMapper, ActivityVectorService activityVectorService) {
+    public ActivityService(ActivityMapper activityMapper, ObjectMapper objectMapper, ActivityVectorService activityVectorService,
+            ActivityFacetIndex activityFacetIndex, ActivityGeoIndex activityGeoIndex,
+            ActivitySearchIndex activitySearchIndex, ApplicationEventPublisher eventPublisher,
+            UserHydrator userHydrator, ActivityDetailLoader activityDetailLoader) {
         this.activityMapper = activityMapper;
-        this.participantMapper = participantMapper;
         this.objectMapper = objectMapper;
         this.activityVectorService = activityVectorService;
+        this.activityFacetIndex = activityFacetIndex;
+        this.activityGeoIndex = activityGeoIndex;
+        this.activitySearchIndex = activitySearchIndex;
+        this.eventPublisher = eventPublisher;
+        this.userHydrator = userHydrator;
+        this.activityDetailLoader = activityDetailLoader;
     }
 
     /**
@@ -90,10 +114,11 @@ public class ActivityService {
         }
 
         // 4. 查询并返回完整的 ActivityVO（包含发起人信息）
-        ActivityVO created = activityMapper.findByIdWithUser(activity.getActivityId());
+        ActivityVO created = userHydrator.fillActivity(activityMapper.findByIdWithUser(activity.getActivityId()));
         if (created != null) {
             // 5. 将新活动写入 Milvus 向量索引（异步容错，失败不影响业务）
             activityVectorService.addActivity(created);
+            eventPublisher.publishEvent(new ActivityChangedEvent(activity.getActivityId()));
             return Result.success("发布成功", created);
         }
         return Result.error("活动创建成功但查询失败");
@@ -101,15 +126,14 @@ public class ActivityService {
 
     /**
      * 获取活动详情（包含已通过审核的参与者列表）
+     * 详情经 ActivityDetailLoader 进入二级缓存，参与者审核/退出、活动状态变化时由 ActivityDetailCacheEvictor 失效，
+     * 管理员下架/恢复时由管理服务失效
      */
     public Result<ActivityVO> getActivity(Long activityId) {
-        ActivityVO activity = activityMapper.findByIdWithUser(activityId);
+        ActivityVO activity = activityDetailLoader.load(activityId);
         if (activity == null) {
             return Result.error("活动不存在");
         }
-        // 查询已通过审核的参与者列表
-        List<ParticipantVO> participants = participantMapper.findApprovedByActivityIdWithUser(activityId);
-        activity.setParticipants(participants);
         return Result.success(activity);
     }
 
@@ -118,6 +142,7 @@ public class ActivityService {
      */
     public Result<List<ActivityVO>> getActivitiesByUser(Long userId) {
         List<ActivityVO> activities = activityMapper.findByInitiatorIdWithUser(userId);
+        userHydrator.fillActivities(activities);
         return Result.success(activities);
     }
 
@@ -125,6 +150,11 @@ public class ActivityService {
      * 分页获取所有活动列表，支持按分类筛选
      */
     public Result<PageResult<ActivityVO>> getAllActivities(int page, int size, Integer categoryId) {
+        // 按分类筛选优先走内存位图索引，避免 JSON_CONTAINS 全表扫描
+        if (categoryId != null && activityFacetIndex.isReady()) {
+            return filterActivities(ActivityFacetQuery.builder().categoryIds(List.of(categoryId)).build(), page, size);
+        }
+
         int offset = page * size;
         List<ActivityVO> activities;
         long total;
@@ -136,7 +166,116 @@ public class ActivityService {
             activities = activityMapper.findAllWithUser(size, offset);
             total = activityMapper.countAll();
         }
+        userHydrator.fillActivities(activities);
 
         return Result.success(PageResult.of(activities, total, page, size));
     }
+
+    /**
+     * 游标分页获取活动列表，支持按分类筛选
+     * 深翻页时延迟不随页码增长，适合广场无限滚动场景
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<ActivityVO>> getActivitiesByCursor(String cursor, int size, Integer categoryId) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<ActivityVO> rows = activityMapper.findAllWithUserByCursor(categoryId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        userHydrator.fillActivities(rows);
+        return Result.success(CursorPage.of(rows, size,
+                a -> CursorHelper.encode(a.getCreatedAt(), a.getActivityId())));
+    }
+
+    /**
+     * 多维筛选招募中的活动（分类、费用方式、开始日期区间），按发布时间倒序分页
+     * 筛选与计数在内存位图索引中完成，MySQL 只按 ID 回查本页详情
+     */
+    @Transactional(readOnly = true)
+    public Result<PageResult<ActivityVO>> filterActivities(ActivityFacetQuery query, int page, int size) {
+        if (!activityFacetIndex.isReady()) {
+            return Result.error("筛选服务初始化中，请稍后再试");
+        }
+
+        ActivityFacetIndex.Page result = activityFacetIndex.query(query, page * size, size);
+        return Result.success(PageResult.of(findByIdsInOrder(result.ids()), result.total(), page, size));
+    }
+
+    /**
+     * 查询附近招募中的活动，按距离由近到远游标分页
+     *
+     * @param radiusKm 搜索半径（公里）
+     * @param cursor   上一页返回的 nextCursor，为空表示第一页
+     */
+    @Transactional(readOnly = true)
+    public Result<CursorPage<ActivityVO>> getNearbyActivities(double lat, double lng, double radiusKm,
+                                                              String cursor, int size) {
+        if (!activityGeoIndex.isReady()) {
+            return Result.error("附近搜索服务初始化中，请稍后再试");
+        }
+
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        // 索引可能滞后于数据库（活动已删除或已结束），回查后剔除这类活动；
+        // 剔除后不足 size + 1 条时从索引继续往后取，保证 hasMore 与本页条数按回查后的结果计算
+        Long afterDistance = c != null ? c.key() : null;
+        Long afterId = c != null ? c.id() : null;
+        Map<Long, Long> distances = new HashMap<>();
+        List<ActivityVO> rows = new ArrayList<>();
+        while (true) {
+            List<ActivityGeoIndex.Hit> hits = activityGeoIndex.nearby(lat, lng, radiusKm,
+                    afterDistance, afterId, size + 1);
+            for (ActivityGeoIndex.Hit hit : hits) {
+                distances.put(hit.activityId(), hit.distanceMeters());
+            }
+            for (ActivityVO row : findByIdsInOrder(hits.stream().map(ActivityGeoIndex.Hit::activityId).toList())) {
+                if (row.getStatus() != null && row.getStatus() == STATUS_RECRUITING) {
+                    row.setDistanceKm(distances.get(row.getActivityId()) / 1000.0);
+                    rows.add(row);
+                }
+            }
+            if (rows.size() > size || hits.size() <= size) {
+                break;
+            }
+            ActivityGeoIndex.Hit last = hits.get(hits.size() - 1);
+            afterDistance = last.distanceMeters();
+            afterId = last.activityId();
+        }
+        return Result.success(CursorPage.of(rows, size,
+                a -> CursorHelper.encode(distances.get(a.getActivityId()), a.getActivityId())));
+    }
+
+    /**
+     * 关键词检索招募中的活动（标题、描述、地点名称），按相关度排序分页
+     * 最多返回前 {@value AbstractActivitySearchIndex#MAX_HITS} 条命中
+     */
+    @Transactional(readOnly = true)
+    public Result<PageResult<ActivityVO>> searchActivities(String keyword, int page, int size) {
+        if (!activitySearchIndex.isReady()) {
+            return Result.error("搜索服务初始化中，请稍后再试");
+        }
+
+        List<InvertedIndex.Hit> hits = activitySearchIndex.search(keyword, AbstractActivitySearchIndex.MAX_HITS);
+        int from = Math.min(page * size, hits.size());
+        int to = Math.min(from + size, hits.size());
+        List<Long> pageIds = hits.subList(from, to).stream().map(InvertedIndex.Hit::docId).toList();
+        return Result.success(PageResult.of(findByIdsInOrder(pageIds), hits.size(), page, size));
+    }
+
+    /**
+     * 按 ID 批量回查活动，并保持传入的 ID 顺序
+     */
+    private List<ActivityVO> findByIdsInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Integer> order = new HashMap<>(ids.size() * 2);
+        for (int i = 0; i < ids.size(); i++) {
+            order.put(ids.get(i), i);
+        }
+        List<ActivityVO> activities = activityMapper.findByIds(ids);
+        activities.sort(Comparator.comparingInt(a -> order.get(a.getActivityId())));
+        userHydrator.fillActivities(activities);
+        return activities;
+    }
 }
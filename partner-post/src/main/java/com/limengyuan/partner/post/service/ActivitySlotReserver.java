@@ -0,0 +1,58 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * 活动名额预占组件
+ *
+ * 名额判断与计数变更都在 activities 行上通过一条条件 UPDATE 完成：
+ * - 不需要先 COUNT 再更新，避免并发审核时超员
+ * - 行锁只在这条 UPDATE 到事务提交之间持有，热门活动的并发审核不会整体串行化到业务逻辑上
+ * - 状态存放在数据库中，多个 partner-post 实例之间天然一致
+ *
+ * 调用方需在同一事务内执行，事务回滚时名额随之释放
+ */
+@Slf4j
+@Component
+public class ActivitySlotReserver {
+
+    private final ActivityMapper activityMapper;
+
+    public ActivitySlotReserver(ActivityMapper activityMapper) {
+        this.activityMapper = activityMapper;
+    }
+
+    /**
+     * 尝试占用一个名额
+     *
+     * @return true-占用成功，false-活动已满员
+     */
+    public boolean tryReserve(Long activityId) {
+        boolean reserved = activityMapper.tryIncrementApprovedCount(activityId) == 1;
+        if (!reserved) {
+            log.info("[名额预占] 活动已满员，占用失败, activityId={}", activityId);
+        }
+        return reserved;
+    }
+
+    /**
+     * 名额占满时将活动标记为已满员
+     *
+     * @return true-本次调用完成了标记（调用方据此做一次性的后续处理，如移除向量）
+     */
+    public boolean closeIfFull(Long activityId) {
+        return activityMapper.markFullIfReached(activityId) == 1;
+    }
+
+    /**
+     * 释放一个名额，有空余名额时将已满员的活动恢复为招募中
+     *
+     * @return true-本次调用使活动恢复为招募中
+     */
+    public boolean release(Long activityId) {
+        activityMapper.decrementApprovedCount(activityId);
+        return activityMapper.reopenIfAvailable(activityId) == 1;
+    }
+}
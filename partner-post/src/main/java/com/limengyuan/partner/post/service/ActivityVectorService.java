@@ -1,15 +1,35 @@
 package com.limengyuan.partner.post.service;
 
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.vector.HnswVectorStore;
+import io.milvus.client.MilvusServiceClient;
+import io.milvus.orm.iterator.QueryIterator;
+import io.milvus.param.R;
+import io.milvus.param.dml.QueryIteratorParam;
+import io.milvus.response.QueryResultsWrapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.vectorstore.SearchRequest;
 import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.ai.vectorstore.milvus.MilvusVectorStore;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 /**
  * 活动向量管理服务 - 负责活动数据在 Milvus 向量数据库中的增删查
@@ -18,15 +38,42 @@ import java.util.Map;
  * 1. 活动创建时，将活动文本向量化并存入 Milvus
  * 2. 活动状态变更（满员/结束/取消）时，从 Milvus 删除
  * 3. 推荐时，根据用户画像做语义相似度搜索，召回最匹配的候选活动
+ *
+ * 向量元数据中保存 status、city（发起人所在城市）、startTime（秒级时间戳）、categoryId（主分类），
+ * 召回时按 {@link VectorFilter} 生成过滤表达式交给向量库在检索阶段过滤（Milvus 在 ANN 检索前按表达式过滤，
+ * 进程内 HNSW 在命中不足时自动扩大候选集），召回结果无需再做大量回表过滤
+ *
+ * 注意 city 取自写入时发起人的 users.city，发起人之后修改城市不会刷新已有向量：
+ * 对账校验和只按 activities.updated_at 计算，也发现不了这种漂移，直到活动本身被修改才会重写。
+ * 城市过滤同时放行城市未知的活动，漂移的影响是该活动在新城市召回不到、在旧城市仍被召回
  */
 @Slf4j
 @Service
 public class ActivityVectorService {
 
+    /** 向量元数据中的活动版本格式（与 MySQL DATE_FORMAT(updated_at, '%Y%m%d%H%i%s') 一致，用于对账） */
+    private static final DateTimeFormatter VERSION_FORMAT = DateTimeFormatter.ofPattern("yyyyMMddHHmmss");
+
+    /** 遍历 Milvus 时每批读取的条数 */
+    private static final long SCAN_BATCH_SIZE = 1000L;
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
+
     private final VectorStore vectorStore;
+    private final ActivityMapper activityMapper;
+    private final ObjectMapper objectMapper;
+    private final String databaseName;
+    private final String collectionName;
 
-    public ActivityVectorService(VectorStore vectorStore) {
+    public ActivityVectorService(VectorStore vectorStore, ActivityMapper activityMapper, ObjectMapper objectMapper,
+                                 @Value("${spring.ai.vectorstore.milvus.database-name:default}") String databaseName,
+                                 @Value("${spring.ai.vectorstore.milvus.collection-name:vector_store}") String collectionName) {
         this.vectorStore = vectorStore;
+        this.activityMapper = activityMapper;
+        this.objectMapper = objectMapper;
+        this.databaseName = databaseName;
+        this.collectionName = collectionName;
     }
 
     /**
@@ -37,16 +84,9 @@ public class ActivityVectorService {
      */
     public void addActivity(ActivityVO activity) {
         try {
-            String text = buildActivityText(activity);
-            // 使用 activityId 作为文档 ID，便于后续删除
-            String docId = String.valueOf(activity.getActivityId());
-
-            Document document = new Document(docId, text, Map.of(
-                    "activityId", activity.getActivityId(),
-                    "title", activity.getTitle() != null ? activity.getTitle() : "",
-                    "locationName", activity.getLocationName() != null ? activity.getLocationName() : ""
-            ));
-
+            Document document = toDocument(activity, findInitiatorCities(List.of(activity)));
+            // Milvus insert 遇到相同主键不会覆盖，先删后增，避免重复写入产生多条向量
+            vectorStore.delete(List.of(document.getId()));
             vectorStore.add(List.of(document));
             log.info("[向量索引] 活动已写入 Milvus, activityId={}, title={}", 
                     activity.getActivityId(), activity.getTitle());
@@ -56,31 +96,30 @@ public class ActivityVectorService {
     }
 
     /**
-     * 批量将活动写入向量数据库（用于全量同步）
+     * 批量将活动写入向量数据库（用于增量同步和对账修复），已存在的向量会被覆盖
+     *
+     * 覆盖为先删后增，删除成功而写入失败时这批活动暂时没有向量，调用方需根据返回值重试
      *
      * @param activities 活动列表
+     * @return false 表示写入失败（向量库或向量化服务不可用）
      */
-    public void addActivities(List<ActivityVO> activities) {
+    public boolean addActivities(List<ActivityVO> activities) {
         if (activities == null || activities.isEmpty()) {
-            return;
+            return true;
         }
         try {
+            Map<Long, String> cities = findInitiatorCities(activities);
             List<Document> documents = activities.stream()
-                    .map(activity -> {
-                        String text = buildActivityText(activity);
-                        String docId = String.valueOf(activity.getActivityId());
-                        return new Document(docId, text, Map.of(
-                                "activityId", activity.getActivityId(),
-                                "title", activity.getTitle() != null ? activity.getTitle() : "",
-                                "locationName", activity.getLocationName() != null ? activity.getLocationName() : ""
-                        ));
-                    })
+                    .map(activity -> toDocument(activity, cities))
                     .toList();
 
+            vectorStore.delete(documents.stream().map(Document::getId).toList());
             vectorStore.add(documents);
             log.info("[向量索引] 批量写入 Milvus 成功, 数量={}", documents.size());
+            return true;
         } catch (Exception e) {
             log.error("[向量索引] 批量写入 Milvus 失败, 数量={}", activities.size(), e);
+            return false;
         }
     }
 
@@ -104,10 +143,11 @@ public class ActivityVectorService {
      * 批量删除向量（用于定时同步清理）
      *
      * @param activityIds 活动ID列表
+     * @return false 表示删除失败
      */
-    public void removeActivities(List<Long> activityIds) {
+    public boolean removeActivities(List<Long> activityIds) {
         if (activityIds == null || activityIds.isEmpty()) {
-            return;
+            return true;
         }
         try {
             List<String> docIds = activityIds.stream()
@@ -115,8 +155,36 @@ public class ActivityVectorService {
                     .toList();
             vectorStore.delete(docIds);
             log.info("[向量索引] 批量删除 Milvus 成功, 数量={}", docIds.size());
+            return true;
         } catch (Exception e) {
             log.error("[向量索引] 批量删除 Milvus 失败, 数量={}", activityIds.size(), e);
+            return false;
+        }
+    }
+
+    /**
+     * 向量召回的结构化过滤条件，字段为空表示不限
+     *
+     * @param status      活动状态
+     * @param city        城市（同时保留城市未知的活动）
+     * @param startAfter  开始时间晚于
+     * @param categoryIds 主分类在其中
+     */
+    public record VectorFilter(Integer status, String city, LocalDateTime startAfter, List<Integer> categoryIds) {
+
+        /**
+         * 招募中且尚未开始的活动
+         */
+        public static VectorFilter recruiting() {
+            return new VectorFilter(STATUS_RECRUITING, null, LocalDateTime.now(), null);
+        }
+
+        public VectorFilter withCity(String city) {
+            return new VectorFilter(status, city, startAfter, categoryIds);
+        }
+
+        public VectorFilter withCategoryIds(List<Integer> categoryIds) {
+            return new VectorFilter(status, city, startAfter, categoryIds);
         }
     }
 
@@ -128,16 +196,27 @@ public class ActivityVectorService {
      * @return 匹配的活动 ID 列表（按相似度从高到低排序）
      */
     public List<Long> searchSimilar(String userProfileText, int topK) {
+        return searchSimilar(userProfileText, topK, null);
+    }
+
+    /**
+     * 带结构化过滤的语义相似度搜索，过滤在向量库检索阶段完成，返回的都是满足条件的候选
+     *
+     * @param filter 过滤条件，为 null 时不过滤
+     */
+    public List<Long> searchSimilar(String userProfileText, int topK, VectorFilter filter) {
         try {
-            List<Document> results = vectorStore.similaritySearch(
-                    SearchRequest.builder()
-                            .query(userProfileText)
-                            .topK(topK)
-                            .build()
-            );
+            SearchRequest.Builder request = SearchRequest.builder()
+                    .query(userProfileText)
+                    .topK(topK);
+            Filter.Expression expression = toFilterExpression(filter);
+            if (expression != null) {
+                request.filterExpression(expression);
+            }
+            List<Document> results = vectorStore.similaritySearch(request.build());
 
             if (results == null || results.isEmpty()) {
-                log.info("[向量召回] 未找到匹配的活动, query={}", userProfileText);
+                log.info("[向量召回] 未找到匹配的活动, query={}, filter={}", userProfileText, filter);
                 return Collections.emptyList();
             }
 
@@ -154,11 +233,159 @@ public class ActivityVectorService {
             log.info("[向量召回] 召回活动数量={}, query={}", activityIds.size(), userProfileText);
             return activityIds;
         } catch (Exception e) {
-            log.error("[向量召回] Milvus 搜索失败, query={}", userProfileText, e);
+            log.error("[向量召回] 向量库搜索失败, query={}", userProfileText, e);
             return Collections.emptyList();
         }
     }
 
+    /**
+     * 遍历 Milvus 中所有活动向量，返回 activityId → 版本（用于对账）
+     * 没有版本元数据的旧向量版本为空字符串，对账时会被视为不一致而重建
+     *
+     * @return 当前向量库不支持遍历时返回 null
+     */
+    public Map<Long, String> listIndexedVersions() {
+        if (vectorStore instanceof HnswVectorStore hnsw) {
+            Map<Long, String> versions = new HashMap<>();
+            hnsw.forEachMetadata((docId, metadata) ->
+                    versions.put(Long.parseLong(docId), String.valueOf(metadata.getOrDefault("updatedAt", ""))));
+            return versions;
+        }
+        MilvusServiceClient client = vectorStore.<MilvusServiceClient>getNativeClient().orElse(null);
+        if (client == null) {
+            return null;
+        }
+        R<QueryIterator> response = client.queryIterator(QueryIteratorParam.newBuilder()
+                .withDatabaseName(databaseName)
+                .withCollectionName(collectionName)
+                .withExpr(MilvusVectorStore.DOC_ID_FIELD_NAME + " != \"\"")
+                .withOutFields(List.of(MilvusVectorStore.DOC_ID_FIELD_NAME, MilvusVectorStore.METADATA_FIELD_NAME))
+                .withBatchSize(SCAN_BATCH_SIZE)
+                .build());
+        if (response.getException() != null) {
+            throw new IllegalStateException("遍历 Milvus 向量失败", response.getException());
+        }
+
+        Map<Long, String> versions = new HashMap<>();
+        QueryIterator iterator = response.getData();
+        try {
+            List<QueryResultsWrapper.RowRecord> rows;
+            while (!(rows = iterator.next()).isEmpty()) {
+                for (QueryResultsWrapper.RowRecord row : rows) {
+                    Long activityId = Long.parseLong(String.valueOf(row.get(MilvusVectorStore.DOC_ID_FIELD_NAME)));
+                    versions.put(activityId, readVersion(row.get(MilvusVectorStore.METADATA_FIELD_NAME)));
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+        return versions;
+    }
+
+    /**
+     * 是否为进程内向量库（快照可能落后于同步水位，启动时需要对账）
+     */
+    public boolean isInProcessStore() {
+        return vectorStore instanceof HnswVectorStore;
+    }
+
+    /**
+     * 活动版本：更新时间精确到秒
+     */
+    public static String version(LocalDateTime updatedAt) {
+        return updatedAt != null ? updatedAt.format(VERSION_FORMAT) : "";
+    }
+
+    /**
+     * 构建活动文档，使用 activityId 作为文档 ID，便于后续删除
+     * 过滤字段缺失时写入不会被过滤条件命中的占位值（如 startTime=0），避免不同向量库对缺失字段的处理不一致
+     */
+    private Document toDocument(ActivityVO activity, Map<Long, String> cities) {
+        List<Integer> categoryIds = parseCategoryIds(activity.getCategoryIds());
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put("activityId", activity.getActivityId());
+        metadata.put("title", activity.getTitle() != null ? activity.getTitle() : "");
+        metadata.put("locationName", activity.getLocationName() != null ? activity.getLocationName() : "");
+        metadata.put("updatedAt", version(activity.getUpdatedAt()));
+        metadata.put("status", activity.getStatus() != null ? activity.getStatus() : -1);
+        metadata.put("city", cities.getOrDefault(activity.getInitiatorId(), ""));
+        metadata.put("startTime", activity.getStartTime() != null ? epochSeconds(activity.getStartTime()) : 0L);
+        metadata.put("categoryId", categoryIds.isEmpty() ? 0 : categoryIds.get(0));
+        return new Document(String.valueOf(activity.getActivityId()), buildActivityText(activity), metadata);
+    }
+
+    private Filter.Expression toFilterExpression(VectorFilter filter) {
+        if (filter == null) {
+            return null;
+        }
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        List<FilterExpressionBuilder.Op> conditions = new ArrayList<>();
+        if (filter.status() != null) {
+            conditions.add(b.eq("status", filter.status()));
+        }
+        if (filter.city() != null && !filter.city().isBlank()) {
+            conditions.add(b.in("city", filter.city(), ""));
+        }
+        if (filter.startAfter() != null) {
+            conditions.add(b.gt("startTime", epochSeconds(filter.startAfter())));
+        }
+        if (filter.categoryIds() != null && !filter.categoryIds().isEmpty()) {
+            conditions.add(b.in("categoryId", new ArrayList<Object>(filter.categoryIds())));
+        }
+        return conditions.stream().reduce(b::and).map(FilterExpressionBuilder.Op::build).orElse(null);
+    }
+
+    /**
+     * 批量查询活动发起人所在城市
+     */
+    private Map<Long, String> findInitiatorCities(List<ActivityVO> activities) {
+        List<Long> initiatorIds = activities.stream()
+                .map(ActivityVO::getInitiatorId)
+                .filter(Objects::nonNull)
+                .distinct()
+                .toList();
+        Map<Long, String> cities = new HashMap<>();
+        if (initiatorIds.isEmpty()) {
+            return cities;
+        }
+        for (Map<String, Object> row : activityMapper.findCitiesByUserIds(initiatorIds)) {
+            Object city = row.get("city");
+            if (city != null) {
+                cities.put(((Number) row.get("user_id")).longValue(), city.toString());
+            }
+        }
+        return cities;
+    }
+
+    private List<Integer> parseCategoryIds(String categoryIdsJson) {
+        if (categoryIdsJson == null || categoryIdsJson.isBlank()) {
+            return List.of();
+        }
+        try {
+            List<Integer> categoryIds = objectMapper.readValue(categoryIdsJson, new TypeReference<List<Integer>>() {});
+            return categoryIds != null ? categoryIds : List.of();
+        } catch (Exception e) {
+            log.warn("[向量索引] 分类ID解析失败: {}", categoryIdsJson);
+            return List.of();
+        }
+    }
+
+    private static long epochSeconds(LocalDateTime time) {
+        return time.atZone(ZoneId.systemDefault()).toEpochSecond();
+    }
+
+    private String readVersion(Object metadata) {
+        try {
+            // JSON 字段在不同 SDK 版本中可能是 Gson 对象或 Map，统一按 JSON 文本解析
+            JsonNode node = metadata instanceof Map<?, ?> map
+                    ? objectMapper.valueToTree(map)
+                    : objectMapper.readTree(String.valueOf(metadata));
+            return node.path("updatedAt").asText("");
+        } catch (Exception e) {
+            return "";
+        }
+    }
+
     /**
      * 拼接活动的文本摘要（用于向量化）
      * 只包含影响推荐匹配的语义信息，不包含图片/时间等结构化字段
@@ -0,0 +1,40 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * 活动已通过人数校准任务
+ *
+ * activities.approved_count 由 ParticipantService 在审核/退出时同事务维护，
+ * 该任务定期按 participants 表重新统计，修复因手工改库、历史数据等原因产生的偏差
+ */
+@Slf4j
+@Component
+public class ApprovedCountReconcileTask {
+
+    private final ActivityMapper activityMapper;
+
+    public ApprovedCountReconcileTask(ActivityMapper activityMapper) {
+        this.activityMapper = activityMapper;
+    }
+
+    /**
+     * 启动 1 分钟后执行首次校准，之后每小时执行一次
+     */
+    @Scheduled(initialDelay = 60000, fixedRate = 3600000)
+    public void reconcile() {
+        try {
+            int repaired = activityMapper.reconcileApprovedCount();
+            if (repaired > 0) {
+                log.warn("[人数校准] 发现并修复 {} 个活动的已通过人数偏差", repaired);
+            } else {
+                log.debug("[人数校准] 已通过人数与参与记录一致");
+            }
+        } catch (Exception e) {
+            log.error("[人数校准] 校准已通过人数失败", e);
+        }
+    }
+}
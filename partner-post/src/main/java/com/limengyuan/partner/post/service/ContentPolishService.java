@@ -1,9 +1,17 @@
 package com.limengyuan.partner.post.service;
 
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.ai.LlmRejectedException;
+import com.limengyuan.partner.post.ai.LlmRequest;
+import com.limengyuan.partner.post.ai.SseEvents;
+import com.limengyuan.partner.post.config.SentinelBlockHandler;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AI 内容润色服务
@@ -15,10 +23,10 @@ import org.springframework.stereotype.Service;
 @Service
 public class ContentPolishService {
 
-    private final ChatClient chatClient;
+    private final LlmGateway llmGateway;
 
-    public ContentPolishService(ChatClient.Builder chatClientBuilder) {
-        this.chatClient = chatClientBuilder.build();
+    public ContentPolishService(LlmGateway llmGateway) {
+        this.llmGateway = llmGateway;
     }
 
     /**
@@ -30,18 +38,80 @@ public class ContentPolishService {
      */
     public Result<String> polishContent(String content, String type) {
         // 参数校验
+        String invalid = validate(content);
+        if (invalid != null) {
+            return Result.error(invalid);
+        }
+
+        // 调用 AI
+        try {
+            // 相同内容和类型的润色结果由 LlmGateway 缓存
+            String polished = llmGateway.call(LlmRequest.of("polish", buildPrompt(content, type)));
+
+            if (polished == null || polished.isBlank()) {
+                return Result.error("AI 润色返回为空，请稍后重试");
+            }
+
+            log.info("[AI润色] type={}, 原文长度={}, 润色后长度={}", type, content.length(), polished.length());
+            return Result.success(polished);
+
+        } catch (LlmRejectedException e) {
+            return SentinelBlockHandler.llmRejectedHandler(e);
+        } catch (Exception e) {
+            log.error("[AI润色] 调用 DeepSeek API 失败", e);
+            return Result.error("AI 润色服务暂时不可用，请稍后再试");
+        }
+    }
+
+    /**
+     * AI 内容润色（流式）
+     *
+     * 逐段推送润色后的文本（delta 事件），结束时推送 done 事件；失败时推送 error 事件
+     */
+    public Flux<ServerSentEvent<Object>> polishContentStream(String content, String type) {
+        String invalid = validate(content);
+        if (invalid != null) {
+            return Flux.just(SseEvents.error(invalid));
+        }
+
+        AtomicInteger length = new AtomicInteger();
+        return llmGateway.stream(LlmRequest.of("polish", buildPrompt(content, type)))
+                .filter(delta -> !delta.isEmpty())
+                .doOnNext(delta -> length.addAndGet(delta.length()))
+                .map(SseEvents::delta)
+                .concatWith(Flux.just(SseEvents.done()))
+                .doOnComplete(() -> log.info("[AI润色] 流式完成, type={}, 原文长度={}, 润色后长度={}",
+                        type, content.length(), length.get()))
+                .onErrorResume(e -> {
+                    if (e instanceof LlmRejectedException rejected) {
+                        return Flux.just(SseEvents.error(SentinelBlockHandler.llmRejectedHandler(rejected).getMessage()));
+                    }
+                    log.error("[AI润色] 流式调用 DeepSeek API 失败", e);
+                    return Flux.just(SseEvents.error("AI 润色服务暂时不可用，请稍后再试"));
+                });
+    }
+
+    /**
+     * 参数校验
+     *
+     * @return 错误信息，校验通过返回 null
+     */
+    private String validate(String content) {
         if (content == null || content.isBlank()) {
-            return Result.error("内容不能为空");
+            return "内容不能为空";
         }
         if (content.length() > 2000) {
-            return Result.error("内容不能超过2000字");
+            return "内容不能超过2000字";
         }
+        return null;
+    }
 
-        // 根据类型选择润色风格
+    /**
+     * 构造 Prompt（根据类型选择润色风格）
+     */
+    private String buildPrompt(String content, String type) {
         String styleGuide = getStyleGuide(type);
-
-        // 构造 Prompt
-        String prompt = String.format("""
+        return String.format("""
                 你是一个文案润色助手。请对以下内容进行润色优化。
                 
                 ## 润色风格
@@ -57,25 +127,6 @@ public class ContentPolishService {
                 4. 字数控制在原文的 1~2 倍以内
                 5. 直接返回润色后的文本，不要添加任何解释或说明
                 """, styleGuide, content);
-
-        // 调用 AI
-        try {
-            String polished = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .content();
-
-            if (polished == null || polished.isBlank()) {
-                return Result.error("AI 润色返回为空，请稍后重试");
-            }
-
-            log.info("[AI润色] type={}, 原文长度={}, 润色后长度={}", type, content.length(), polished.length());
-            return Result.success(polished);
-
-        } catch (Exception e) {
-            log.error("[AI润色] 调用 DeepSeek API 失败", e);
-            return Result.error("AI 润色服务暂时不可用，请稍后再试");
-        }
     }
 
     /**
@@ -36,15 +36,17 @@ public class ExpenseService {
     private final ParticipantMapper participantMapper;
     private final ActivityMapper activityMapper;
     private final ObjectMapper objectMapper;
+    private final UserHydrator userHydrator;
 
     public ExpenseService(ExpenseMapper expenseMapper, ExpenseSplitMapper expenseSplitMapper,
                           ParticipantMapper participantMapper, ActivityMapper activityMapper,
-                          ObjectMapper objectMapper) {
+                          ObjectMapper objectMapper, UserHydrator userHydrator) {
         this.expenseMapper = expenseMapper;
         this.expenseSplitMapper = expenseSplitMapper;
         this.participantMapper = participantMapper;
         this.activityMapper = activityMapper;
         this.objectMapper = objectMapper;
+        this.userHydrator = userHydrator;
     }
 
     /**
@@ -127,9 +129,11 @@ public class ExpenseService {
      */
     public Result<List<ExpenseVO>> getExpenseList(Long activityId) {
         List<ExpenseVO> expenses = expenseMapper.findByActivityIdWithPayer(activityId);
+        userHydrator.fillExpenses(expenses);
         // 为每笔支出加载分摊明细
         for (ExpenseVO expense : expenses) {
             List<ExpenseSplitVO> splits = expenseSplitMapper.findByExpenseIdWithUser(expense.getExpenseId());
+            userHydrator.fillExpenseSplits(splits);
             expense.setSplits(splits);
         }
         return Result.success(expenses);
@@ -139,11 +143,12 @@ public class ExpenseService {
      * 获取某笔支出的详情（含分摊明细）
      */
     public Result<ExpenseVO> getExpenseDetail(Long expenseId) {
-        ExpenseVO expense = expenseMapper.findByIdWithPayer(expenseId);
+        ExpenseVO expense = userHydrator.fillExpense(expenseMapper.findByIdWithPayer(expenseId));
         if (expense == null) {
             return Result.error("支出记录不存在");
         }
         List<ExpenseSplitVO> splits = expenseSplitMapper.findByExpenseIdWithUser(expenseId);
+        userHydrator.fillExpenseSplits(splits);
         expense.setSplits(splits);
         return Result.success(expense);
     }
@@ -184,6 +189,7 @@ public class ExpenseService {
     public Result<SettlementVO> getSettlement(Long activityId) {
         // 1. 获取活动所有支出
         List<ExpenseVO> expenses = expenseMapper.findByActivityIdWithPayer(activityId);
+        userHydrator.fillExpenses(expenses);
         if (expenses.isEmpty()) {
             return Result.success(SettlementVO.builder()
                     .activityId(activityId)
@@ -211,6 +217,7 @@ public class ExpenseService {
             avatarMap.putIfAbsent(expense.getPayerId(), expense.getPayerAvatar());
 
             List<ExpenseSplitVO> splits = expenseSplitMapper.findByExpenseIdWithUser(expense.getExpenseId());
+            userHydrator.fillExpenseSplits(splits);
             for (ExpenseSplitVO split : splits) {
                 owedMap.merge(split.getUserId(), split.getAmount(), BigDecimal::add);
                 nicknameMap.putIfAbsent(split.getUserId(), split.getNickname());
@@ -262,6 +269,7 @@ public class ExpenseService {
      */
     public Result<List<ExpenseSplitVO>> getMyBills(Long userId) {
         List<ExpenseSplitVO> bills = expenseSplitMapper.findUnsettledByUserId(userId);
+        userHydrator.fillExpenseSplits(bills);
         return Result.success(bills);
     }
 
@@ -0,0 +1,327 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.CursorPage;
+import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
+import com.limengyuan.partner.post.event.MomentPublishedEvent;
+import com.limengyuan.partner.post.mapper.MomentMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 关注时间线（推拉结合）
+ *
+ * - 推：普通作者发布动态后，在事务提交后把动态ID写入每个粉丝的收件箱（Redis ZSet timeline:{userId}，
+ *   score 与 member 均为动态ID，动态ID自增与发布顺序一致），每个收件箱只保留最新 {@link #INBOX_CAPACITY} 条
+ * - 拉：粉丝数达到 {@link #BIG_AUTHOR_FOLLOWERS} 的大 V 不推送（记入 timeline:big-authors），
+ *   读取时一条查询取这些作者最新的几条动态与收件箱合并，避免一次发布写几十万个收件箱
+ *
+ * 收件箱附带一个关注列表指纹（timeline:{userId}:following）。指纹缺失（冷用户、收件箱过期）
+ * 或与当前关注列表不一致（关注/取关发生在用户服务）时按关注列表从数据库懒重建。
+ * 推送只写指纹存在的收件箱；重建先写指纹再读库，读库与并发推送交错时新动态至少落入其一。
+ * 因此时间线查询不放在事务中，每条 SQL 各自读取最新已提交数据。
+ *
+ * 读取时按当前关注列表和可见性过滤（取关后、动态删除后收件箱中的旧条目不再返回）；
+ * Redis 不可用时整页回退为按关注作者拉取。
+ */
+@Slf4j
+@Service
+public class FollowingTimelineService {
+
+    /** 粉丝数达到该值的作者读时拉取，不推送 */
+    static final int BIG_AUTHOR_FOLLOWERS = 5000;
+    /** 每个收件箱保留的最新动态数，时间线最多翻到这里 */
+    static final int INBOX_CAPACITY = 800;
+    private static final Duration INBOX_TTL = Duration.ofDays(7);
+    /** 单次推送脚本处理的粉丝数 */
+    private static final int PUSH_BATCH = 200;
+
+    private static final String INBOX_KEY_PREFIX = "timeline:";
+    private static final String FOLLOWING_SUFFIX = ":following";
+    private static final String BIG_AUTHORS_KEY = "timeline:big-authors";
+
+    /**
+     * 推送：KEYS 为 (收件箱, 指纹) 成对排列；ARGV[1] = 动态ID，ARGV[2] = 收件箱容量
+     * 只写指纹存在的收件箱，新建的收件箱继承指纹的过期时间
+     */
+    private static final DefaultRedisScript<Long> PUSH_SCRIPT = new DefaultRedisScript<>("""
+            local pushed = 0
+            for i = 1, #KEYS, 2 do
+                local ttl = redis.call('pttl', KEYS[i + 1])
+                if ttl > 0 then
+                    redis.call('zadd', KEYS[i], ARGV[1], ARGV[1])
+                    redis.call('zremrangebyrank', KEYS[i], 0, -tonumber(ARGV[2]) - 1)
+                    if redis.call('pttl', KEYS[i]) < 0 then
+                        redis.call('pexpire', KEYS[i], ttl)
+                    end
+                    pushed = pushed + 1
+                end
+            end
+            return pushed
+            """, Long.class);
+
+    /**
+     * 读取：KEYS[1] = 收件箱，KEYS[2] = 指纹；ARGV[1] = 最大 score（+inf 或 "(游标"），ARGV[2] = 条数，ARGV[3] = 容量
+     * 返回 [指纹, 下界, 动态ID...]；收件箱已满时下界为最旧的动态ID（更旧的已被裁剪），否则为 0
+     */
+    @SuppressWarnings("rawtypes")
+    private static final DefaultRedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local fingerprint = redis.call('get', KEYS[2]) or ''
+            local floor = '0'
+            if redis.call('zcard', KEYS[1]) >= tonumber(ARGV[3]) then
+                local oldest = redis.call('zrange', KEYS[1], 0, 0)
+                if #oldest > 0 then
+                    floor = oldest[1]
+                end
+            end
+            local ids = redis.call('zrevrangebyscore', KEYS[1], ARGV[1], '-inf', 'LIMIT', 0, ARGV[2])
+            table.insert(ids, 1, floor)
+            table.insert(ids, 1, fingerprint)
+            return ids
+            """, List.class);
+
+    /**
+     * 开始重建：清空收件箱并写入新指纹（之后的推送即可写入）
+     * KEYS[1] = 收件箱，KEYS[2] = 指纹；ARGV[1] = 指纹，ARGV[2] = 过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> RESET_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('del', KEYS[1])
+            redis.call('set', KEYS[2], ARGV[1], 'PX', ARGV[2])
+            return 1
+            """, Long.class);
+
+    /**
+     * 填充重建结果（与重建期间的推送取并集）
+     * KEYS[1] = 收件箱；ARGV[1] = 容量，ARGV[2] = 过期毫秒数，ARGV[3..] = 动态ID
+     */
+    private static final DefaultRedisScript<Long> FILL_SCRIPT = new DefaultRedisScript<>("""
+            for i = 3, #ARGV do
+                redis.call('zadd', KEYS[1], ARGV[i], ARGV[i])
+            end
+            redis.call('zremrangebyrank', KEYS[1], 0, -tonumber(ARGV[1]) - 1)
+            redis.call('pexpire', KEYS[1], ARGV[2])
+            return redis.call('zcard', KEYS[1])
+            """, Long.class);
+
+    private final MomentMapper momentMapper;
+    private final StringRedisTemplate redisTemplate;
+    private final UserHydrator userHydrator;
+    private final MomentCounterBuffer counterBuffer;
+    private final MomentLikeIndex likeIndex;
+
+    private final ExecutorService fanoutExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    public FollowingTimelineService(MomentMapper momentMapper, StringRedisTemplate redisTemplate,
+                                    UserHydrator userHydrator, MomentCounterBuffer counterBuffer,
+                                    MomentLikeIndex likeIndex) {
+        this.momentMapper = momentMapper;
+        this.redisTemplate = redisTemplate;
+        this.userHydrator = userHydrator;
+        this.counterBuffer = counterBuffer;
+        this.likeIndex = likeIndex;
+    }
+
+    /**
+     * 动态发布事务提交后异步推送到粉丝收件箱
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onMomentPublished(MomentPublishedEvent event) {
+        fanoutExecutor.execute(() -> {
+            try {
+                fanout(event.authorId(), event.momentId());
+            } catch (Exception e) {
+                // 推送失败的动态在粉丝下次重建收件箱时从数据库补回
+                log.error("[关注时间线] 推送失败, authorId={}, momentId={}", event.authorId(), event.momentId(), e);
+            }
+        });
+    }
+
+    /**
+     * 游标分页获取关注时间线（按发布时间倒序）
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<MomentVO>> getTimeline(Long userId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+        Long cursorId = c != null ? c.id() : null;
+
+        List<Long> followees = momentMapper.findFolloweeIds(userId);
+        if (followees.isEmpty()) {
+            return Result.success(page(List.of(), null, false, size));
+        }
+
+        int fetch = size + 1;
+        List<Long> candidates;
+        try {
+            candidates = collectCandidates(userId, followees, cursorId, fetch);
+        } catch (Exception e) {
+            log.warn("[关注时间线] Redis 不可用，回退为按作者拉取, userId={}", userId, e);
+            candidates = momentMapper.findRecentIdsByAuthors(followees, cursorId, fetch);
+        }
+
+        boolean hasMore = candidates.size() > size;
+        List<Long> pageIds = hasMore ? candidates.subList(0, size) : candidates;
+        if (pageIds.isEmpty()) {
+            return Result.success(page(List.of(), null, false, size));
+        }
+        // 游标按候选ID生成（排序键即动态ID），本页有条目被过滤掉也不影响翻页
+        Long lastId = pageIds.get(pageIds.size() - 1);
+        String nextCursor = hasMore ? CursorHelper.encode(lastId, lastId) : null;
+
+        Set<Long> followeeSet = new HashSet<>(followees);
+        List<MomentVO> list = new ArrayList<>(momentMapper.findVisibleToFollowersByIds(pageIds));
+        list.removeIf(m -> !followeeSet.contains(m.getUserId()));
+        list.sort(Comparator.comparing(MomentVO::getMomentId).reversed());
+        userHydrator.fillMoments(list);
+        counterBuffer.apply(list);
+        likeIndex.fillLiked(userId, list);
+        return Result.success(page(list, nextCursor, hasMore, size));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        fanoutExecutor.shutdown();
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void fanout(Long authorId, Long momentId) {
+        List<Long> followers = momentMapper.findFollowerIds(authorId, BIG_AUTHOR_FOLLOWERS);
+        if (followers.size() >= BIG_AUTHOR_FOLLOWERS) {
+            redisTemplate.opsForSet().add(BIG_AUTHORS_KEY, String.valueOf(authorId));
+            log.debug("[关注时间线] 大V作者不推送, authorId={}", authorId);
+            return;
+        }
+        redisTemplate.opsForSet().remove(BIG_AUTHORS_KEY, String.valueOf(authorId));
+
+        long pushed = 0;
+        for (int from = 0; from < followers.size(); from += PUSH_BATCH) {
+            List<Long> batch = followers.subList(from, Math.min(from + PUSH_BATCH, followers.size()));
+            List<String> keys = new ArrayList<>(batch.size() * 2);
+            for (Long follower : batch) {
+                keys.add(inboxKey(follower));
+                keys.add(inboxKey(follower) + FOLLOWING_SUFFIX);
+            }
+            Long n = redisTemplate.execute(PUSH_SCRIPT, keys,
+                    String.valueOf(momentId), String.valueOf(INBOX_CAPACITY));
+            pushed += n != null ? n : 0;
+        }
+        log.debug("[关注时间线] 推送完成, authorId={}, momentId={}, 粉丝数={}, 写入收件箱={}",
+                authorId, momentId, followers.size(), pushed);
+    }
+
+    /**
+     * 收件箱（必要时重建）与大V作者拉取结果合并，返回按动态ID倒序的至多 fetch 个候选
+     */
+    private List<Long> collectCandidates(Long userId, List<Long> followees, Long cursorId, int fetch) {
+        Set<Long> bigAuthors = bigAuthorsAmong(followees);
+        String inboxKey = inboxKey(userId);
+        String fingerprint = fingerprint(followees);
+
+        @SuppressWarnings("unchecked")
+        List<String> result = redisTemplate.execute(READ_SCRIPT, List.of(inboxKey, inboxKey + FOLLOWING_SUFFIX),
+                cursorId != null ? "(" + cursorId : "+inf", String.valueOf(fetch), String.valueOf(INBOX_CAPACITY));
+
+        List<Long> pushed;
+        long floor;
+        if (result != null && result.size() >= 2 && fingerprint.equals(result.get(0))) {
+            floor = Long.parseLong(result.get(1));
+            pushed = result.subList(2, result.size()).stream().map(Long::valueOf).toList();
+        } else {
+            List<Long> rebuilt = rebuild(inboxKey, fingerprint, followees, bigAuthors);
+            floor = rebuilt.size() >= INBOX_CAPACITY ? rebuilt.get(rebuilt.size() - 1) : 0;
+            pushed = rebuilt.stream().filter(id -> cursorId == null || id < cursorId).limit(fetch).toList();
+        }
+
+        List<Long> pulled = bigAuthors.isEmpty()
+                ? List.of()
+                : momentMapper.findRecentIdsByAuthors(bigAuthors, cursorId, fetch);
+        return mergeDescending(pushed, pulled, floor, fetch);
+    }
+
+    /**
+     * 按关注列表从数据库重建收件箱（大V作者读时拉取，不进收件箱），返回按动态ID倒序的结果
+     */
+    private List<Long> rebuild(String inboxKey, String fingerprint, List<Long> followees, Set<Long> bigAuthors) {
+        redisTemplate.execute(RESET_SCRIPT, List.of(inboxKey, inboxKey + FOLLOWING_SUFFIX),
+                fingerprint, String.valueOf(INBOX_TTL.toMillis()));
+
+        List<Long> authors = followees.stream().filter(id -> !bigAuthors.contains(id)).toList();
+        List<Long> ids = authors.isEmpty()
+                ? List.of()
+                : momentMapper.findRecentIdsByAuthors(authors, null, INBOX_CAPACITY);
+
+        List<String> args = new ArrayList<>(ids.size() + 2);
+        args.add(String.valueOf(INBOX_CAPACITY));
+        args.add(String.valueOf(INBOX_TTL.toMillis()));
+        ids.forEach(id -> args.add(String.valueOf(id)));
+        redisTemplate.execute(FILL_SCRIPT, List.of(inboxKey), args.toArray());
+        log.debug("[关注时间线] 收件箱已重建, key={}, 关注数={}, 动态数={}", inboxKey, followees.size(), ids.size());
+        return ids;
+    }
+
+    private Set<Long> bigAuthorsAmong(List<Long> followees) {
+        Map<Object, Boolean> flags = redisTemplate.opsForSet().isMember(BIG_AUTHORS_KEY,
+                followees.stream().map(String::valueOf).toArray());
+        Set<Long> bigAuthors = new HashSet<>();
+        if (flags != null) {
+            for (Long followee : followees) {
+                if (Boolean.TRUE.equals(flags.get(String.valueOf(followee)))) {
+                    bigAuthors.add(followee);
+                }
+            }
+        }
+        return bigAuthors;
+    }
+
+    /**
+     * 合并两路候选：去重、丢弃下界及以下（收件箱已裁剪的范围）、按动态ID倒序取前 limit 个
+     */
+    private static List<Long> mergeDescending(Collection<Long> a, Collection<Long> b, long floor, int limit) {
+        TreeSet<Long> merged = new TreeSet<>(Comparator.reverseOrder());
+        merged.addAll(a);
+        merged.addAll(b);
+        return merged.stream().filter(id -> id > floor).limit(limit).toList();
+    }
+
+    /**
+     * 关注列表指纹：关注/取关后变化，触发收件箱重建
+     */
+    private static String fingerprint(List<Long> followees) {
+        long[] ids = followees.stream().mapToLong(Long::longValue).sorted().toArray();
+        return ids.length + ":" + Integer.toHexString(Arrays.hashCode(ids));
+    }
+
+    private static String inboxKey(Long userId) {
+        return INBOX_KEY_PREFIX + "{" + userId + "}";
+    }
+
+    private static CursorPage<MomentVO> page(List<MomentVO> list, String nextCursor, boolean hasMore, int size) {
+        return CursorPage.<MomentVO>builder()
+                .list(list)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(size)
+                .build();
+    }
+}
@@ -0,0 +1,262 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.post.mapper.MomentMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 动态计数写缓冲（点赞数、评论数；浏览人数由 UniqueViewCounter 去重统计）
+ *
+ * 计数变化先累加到本地 LongAdder（按动态分条目，条目内按 CPU 分段，热点动态的并发累加互不争抢），
+ * 每 3 秒把增量合并成一条多行 UPDATE 刷写到 moments 表，替代原来每次点赞/评论一条单行 UPDATE。
+ * 读取动态时把尚未刷写的增量叠加到查询结果上（只包含本实例的增量，其他实例的增量最多晚一个刷写周期可见）。
+ *
+ * 丢失上界：
+ * - 增量在写库成功后才扣减，写库失败时保留到下一轮重试，不会因数据库抖动丢失
+ * - 正常停机时 @PreDestroy 再刷写一次；进程崩溃最多丢失该实例最近一个刷写周期（3 秒）内的增量
+ * - 点赞数、评论数另有 moment_likes / moment_comments 明细，每小时按明细校准一次，崩溃造成的偏差最多持续 1 小时
+ *
+ * 监控指标（/actuator/metrics）：
+ * - partner.moment.counter.pending：待刷写的动态数
+ * - partner.moment.counter.flushed：已刷写的动态行数
+ * - partner.moment.counter.flush.failures：刷写失败次数
+ */
+@Slf4j
+@Component
+public class MomentCounterBuffer {
+
+    /** 单条 UPDATE 最多合并的动态数 */
+    private static final int BATCH_SIZE = 500;
+    /** 校准时两次偏差检查的间隔 */
+    private static final long SETTLE_MILLIS = 10000;
+
+    private final MomentMapper momentMapper;
+
+    private final Map<Long, Counters> pending = new ConcurrentHashMap<>();
+
+    private final LongAdder flushedRows = new LongAdder();
+    private final LongAdder flushFailures = new LongAdder();
+
+    /**
+     * 单个动态的待刷写增量
+     *
+     * retired 用于安全回收空条目：刷写线程先置 retired 再确认增量为 0 后移除，
+     * 累加线程累加后发现 retired 则撤销并在新条目上重试，保证增量不会落在已移除的条目上
+     */
+    private static final class Counters {
+        final LongAdder likes = new LongAdder();
+        final LongAdder comments = new LongAdder();
+        volatile boolean retired;
+
+        boolean isZero() {
+            return likes.sum() == 0 && comments.sum() == 0;
+        }
+    }
+
+    private enum Field { LIKES, COMMENTS }
+
+    public MomentCounterBuffer(MomentMapper momentMapper, MeterRegistry meterRegistry) {
+        this.momentMapper = momentMapper;
+
+        Gauge.builder("partner.moment.counter.pending", pending, Map::size)
+                .description("待刷写计数增量的动态数").register(meterRegistry);
+        FunctionCounter.builder("partner.moment.counter.flushed", flushedRows, LongAdder::sum)
+                .description("已刷写的动态计数行数").register(meterRegistry);
+        FunctionCounter.builder("partner.moment.counter.flush.failures", flushFailures, LongAdder::sum)
+                .description("动态计数刷写失败次数").register(meterRegistry);
+    }
+
+    public void incrementLike(Long momentId) {
+        add(momentId, Field.LIKES, 1);
+    }
+
+    public void decrementLike(Long momentId) {
+        add(momentId, Field.LIKES, -1);
+    }
+
+    public void incrementComment(Long momentId) {
+        add(momentId, Field.COMMENTS, 1);
+    }
+
+    /**
+     * 把尚未刷写的增量叠加到动态的计数上
+     */
+    public MomentVO apply(MomentVO moment) {
+        if (moment == null) {
+            return null;
+        }
+        Counters counters = pending.get(moment.getMomentId());
+        if (counters != null) {
+            moment.setLikeCount(merge(moment.getLikeCount(), counters.likes.sum()));
+            moment.setCommentCount(merge(moment.getCommentCount(), counters.comments.sum()));
+        }
+        return moment;
+    }
+
+    public void apply(Collection<MomentVO> moments) {
+        if (!pending.isEmpty()) {
+            moments.forEach(this::apply);
+        }
+    }
+
+    /**
+     * 每 3 秒把增量刷写到数据库
+     */
+    @Scheduled(initialDelay = 3000, fixedDelay = 3000)
+    public synchronized void flush() {
+        List<MomentMapper.CounterDelta> deltas = new ArrayList<>();
+        List<Counters> sources = new ArrayList<>();
+        for (Map.Entry<Long, Counters> entry : pending.entrySet()) {
+            Counters counters = entry.getValue();
+            long likes = counters.likes.sum();
+            long comments = counters.comments.sum();
+            if (likes == 0 && comments == 0) {
+                retireIfIdle(entry.getKey());
+                continue;
+            }
+            deltas.add(new MomentMapper.CounterDelta(entry.getKey(), likes, comments));
+            sources.add(counters);
+        }
+
+        for (int from = 0; from < deltas.size(); from += BATCH_SIZE) {
+            int to = Math.min(from + BATCH_SIZE, deltas.size());
+            List<MomentMapper.CounterDelta> batch = deltas.subList(from, to);
+            try {
+                momentMapper.applyCounterDeltas(batch);
+            } catch (Exception e) {
+                flushFailures.increment();
+                log.error("[动态计数] 刷写失败，增量保留到下一轮, 动态数={}", batch.size(), e);
+                continue;
+            }
+            // 只扣减本轮读到的部分，刷写期间新增的增量留到下一轮
+            for (int i = from; i < to; i++) {
+                MomentMapper.CounterDelta delta = deltas.get(i);
+                Counters counters = sources.get(i);
+                counters.likes.add(-delta.getLikes());
+                counters.comments.add(-delta.getComments());
+            }
+            flushedRows.add(batch.size());
+        }
+        if (!deltas.isEmpty()) {
+            log.debug("[动态计数] 刷写完成, 动态数={}", deltas.size());
+        }
+    }
+
+    /**
+     * 每小时按点赞、评论明细校准一次（启动 5 分钟后首次执行）
+     *
+     * 明细在事务中写入，对应的计数增量还在各实例的缓冲里，此时计数与明细的差值只是"在途"而不是偏差，
+     * 直接按明细覆盖会让这些增量在刷写后被重复计入。因此先查出偏差，间隔 {@link #SETTLE_MILLIS}
+     * （各实例至少刷写两轮）后复查，只修复两次偏差相同且本实例没有待刷写增量的动态；
+     * 修复语句再校验一次偏差未变，多个实例同时校准也只会修复一次
+     */
+    @Scheduled(initialDelay = 300000, fixedRate = 3600000)
+    public void reconcile() {
+        try {
+            flush();
+            List<MomentMapper.CounterDrift> suspects = momentMapper.findCounterDrifts(null);
+            if (suspects.isEmpty()) {
+                log.debug("[动态计数] 点赞数/评论数与明细一致");
+                return;
+            }
+            Thread.sleep(SETTLE_MILLIS);
+            flush();
+
+            int repaired = 0;
+            for (int from = 0; from < suspects.size(); from += BATCH_SIZE) {
+                List<MomentMapper.CounterDrift> batch = suspects.subList(from, Math.min(from + BATCH_SIZE, suspects.size()));
+                Map<Long, MomentMapper.CounterDrift> first = new HashMap<>();
+                batch.forEach(d -> first.put(d.getMomentId(), d));
+
+                List<MomentMapper.CounterDrift> stable = new ArrayList<>();
+                for (MomentMapper.CounterDrift d : momentMapper.findCounterDrifts(first.keySet())) {
+                    MomentMapper.CounterDrift before = first.get(d.getMomentId());
+                    Counters counters = pending.get(d.getMomentId());
+                    if (before.getLikeDrift() == d.getLikeDrift() && before.getCommentDrift() == d.getCommentDrift()
+                            && (counters == null || counters.isZero())) {
+                        stable.add(d);
+                    }
+                }
+                if (!stable.isEmpty()) {
+                    repaired += momentMapper.repairCounterDrifts(stable);
+                }
+            }
+            if (repaired > 0) {
+                log.warn("[动态计数] 发现并修复 {} 条动态的点赞数/评论数偏差", repaired);
+            } else {
+                log.debug("[动态计数] {} 条动态的计数差值均为在途增量，无需修复", suspects.size());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            log.error("[动态计数] 校准点赞数/评论数失败", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty() && pending.values().stream().anyMatch(c -> !c.isZero())) {
+            log.warn("[动态计数] 停机时仍有未刷写的增量, 动态数={}", pending.size());
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void add(Long momentId, Field field, long n) {
+        while (true) {
+            Counters counters = pending.get(momentId);
+            if (counters == null) {
+                counters = pending.computeIfAbsent(momentId, k -> new Counters());
+            }
+            adder(counters, field).add(n);
+            if (!counters.retired) {
+                return;
+            }
+            // 条目正在被回收，撤销后在新条目上重试
+            adder(counters, field).add(-n);
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 回收没有增量的条目，避免冷门动态长期占用内存
+     */
+    private void retireIfIdle(Long momentId) {
+        pending.computeIfPresent(momentId, (k, counters) -> {
+            counters.retired = true;
+            if (counters.isZero()) {
+                return null;
+            }
+            counters.retired = false;
+            return counters;
+        });
+    }
+
+    private static LongAdder adder(Counters counters, Field field) {
+        return switch (field) {
+            case LIKES -> counters.likes;
+            case COMMENTS -> counters.comments;
+        };
+    }
+
+    private static Integer merge(Integer base, long delta) {
+        return (int) Math.max(0, (base != null ? base : 0) + delta);
+    }
+}
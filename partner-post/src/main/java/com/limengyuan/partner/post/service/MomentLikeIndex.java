@@ -0,0 +1,178 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.post.mapper.MomentMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 用户已点赞动态索引（批量回填 MomentVO.liked）
+ *
+ * 每个用户一个 Redis Set（moment:liked:{userId}，与墓碑集合同一 hash tag，集群下脚本可同时操作），保存其点赞过的动态ID，首次查询时从 moment_likes 预热，
+ * 点赞/取消点赞时同步增删。一页动态的点赞状态用一次 SMISMEMBER 得到，替代逐条 existsLikeCount 查询。
+ *
+ * 预热完成的 Set 带有标记成员 {@link #WARM_MARKER}（动态ID不会为 0），没有标记说明尚未预热。
+ * 预热读库与并发点赞/取消点赞可能交错：
+ * - 点赞无论是否预热都直接 SADD，预热只做并集，不会覆盖新点赞
+ * - 取消点赞额外记入 5 分钟的墓碑集合，预热写入后再扣除墓碑，不会复活已取消的点赞
+ * 7 天无访问自动过期，下次查询重新预热；Redis 不可用时回退为一条 IN 查询。
+ */
+@Slf4j
+@Component
+public class MomentLikeIndex {
+
+    private static final String KEY_PREFIX = "moment:liked:";
+    private static final String TOMBSTONE_SUFFIX = ":unliked";
+    private static final String WARM_MARKER = "0";
+    private static final Duration TTL = Duration.ofDays(7);
+    private static final Duration TOMBSTONE_TTL = Duration.ofMinutes(5);
+
+    /**
+     * 点赞/取消点赞
+     * KEYS[1] = 用户点赞集合，KEYS[2] = 墓碑集合；ARGV[1] = 动态ID，ARGV[2] = 1 点赞 / 0 取消，
+     * ARGV[3] = 集合过期毫秒数，ARGV[4] = 墓碑过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> UPDATE_SCRIPT = new DefaultRedisScript<>("""
+            if ARGV[2] == '1' then
+                redis.call('sadd', KEYS[1], ARGV[1])
+                redis.call('srem', KEYS[2], ARGV[1])
+            else
+                redis.call('srem', KEYS[1], ARGV[1])
+                redis.call('sadd', KEYS[2], ARGV[1])
+                redis.call('pexpire', KEYS[2], ARGV[4])
+            end
+            redis.call('pexpire', KEYS[1], ARGV[3])
+            return 1
+            """, Long.class);
+
+    /**
+     * 预热：并入库中的点赞（含标记成员）后扣除墓碑
+     * KEYS[1] = 用户点赞集合，KEYS[2] = 墓碑集合；ARGV[1] = 集合过期毫秒数，ARGV[2..] = 成员
+     */
+    private static final DefaultRedisScript<Long> WARM_SCRIPT = new DefaultRedisScript<>("""
+            for i = 2, #ARGV, 1000 do
+                redis.call('sadd', KEYS[1], unpack(ARGV, i, math.min(i + 999, #ARGV)))
+            end
+            local dead = redis.call('smembers', KEYS[2])
+            if #dead > 0 then
+                redis.call('srem', KEYS[1], unpack(dead))
+            end
+            redis.call('pexpire', KEYS[1], ARGV[1])
+            return #dead
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MomentMapper momentMapper;
+
+    public MomentLikeIndex(StringRedisTemplate redisTemplate, MomentMapper momentMapper) {
+        this.redisTemplate = redisTemplate;
+        this.momentMapper = momentMapper;
+    }
+
+    public void onLike(Long userId, Long momentId) {
+        update(userId, momentId, true);
+    }
+
+    public void onUnlike(Long userId, Long momentId) {
+        update(userId, momentId, false);
+    }
+
+    /**
+     * 回填当前用户对一批动态的点赞状态；未登录时全部为 false
+     */
+    public void fillLiked(Long userId, Collection<MomentVO> moments) {
+        if (moments == null || moments.isEmpty()) {
+            return;
+        }
+        if (userId == null) {
+            moments.forEach(m -> m.setLiked(false));
+            return;
+        }
+        List<Long> momentIds = moments.stream().map(MomentVO::getMomentId).distinct().toList();
+        Set<Long> liked = findLiked(userId, momentIds);
+        moments.forEach(m -> m.setLiked(liked.contains(m.getMomentId())));
+    }
+
+    public void fillLiked(Long userId, MomentVO moment) {
+        if (moment != null) {
+            fillLiked(userId, List.of(moment));
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private Set<Long> findLiked(Long userId, List<Long> momentIds) {
+        String key = key(userId);
+        try {
+            Object[] members = new Object[momentIds.size() + 1];
+            members[0] = WARM_MARKER;
+            for (int i = 0; i < momentIds.size(); i++) {
+                members[i + 1] = String.valueOf(momentIds.get(i));
+            }
+            Map<Object, Boolean> result = redisTemplate.opsForSet().isMember(key, members);
+            if (result != null && Boolean.TRUE.equals(result.get(WARM_MARKER))) {
+                Set<Long> liked = new HashSet<>();
+                for (Long momentId : momentIds) {
+                    if (Boolean.TRUE.equals(result.get(String.valueOf(momentId)))) {
+                        liked.add(momentId);
+                    }
+                }
+                return liked;
+            }
+            return warm(key, userId, momentIds);
+        } catch (Exception e) {
+            log.warn("[点赞索引] Redis 查询失败，回退到数据库, userId={}", userId, e);
+            return new HashSet<>(momentMapper.findLikedMomentIds(userId, momentIds));
+        }
+    }
+
+    /**
+     * 从 moment_likes 预热用户的点赞集合，并直接用读到的数据回答本次查询
+     */
+    private Set<Long> warm(String key, Long userId, List<Long> momentIds) {
+        List<Long> all = momentMapper.findLikedMomentIdsByUser(userId);
+        List<String> args = new ArrayList<>(all.size() + 2);
+        args.add(String.valueOf(TTL.toMillis()));
+        args.add(WARM_MARKER);
+        all.forEach(id -> args.add(String.valueOf(id)));
+        redisTemplate.execute(WARM_SCRIPT, List.of(key, key + TOMBSTONE_SUFFIX), args.toArray());
+        log.debug("[点赞索引] 预热完成, userId={}, 点赞数={}", userId, all.size());
+
+        Set<Long> liked = new HashSet<>(all);
+        liked.retainAll(momentIds);
+        return liked;
+    }
+
+    private void update(Long userId, Long momentId, boolean like) {
+        String key = key(userId);
+        try {
+            redisTemplate.execute(UPDATE_SCRIPT, List.of(key, key + TOMBSTONE_SUFFIX),
+                    String.valueOf(momentId), like ? "1" : "0",
+                    String.valueOf(TTL.toMillis()), String.valueOf(TOMBSTONE_TTL.toMillis()));
+        } catch (Exception e) {
+            // 更新失败时删除集合，下次查询重新预热，避免返回过期的点赞状态
+            log.warn("[点赞索引] 更新失败, userId={}, momentId={}", userId, momentId, e);
+            try {
+                redisTemplate.delete(key);
+            } catch (Exception ignored) {
+                // Redis 整体不可用时查询也会回退到数据库
+            }
+        }
+    }
+
+    private static String key(Long userId) {
+        return KEY_PREFIX + "{" + userId + "}";
+    }
+}
@@ -6,15 +6,22 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.limengyuan.partner.common.dto.request.CreateMomentRequest;
 import com.limengyuan.partner.common.dto.vo.MomentCommentVO;
 import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.dto.request.UpdateMomentRequest;
 import com.limengyuan.partner.common.entity.Moment;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
+import com.limengyuan.partner.post.event.MomentPublishedEvent;
 import com.limengyuan.partner.post.mapper.MomentMapper;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 动态服务层
@@ -23,12 +30,27 @@ import java.util.List;
 @Transactional
 public class MomentService {
 
+    /** 游标分页评论中每条一级评论附带的回复预览条数 */
+    private static final int REPLY_PREVIEW_SIZE = 3;
+
     private final MomentMapper momentMapper;
     private final ObjectMapper objectMapper;
-
-    public MomentService(MomentMapper momentMapper, ObjectMapper objectMapper) {
+    private final UserHydrator userHydrator;
+    private final MomentCounterBuffer counterBuffer;
+    private final UniqueViewCounter uniqueViewCounter;
+    private final MomentLikeIndex likeIndex;
+    private final ApplicationEventPublisher eventPublisher;
+
+    public MomentService(MomentMapper momentMapper, ObjectMapper objectMapper, UserHydrator userHydrator,
+                         MomentCounterBuffer counterBuffer, UniqueViewCounter uniqueViewCounter,
+                         MomentLikeIndex likeIndex, ApplicationEventPublisher eventPublisher) {
         this.momentMapper = momentMapper;
         this.objectMapper = objectMapper;
+        this.userHydrator = userHydrator;
+        this.counterBuffer = counterBuffer;
+        this.uniqueViewCounter = uniqueViewCounter;
+        this.likeIndex = likeIndex;
+        this.eventPublisher = eventPublisher;
     }
 
     // ==================== 动态 CRUD ====================
@@ -61,8 +83,12 @@ public class MomentService {
         if (rows == 0) {
             return Result.error("发布失败");
         }
+        // 仅自己可见的动态不进粉丝的关注时间线
+        if (moment.getVisibility() != 2) {
+            eventPublisher.publishEvent(new MomentPublishedEvent(moment.getMomentId(), userId));
+        }
 
-        MomentVO vo = momentMapper.findByIdWithUser(moment.getMomentId());
+        MomentVO vo = userHydrator.fillMoment(momentMapper.findByIdWithUser(moment.getMomentId()));
         if (vo != null) {
             return Result.success("发布成功", vo);
         }
@@ -70,25 +96,26 @@ public class MomentService {
     }
 
     /**
-     * 查看动态详情 (同时增加浏览数)
+     * 查看动态详情 (同时记录浏览人数)
+     *
+     * @param viewer 访客标识，见 {@link UniqueViewCounter#viewerOf}
      */
     @Transactional
-    public Result<MomentVO> getMoment(Long momentId, Long currentUserId) {
-        MomentVO vo = momentMapper.findByIdWithUser(momentId);
+    public Result<MomentVO> getMoment(Long momentId, Long currentUserId, String viewer) {
+        MomentVO vo = userHydrator.fillMoment(momentMapper.findByIdWithUser(momentId));
         if (vo == null) {
             return Result.error("动态不存在或已被删除");
         }
 
-        // 增加浏览数
-        momentMapper.incrementViewCount(momentId);
-        vo.setViewCount(vo.getViewCount() != null ? vo.getViewCount() + 1 : 1);
+        // 记录浏览人数（同一访客只计一次，定期合并到数据库），返回的计数取库中值与实时估算值的较大者
+        long views = uniqueViewCounter.record(UniqueViewCounter.Target.MOMENT, momentId, viewer);
+        if (views > (vo.getViewCount() != null ? vo.getViewCount() : 0)) {
+            vo.setViewCount((int) views);
+        }
+        counterBuffer.apply(vo);
 
         // 判断当前用户是否已点赞
-        if (currentUserId != null) {
-            vo.setLiked(momentMapper.existsLikeCount(momentId, currentUserId) > 0);
-        } else {
-            vo.setLiked(false);
-        }
+        likeIndex.fillLiked(currentUserId, vo);
 
         return Result.success(vo);
     }
@@ -97,19 +124,43 @@ public class MomentService {
      * 获取动态广场列表（分页，只显示公开动态）
      */
     @Transactional(readOnly = true)
-    public Result<PageResult<MomentVO>> getMomentList(int page, int size) {
+    public Result<PageResult<MomentVO>> getMomentList(int page, int size, Long currentUserId) {
         long offset = (long) page * size;
         List<MomentVO> list = momentMapper.findAllPublicWithUser(size, offset);
+        userHydrator.fillMoments(list);
+        counterBuffer.apply(list);
+        likeIndex.fillLiked(currentUserId, list);
         long total = momentMapper.countAllPublic();
         return Result.success(PageResult.of(list, total, page, size));
     }
 
+    /**
+     * 游标分页获取动态广场列表（只显示公开动态）
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    @Transactional(readOnly = true)
+    public Result<CursorPage<MomentVO>> getMomentListByCursor(String cursor, int size, Long currentUserId) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<MomentVO> rows = momentMapper.findAllPublicWithUserByCursor(
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        userHydrator.fillMoments(rows);
+        counterBuffer.apply(rows);
+        likeIndex.fillLiked(currentUserId, rows);
+        return Result.success(CursorPage.of(rows, size,
+                m -> CursorHelper.encode(m.getCreatedAt(), m.getMomentId())));
+    }
+
     /**
      * 查看当前登录用户自己的动态列表
      */
     @Transactional(readOnly = true)
     public Result<List<MomentVO>> getMyMoments(Long userId) {
         List<MomentVO> list = momentMapper.findByUserIdWithUser(userId);
+        userHydrator.fillMoments(list);
+        counterBuffer.apply(list);
+        likeIndex.fillLiked(userId, list);
         return Result.success(list);
     }
 
@@ -117,8 +168,11 @@ public class MomentService {
      * 查看指定用户的动态列表（公开主页）
      */
     @Transactional(readOnly = true)
-    public Result<List<MomentVO>> getUserMoments(Long userId) {
+    public Result<List<MomentVO>> getUserMoments(Long userId, Long currentUserId) {
         List<MomentVO> list = momentMapper.findByUserIdWithUser(userId);
+        userHydrator.fillMoments(list);
+        counterBuffer.apply(list);
+        likeIndex.fillLiked(currentUserId, list);
         return Result.success(list);
     }
 
@@ -165,8 +219,9 @@ public class MomentService {
             return Result.error("更新失败，动态不存在或无权限编辑");
         }
 
-        MomentVO updated = momentMapper.findByIdWithUser(momentId);
+        MomentVO updated = counterBuffer.apply(userHydrator.fillMoment(momentMapper.findByIdWithUser(momentId)));
         if (updated != null) {
+            likeIndex.fillLiked(userId, updated);
             return Result.success(updated);
         }
         return Result.error("更新成功但查询失败");
@@ -193,8 +248,12 @@ public class MomentService {
         if (momentMapper.existsLikeCount(momentId, userId) > 0) {
             return Result.error(400, "已经点赞过了");
         }
-        momentMapper.insertLike(momentId, userId);
-        momentMapper.incrementLikeCount(momentId);
+        // 并发重复点赞时 INSERT IGNORE 不插入，也不计数
+        if (momentMapper.insertLike(momentId, userId) == 0) {
+            return Result.error(400, "已经点赞过了");
+        }
+        counterBuffer.incrementLike(momentId);
+        likeIndex.onLike(userId, momentId);
         return Result.success("点赞成功", null);
     }
 
@@ -207,7 +266,8 @@ public class MomentService {
         if (rows == 0) {
             return Result.error(400, "尚未点赞");
         }
-        momentMapper.decrementLikeCount(momentId);
+        counterBuffer.decrementLike(momentId);
+        likeIndex.onUnlike(userId, momentId);
         return Result.success("取消点赞成功", null);
     }
 
@@ -234,25 +294,83 @@ public class MomentService {
         if (comment.getCommentId() == null) {
             return Result.error("评论失败");
         }
-        // 同步更新动态评论数
-        momentMapper.incrementCommentCount(momentId);
+        // 评论数走写缓冲，定期批量刷写
+        counterBuffer.incrementComment(momentId);
         return Result.success("评论成功", comment.getCommentId());
     }
 
     /**
-     * 获取动态的评论列表（两级结构）
+     * 获取动态的评论列表（两级结构，包含全部回复）
+     * 一级评论和全部回复各一次查询，回复在内存中按 parent_id 分组
      */
     @Transactional(readOnly = true)
     public Result<List<MomentCommentVO>> getComments(Long momentId) {
-        // 1. 查询所有一级评论
         List<MomentCommentVO> topComments = momentMapper.findTopCommentsByMomentId(momentId);
+        if (topComments.isEmpty()) {
+            return Result.success(topComments);
+        }
 
-        // 2. 为每条一级评论填充回复列表
+        Map<Long, List<MomentCommentVO>> repliesByParent = new HashMap<>();
+        for (MomentCommentVO reply : momentMapper.findRepliesByMomentId(momentId)) {
+            repliesByParent.computeIfAbsent(reply.getParentId(), k -> new ArrayList<>()).add(reply);
+        }
         for (MomentCommentVO comment : topComments) {
-            List<MomentCommentVO> replies = momentMapper.findRepliesByParentId(comment.getCommentId());
+            List<MomentCommentVO> replies = repliesByParent.getOrDefault(comment.getCommentId(), new ArrayList<>());
             comment.setReplies(replies);
+            comment.setReplyCount(replies.size());
         }
-
+        userHydrator.fillComments(topComments);
         return Result.success(topComments);
     }
+
+    /**
+     * 游标分页获取动态的一级评论，每条附带最早的几条回复预览和回复总数
+     * 一页只需两次查询：一级评论一次，全部预览一次（窗口函数）；其余回复通过 getRepliesByCursor 展开
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    @Transactional(readOnly = true)
+    public Result<CursorPage<MomentCommentVO>> getCommentsByCursor(Long momentId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<MomentCommentVO> rows = momentMapper.findTopCommentsByMomentIdByCursor(
+                momentId, c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<MomentCommentVO> page = CursorPage.of(rows, size,
+                m -> CursorHelper.encode(m.getCreatedAt(), m.getCommentId()));
+        if (page.getList().isEmpty()) {
+            return Result.success(page);
+        }
+
+        List<Long> parentIds = page.getList().stream().map(MomentCommentVO::getCommentId).toList();
+        Map<Long, List<MomentCommentVO>> previewsByParent = new HashMap<>();
+        for (MomentCommentVO reply : momentMapper.findReplyPreviewsByParentIds(parentIds, REPLY_PREVIEW_SIZE)) {
+            previewsByParent.computeIfAbsent(reply.getParentId(), k -> new ArrayList<>()).add(reply);
+        }
+        for (MomentCommentVO comment : page.getList()) {
+            List<MomentCommentVO> previews = previewsByParent.getOrDefault(comment.getCommentId(), new ArrayList<>());
+            comment.setReplies(previews);
+            // 每行预览都带有所属评论的回复总数
+            comment.setReplyCount(previews.isEmpty() ? 0 : previews.get(0).getReplyCount());
+            previews.forEach(p -> p.setReplyCount(null));
+        }
+        userHydrator.fillComments(page.getList());
+        return Result.success(page);
+    }
+
+    /**
+     * 游标分页展开某条一级评论下的回复
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    @Transactional(readOnly = true)
+    public Result<CursorPage<MomentCommentVO>> getRepliesByCursor(Long commentId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<MomentCommentVO> rows = momentMapper.findRepliesByParentIdByCursor(
+                commentId, c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<MomentCommentVO> page = CursorPage.of(rows, size,
+                m -> CursorHelper.encode(m.getCreatedAt(), m.getCommentId()));
+        userHydrator.fillComments(page.getList());
+        return Result.success(page);
+    }
 }
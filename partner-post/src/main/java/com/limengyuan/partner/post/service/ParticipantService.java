@@ -1,6 +1,7 @@
 package com.limengyuan.partner.post.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
 import com.limengyuan.partner.common.dto.vo.ActivityWithApplicationsVO;
 import com.limengyuan.partner.common.dto.request.JoinActivityRequest;
@@ -11,14 +12,20 @@ import com.limengyuan.partner.common.dto.request.ReviewRequest;
 import com.limengyuan.partner.common.entity.Activity;
 import com.limengyuan.partner.common.entity.Participant;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
+import com.limengyuan.partner.post.event.ActivityChangedEvent;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
 import com.limengyuan.partner.post.mapper.ParticipantMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * 活动参与服务层 - 处理报名、审核、退出等业务逻辑
@@ -27,6 +34,9 @@ import java.util.List;
 @Transactional
 public class ParticipantService {
 
+    /** "我发布的活动"中每个活动预览的申请条数 */
+    private static final int APPLICATION_PREVIEW_SIZE = 7;
+
     @Autowired
     private ParticipantMapper participantMapper;
 
@@ -36,6 +46,15 @@ public class ParticipantService {
     @Autowired
     private ActivityVectorService activityVectorService;
 
+    @Autowired
+    private ActivitySlotReserver activitySlotReserver;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Autowired
+    private UserHydrator userHydrator;
+
     /**
      * 申请加入活动
      */
@@ -66,14 +85,17 @@ public class ParticipantService {
             } else if (existing.getStatus() == Participant.STATUS_REJECTED) {
                 return Result.error("您的申请已被拒绝");
             }
-            // 如果是主动退出(STATUS_LEFT)，允许重新申请 - 更新状态
-            participantMapper.updateStatus(existing.getParticipantId(), Participant.STATUS_PENDING);
+            // 如果是主动退出(STATUS_LEFT)，允许重新申请 - 条件更新，防止并发重复提交
+            int updated = participantMapper.updateStatusIfMatch(existing.getParticipantId(),
+                    Participant.STATUS_LEFT, Participant.STATUS_PENDING);
+            if (updated == 0) {
+                return Result.error("您已申请过，请等待审核");
+            }
             return Result.success("重新申请成功，请等待审核", existing);
         }
 
-        // 5. 检查是否已满员
-        int currentCount = countApprovedByActivityId(activityId);
-        if (currentCount >= activity.getMaxParticipants() - 1) {
+        // 5. 检查是否已满员（仅快速失败，名额在审核通过时由 ActivitySlotReserver 原子占用）
+        if (activity.getApprovedCount() >= activity.getMaxParticipants() - 1) {
             return Result.error("活动已满员");
         }
 
@@ -85,7 +107,13 @@ public class ParticipantService {
                 .applyMsg(request != null ? request.getApplyMsg() : null)
                 .build();
 
-        int rows = participantMapper.insert(participant);
+        int rows;
+        try {
+            rows = participantMapper.insert(participant);
+        } catch (DuplicateKeyException e) {
+            // uniq_activity_user 兜底：同一用户并发重复提交
+            return Result.error("您已申请过，请等待审核");
+        }
         if (rows == 0) {
             return Result.error("申请失败，请稍后重试");
         }
@@ -103,6 +131,7 @@ public class ParticipantService {
         }
 
         List<ParticipantVO> participants = participantMapper.findByActivityIdWithUser(activityId);
+        userHydrator.fillParticipants(participants);
         return Result.success(participants);
     }
 
@@ -111,6 +140,7 @@ public class ParticipantService {
      */
     public Result<List<ParticipantVO>> getApprovedParticipants(Long activityId) {
         List<ParticipantVO> participants = participantMapper.findApprovedByActivityIdWithUser(activityId);
+        userHydrator.fillParticipants(participants);
         return Result.success(participants);
     }
 
@@ -140,27 +170,8 @@ public class ParticipantService {
             return Result.error("该申请已处理");
         }
 
-        // 5. 检查是否已满员
-        int currentCount = countApprovedByActivityId(participant.getActivityId());
-        if (currentCount >= activity.getMaxParticipants() - 1) {
-            return Result.error("活动已满员，无法通过更多申请");
-        }
-
-        // 6. 更新参与者状态
-        boolean success = participantMapper.updateStatus(participantId, Participant.STATUS_APPROVED);
-        if (!success) {
-            return Result.error("操作失败");
-        }
-
-        // 7. 通过后检查是否已满员，满员则更新活动状态
-        int newCount = currentCount + 1;
-        if (newCount >= activity.getMaxParticipants() - 1) {
-            activityMapper.updateStatus(activity.getActivityId(), 1); // 1 = 已满员
-            // 满员后从 Milvus 向量索引中移除，不再参与推荐
-            activityVectorService.removeActivity(activity.getActivityId());
-        }
-
-        return Result.success("已通过", null);
+        // 5. 占用名额并更新参与者状态
+        return doApprove(participant);
     }
 
     /**
@@ -185,9 +196,10 @@ public class ParticipantService {
             return Result.error("该申请已处理");
         }
 
-        boolean success = participantMapper.updateStatus(participantId, Participant.STATUS_REJECTED);
-        if (!success) {
-            return Result.error("操作失败");
+        int updated = participantMapper.updateStatusIfMatch(participantId,
+                Participant.STATUS_PENDING, Participant.STATUS_REJECTED);
+        if (updated == 0) {
+            return Result.error("该申请已处理");
         }
 
         return Result.success("已拒绝", null);
@@ -209,22 +221,21 @@ public class ParticipantService {
         // 记录退出前的状态，用于判断是否需要恢复活动招募状态
         int previousStatus = participant.getStatus();
 
-        boolean success = participantMapper.updateStatus(participant.getParticipantId(), Participant.STATUS_LEFT);
-        if (!success) {
-            return Result.error("操作失败");
+        int updated = participantMapper.updateStatusIfMatch(participant.getParticipantId(),
+                previousStatus, Participant.STATUS_LEFT);
+        if (updated == 0) {
+            return Result.error("申请状态已变化，请刷新后重试");
         }
 
-        // 如果退出的是已通过的成员，且活动当前是已满员状态，则恢复为招募中
+        // 如果退出的是已通过的成员，释放名额；活动因此从已满员恢复为招募中时重新写入 Milvus 向量索引
         if (previousStatus == Participant.STATUS_APPROVED) {
-            Activity activity = activityMapper.selectById(activityId);
-            if (activity != null && activity.getStatus() == 1) { // 1 = 已满员
-                activityMapper.updateStatus(activityId, 0); // 0 = 招募中
-                // 恢复招募后重新写入 Milvus 向量索引
-                ActivityVO activityVO = activityMapper.findByIdWithUser(activityId);
+            if (activitySlotReserver.release(activityId)) {
+                ActivityVO activityVO = userHydrator.fillActivity(activityMapper.findByIdWithUser(activityId));
                 if (activityVO != null) {
                     activityVectorService.addActivity(activityVO);
                 }
             }
+            eventPublisher.publishEvent(new ActivityChangedEvent(activityId));
         }
 
         return Result.success("已退出活动", null);
@@ -257,27 +268,50 @@ public class ParticipantService {
         }
 
         if (request.isApprove()) {
-            int currentCount = countApprovedByActivityId(participant.getActivityId());
-            if (currentCount >= activity.getMaxParticipants() - 1) {
-                return Result.error("活动已满员，无法通过更多申请");
-            }
-            participantMapper.updateStatus(participantId, Participant.STATUS_APPROVED);
-
-            // 通过后检查是否已满员，满员则更新活动状态
-            int newCount = currentCount + 1;
-            if (newCount >= activity.getMaxParticipants() - 1) {
-                activityMapper.updateStatus(activity.getActivityId(), 1); // 1 = 已满员
-                // 满员后从 Milvus 向量索引中移除
-                activityVectorService.removeActivity(activity.getActivityId());
-            }
-
-            return Result.success("已通过", null);
+            return doApprove(participant);
         } else {
-            participantMapper.updateStatus(participantId, Participant.STATUS_REJECTED);
+            int updated = participantMapper.updateStatusIfMatch(participantId,
+                    Participant.STATUS_PENDING, Participant.STATUS_REJECTED);
+            if (updated == 0) {
+                return Result.error("该申请已处理");
+            }
             return Result.success("已拒绝", null);
         }
     }
 
+    /**
+     * 审核通过的公共流程
+     *
+     * 1. 条件流转申请状态（待审核 → 已通过），同一申请被并发审核时只有一个请求能成功
+     * 2. 原子占用名额，失败则把申请状态改回待审核
+     * 3. 名额占满时标记活动为已满员，并从 Milvus 向量索引中移除
+     * 4. 发布活动变更事件（已通过人数变化，需刷新索引与详情缓存）
+     */
+    private Result<Void> doApprove(Participant participant) {
+        Long participantId = participant.getParticipantId();
+        Long activityId = participant.getActivityId();
+
+        int updated = participantMapper.updateStatusIfMatch(participantId,
+                Participant.STATUS_PENDING, Participant.STATUS_APPROVED);
+        if (updated == 0) {
+            return Result.error("该申请已处理");
+        }
+
+        if (!activitySlotReserver.tryReserve(activityId)) {
+            participantMapper.updateStatusIfMatch(participantId,
+                    Participant.STATUS_APPROVED, Participant.STATUS_PENDING);
+            return Result.error("活动已满员，无法通过更多申请");
+        }
+
+        if (activitySlotReserver.closeIfFull(activityId)) {
+            // 满员后从 Milvus 向量索引中移除，不再参与推荐
+            activityVectorService.removeActivity(activityId);
+        }
+        eventPublisher.publishEvent(new ActivityChangedEvent(activityId));
+
+        return Result.success("已通过", null);
+    }
+
     /**
      * 修改申请留言
      */
@@ -308,6 +342,7 @@ public class ParticipantService {
      */
     public Result<List<MyApplicationVO>> getMyApplications(Long userId) {
         List<MyApplicationVO> applications = participantMapper.findByUserIdWithActivity(userId);
+        userHydrator.fillApplications(applications);
         return Result.success(applications);
     }
 
@@ -316,14 +351,52 @@ public class ParticipantService {
      */
     public Result<List<ActivityWithApplicationsVO>> getMyActivitiesWithApplications(Long userId) {
         List<ActivityVO> activities = activityMapper.findByInitiatorIdWithUser(userId);
+        return Result.success(withApplications(activities));
+    }
 
-        List<ActivityWithApplicationsVO> result = new ArrayList<>();
-        for (ActivityVO activity : activities) {
-            List<ParticipantVO> applications = participantMapper.findByActivityIdWithUserPaged(
-                    activity.getActivityId(), 0, 7);
-            int totalApplications = countByActivityId(activity.getActivityId());
+    /**
+     * 游标分页获取用户发布的活动及其申请列表（按发布时间倒序）
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<ActivityWithApplicationsVO>> getMyActivitiesWithApplicationsByCursor(
+            Long userId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<ActivityVO> rows = activityMapper.findByInitiatorIdByCursor(userId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<ActivityVO> page = CursorPage.of(rows, size,
+                a -> CursorHelper.encode(a.getCreatedAt(), a.getActivityId()));
+        return Result.success(page.mapList(this::withApplications));
+    }
 
-            ActivityWithApplicationsVO vo = ActivityWithApplicationsVO.builder()
+    /**
+     * 为一批活动附上申请预览和申请总数
+     * 无论活动多少，固定只查两次：窗口函数取每个活动最早的若干条申请 + 一次分组计数
+     */
+    private List<ActivityWithApplicationsVO> withApplications(List<ActivityVO> activities) {
+        if (activities.isEmpty()) {
+            return new ArrayList<>();
+        }
+        userHydrator.fillActivities(activities);
+
+        List<Long> activityIds = activities.stream().map(ActivityVO::getActivityId).toList();
+
+        List<ParticipantVO> previews = participantMapper.findTopByActivityIds(activityIds, APPLICATION_PREVIEW_SIZE);
+        userHydrator.fillParticipants(previews);
+        Map<Long, List<ParticipantVO>> previewsByActivity = new HashMap<>();
+        for (ParticipantVO preview : previews) {
+            previewsByActivity.computeIfAbsent(preview.getActivityId(), k -> new ArrayList<>()).add(preview);
+        }
+
+        Map<Long, Integer> totals = new HashMap<>();
+        for (Map<String, Object> row : participantMapper.countGroupByActivityIds(activityIds)) {
+            totals.put(((Number) row.get("activity_id")).longValue(), ((Number) row.get("total")).intValue());
+        }
+
+        List<ActivityWithApplicationsVO> result = new ArrayList<>(activities.size());
+        for (ActivityVO activity : activities) {
+            result.add(ActivityWithApplicationsVO.builder()
                     .activityId(activity.getActivityId())
                     .initiatorId(activity.getInitiatorId())
                     .categoryIds(activity.getCategoryIds())
@@ -344,14 +417,11 @@ public class ParticipantService {
                     .initiatorAvatar(activity.getInitiatorAvatar())
                     .initiatorCreditScore(activity.getInitiatorCreditScore())
                     .currentParticipants(activity.getCurrentParticipants())
-                    .applications(applications)
-                    .totalApplications(totalApplications)
-                    .build();
-
-            result.add(vo);
+                    .applications(previewsByActivity.getOrDefault(activity.getActivityId(), new ArrayList<>()))
+                    .totalApplications(totals.getOrDefault(activity.getActivityId(), 0))
+                    .build());
         }
-
-        return Result.success(result);
+        return result;
     }
 
     /**
@@ -365,6 +435,7 @@ public class ParticipantService {
 
         int offset = page * size;
         List<ParticipantVO> participants = participantMapper.findByActivityIdWithUserPaged(activityId, offset, size);
+        userHydrator.fillParticipants(participants);
         int total = countByActivityId(activityId);
 
         ParticipantPageVO pageVO = ParticipantPageVO.builder()
@@ -377,6 +448,26 @@ public class ParticipantService {
         return Result.success(pageVO);
     }
 
+    /**
+     * 游标分页获取活动的参与者列表（按报名时间正序）
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<ParticipantVO>> getParticipantsByCursor(Long activityId, String cursor, int size) {
+        Activity activity = activityMapper.selectById(activityId);
+        if (activity == null) {
+            return Result.error("活动不存在");
+        }
+
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<ParticipantVO> rows = participantMapper.findByActivityIdWithUserByCursor(activityId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        userHydrator.fillParticipants(rows);
+        return Result.success(CursorPage.of(rows, size,
+                p -> CursorHelper.encode(p.getCreatedAt(), p.getParticipantId())));
+    }
+
     // ============================
     // 内部辅助方法（使用 QueryWrapper）
     // ============================
@@ -390,15 +481,6 @@ public class ParticipantService {
         return participantMapper.selectOne(wrapper);
     }
 
-    /**
-     * 统计某活动已通过的参与人数
-     */
-    private int countApprovedByActivityId(Long activityId) {
-        QueryWrapper<Participant> wrapper = new QueryWrapper<>();
-        wrapper.eq("activity_id", activityId).eq("status", 1);
-        return Math.toIntExact(participantMapper.selectCount(wrapper));
-    }
-
     /**
      * 统计某活动的所有参与记录数
      */
@@ -0,0 +1,306 @@
+package com.limengyuan.partner.post.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.vo.RecommendedActivityVO;
+import com.limengyuan.partner.common.result.Result;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * AI 推荐结果缓存：单飞 + 过期后先返回旧值再后台刷新
+ *
+ * - 缓存值带计算时间，30 分钟内为新鲜数据直接返回；超过 30 分钟（24 小时内）为旧数据，立即返回并在后台刷新
+ * - 同一用户同一时刻只有一次计算：本实例内并发请求合并到同一个 Future，跨实例通过 Redis 锁互斥，
+ *   没抢到锁的实例等待持锁实例写回结果
+ * - 只缓存非空的成功结果；刷新失败时继续返回旧值，下次请求再重试
+ *
+ * 监控指标（/actuator/metrics）：
+ * - partner.recommend.cache.requests{result=fresh|stale|miss}
+ * - partner.recommend.cache.coalesced{scope=local|remote}：被合并、未重复计算的请求数
+ * - partner.recommend.cache.staleness：返回旧值时数据的年龄（秒）
+ */
+@Slf4j
+@Component
+public class RecommendationCache {
+
+    private static final String CACHE_KEY_PREFIX = "recommend:user:";
+    private static final String LOCK_KEY_PREFIX = "recommend:lock:";
+    /** 新鲜期：30 分钟 */
+    private static final Duration FRESH_TTL = Duration.ofMinutes(30);
+    /** 旧数据最长保留时间 */
+    private static final Duration STALE_TTL = Duration.ofHours(24);
+    /** 计算锁过期时间，持锁实例宕机后自动释放；需大于一次计算的最长耗时（后台生成推荐理由最多等 45s） */
+    private static final Duration LOCK_TTL = Duration.ofSeconds(60);
+    private static final long POLL_INTERVAL_MS = 200;
+
+    /** 仅当锁仍属于自己时才删除 */
+    private static final DefaultRedisScript<Long> RELEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('get', KEYS[1]) == ARGV[1] then return redis.call('del', KEYS[1]) else return 0 end",
+            Long.class);
+
+    /**
+     * 缓存值
+     *
+     * @param computedAt 计算时间（毫秒时间戳）
+     * @param items      推荐结果
+     */
+    record Entry(long computedAt, List<RecommendedActivityVO> items) {
+    }
+
+    private final StringRedisTemplate redisTemplate;
+    private final ObjectMapper objectMapper;
+    /** 等待其他实例计算结果的最长时间，超时后本实例直接计算 */
+    private final Duration waitTimeout;
+
+    /** 本实例内正在计算的用户 */
+    private final Map<Long, CompletableFuture<Result<List<RecommendedActivityVO>>>> inFlight = new ConcurrentHashMap<>();
+    private final ExecutorService refreshExecutor = Executors.newVirtualThreadPerTaskExecutor();
+
+    private final Counter freshHits;
+    private final Counter staleHits;
+    private final Counter misses;
+    private final Counter coalescedLocal;
+    private final Counter coalescedRemote;
+    private final DistributionSummary staleness;
+
+    public RecommendationCache(StringRedisTemplate redisTemplate, ObjectMapper objectMapper,
+                               MeterRegistry meterRegistry,
+                               @Value("${partner.recommend.cache.wait-timeout:20s}") Duration waitTimeout) {
+        this.redisTemplate = redisTemplate;
+        this.objectMapper = objectMapper;
+        this.waitTimeout = waitTimeout;
+        this.freshHits = requests(meterRegistry, "fresh");
+        this.staleHits = requests(meterRegistry, "stale");
+        this.misses = requests(meterRegistry, "miss");
+        this.coalescedLocal = coalesced(meterRegistry, "local");
+        this.coalescedRemote = coalesced(meterRegistry, "remote");
+        this.staleness = DistributionSummary.builder("partner.recommend.cache.staleness")
+                .baseUnit("seconds")
+                .description("返回旧推荐结果时数据的年龄")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        refreshExecutor.shutdownNow();
+    }
+
+    /**
+     * 读取推荐结果，未命中时调用 loader 计算
+     *
+     * @param loader 计算推荐结果（较慢，包含向量召回和大模型调用）
+     */
+    public Result<List<RecommendedActivityVO>> get(Long userId, Supplier<Result<List<RecommendedActivityVO>>> loader) {
+        Entry entry = read(userId);
+        if (entry != null) {
+            long age = System.currentTimeMillis() - entry.computedAt();
+            if (age < FRESH_TTL.toMillis()) {
+                freshHits.increment();
+                return Result.success(entry.items());
+            }
+            staleHits.increment();
+            staleness.record(age / 1000.0);
+            refreshAsync(userId, loader);
+            log.info("[AI推荐] 返回旧结果并后台刷新, userId={}, age={}s", userId, age / 1000);
+            return Result.success(entry.items());
+        }
+
+        misses.increment();
+        CompletableFuture<Result<List<RecommendedActivityVO>>> created = new CompletableFuture<>();
+        CompletableFuture<Result<List<RecommendedActivityVO>>> existing = inFlight.putIfAbsent(userId, created);
+        if (existing != null) {
+            coalescedLocal.increment();
+            Result<List<RecommendedActivityVO>> shared = existing.join();
+            // 合并到的是后台刷新，且其他实例正在计算时没有结果，改为等待
+            return shared != null ? shared : load(userId, loader, true);
+        }
+        run(userId, created, () -> load(userId, loader, true));
+        return created.join();
+    }
+
+    /**
+     * 预计算：结果仍新鲜、本实例或其他实例正在计算时跳过，否则计算并写入缓存
+     *
+     * @return 是否实际执行了计算
+     */
+    public boolean refresh(Long userId, Supplier<Result<List<RecommendedActivityVO>>> loader) {
+        Entry entry = read(userId);
+        if (entry != null && System.currentTimeMillis() - entry.computedAt() < FRESH_TTL.toMillis()) {
+            return false;
+        }
+        CompletableFuture<Result<List<RecommendedActivityVO>>> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(userId, created) != null) {
+            return false;
+        }
+        run(userId, created, () -> load(userId, loader, false));
+        return created.join() != null;
+    }
+
+    /**
+     * 返回新鲜的缓存结果，没有或已过期时返回 null（不触发计算，供流式接口使用）
+     */
+    public List<RecommendedActivityVO> getIfFresh(Long userId) {
+        Entry entry = read(userId);
+        if (entry != null && System.currentTimeMillis() - entry.computedAt() < FRESH_TTL.toMillis()) {
+            freshHits.increment();
+            return entry.items();
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 直接写入计算结果（供流式接口使用，空结果不写入）
+     */
+    public void put(Long userId, List<RecommendedActivityVO> items) {
+        if (items != null && !items.isEmpty()) {
+            write(userId, new Entry(System.currentTimeMillis(), items));
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void refreshAsync(Long userId, Supplier<Result<List<RecommendedActivityVO>>> loader) {
+        CompletableFuture<Result<List<RecommendedActivityVO>>> created = new CompletableFuture<>();
+        if (inFlight.putIfAbsent(userId, created) != null) {
+            coalescedLocal.increment();
+            return;
+        }
+        refreshExecutor.execute(() -> run(userId, created, () -> load(userId, loader, false)));
+    }
+
+    private void run(Long userId, CompletableFuture<Result<List<RecommendedActivityVO>>> future,
+                     Supplier<Result<List<RecommendedActivityVO>>> task) {
+        try {
+            future.complete(task.get());
+        } catch (Throwable e) {
+            log.error("[AI推荐] 计算推荐结果失败, userId={}", userId, e);
+            future.complete(Result.error("AI 推荐服务暂时不可用，请稍后再试"));
+        } finally {
+            inFlight.remove(userId, future);
+        }
+    }
+
+    /**
+     * 抢锁计算；没抢到时，未命中场景等待持锁实例的结果，刷新场景直接放弃（旧值已返回给用户）
+     */
+    private Result<List<RecommendedActivityVO>> load(Long userId, Supplier<Result<List<RecommendedActivityVO>>> loader,
+                                                     boolean waitForOthers) {
+        String lockKey = LOCK_KEY_PREFIX + userId;
+        String token = UUID.randomUUID().toString();
+        long startedAt = System.currentTimeMillis();
+        boolean locked = Boolean.TRUE.equals(redisTemplate.opsForValue().setIfAbsent(lockKey, token, LOCK_TTL));
+
+        if (!locked) {
+            coalescedRemote.increment();
+            if (!waitForOthers) {
+                return null;
+            }
+            Entry entry = waitForRemote(userId, startedAt);
+            if (entry != null) {
+                return Result.success(entry.items());
+            }
+            log.warn("[AI推荐] 等待其他实例计算超时，本实例直接计算, userId={}", userId);
+            return compute(userId, loader);
+        }
+
+        try {
+            return compute(userId, loader);
+        } finally {
+            redisTemplate.execute(RELEASE_SCRIPT, List.of(lockKey), token);
+        }
+    }
+
+    private Result<List<RecommendedActivityVO>> compute(Long userId,
+                                                        Supplier<Result<List<RecommendedActivityVO>>> loader) {
+        Result<List<RecommendedActivityVO>> result = loader.get();
+        if (result != null && Integer.valueOf(200).equals(result.getCode())
+                && result.getData() != null && !result.getData().isEmpty()) {
+            write(userId, new Entry(System.currentTimeMillis(), result.getData()));
+        }
+        return result;
+    }
+
+    private Entry waitForRemote(Long userId, long since) {
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+        while (System.currentTimeMillis() < deadline) {
+            try {
+                Thread.sleep(POLL_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+            Entry entry = read(userId);
+            if (entry != null && entry.computedAt() >= since) {
+                return entry;
+            }
+            if (!Boolean.TRUE.equals(redisTemplate.hasKey(LOCK_KEY_PREFIX + userId))) {
+                // 持锁实例已结束但没有写回（计算失败或结果为空）
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private Entry read(Long userId) {
+        try {
+            String cached = redisTemplate.opsForValue().get(CACHE_KEY_PREFIX + userId);
+            if (cached == null) {
+                return null;
+            }
+            if (cached.startsWith("[")) {
+                // 旧格式：只有结果列表，没有计算时间，按旧数据处理
+                return new Entry(0L, objectMapper.readValue(cached, new TypeReference<List<RecommendedActivityVO>>() {
+                }));
+            }
+            return objectMapper.readValue(cached, Entry.class);
+        } catch (Exception e) {
+            log.warn("[AI推荐] 读取缓存失败, userId={}", userId, e);
+            return null;
+        }
+    }
+
+    private void write(Long userId, Entry entry) {
+        try {
+            redisTemplate.opsForValue().set(CACHE_KEY_PREFIX + userId, objectMapper.writeValueAsString(entry), STALE_TTL);
+            log.info("[AI推荐] 缓存已写入, userId={}", userId);
+        } catch (Exception e) {
+            log.warn("[AI推荐] 写入缓存失败, userId={}", userId, e);
+        }
+    }
+
+    private static Counter requests(MeterRegistry registry, String result) {
+        return Counter.builder("partner.recommend.cache.requests")
+                .tag("result", result)
+                .description("推荐缓存读取次数")
+                .register(registry);
+    }
+
+    private static Counter coalesced(MeterRegistry registry, String scope) {
+        return Counter.builder("partner.recommend.cache.coalesced")
+                .tag("scope", scope)
+                .description("被合并、未重复计算的推荐请求数")
+                .register(registry);
+    }
+}
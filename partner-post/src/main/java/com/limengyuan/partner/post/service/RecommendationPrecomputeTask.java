@@ -0,0 +1,179 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * AI 推荐离线预计算任务
+ *
+ * 每小时为最近活跃的用户预先计算推荐结果并写入 RecommendationCache，接口请求基本只读缓存：
+ * 1. 开启新一轮：查询最近 lookback-days 天有行为的用户，按最近行为时间倒序写入 Redis 队列。
+ *    同一小时内集群只开启一轮，上一轮队列未消费完时不开启新一轮
+ * 2. 消费队列：每次弹出一个用户交给虚拟线程计算，信号量限制同时调用大模型的数量。
+ *    队列本身就是进度，重启或多实例部署时各实例从队列中继续消费
+ *
+ * 一轮计算可能持续数十分钟，定时触发只把任务交给专用线程后立即返回，不占用共享的调度线程
+ * （计数刷写、索引重建等定时任务都依赖它）；上一轮仍在本实例执行时跳过本次触发。
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "partner.recommend.precompute.enabled", havingValue = "true", matchIfMissing = true)
+public class RecommendationPrecomputeTask {
+
+    /** 待计算的用户队列 */
+    private static final String QUEUE_KEY = "recommend:precompute:queue";
+    /** 本轮开始标记，过期后才能开启下一轮 */
+    private static final String ROUND_KEY = "recommend:precompute:round";
+    private static final Duration ROUND_INTERVAL = Duration.ofHours(1);
+    /** 队列最长保留时间，避免异常情况下残留 */
+    private static final Duration QUEUE_TTL = Duration.ofDays(1);
+
+    private final ActivityMapper activityMapper;
+    private final ActivityRecommendService activityRecommendService;
+    private final StringRedisTemplate redisTemplate;
+    private final int concurrency;
+    private final int lookbackDays;
+    private final int maxUsers;
+
+    /** 专用执行线程，同一时间只有一轮消费在执行 */
+    private final ExecutorService runner = Executors.newSingleThreadExecutor(
+            Thread.ofVirtual().name("recommend-precompute").factory());
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    public RecommendationPrecomputeTask(ActivityMapper activityMapper,
+                                        ActivityRecommendService activityRecommendService,
+                                        StringRedisTemplate redisTemplate,
+                                        @Value("${partner.recommend.precompute.concurrency:4}") int concurrency,
+                                        @Value("${partner.recommend.precompute.lookback-days:7}") int lookbackDays,
+                                        @Value("${partner.recommend.precompute.max-users:5000}") int maxUsers) {
+        this.activityMapper = activityMapper;
+        this.activityRecommendService = activityRecommendService;
+        this.redisTemplate = redisTemplate;
+        this.concurrency = concurrency;
+        this.lookbackDays = lookbackDays;
+        this.maxUsers = maxUsers;
+    }
+
+    /**
+     * 每 10 分钟检查一次：到点则开启新一轮，有未完成的队列则继续消费
+     */
+    @Scheduled(initialDelay = 120000, fixedDelay = 600000)
+    public void scheduledPrecompute() {
+        if (!running.compareAndSet(false, true)) {
+            log.debug("[推荐预计算] 上一次消费仍在进行，跳过本次触发");
+            return;
+        }
+        try {
+            runner.execute(() -> {
+                try {
+                    precompute();
+                } finally {
+                    running.set(false);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // 应用正在停机
+            running.set(false);
+        }
+    }
+
+    public synchronized void precompute() {
+        try {
+            startRoundIfDue();
+            drain();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            log.info("[推荐预计算] 停机中断，剩余用户留在队列中");
+        } catch (Exception e) {
+            log.error("[推荐预计算] 执行失败，下次从队列中继续", e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        // 中断等待许可的消费循环，已出队的用户计算完成后退出，其余留在队列中由下次启动继续
+        runner.shutdownNow();
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void startRoundIfDue() {
+        Long pending = redisTemplate.opsForList().size(QUEUE_KEY);
+        if (pending != null && pending > 0) {
+            log.info("[推荐预计算] 上一轮还有 {} 个用户未计算，继续消费", pending);
+            return;
+        }
+        if (!Boolean.TRUE.equals(redisTemplate.opsForValue()
+                .setIfAbsent(ROUND_KEY, LocalDateTime.now().toString(), ROUND_INTERVAL))) {
+            return;
+        }
+
+        List<Long> userIds = activityMapper.findRecentlyActiveUserIds(
+                LocalDateTime.now().minusDays(lookbackDays), maxUsers);
+        if (userIds.isEmpty()) {
+            return;
+        }
+        redisTemplate.opsForList().rightPushAll(QUEUE_KEY, userIds.stream().map(String::valueOf).toList());
+        redisTemplate.expire(QUEUE_KEY, QUEUE_TTL);
+        log.info("[推荐预计算] 开启新一轮，待计算用户 {} 个", userIds.size());
+    }
+
+    private void drain() throws InterruptedException {
+        Semaphore permits = new Semaphore(concurrency);
+        AtomicInteger computed = new AtomicInteger();
+        AtomicInteger skipped = new AtomicInteger();
+        AtomicInteger failed = new AtomicInteger();
+        long startedAt = System.currentTimeMillis();
+
+        // close() 会等待已提交的计算全部完成
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            while (true) {
+                // 先拿到许可再出队，进程退出时队列中只丢失正在计算的用户
+                permits.acquire();
+                String value = redisTemplate.opsForList().leftPop(QUEUE_KEY);
+                if (value == null) {
+                    permits.release();
+                    break;
+                }
+                Long userId = Long.valueOf(value);
+                executor.execute(() -> {
+                    try {
+                        if (activityRecommendService.precompute(userId)) {
+                            computed.incrementAndGet();
+                        } else {
+                            skipped.incrementAndGet();
+                        }
+                    } catch (Exception e) {
+                        failed.incrementAndGet();
+                        log.warn("[推荐预计算] 计算失败, userId={}", userId, e);
+                    } finally {
+                        permits.release();
+                    }
+                });
+            }
+        }
+
+        if (computed.get() > 0 || failed.get() > 0) {
+            log.info("[推荐预计算] 完成，计算 {} 个，跳过 {} 个，失败 {} 个，耗时 {}ms",
+                    computed.get(), skipped.get(), failed.get(), System.currentTimeMillis() - startedAt);
+        }
+    }
+}
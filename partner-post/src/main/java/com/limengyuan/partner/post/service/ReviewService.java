@@ -3,6 +3,7 @@ package com.limengyuan.partner.post.service;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.request.SubmitReviewRequest;
 import com.limengyuan.partner.common.dto.request.UpdateCreditRequest;
 import com.limengyuan.partner.common.dto.vo.ReviewVO;
@@ -11,6 +12,7 @@ import com.limengyuan.partner.common.entity.Activity;
 import com.limengyuan.partner.common.entity.Participant;
 import com.limengyuan.partner.common.entity.Review;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
 import com.limengyuan.partner.post.feign.UserServiceClient;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
 import com.limengyuan.partner.post.mapper.ParticipantMapper;
@@ -42,15 +44,17 @@ public class ReviewService {
     private final ParticipantMapper participantMapper;
     private final ObjectMapper objectMapper;
     private final UserServiceClient userServiceClient;
+    private final UserHydrator userHydrator;
 
     public ReviewService(ReviewMapper reviewMapper, ActivityMapper activityMapper,
                          ParticipantMapper participantMapper, ObjectMapper objectMapper,
-                         UserServiceClient userServiceClient) {
+                         UserServiceClient userServiceClient, UserHydrator userHydrator) {
         this.reviewMapper = reviewMapper;
         this.activityMapper = activityMapper;
         this.participantMapper = participantMapper;
         this.objectMapper = objectMapper;
         this.userServiceClient = userServiceClient;
+        this.userHydrator = userHydrator;
     }
 
     /**
@@ -161,6 +165,7 @@ public class ReviewService {
      */
     public Result<List<ReviewVO>> getActivityReviews(Long activityId) {
         List<ReviewVO> reviews = reviewMapper.findByActivityId(activityId);
+        userHydrator.fillReviews(reviews);
         return Result.success(reviews);
     }
 
@@ -170,6 +175,7 @@ public class ReviewService {
     public Result<UserReviewPageVO> getUserReviews(Long userId, int page, int size) {
         int offset = page * size;
         List<ReviewVO> reviews = reviewMapper.findByRevieweeIdPaged(userId, offset, size);
+        userHydrator.fillReviews(reviews);
 
         // 用 QueryWrapper 统计评价数量
         QueryWrapper<Review> countWrapper = new QueryWrapper<>();
@@ -192,6 +198,22 @@ public class ReviewService {
         return Result.success(vo);
     }
 
+    /**
+     * 游标分页获取某用户收到的评价
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<ReviewVO>> getUserReviewsByCursor(Long userId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<ReviewVO> rows = reviewMapper.findByRevieweeIdByCursor(userId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<ReviewVO> page = CursorPage.of(rows, size,
+                r -> CursorHelper.encode(r.getCreatedAt(), r.getReviewId()));
+        userHydrator.fillReviews(page.getList());
+        return Result.success(page);
+    }
+
     /**
      * 判断用户是否是活动的成员（参与者或发起人）
      */
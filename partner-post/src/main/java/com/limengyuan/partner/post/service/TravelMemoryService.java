@@ -4,11 +4,14 @@ import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.limengyuan.partner.common.dto.vo.*;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.ai.LlmRejectedException;
+import com.limengyuan.partner.post.ai.LlmRequest;
+import com.limengyuan.partner.post.config.SentinelBlockHandler;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
 import com.limengyuan.partner.post.mapper.ExpenseMapper;
 import com.limengyuan.partner.post.mapper.ParticipantMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.stereotype.Service;
 
@@ -41,25 +44,28 @@ public class TravelMemoryService {
     /** 日期格式化 */
     private static final DateTimeFormatter DATE_FMT = DateTimeFormatter.ofPattern("yyyy年M月d日");
 
-    private final ChatClient chatClient;
+    private final LlmGateway llmGateway;
     private final ActivityMapper activityMapper;
     private final ParticipantMapper participantMapper;
     private final ExpenseMapper expenseMapper;
     private final ObjectMapper objectMapper;
     private final StringRedisTemplate redisTemplate;
+    private final UserHydrator userHydrator;
 
-    public TravelMemoryService(ChatClient.Builder chatClientBuilder,
+    public TravelMemoryService(LlmGateway llmGateway,
                                 ActivityMapper activityMapper,
                                 ParticipantMapper participantMapper,
                                 ExpenseMapper expenseMapper,
                                 ObjectMapper objectMapper,
-                                StringRedisTemplate redisTemplate) {
-        this.chatClient = chatClientBuilder.build();
+                                StringRedisTemplate redisTemplate,
+                                UserHydrator userHydrator) {
+        this.llmGateway = llmGateway;
         this.activityMapper = activityMapper;
         this.participantMapper = participantMapper;
         this.expenseMapper = expenseMapper;
         this.objectMapper = objectMapper;
         this.redisTemplate = redisTemplate;
+        this.userHydrator = userHydrator;
     }
 
     /**
@@ -85,7 +91,7 @@ public class TravelMemoryService {
         }
 
         // ========== 2. 获取活动信息 ==========
-        ActivityVO activity = activityMapper.findByIdWithUser(activityId);
+        ActivityVO activity = userHydrator.fillActivity(activityMapper.findByIdWithUser(activityId));
         if (activity == null) {
             return Result.error("活动不存在");
         }
@@ -97,6 +103,7 @@ public class TravelMemoryService {
 
         // ========== 3. 获取参与者列表 ==========
         List<ParticipantVO> participants = participantMapper.findApprovedByActivityIdWithUser(activityId);
+        userHydrator.fillParticipants(participants);
 
         // 校验当前用户是参与者或发起人
         boolean isMember = activity.getInitiatorId().equals(userId)
@@ -119,10 +126,12 @@ public class TravelMemoryService {
 
         // ========== 4. 获取群聊记录 ==========
         List<ChatMessageVO> chatMessages = activityMapper.findGroupTextMessages(activityId, CHAT_MESSAGE_LIMIT);
+        userHydrator.fillChatMessages(chatMessages);
         String chatSummary = buildChatSummary(chatMessages);
 
         // ========== 5. 获取账单数据 ==========
         List<ExpenseVO> expenses = expenseMapper.findByActivityIdWithPayer(activityId);
+        userHydrator.fillExpenses(expenses);
         BigDecimal totalAmount = expenseMapper.sumAmountByActivityId(activityId);
         String expenseSummary = buildExpenseSummary(expenses, totalAmount);
 
@@ -152,12 +161,12 @@ public class TravelMemoryService {
         // ========== 8. 调用 DeepSeek AI ==========
         List<AiScene> aiScenes;
         try {
-            aiScenes = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .entity(new org.springframework.core.ParameterizedTypeReference<List<AiScene>>() {});
+            aiScenes = llmGateway.entity(LlmRequest.of("travel-memory", prompt),
+                    new org.springframework.core.ParameterizedTypeReference<List<AiScene>>() {});
             log.info("[旅行回忆] activityId={}, AI返回场景数: {}", activityId,
                     aiScenes != null ? aiScenes.size() : 0);
+        } catch (LlmRejectedException e) {
+            return SentinelBlockHandler.llmRejectedHandler(e);
         } catch (Exception e) {
             log.error("[旅行回忆] 调用 DeepSeek API 失败, activityId={}", activityId, e);
             return Result.error("AI 生成服务暂时不可用，请稍后再试");
@@ -3,10 +3,19 @@ package com.limengyuan.partner.post.service;
 import com.limengyuan.partner.common.dto.vo.TripPlanVO;
 import com.limengyuan.partner.common.entity.Category;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.post.ai.LlmGateway;
+import com.limengyuan.partner.post.ai.LlmRejectedException;
+import com.limengyuan.partner.post.ai.LlmRequest;
+import com.limengyuan.partner.post.ai.SseEvents;
+import com.limengyuan.partner.post.config.SentinelBlockHandler;
 import com.limengyuan.partner.post.mapper.CategoryMapper;
 import lombok.extern.slf4j.Slf4j;
-import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.converter.BeanOutputConverter;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
 
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
@@ -23,12 +32,12 @@ import java.util.stream.Collectors;
 @Service
 public class TripPlanService {
 
-    private final ChatClient chatClient;
+    private final LlmGateway llmGateway;
     private final CategoryMapper categoryMapper;
 
-    public TripPlanService(ChatClient.Builder chatClientBuilder,
+    public TripPlanService(LlmGateway llmGateway,
                            CategoryMapper categoryMapper) {
-        this.chatClient = chatClientBuilder.build();
+        this.llmGateway = llmGateway;
         this.categoryMapper = categoryMapper;
     }
 
@@ -40,32 +49,19 @@ public class TripPlanService {
      */
     public Result<TripPlanVO> planTrip(String userInput) {
         // 参数校验
-        if (userInput == null || userInput.isBlank()) {
-            return Result.error("请输入行程描述");
-        }
-        if (userInput.length() > 500) {
-            return Result.error("描述不能超过500字");
+        String invalid = validate(userInput);
+        if (invalid != null) {
+            return Result.error(invalid);
         }
 
-        // 查询所有可用分类（给 AI 供参）
-        List<Category> categories = categoryMapper.selectList(null);
-        String categoryInfo = categories.stream()
-                .filter(c -> c.getIsActive() != null && c.getIsActive())
-                .map(c -> c.getCategoryId() + "=" + c.getName())
-                .collect(Collectors.joining(", "));
-
-        // 获取当前日期（供 AI 推算具体日期）
-        String today = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
-
         // 构造 Prompt
-        String prompt = buildPrompt(userInput, categoryInfo, today);
+        String prompt = buildPrompt(userInput, categoryInfo(), today());
 
         // 调用 AI
         try {
-            TripPlanVO plan = chatClient.prompt()
-                    .user(prompt)
-                    .call()
-                    .entity(TripPlanVO.class);
+            // 相同输入（同一天、同一分类列表）的规划结果由 LlmGateway 缓存，开启近似缓存时相近的输入也可复用
+            TripPlanVO plan = llmGateway.entity(
+                    LlmRequest.of("plan-trip", prompt).withSimilarityText(userInput), TripPlanVO.class);
 
             if (plan == null) {
                 return Result.error("AI 行程规划返回为空，请稍后重试");
@@ -74,12 +70,86 @@ public class TripPlanService {
             log.info("[AI行程规划] 生成成功, title={}, location={}", plan.getTitle(), plan.getLocationName());
             return Result.success(plan);
 
+        } catch (LlmRejectedException e) {
+            return SentinelBlockHandler.llmRejectedHandler(e);
         } catch (Exception e) {
             log.error("[AI行程规划] 调用 DeepSeek API 失败", e);
             return Result.error("AI 行程规划服务暂时不可用，请稍后再试");
         }
     }
 
+    /**
+     * AI 行程规划（流式）
+     *
+     * 逐段推送大模型输出的 JSON 文本（delta 事件，前端可边收边展示行程描述），
+     * 输出结束后解析为 TripPlanVO 推送 result 事件，最后推送 done 事件；失败时推送 error 事件
+     */
+    public Flux<ServerSentEvent<Object>> planTripStream(String userInput) {
+        String invalid = validate(userInput);
+        if (invalid != null) {
+            return Flux.just(SseEvents.error(invalid));
+        }
+
+        return Flux.defer(() -> {
+            // 流式调用不会自动追加 JSON Schema 约束，需要手动拼接
+            BeanOutputConverter<TripPlanVO> converter = new BeanOutputConverter<>(TripPlanVO.class);
+            String prompt = buildPrompt(userInput, categoryInfo(), today()) + "\n" + converter.getFormat();
+            StringBuilder output = new StringBuilder();
+
+            Flux<ServerSentEvent<Object>> deltas = llmGateway
+                    .stream(LlmRequest.of("plan-trip", prompt).withSimilarityText(userInput))
+                    .filter(delta -> !delta.isEmpty())
+                    .doOnNext(output::append)
+                    .map(SseEvents::delta);
+            Mono<ServerSentEvent<Object>> result = Mono.fromCallable(() -> {
+                TripPlanVO plan = converter.convert(output.toString());
+                log.info("[AI行程规划] 流式生成成功, title={}, location={}", plan.getTitle(), plan.getLocationName());
+                return SseEvents.result(plan);
+            });
+            return deltas.concatWith(result).concatWith(Flux.just(SseEvents.done()));
+        }).subscribeOn(Schedulers.boundedElastic())
+                .onErrorResume(e -> {
+                    if (e instanceof LlmRejectedException rejected) {
+                        return Flux.just(SseEvents.error(SentinelBlockHandler.llmRejectedHandler(rejected).getMessage()));
+                    }
+                    log.error("[AI行程规划] 流式调用 DeepSeek API 失败", e);
+                    return Flux.just(SseEvents.error("AI 行程规划服务暂时不可用，请稍后再试"));
+                });
+    }
+
+    /**
+     * 参数校验
+     *
+     * @return 错误信息，校验通过返回 null
+     */
+    private String validate(String userInput) {
+        if (userInput == null || userInput.isBlank()) {
+            return "请输入行程描述";
+        }
+        if (userInput.length() > 500) {
+            return "描述不能超过500字";
+        }
+        return null;
+    }
+
+    /**
+     * 查询所有可用分类（给 AI 供参）
+     */
+    private String categoryInfo() {
+        List<Category> categories = categoryMapper.selectList(null);
+        return categories.stream()
+                .filter(c -> c.getIsActive() != null && c.getIsActive())
+                .map(c -> c.getCategoryId() + "=" + c.getName())
+                .collect(Collectors.joining(", "));
+    }
+
+    /**
+     * 获取当前日期（供 AI 推算具体日期）
+     */
+    private String today() {
+        return LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
+    }
+
     /**
      * 构造 Prompt
      */
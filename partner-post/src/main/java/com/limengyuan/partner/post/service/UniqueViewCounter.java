@@ -0,0 +1,177 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.mapper.MomentMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.StringRedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * 去重浏览人数统计（动态详情、活动详情）
+ *
+ * 每个对象一个 Redis HyperLogLog（uv:{类型}:{id}，最多约 12KB，误差约 0.81%），同一用户（未登录按 IP）重复浏览、
+ * 刷新只计一次。估算值发生变化的对象记入待合并集合，每分钟批量合并到 view_count 列，
+ * 浏览请求本身不再写 MySQL。
+ *
+ * HyperLogLog 90 天无新访客后过期；view_count 只增不减，过期后重新累计不会让已有计数回退
+ */
+@Slf4j
+@Component
+public class UniqueViewCounter {
+
+    /** 统计对象类型 */
+    public enum Target {
+        MOMENT("moment"),
+        ACTIVITY("activity");
+
+        private final String key;
+
+        Target(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final String SKETCH_KEY_PREFIX = "uv:";
+    private static final String DIRTY_KEY_PREFIX = "uv:dirty:";
+    private static final Duration SKETCH_TTL = Duration.ofDays(90);
+    /** 每批合并的对象数 */
+    private static final int MERGE_BATCH = 500;
+
+    /**
+     * 记录一次浏览并返回当前估算值：估算值变化时把对象记入待合并集合
+     * KEYS[1] = HyperLogLog，KEYS[2] = 待合并集合；ARGV[1] = 访客，ARGV[2] = 对象ID，ARGV[3] = 过期毫秒数
+     */
+    private static final DefaultRedisScript<Long> RECORD_SCRIPT = new DefaultRedisScript<>("""
+            local changed = redis.call('pfadd', KEYS[1], ARGV[1])
+            redis.call('pexpire', KEYS[1], ARGV[3])
+            if changed == 1 then
+                redis.call('sadd', KEYS[2], ARGV[2])
+            end
+            return redis.call('pfcount', KEYS[1])
+            """, Long.class);
+
+    private final StringRedisTemplate redisTemplate;
+    private final MomentMapper momentMapper;
+    private final ActivityMapper activityMapper;
+
+    public UniqueViewCounter(StringRedisTemplate redisTemplate,
+                             MomentMapper momentMapper,
+                             ActivityMapper activityMapper) {
+        this.redisTemplate = redisTemplate;
+        this.momentMapper = momentMapper;
+        this.activityMapper = activityMapper;
+    }
+
+    /**
+     * 访客标识：登录用户按用户ID，未登录按客户端 IP
+     *
+     * 经网关转发时取 X-Forwarded-For 的最后一个地址，即网关追加的、它实际看到的对端地址；
+     * 前面的地址由客户端自带，可以任意伪造，不能用来去重
+     */
+    public static String viewerOf(Long userId, HttpServletRequest request) {
+        if (userId != null) {
+            return "u:" + userId;
+        }
+        String forwarded = request.getHeader("X-Forwarded-For");
+        if (forwarded != null && !forwarded.isBlank()) {
+            return "ip:" + forwarded.substring(forwarded.lastIndexOf(',') + 1).trim();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+
+    /**
+     * 记录一次浏览
+     *
+     * @return 当前去重浏览人数的估算值，Redis 不可用时返回 -1（不影响详情查询）
+     */
+    public long record(Target target, Long id, String viewer) {
+        try {
+            Long count = redisTemplate.execute(RECORD_SCRIPT,
+                    List.of(sketchKey(target, id), DIRTY_KEY_PREFIX + target.key),
+                    viewer, String.valueOf(id), String.valueOf(SKETCH_TTL.toMillis()));
+            return count != null ? count : -1;
+        } catch (Exception e) {
+            log.warn("[浏览统计] 记录浏览失败, target={}, id={}", target.key, id, e);
+            return -1;
+        }
+    }
+
+    /**
+     * 每分钟把估算值有变化的对象合并到数据库
+     */
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
+    public void merge() {
+        merge(Target.MOMENT, momentMapper::mergeViewCounts);
+        merge(Target.ACTIVITY, activityMapper::mergeViewCounts);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void merge(Target target, Function<Map<Long, Long>, Integer> writer) {
+        String dirtyKey = DIRTY_KEY_PREFIX + target.key;
+        int merged = 0;
+        try {
+            List<String> ids;
+            while (!(ids = popDirty(dirtyKey)).isEmpty()) {
+                Map<Long, Long> counts = countAll(target, ids);
+                try {
+                    if (!counts.isEmpty()) {
+                        writer.apply(counts);
+                    }
+                } catch (Exception e) {
+                    // 写库失败时放回待合并集合，下一轮重试
+                    redisTemplate.opsForSet().add(dirtyKey, ids.toArray(String[]::new));
+                    throw e;
+                }
+                merged += counts.size();
+            }
+        } catch (Exception e) {
+            log.error("[浏览统计] 合并浏览人数失败, target={}", target.key, e);
+        }
+        if (merged > 0) {
+            log.debug("[浏览统计] 合并完成, target={}, 数量={}", target.key, merged);
+        }
+    }
+
+    private List<String> popDirty(String dirtyKey) {
+        List<String> ids = redisTemplate.opsForSet().pop(dirtyKey, MERGE_BATCH);
+        return ids != null ? ids : List.of();
+    }
+
+    /**
+     * 管道批量读取估算值
+     */
+    private Map<Long, Long> countAll(Target target, List<String> ids) {
+        List<Object> results = redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            StringRedisConnection conn = (StringRedisConnection) connection;
+            for (String id : ids) {
+                conn.pfCount(sketchKey(target, id));
+            }
+            return null;
+        });
+        Map<Long, Long> counts = new LinkedHashMap<>();
+        for (int i = 0; i < ids.size(); i++) {
+            if (results.get(i) instanceof Long count && count > 0) {
+                counts.put(Long.valueOf(ids.get(i)), count);
+            }
+        }
+        return counts;
+    }
+
+    private static String sketchKey(Target target, Object id) {
+        return SKETCH_KEY_PREFIX + target.key + ":" + id;
+    }
+}
@@ -0,0 +1,352 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.common.dto.vo.ChatMessageVO;
+import com.limengyuan.partner.common.dto.vo.ExpenseSplitVO;
+import com.limengyuan.partner.common.dto.vo.ExpenseVO;
+import com.limengyuan.partner.common.dto.vo.MomentCommentVO;
+import com.limengyuan.partner.common.dto.vo.MomentVO;
+import com.limengyuan.partner.common.dto.vo.MyApplicationVO;
+import com.limengyuan.partner.common.dto.vo.ParticipantVO;
+import com.limengyuan.partner.common.dto.vo.ReviewVO;
+import com.limengyuan.partner.common.entity.User;
+import com.limengyuan.partner.common.store.UserSnapshotStore;
+import com.limengyuan.partner.common.store.UserSnapshotStore.UserSnapshot;
+import com.limengyuan.partner.post.mapper.UserSnapshotMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * 用户信息回填组件
+ *
+ * 帖子服务的活动、动态、评论、参与者、申请、评价、支出与分摊、群聊消息查询不再 LEFT JOIN users，
+ * 而是由本组件从堆外用户快照 {@link UserSnapshotStore} 中一次性补齐昵称、头像、信用分、性别：
+ * - 启动时按 user_id 分批全量加载
+ * - 每 30 秒按 users.updated_at 水位增量刷新（用户资料由 partner-user 修改，帖子服务据此感知变更）。
+ *   updated_at 在语句执行时取值，长事务提交时该值可能已落后于水位，因此每次回看 COMMIT_LAG；
+ *   启动加载失败时水位为空，首次刷新按游标分页追平全表，不会一次读入所有用户
+ * - 快照未命中（如刚注册的用户）时批量回源数据库并写入快照
+ *
+ * 范围仅限帖子服务：partner-user 的聊天会话/消息与 partner-admin 的管理查询仍然 JOIN users，
+ * 前者是用户服务自己的表，后者是低频后台查询，不值得各自维护一份快照
+ */
+@Slf4j
+@Component
+public class UserHydrator {
+
+    /** 全量加载每批用户数 */
+    private static final int LOAD_BATCH_SIZE = 5000;
+
+    /** 增量刷新时水位的回看时长，覆盖提交慢于 updated_at 的事务 */
+    private static final Duration COMMIT_LAG = Duration.ofMinutes(2);
+
+    private final UserSnapshotMapper userSnapshotMapper;
+    private final UserSnapshotStore store = new UserSnapshotStore(LOAD_BATCH_SIZE);
+
+    private volatile LocalDateTime watermark;
+
+    public UserHydrator(UserSnapshotMapper userSnapshotMapper) {
+        this.userSnapshotMapper = userSnapshotMapper;
+    }
+
+    // ==================== VO 回填 ====================
+
+    /**
+     * 回填活动发起人信息
+     */
+    public void fillActivities(Collection<ActivityVO> activities) {
+        Map<Long, UserSnapshot> users = lookup(activities, ActivityVO::getInitiatorId);
+        for (ActivityVO activity : activities) {
+            UserSnapshot user = users.get(activity.getInitiatorId());
+            if (user != null) {
+                activity.setInitiatorNickname(user.nickname());
+                activity.setInitiatorAvatar(user.avatarUrl());
+                activity.setInitiatorCreditScore(user.creditScore());
+            }
+        }
+    }
+
+    /**
+     * 回填单个活动的发起人信息（activity 可为 null）
+     */
+    public ActivityVO fillActivity(ActivityVO activity) {
+        if (activity != null) {
+            fillActivities(List.of(activity));
+        }
+        return activity;
+    }
+
+    /**
+     * 回填参与者用户信息
+     */
+    public void fillParticipants(Collection<ParticipantVO> participants) {
+        Map<Long, UserSnapshot> users = lookup(participants, ParticipantVO::getUserId);
+        for (ParticipantVO participant : participants) {
+            UserSnapshot user = users.get(participant.getUserId());
+            if (user != null) {
+                participant.setNickname(user.nickname());
+                participant.setAvatarUrl(user.avatarUrl());
+                participant.setCreditScore(user.creditScore());
+                participant.setGender(user.gender());
+            }
+        }
+    }
+
+    /**
+     * 回填动态发布者信息
+     */
+    public void fillMoments(Collection<MomentVO> moments) {
+        Map<Long, UserSnapshot> users = lookup(moments, MomentVO::getUserId);
+        for (MomentVO moment : moments) {
+            UserSnapshot user = users.get(moment.getUserId());
+            if (user != null) {
+                moment.setUserNickname(user.nickname());
+                moment.setUserAvatar(user.avatarUrl());
+                moment.setUserCreditScore(user.creditScore());
+            }
+        }
+    }
+
+    /**
+     * 回填单条动态的发布者信息（moment 可为 null）
+     */
+    public MomentVO fillMoment(MomentVO moment) {
+        if (moment != null) {
+            fillMoments(List.of(moment));
+        }
+        return moment;
+    }
+
+    /**
+     * 回填评论人及被回复人信息（含嵌套的回复列表）
+     */
+    public void fillComments(Collection<MomentCommentVO> comments) {
+        List<MomentCommentVO> all = new ArrayList<>(comments);
+        for (MomentCommentVO comment : comments) {
+            if (comment.getReplies() != null) {
+                all.addAll(comment.getReplies());
+            }
+        }
+        Map<Long, UserSnapshot> users = lookup(all, MomentCommentVO::getUserId, MomentCommentVO::getReplyToId);
+        for (MomentCommentVO comment : all) {
+            UserSnapshot user = users.get(comment.getUserId());
+            if (user != null) {
+                comment.setUserNickname(user.nickname());
+                comment.setUserAvatar(user.avatarUrl());
+            }
+            UserSnapshot replyTo = users.get(comment.getReplyToId());
+            if (replyTo != null) {
+                comment.setReplyToNickname(replyTo.nickname());
+            }
+        }
+    }
+
+    /**
+     * 回填申请记录中的活动发起人信息
+     */
+    public void fillApplications(Collection<MyApplicationVO> applications) {
+        Map<Long, UserSnapshot> users = lookup(applications, MyApplicationVO::getInitiatorId);
+        for (MyApplicationVO application : applications) {
+            UserSnapshot user = users.get(application.getInitiatorId());
+            if (user != null) {
+                application.setInitiatorNickname(user.nickname());
+                application.setInitiatorAvatar(user.avatarUrl());
+                application.setInitiatorCreditScore(user.creditScore());
+            }
+        }
+    }
+
+    /**
+     * 回填评价人和被评价人信息
+     */
+    public void fillReviews(Collection<ReviewVO> reviews) {
+        Map<Long, UserSnapshot> users = lookup(reviews, ReviewVO::getReviewerId, ReviewVO::getRevieweeId);
+        for (ReviewVO review : reviews) {
+            UserSnapshot reviewer = users.get(review.getReviewerId());
+            if (reviewer != null) {
+                review.setReviewerNickname(reviewer.nickname());
+                review.setReviewerAvatar(reviewer.avatarUrl());
+            }
+            UserSnapshot reviewee = users.get(review.getRevieweeId());
+            if (reviewee != null) {
+                review.setRevieweeNickname(reviewee.nickname());
+                review.setRevieweeAvatar(reviewee.avatarUrl());
+            }
+        }
+    }
+
+    /**
+     * 回填支出付款人信息
+     */
+    public void fillExpenses(Collection<ExpenseVO> expenses) {
+        Map<Long, UserSnapshot> users = lookup(expenses, ExpenseVO::getPayerId);
+        for (ExpenseVO expense : expenses) {
+            UserSnapshot user = users.get(expense.getPayerId());
+            if (user != null) {
+                expense.setPayerNickname(user.nickname());
+                expense.setPayerAvatar(user.avatarUrl());
+            }
+        }
+    }
+
+    /**
+     * 回填单笔支出的付款人信息（expense 可为 null）
+     */
+    public ExpenseVO fillExpense(ExpenseVO expense) {
+        if (expense != null) {
+            fillExpenses(List.of(expense));
+        }
+        return expense;
+    }
+
+    /**
+     * 回填分摊明细的用户信息
+     */
+    public void fillExpenseSplits(Collection<ExpenseSplitVO> splits) {
+        Map<Long, UserSnapshot> users = lookup(splits, ExpenseSplitVO::getUserId);
+        for (ExpenseSplitVO split : splits) {
+            UserSnapshot user = users.get(split.getUserId());
+            if (user != null) {
+                split.setNickname(user.nickname());
+                split.setAvatarUrl(user.avatarUrl());
+            }
+        }
+    }
+
+    /**
+     * 回填群聊消息发送者信息
+     */
+    public void fillChatMessages(Collection<ChatMessageVO> messages) {
+        Map<Long, UserSnapshot> users = lookup(messages, ChatMessageVO::getSenderId);
+        for (ChatMessageVO message : messages) {
+            UserSnapshot user = users.get(message.getSenderId());
+            if (user != null) {
+                message.setSenderNickname(user.nickname());
+                message.setSenderAvatarUrl(user.avatarUrl());
+            }
+        }
+    }
+
+    /**
+     * 批量获取用户快照，未命中的用户一次性回源数据库
+     *
+     * @param userIdOfs 每行可能引用多个用户（如评价人和被评价人），逐个提取
+     */
+    @SafeVarargs
+    private <T> Map<Long, UserSnapshot> lookup(Collection<T> rows, Function<T, Long>... userIdOfs) {
+        Map<Long, UserSnapshot> result = new HashMap<>();
+        Set<Long> misses = new HashSet<>();
+        for (T row : rows) {
+            for (Function<T, Long> userIdOf : userIdOfs) {
+                Long userId = userIdOf.apply(row);
+                if (userId == null || result.containsKey(userId)) {
+                    continue;
+                }
+                UserSnapshot user = store.get(userId);
+                if (user != null) {
+                    result.put(userId, user);
+                } else {
+                    misses.add(userId);
+                }
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            for (User user : userSnapshotMapper.findByIds(misses)) {
+                put(user);
+                result.put(user.getUserId(), store.get(user.getUserId()));
+            }
+        }
+        return result;
+    }
+
+    // ==================== 快照加载与刷新 ====================
+
+    /**
+     * 服务启动完成后全量加载
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        try {
+            long start = System.currentTimeMillis();
+            long afterId = 0;
+            LocalDateTime maxUpdatedAt = null;
+            List<User> batch;
+            do {
+                batch = userSnapshotMapper.findBatchAfter(afterId, LOAD_BATCH_SIZE);
+                for (User user : batch) {
+                    put(user);
+                    maxUpdatedAt = max(maxUpdatedAt, user.getUpdatedAt());
+                }
+                if (!batch.isEmpty()) {
+                    afterId = batch.get(batch.size() - 1).getUserId();
+                }
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            watermark = maxUpdatedAt;
+            log.info("[用户快照] 全量加载完成，共 {} 个用户，占用约 {} KB，耗时 {} ms",
+                    store.size(), store.memoryBytes() / 1024, System.currentTimeMillis() - start);
+        } catch (Exception e) {
+            log.error("[用户快照] 全量加载失败，将在回填时按需回源", e);
+        }
+    }
+
+    /**
+     * 每 30 秒按 updated_at 水位（回看 COMMIT_LAG）分页增量刷新
+     */
+    @Scheduled(initialDelay = 30000, fixedDelay = 30000)
+    public void refreshChanged() {
+        try {
+            // 启动加载失败或用户表为空时水位为 null，从头追平
+            LocalDateTime since = watermark != null
+                    ? watermark.minus(COMMIT_LAG) : LocalDateTime.of(1970, 1, 1, 0, 0);
+            long afterId = 0;
+            int refreshed = 0;
+            LocalDateTime newWatermark = watermark;
+            List<User> batch;
+            do {
+                batch = userSnapshotMapper.findUpdatedSince(since, afterId, LOAD_BATCH_SIZE);
+                for (User user : batch) {
+                    put(user);
+                    newWatermark = max(newWatermark, user.getUpdatedAt());
+                }
+                if (!batch.isEmpty()) {
+                    User last = batch.get(batch.size() - 1);
+                    since = last.getUpdatedAt();
+                    afterId = last.getUserId();
+                }
+                refreshed += batch.size();
+            } while (batch.size() == LOAD_BATCH_SIZE);
+            watermark = newWatermark;
+            if (refreshed > 0) {
+                log.debug("[用户快照] 增量刷新 {} 个用户，水位 {}", refreshed, watermark);
+            }
+        } catch (Exception e) {
+            log.error("[用户快照] 增量刷新失败", e);
+        }
+    }
+
+    private void put(User user) {
+        store.put(user.getUserId(), user.getNickname(), user.getAvatarUrl(), user.getCreditScore(), user.getGender());
+    }
+
+    private static LocalDateTime max(LocalDateTime a, LocalDateTime b) {
+        if (a == null) {
+            return b;
+        }
+        return b == null || a.isAfter(b) ? a : b;
+    }
+}
@@ -1,92 +1,251 @@
 package com.limengyuan.partner.post.service;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.limengyuan.partner.common.dto.vo.ActivityVO;
-import com.limengyuan.partner.common.entity.Activity;
 import com.limengyuan.partner.post.mapper.ActivityMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.event.EventListener;
+import org.springframework.data.redis.core.StringRedisTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.zip.CRC32;
 
 /**
- * 向量数据定时同步任务
+ * 向量数据同步任务
  *
  * 职责：
- * 1. 服务启动时，从 MySQL 全量同步招募中的活动到 Milvus
- * 2. 每小时定时执行一次全量同步，作为兜底保障
- *    确保 Milvus 中的数据与 MySQL 保持一致（清理脏数据、补充遗漏数据）
+ * 1. 增量同步：按 (updated_at, activity_id) 水位分页遍历变更过的活动，招募中的写入/覆盖 Milvus，其余从 Milvus 删除。
+ *    水位持久化在 Redis 中，一页全部写入成功后才推进，重启后从断点继续；首次运行（无水位）即按同样的游标遍历全表。
+ *    向量库不可用时停在失败的页，每分钟重试，不会跳过这些活动
+ * 2. 对账：每周一次按 activity_id 分桶比对 MySQL 与 Milvus 的条数和校验和，只对不一致的桶逐条比对并修复，
+ *    兜底处理写入失败、水位之前提交的慢事务等造成的漂移
  */
 @Slf4j
 @Component
 public class VectorSyncTask {
 
-    /** 全量同步时每次查询的最大数量 */
-    private static final int SYNC_BATCH_SIZE = 500;
+    /**
+     * 增量同步水位（格式: updatedAt|activityId）
+     * 向量元数据结构变化时升级 key 中的版本号，新版本从头遍历一次，把已有向量全部重建
+     */
+    private static final String WATERMARK_KEY = "vector_sync:v2:watermark";
+
+    /** 每页处理的活动数 */
+    private static final int PAGE_SIZE = 200;
+
+    /** 只同步此时长之前的修改，给进行中的事务留出提交时间（秒） */
+    private static final long SETTLE_SECONDS = 10;
+
+    /** 对账分桶数 */
+    private static final int RECONCILE_BUCKETS = 64;
+
+    /** 状态: 招募中 */
+    private static final int STATUS_RECRUITING = 0;
 
     private final ActivityMapper activityMapper;
     private final ActivityVectorService activityVectorService;
+    private final StringRedisTemplate redisTemplate;
 
     public VectorSyncTask(ActivityMapper activityMapper,
-                          ActivityVectorService activityVectorService) {
+                          ActivityVectorService activityVectorService,
+                          StringRedisTemplate redisTemplate) {
         this.activityMapper = activityMapper;
         this.activityVectorService = activityVectorService;
+        this.redisTemplate = redisTemplate;
     }
 
     /**
-     * 服务启动完成后执行一次全量同步
-     * 使用 ApplicationReadyEvent 确保所有 Bean 初始化完毕后再同步
+     * 服务启动完成后执行一次增量同步（首次部署时即为全量同步）
+     * 进程内向量库的快照可能落后于 Redis 中的水位，启动时额外对账一次
      */
     @EventListener(ApplicationReadyEvent.class)
     public void onStartup() {
-        log.info("[向量同步] 服务启动，开始全量同步活动向量...");
-        fullSync();
+        log.info("[向量同步] 服务启动，开始增量同步活动向量...");
+        syncDelta();
+        if (activityVectorService.isInProcessStore()) {
+            reconcile();
+        }
     }
 
     /**
-     * 每两天定时执行全量同步（兜底保障）
-     * 确保因网络抖动或异常导致的数据不一致能被修复
+     * 每分钟增量同步一次
      */
-    @Scheduled(fixedRate = 172800000)  // 每两天执行一次（48小时）
+    @Scheduled(initialDelay = 60000, fixedDelay = 60000)
     public void scheduledSync() {
-        log.info("[向量同步] 定时任务触发，开始全量同步活动向量...");
-        fullSync();
+        syncDelta();
+    }
+
+    /**
+     * 每周一凌晨 4 点对账一次
+     */
+    @Scheduled(cron = "0 0 4 * * MON")
+    public void scheduledReconcile() {
+        log.info("[向量同步] 定时任务触发，开始对账...");
+        reconcile();
+    }
+
+    /**
+     * 增量同步：从水位开始逐页处理，直到追平
+     */
+    public synchronized void syncDelta() {
+        try {
+            Watermark watermark = loadWatermark();
+            LocalDateTime until = LocalDateTime.now().minusSeconds(SETTLE_SECONDS);
+            int upserted = 0;
+            int removed = 0;
+
+            while (true) {
+                List<ActivityVO> page = watermark == null
+                        ? activityMapper.findChangedSince(null, null, until, PAGE_SIZE)
+                        : activityMapper.findChangedSince(watermark.updatedAt(), watermark.activityId(), until, PAGE_SIZE);
+                if (page.isEmpty()) {
+                    break;
+                }
+
+                List<ActivityVO> recruiting = new ArrayList<>();
+                List<Long> inactiveIds = new ArrayList<>();
+                for (ActivityVO activity : page) {
+                    if (Objects.equals(activity.getStatus(), STATUS_RECRUITING)) {
+                        recruiting.add(activity);
+                    } else {
+                        inactiveIds.add(activity.getActivityId());
+                    }
+                }
+                // 任一批失败都不推进水位，下次从本页重新处理（先删后增失败留下的空缺也随之补上）
+                boolean added = activityVectorService.addActivities(recruiting);
+                boolean deleted = activityVectorService.removeActivities(inactiveIds);
+                if (!added || !deleted) {
+                    log.warn("[向量同步] 向量库写入失败，水位停留在本页之前，下次重试");
+                    break;
+                }
+                upserted += recruiting.size();
+                removed += inactiveIds.size();
+
+                ActivityVO last = page.get(page.size() - 1);
+                watermark = new Watermark(last.getUpdatedAt(), last.getActivityId());
+                saveWatermark(watermark);
+                if (page.size() < PAGE_SIZE) {
+                    break;
+                }
+            }
+
+            if (upserted > 0 || removed > 0) {
+                log.info("[向量同步] 增量同步完成，写入 {} 条，删除 {} 条", upserted, removed);
+            }
+        } catch (Exception e) {
+            log.error("[向量同步] 增量同步失败，下次从上次水位继续", e);
+        }
     }
 
-    private void fullSync() {
+    /**
+     * 对账：分桶比对校验和，只修复不一致的桶
+     */
+    public synchronized void reconcile() {
         try {
-            // 1. 同步增加/覆盖招募中的活动
-            // 查询所有招募中的活动（status=0）
-            List<ActivityVO> recruitingActivities = activityMapper.findRecruitingActivities(SYNC_BATCH_SIZE);
-
-            if (recruitingActivities != null && !recruitingActivities.isEmpty()) {
-                // 批量写入 Milvus（相同 ID 会覆盖，无需先删后增）
-                activityVectorService.addActivities(recruitingActivities);
-                log.info("[向量同步] 全量同步写入完成，共同步 {} 条活动向量", recruitingActivities.size());
-            } else {
-                log.info("[向量同步] 当前无招募中的活动，跳过写入");
+            Map<Long, String> indexed = activityVectorService.listIndexedVersions();
+            if (indexed == null) {
+                log.info("[向量同步] 当前向量库不支持遍历，跳过对账");
+                return;
+            }
+
+            // 1. 计算向量库侧每个桶的条数与校验和
+            Map<Integer, long[]> indexedBuckets = new HashMap<>();
+            indexed.forEach((activityId, version) -> {
+                long[] sum = indexedBuckets.computeIfAbsent(bucketOf(activityId), b -> new long[2]);
+                sum[0]++;
+                sum[1] ^= checksum(activityId, version);
+            });
+
+            // 2. 与 MySQL 侧逐桶比较
+            Map<Integer, long[]> expectedBuckets = new HashMap<>();
+            for (Map<String, Object> row : activityMapper.sumRecruitingBuckets(RECONCILE_BUCKETS)) {
+                expectedBuckets.put(((Number) row.get("bucket")).intValue(), new long[]{
+                        ((Number) row.get("total")).longValue(), ((Number) row.get("checksum")).longValue()});
             }
+            Set<Integer> buckets = new HashSet<>(indexedBuckets.keySet());
+            buckets.addAll(expectedBuckets.keySet());
 
-            // 2. 校验并清理不在招募状态的脏数据
-            // 查询所有非招募状态的活动（status != 0）
-            QueryWrapper<Activity> wrapper = new QueryWrapper<>();
-            wrapper.ne("status", 0).select("activity_id");
-            List<Activity> expiredList = activityMapper.selectList(wrapper);
-
-            if (expiredList != null && !expiredList.isEmpty()) {
-                List<Long> expiredIds = expiredList.stream()
-                        .map(Activity::getActivityId)
-                        .toList();
-                // 批量从 Milvus 中删除，防止因手动下架等原因遗留脏数据
-                activityVectorService.removeActivities(expiredIds);
-                log.info("[向量同步] 脏数据清理完成，共移除 {} 条非招募状态的活动向量", expiredIds.size());
+            int mismatched = 0;
+            List<Long> missingIds = new ArrayList<>();
+            List<Long> extraIds = new ArrayList<>();
+            for (Integer bucket : buckets) {
+                long[] expected = expectedBuckets.getOrDefault(bucket, new long[2]);
+                long[] actual = indexedBuckets.getOrDefault(bucket, new long[2]);
+                if (expected[0] == actual[0] && expected[1] == actual[1]) {
+                    continue;
+                }
+                mismatched++;
+
+                // 3. 不一致的桶逐条比对：缺失或版本不一致的重建，多余的删除
+                Map<Long, String> expectedVersions = new HashMap<>();
+                for (Map<String, Object> row : activityMapper.findRecruitingVersionsInBucket(RECONCILE_BUCKETS, bucket)) {
+                    expectedVersions.put(((Number) row.get("activity_id")).longValue(), (String) row.get("version"));
+                }
+                expectedVersions.forEach((activityId, version) -> {
+                    if (!version.equals(indexed.get(activityId))) {
+                        missingIds.add(activityId);
+                    }
+                });
+                indexed.keySet().stream()
+                        .filter(activityId -> bucketOf(activityId) == bucket && !expectedVersions.containsKey(activityId))
+                        .forEach(extraIds::add);
+            }
+
+            for (int from = 0; from < missingIds.size(); from += PAGE_SIZE) {
+                List<Long> batch = missingIds.subList(from, Math.min(from + PAGE_SIZE, missingIds.size()));
+                activityVectorService.addActivities(activityMapper.findByIds(batch).stream()
+                        .filter(activity -> Objects.equals(activity.getStatus(), STATUS_RECRUITING))
+                        .toList());
             }
+            activityVectorService.removeActivities(extraIds);
 
+            log.info("[向量同步] 对账完成，向量 {} 条，不一致的桶 {}/{} 个，重建 {} 条，删除 {} 条",
+                    indexed.size(), mismatched, RECONCILE_BUCKETS, missingIds.size(), extraIds.size());
         } catch (Exception e) {
-            log.error("[向量同步] 全量同步或清理失败", e);
+            log.error("[向量同步] 对账失败", e);
         }
     }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private record Watermark(LocalDateTime updatedAt, Long activityId) {
+    }
+
+    private Watermark loadWatermark() {
+        String value = redisTemplate.opsForValue().get(WATERMARK_KEY);
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String[] parts = value.split("\\|");
+        return new Watermark(LocalDateTime.parse(parts[0]), Long.parseLong(parts[1]));
+    }
+
+    private void saveWatermark(Watermark watermark) {
+        redisTemplate.opsForValue().set(WATERMARK_KEY, watermark.updatedAt() + "|" + watermark.activityId());
+    }
+
+    private static int bucketOf(Long activityId) {
+        return (int) (activityId % RECONCILE_BUCKETS);
+    }
+
+    /**
+     * 与 MySQL CRC32(CONCAT(activity_id, '@', version)) 保持一致
+     */
+    private static long checksum(Long activityId, String version) {
+        CRC32 crc = new CRC32();
+        crc.update((activityId + "@" + version).getBytes(StandardCharsets.UTF_8));
+        return crc.getValue();
+    }
 }
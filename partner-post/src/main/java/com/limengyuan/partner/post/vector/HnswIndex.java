@@ -0,0 +1,531 @@
+package com.limengyuan.partner.post.vector;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW（Hierarchical Navigable Small World）近邻图索引，余弦距离
+ *
+ * - 向量写入时归一化，距离 = 1 - 点积
+ * - 每个节点随机分配层数，上层稀疏用于快速定位，第 0 层稠密用于精确搜索；邻居选择使用启发式裁剪，保证图的连通性
+ * - 并发：插入与搜索可并行，节点邻居表写时复制、按节点加锁修改；只有扩容和快照时独占
+ * - 删除为墓碑标记：被删节点仍参与导航但不出现在结果中，墓碑过多时由调用方重建索引
+ */
+public class HnswIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+
+    private final int m;
+    private final int maxM0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile AtomicReferenceArray<Node> nodes = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    private final AtomicInteger nextId = new AtomicInteger();
+    private final AtomicInteger deletedCount = new AtomicInteger();
+    private final Object entryLock = new Object();
+    /** 每个线程复用的访问标记，避免每次搜索分配与节点数等长的位图 */
+    private final ThreadLocal<VisitedMarks> visitedMarks = ThreadLocal.withInitial(VisitedMarks::new);
+    private volatile Node entryPoint;
+    private volatile int dimensions;
+
+    /**
+     * @param m              每层最大邻居数（第 0 层为 2m）
+     * @param efConstruction 构建时的候选集大小，越大图质量越高、写入越慢
+     */
+    public HnswIndex(int m, int efConstruction) {
+        this.m = m;
+        this.maxM0 = m * 2;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+    }
+
+    /**
+     * 搜索结果
+     *
+     * @param id       节点 ID
+     * @param distance 余弦距离（1 - 相似度）
+     */
+    public record Candidate(int id, float distance) {
+    }
+
+    /**
+     * 插入向量
+     *
+     * @return 节点 ID（从 0 开始连续分配）
+     */
+    public int add(float[] vector) {
+        float[] normalized = normalize(vector);
+        checkDimensions(normalized.length);
+        int id = nextId.getAndIncrement();
+        ensureCapacity(id);
+        Node node = new Node(id, normalized, randomLevel());
+
+        lock.readLock().lock();
+        try {
+            // 先放入节点表再建立连接，其他线程沿邻居表访问到它时一定能取到
+            nodes.set(id, node);
+            insert(node);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return id;
+    }
+
+    /**
+     * 标记删除
+     *
+     * @return false 表示节点不存在或已删除
+     */
+    public boolean markDeleted(int id) {
+        Node node = node(id);
+        if (node == null || node.deleted) {
+            return false;
+        }
+        node.deleted = true;
+        deletedCount.incrementAndGet();
+        return true;
+    }
+
+    /**
+     * 近邻搜索
+     *
+     * @param query  查询向量
+     * @param k      返回数量
+     * @param ef     搜索候选集大小（不小于 k）
+     * @param accept 结果过滤条件；过滤后不足 k 条时逐步扩大候选集重搜
+     * @return 按距离从近到远排序
+     */
+    public List<Candidate> search(float[] query, int k, int ef, IntPredicate accept) {
+        if (k <= 0) {
+            return List.of();
+        }
+        float[] q = normalize(query);
+        lock.readLock().lock();
+        try {
+            Node entry = entryPoint;
+            if (entry == null) {
+                return List.of();
+            }
+            checkDimensions(q.length);
+            Node current = greedyDescend(q, entry, entry.level, 0);
+
+            int width = Math.max(ef, k);
+            while (true) {
+                List<Candidate> results = new ArrayList<>(k);
+                List<Candidate> found = searchLayer(q, current, width, 0);
+                for (Candidate candidate : found) {
+                    if (!node(candidate.id()).deleted && accept.test(candidate.id())) {
+                        results.add(candidate);
+                        if (results.size() == k) {
+                            return results;
+                        }
+                    }
+                }
+                if (found.size() < width || width >= size()) {
+                    return results;
+                }
+                width = (int) Math.min((long) width * 4, size());
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 节点向量（已归一化），节点不存在时返回 null
+     */
+    public float[] vector(int id) {
+        Node node = node(id);
+        return node != null ? node.vector : null;
+    }
+
+    public boolean isDeleted(int id) {
+        Node node = node(id);
+        return node == null || node.deleted;
+    }
+
+    /**
+     * 已分配的节点数（含墓碑）
+     */
+    public int size() {
+        return nextId.get();
+    }
+
+    public int deletedCount() {
+        return deletedCount.get();
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    // ============================
+    // 快照
+    // ============================
+
+    /**
+     * 写入快照（独占，期间插入和搜索会等待）
+     */
+    void writeTo(MappedFile out) throws IOException {
+        lock.writeLock().lock();
+        try {
+            int count = nextId.get();
+            out.putInt(dimensions);
+            out.putInt(m);
+            out.putInt(efConstruction);
+            out.putInt(count);
+            out.putInt(entryPoint != null ? entryPoint.id : -1);
+            for (int id = 0; id < count; id++) {
+                Node node = nodes.get(id);
+                out.putByte((byte) (node.deleted ? 1 : 0));
+                out.putInt(node.level);
+                out.putFloats(node.vector);
+                for (int level = 0; level <= node.level; level++) {
+                    int[] links = node.links(level);
+                    out.putInt(links.length);
+                    out.putInts(links);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    static HnswIndex readFrom(MappedFile in) throws IOException {
+        int dimensions = in.getInt();
+        HnswIndex index = new HnswIndex(in.getInt(), in.getInt());
+        int count = in.getInt();
+        int entryId = in.getInt();
+        index.dimensions = dimensions;
+        index.nodes = new AtomicReferenceArray<>(Math.max(INITIAL_CAPACITY, Integer.highestOneBit(Math.max(count, 1)) << 1));
+        for (int id = 0; id < count; id++) {
+            boolean deleted = in.getByte() == 1;
+            int level = in.getInt();
+            Node node = new Node(id, in.getFloats(dimensions), level);
+            for (int l = 0; l <= level; l++) {
+                node.links.set(l, in.getInts(in.getInt()));
+            }
+            if (deleted) {
+                node.deleted = true;
+                index.deletedCount.incrementAndGet();
+            }
+            index.nodes.set(id, node);
+        }
+        index.nextId.set(count);
+        index.entryPoint = entryId >= 0 ? index.nodes.get(entryId) : null;
+        return index;
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void insert(Node node) {
+        Node entry;
+        synchronized (entryLock) {
+            entry = entryPoint;
+            if (entry == null) {
+                entryPoint = node;
+                return;
+            }
+        }
+
+        float[] q = node.vector;
+        Node current = greedyDescend(q, entry, entry.level, node.level);
+        for (int level = Math.min(node.level, entry.level); level >= 0; level--) {
+            List<Candidate> found = searchLayer(q, current, efConstruction, level);
+            List<Candidate> selected = selectNeighbors(found, m);
+            int[] links = new int[selected.size()];
+            for (int i = 0; i < links.length; i++) {
+                links[i] = selected.get(i).id();
+            }
+            node.links.set(level, links);
+            for (Candidate candidate : selected) {
+                connect(node(candidate.id()), node.id, level);
+            }
+            current = node(found.get(0).id());
+        }
+
+        if (node.level > entry.level) {
+            synchronized (entryLock) {
+                if (node.level > entryPoint.level) {
+                    entryPoint = node;
+                }
+            }
+        }
+    }
+
+    /**
+     * 从 fromLevel 逐层贪心下降到 toLevel + 1 层，返回最近节点
+     */
+    private Node greedyDescend(float[] q, Node entry, int fromLevel, int toLevel) {
+        Node current = entry;
+        float currentDistance = distance(q, current.vector);
+        for (int level = fromLevel; level > toLevel; level--) {
+            boolean changed = true;
+            while (changed) {
+                changed = false;
+                for (int neighborId : current.links(level)) {
+                    Node neighbor = node(neighborId);
+                    float d = distance(q, neighbor.vector);
+                    if (d < currentDistance) {
+                        currentDistance = d;
+                        current = neighbor;
+                        changed = true;
+                    }
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * 在指定层做 ef 宽度的最佳优先搜索，结果按距离从近到远排序
+     */
+    private List<Candidate> searchLayer(float[] q, Node entry, int ef, int level) {
+        VisitedMarks visited = visitedMarks.get();
+        visited.reset(nextId.get());
+        PriorityQueue<Candidate> candidates = new PriorityQueue<>(Comparator.comparingDouble(Candidate::distance));
+        PriorityQueue<Candidate> results = new PriorityQueue<>(
+                Comparator.comparingDouble(Candidate::distance).reversed());
+
+        Candidate start = new Candidate(entry.id, distance(q, entry.vector));
+        visited.mark(entry.id);
+        candidates.add(start);
+        results.add(start);
+
+        while (!candidates.isEmpty()) {
+            Candidate closest = candidates.poll();
+            if (results.size() >= ef && closest.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighborId : node(closest.id()).links(level)) {
+                if (!visited.mark(neighborId)) {
+                    continue;
+                }
+                Node neighbor = node(neighborId);
+                if (neighbor == null) {
+                    continue;
+                }
+                float d = distance(q, neighbor.vector);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    Candidate candidate = new Candidate(neighborId, d);
+                    candidates.add(candidate);
+                    results.add(candidate);
+                    if (results.size() > ef) {
+                        results.poll();
+                    }
+                }
+            }
+        }
+
+        List<Candidate> sorted = new ArrayList<>(results);
+        sorted.sort(Comparator.comparingDouble(Candidate::distance));
+        return sorted;
+    }
+
+    /**
+     * 启发式邻居选择：候选离已选邻居比离目标更近时跳过（保留不同方向的邻居），不足 max 个时用最近的补齐
+     *
+     * @param candidates 按距离从近到远排序
+     */
+    private List<Candidate> selectNeighbors(List<Candidate> candidates, int max) {
+        if (candidates.size() <= max) {
+            return candidates;
+        }
+        List<Candidate> selected = new ArrayList<>(max);
+        BitSet skipped = new BitSet(candidates.size());
+        for (int i = 0; i < candidates.size() && selected.size() < max; i++) {
+            Candidate candidate = candidates.get(i);
+            float[] vector = node(candidate.id()).vector;
+            boolean diverse = true;
+            for (Candidate chosen : selected) {
+                if (distance(vector, node(chosen.id()).vector) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected.add(candidate);
+            } else {
+                skipped.set(i);
+            }
+        }
+        for (int i = skipped.nextSetBit(0); i >= 0 && selected.size() < max; i = skipped.nextSetBit(i + 1)) {
+            selected.add(candidates.get(i));
+        }
+        return selected;
+    }
+
+    /**
+     * 在邻居节点上添加反向连接，超过上限时重新裁剪
+     */
+    private void connect(Node neighbor, int newId, int level) {
+        int max = level == 0 ? maxM0 : m;
+        synchronized (neighbor) {
+            int[] links = neighbor.links(level);
+            int[] extended = new int[links.length + 1];
+            System.arraycopy(links, 0, extended, 0, links.length);
+            extended[links.length] = newId;
+            if (extended.length <= max) {
+                neighbor.links.set(level, extended);
+                return;
+            }
+
+            List<Candidate> candidates = new ArrayList<>(extended.length);
+            for (int id : extended) {
+                candidates.add(new Candidate(id, distance(neighbor.vector, node(id).vector)));
+            }
+            candidates.sort(Comparator.comparingDouble(Candidate::distance));
+            List<Candidate> selected = selectNeighbors(candidates, max);
+            int[] pruned = new int[selected.size()];
+            for (int i = 0; i < pruned.length; i++) {
+                pruned[i] = selected.get(i).id();
+            }
+            neighbor.links.set(level, pruned);
+        }
+    }
+
+    private Node node(int id) {
+        AtomicReferenceArray<Node> current = nodes;
+        return id < current.length() ? current.get(id) : null;
+    }
+
+    private void ensureCapacity(int id) {
+        if (id < nodes.length()) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            AtomicReferenceArray<Node> current = nodes;
+            if (id < current.length()) {
+                return;
+            }
+            int capacity = current.length();
+            while (capacity <= id) {
+                capacity <<= 1;
+            }
+            AtomicReferenceArray<Node> grown = new AtomicReferenceArray<>(capacity);
+            for (int i = 0; i < current.length(); i++) {
+                grown.set(i, current.get(i));
+            }
+            nodes = grown;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkDimensions(int length) {
+        if (dimensions == 0) {
+            synchronized (this) {
+                if (dimensions == 0) {
+                    dimensions = length;
+                }
+            }
+        }
+        if (dimensions != length) {
+            throw new IllegalArgumentException("向量维度不一致: 期望 " + dimensions + ", 实际 " + length);
+        }
+    }
+
+    private int randomLevel() {
+        double r = ThreadLocalRandom.current().nextDouble();
+        return (int) (-Math.log(1 - r) * levelMultiplier);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = 0;
+        for (float v : vector) {
+            norm += v * v;
+        }
+        norm = Math.sqrt(norm);
+        float[] normalized = new float[vector.length];
+        if (norm == 0) {
+            return normalized;
+        }
+        for (int i = 0; i < vector.length; i++) {
+            normalized[i] = (float) (vector[i] / norm);
+        }
+        return normalized;
+    }
+
+    private static float distance(float[] a, float[] b) {
+        float dot = 0;
+        for (int i = 0; i < a.length; i++) {
+            dot += a[i] * b[i];
+        }
+        return 1 - dot;
+    }
+
+    /**
+     * 访问标记：用递增的代数代替清空数组，每次搜索 O(1) 重置
+     */
+    private static final class VisitedMarks {
+
+        private int[] marks = new int[INITIAL_CAPACITY];
+        private int generation;
+
+        void reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == Integer.MAX_VALUE) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+        }
+
+        /**
+         * @return false 表示已访问过
+         */
+        boolean mark(int id) {
+            if (id >= marks.length) {
+                marks = Arrays.copyOf(marks, Math.max(id + 1, marks.length * 2));
+            }
+            if (marks[id] == generation) {
+                return false;
+            }
+            marks[id] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * 图节点：每层一个邻居表，邻居表整体替换（写时复制），读取无需加锁
+     */
+    private static final class Node {
+
+        final int id;
+        final float[] vector;
+        final int level;
+        final AtomicReferenceArray<int[]> links;
+        volatile boolean deleted;
+
+        Node(int id, float[] vector, int level) {
+            this.id = id;
+            this.vector = vector;
+            this.level = level;
+            this.links = new AtomicReferenceArray<>(level + 1);
+            for (int l = 0; l <= level; l++) {
+                links.set(l, new int[0]);
+            }
+        }
+
+        int[] links(int level) {
+            return links.get(level);
+        }
+    }
+}
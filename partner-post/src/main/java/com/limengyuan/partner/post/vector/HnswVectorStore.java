@@ -0,0 +1,301 @@
+package com.limengyuan.partner.post.vector;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.EmbeddingOptions;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionConverter;
+import org.springframework.ai.vectorstore.filter.converter.SimpleVectorStoreFilterExpressionConverter;
+import org.springframework.expression.Expression;
+import org.springframework.expression.ExpressionParser;
+import org.springframework.expression.spel.standard.SpelExpressionParser;
+import org.springframework.expression.spel.support.StandardEvaluationContext;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.BiConsumer;
+import java.util.function.Predicate;
+
+/**
+ * 进程内 HNSW 向量库（Spring AI VectorStore 实现）
+ *
+ * 不依赖外部 Milvus，适合单机部署和测试，通过 spring.ai.vectorstore.type=hnsw 启用：
+ * - 余弦相似度，score = 1 - 距离
+ * - 相同文档 ID 重复写入时覆盖（旧节点标记删除）；墓碑超过一半时在下次快照前重建索引
+ * - 过滤表达式与 SimpleVectorStore 一致，转换为 SpEL 后按元数据过滤，结果不足时自动扩大候选集
+ * - 快照通过内存映射文件读写：启动时恢复，定时及关闭时写入（先写临时文件再原子替换）
+ */
+@Slf4j
+public class HnswVectorStore implements VectorStore {
+
+    private static final int SNAPSHOT_MAGIC = 0x484E5357;
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private final EmbeddingModel embeddingModel;
+    private final BatchingStrategy batchingStrategy;
+    private final ObjectMapper objectMapper;
+    private final Path snapshotPath;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+
+    private final ExpressionParser expressionParser = new SpelExpressionParser();
+    private final FilterExpressionConverter filterExpressionConverter = new SimpleVectorStoreFilterExpressionConverter();
+
+    /** 快照与重建时独占，其余操作共享 */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile HnswIndex index;
+    /** 文档 ID → 节点 ID */
+    private final Map<String, Integer> nodeIds = new ConcurrentHashMap<>();
+    /** 节点 ID → 文档内容（已删除的节点不在其中） */
+    private final Map<Integer, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong modifications = new AtomicLong();
+    private volatile long savedModifications;
+
+    private record Entry(String docId, String text, Map<String, Object> metadata) {
+    }
+
+    public HnswVectorStore(EmbeddingModel embeddingModel, BatchingStrategy batchingStrategy, ObjectMapper objectMapper,
+                           Path snapshotPath, int m, int efConstruction, int efSearch) {
+        this.embeddingModel = embeddingModel;
+        this.batchingStrategy = batchingStrategy;
+        this.objectMapper = objectMapper;
+        this.snapshotPath = snapshotPath;
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.index = new HnswIndex(m, efConstruction);
+    }
+
+    @Override
+    public String getName() {
+        return "HnswVectorStore";
+    }
+
+    @Override
+    public void add(List<Document> documents) {
+        if (documents.isEmpty()) {
+            return;
+        }
+        List<float[]> embeddings = embeddingModel.embed(documents, EmbeddingOptions.builder().build(), batchingStrategy);
+        lock.readLock().lock();
+        try {
+            for (int i = 0; i < documents.size(); i++) {
+                Document document = documents.get(i);
+                int nodeId = index.add(embeddings.get(i));
+                entries.put(nodeId, new Entry(document.getId(), document.getText(), new HashMap<>(document.getMetadata())));
+                Integer previous = nodeIds.put(document.getId(), nodeId);
+                if (previous != null) {
+                    removeNode(previous);
+                }
+            }
+            modifications.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        lock.readLock().lock();
+        try {
+            for (String docId : idList) {
+                Integer nodeId = nodeIds.remove(docId);
+                if (nodeId != null) {
+                    removeNode(nodeId);
+                }
+            }
+            modifications.incrementAndGet();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Predicate<Map<String, Object>> filter = toPredicate(filterExpression);
+        List<String> matched = entries.values().stream()
+                .filter(entry -> filter.test(entry.metadata()))
+                .map(Entry::docId)
+                .toList();
+        delete(matched);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        float[] query = embeddingModel.embed(request.getQuery());
+        Predicate<Map<String, Object>> filter = request.hasFilterExpression()
+                ? toPredicate(request.getFilterExpression())
+                : metadata -> true;
+
+        lock.readLock().lock();
+        try {
+            List<HnswIndex.Candidate> candidates = index.search(query, request.getTopK(), efSearch, nodeId -> {
+                Entry entry = entries.get(nodeId);
+                return entry != null && filter.test(entry.metadata());
+            });
+
+            List<Document> documents = new ArrayList<>(candidates.size());
+            for (HnswIndex.Candidate candidate : candidates) {
+                double score = 1 - candidate.distance();
+                Entry entry = entries.get(candidate.id());
+                if (entry == null || score < request.getSimilarityThreshold()) {
+                    continue;
+                }
+                Map<String, Object> metadata = new HashMap<>(entry.metadata());
+                metadata.put("distance", candidate.distance());
+                documents.add(Document.builder()
+                        .id(entry.docId())
+                        .text(entry.text())
+                        .metadata(metadata)
+                        .score(score)
+                        .build());
+            }
+            return documents;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历所有文档的元数据（用于对账）
+     */
+    public void forEachMetadata(BiConsumer<String, Map<String, Object>> consumer) {
+        entries.values().forEach(entry -> consumer.accept(entry.docId(), entry.metadata()));
+    }
+
+    // ============================
+    // 快照
+    // ============================
+
+    /**
+     * 从快照恢复，文件不存在或损坏时从空索引开始（由向量同步任务重新写入）
+     */
+    public void restore() {
+        if (snapshotPath == null || !Files.exists(snapshotPath)) {
+            return;
+        }
+        lock.writeLock().lock();
+        try (MappedFile in = MappedFile.openForRead(snapshotPath)) {
+            if (in.getInt() != SNAPSHOT_MAGIC || in.getInt() != SNAPSHOT_VERSION) {
+                log.warn("[HNSW] 快照格式不兼容，忽略: {}", snapshotPath);
+                return;
+            }
+            HnswIndex restored = HnswIndex.readFrom(in);
+            int count = in.getInt();
+            Map<Integer, Entry> restoredEntries = new HashMap<>(count * 2);
+            for (int i = 0; i < count; i++) {
+                int nodeId = in.getInt();
+                String docId = in.getString();
+                String text = in.getString();
+                Map<String, Object> metadata = objectMapper.readValue(in.getString(), new TypeReference<>() {
+                });
+                restoredEntries.put(nodeId, new Entry(docId, text, metadata));
+            }
+
+            index = restored;
+            entries.clear();
+            nodeIds.clear();
+            entries.putAll(restoredEntries);
+            restoredEntries.forEach((nodeId, entry) -> nodeIds.put(entry.docId(), nodeId));
+            savedModifications = modifications.get();
+            log.info("[HNSW] 已从快照恢复 {} 个向量, path={}", entries.size(), snapshotPath);
+        } catch (Exception e) {
+            log.error("[HNSW] 快照恢复失败，从空索引开始, path={}", snapshotPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 有修改时写入快照，墓碑超过一半时先重建索引
+     */
+    public void snapshot() {
+        if (snapshotPath == null || modifications.get() == savedModifications) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            long current = modifications.get();
+            if (index.deletedCount() > index.size() / 2) {
+                compact();
+            }
+
+            Path parent = snapshotPath.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            Path temp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (MappedFile out = MappedFile.openForWrite(temp)) {
+                out.putInt(SNAPSHOT_MAGIC);
+                out.putInt(SNAPSHOT_VERSION);
+                index.writeTo(out);
+                out.putInt(entries.size());
+                for (Map.Entry<Integer, Entry> e : entries.entrySet()) {
+                    out.putInt(e.getKey());
+                    out.putString(e.getValue().docId());
+                    out.putString(e.getValue().text() != null ? e.getValue().text() : "");
+                    out.putString(objectMapper.writeValueAsString(e.getValue().metadata()));
+                }
+                out.finish();
+            }
+            Files.move(temp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedModifications = current;
+            log.info("[HNSW] 快照已写入 {} 个向量, path={}", entries.size(), snapshotPath);
+        } catch (IOException e) {
+            log.error("[HNSW] 快照写入失败, path={}", snapshotPath, e);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void removeNode(int nodeId) {
+        entries.remove(nodeId);
+        index.markDeleted(nodeId);
+    }
+
+    /**
+     * 用存活节点重建索引，释放墓碑（调用方持有写锁）
+     */
+    private void compact() {
+        HnswIndex rebuilt = new HnswIndex(m, efConstruction);
+        Map<Integer, Entry> remapped = new HashMap<>(entries.size() * 2);
+        entries.forEach((nodeId, entry) -> remapped.put(rebuilt.add(index.vector(nodeId)), entry));
+        log.info("[HNSW] 重建索引: {} → {} 个节点", index.size(), rebuilt.size());
+
+        index = rebuilt;
+        entries.clear();
+        nodeIds.clear();
+        entries.putAll(remapped);
+        remapped.forEach((nodeId, entry) -> nodeIds.put(entry.docId(), nodeId));
+    }
+
+    private Predicate<Map<String, Object>> toPredicate(Filter.Expression filterExpression) {
+        Expression expression = expressionParser.parseExpression(filterExpressionConverter.convertExpression(filterExpression));
+        return metadata -> {
+            StandardEvaluationContext context = new StandardEvaluationContext();
+            context.setVariable("metadata", metadata);
+            return Boolean.TRUE.equals(expression.getValue(context, Boolean.class));
+        };
+    }
+}
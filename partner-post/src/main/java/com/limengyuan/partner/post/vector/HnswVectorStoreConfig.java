@@ -0,0 +1,54 @@
+package com.limengyuan.partner.post.vector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.embedding.TokenCountBatchingStrategy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import java.nio.file.Path;
+
+/**
+ * 进程内 HNSW 向量库配置
+ *
+ * spring.ai.vectorstore.type=hnsw 时启用，同时 Spring AI 的 Milvus 自动配置不再生效。
+ * 配置项（partner.vector-store.hnsw.*）：snapshot-path、m、ef-construction、ef-search
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(name = "spring.ai.vectorstore.type", havingValue = "hnsw")
+public class HnswVectorStoreConfig {
+
+    private final ObjectProvider<HnswVectorStore> vectorStore;
+
+    public HnswVectorStoreConfig(ObjectProvider<HnswVectorStore> vectorStore) {
+        this.vectorStore = vectorStore;
+    }
+
+    @Bean(destroyMethod = "snapshot")
+    public HnswVectorStore vectorStore(EmbeddingModel embeddingModel,
+                                       ObjectProvider<BatchingStrategy> batchingStrategy,
+                                       ObjectMapper objectMapper,
+                                       @Value("${partner.vector-store.hnsw.snapshot-path:}") String snapshotPath,
+                                       @Value("${partner.vector-store.hnsw.m:16}") int m,
+                                       @Value("${partner.vector-store.hnsw.ef-construction:200}") int efConstruction,
+                                       @Value("${partner.vector-store.hnsw.ef-search:64}") int efSearch) {
+        HnswVectorStore store = new HnswVectorStore(embeddingModel,
+                batchingStrategy.getIfAvailable(TokenCountBatchingStrategy::new), objectMapper,
+                snapshotPath.isBlank() ? null : Path.of(snapshotPath), m, efConstruction, efSearch);
+        store.restore();
+        return store;
+    }
+
+    /**
+     * 每 5 分钟写一次快照（无修改时跳过）
+     */
+    @Scheduled(initialDelay = 300000, fixedDelay = 300000)
+    public void snapshot() {
+        vectorStore.ifAvailable(HnswVectorStore::snapshot);
+    }
+}
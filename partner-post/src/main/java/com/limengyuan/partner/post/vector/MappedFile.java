@@ -0,0 +1,143 @@
+package com.limengyuan.partner.post.vector;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * 按窗口顺序读写的内存映射文件
+ *
+ * 单个 MappedByteBuffer 最大 2GB，百万级向量的快照会超过这个大小，因此按 64MB 窗口滑动映射，
+ * 读写位置跨出当前窗口时从当前位置重新映射
+ */
+final class MappedFile implements Closeable {
+
+    private static final long WINDOW_SIZE = 64L << 20;
+
+    private final FileChannel channel;
+    private final FileChannel.MapMode mode;
+    private final long fileSize;
+    private MappedByteBuffer buffer;
+    /** 当前窗口在文件中的起始偏移 */
+    private long base;
+
+    private MappedFile(FileChannel channel, FileChannel.MapMode mode, long fileSize) {
+        this.channel = channel;
+        this.mode = mode;
+        this.fileSize = fileSize;
+    }
+
+    static MappedFile openForWrite(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new MappedFile(channel, FileChannel.MapMode.READ_WRITE, Long.MAX_VALUE);
+    }
+
+    static MappedFile openForRead(Path path) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ);
+        return new MappedFile(channel, FileChannel.MapMode.READ_ONLY, channel.size());
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(Integer.BYTES).putInt(value);
+    }
+
+    void putByte(byte value) throws IOException {
+        ensure(1).put(value);
+    }
+
+    void putInts(int[] values) throws IOException {
+        MappedByteBuffer window = ensure(values.length * Integer.BYTES);
+        window.asIntBuffer().put(values);
+        window.position(window.position() + values.length * Integer.BYTES);
+    }
+
+    void putFloats(float[] values) throws IOException {
+        MappedByteBuffer window = ensure(values.length * Float.BYTES);
+        window.asFloatBuffer().put(values);
+        window.position(window.position() + values.length * Float.BYTES);
+    }
+
+    void putString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putInt(bytes.length);
+        ensure(bytes.length).put(bytes);
+    }
+
+    int getInt() throws IOException {
+        return ensure(Integer.BYTES).getInt();
+    }
+
+    byte getByte() throws IOException {
+        return ensure(1).get();
+    }
+
+    int[] getInts(int length) throws IOException {
+        int[] values = new int[length];
+        MappedByteBuffer window = ensure(length * Integer.BYTES);
+        window.asIntBuffer().get(values);
+        window.position(window.position() + length * Integer.BYTES);
+        return values;
+    }
+
+    float[] getFloats(int length) throws IOException {
+        float[] values = new float[length];
+        MappedByteBuffer window = ensure(length * Float.BYTES);
+        window.asFloatBuffer().get(values);
+        window.position(window.position() + length * Float.BYTES);
+        return values;
+    }
+
+    String getString() throws IOException {
+        byte[] bytes = new byte[getInt()];
+        ensure(bytes.length).get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 写入完成后截断到实际长度（窗口映射会把文件扩展到窗口末尾）
+     */
+    void finish() throws IOException {
+        long length = position();
+        if (buffer != null) {
+            buffer.force();
+        }
+        channel.truncate(length);
+        channel.force(true);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private long position() {
+        return buffer == null ? base : base + buffer.position();
+    }
+
+    private MappedByteBuffer ensure(int bytes) throws IOException {
+        if (buffer != null && buffer.remaining() >= bytes) {
+            return buffer;
+        }
+        long offset = position();
+        if (buffer != null && mode == FileChannel.MapMode.READ_WRITE) {
+            buffer.force();
+        }
+        long size = Math.max(WINDOW_SIZE, bytes);
+        if (mode == FileChannel.MapMode.READ_ONLY) {
+            size = Math.min(size, fileSize - offset);
+            if (size < bytes) {
+                throw new IOException("快照文件已截断: offset=" + offset + ", need=" + bytes);
+            }
+        }
+        buffer = channel.map(mode, offset, size);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        base = offset;
+        return buffer;
+    }
+}
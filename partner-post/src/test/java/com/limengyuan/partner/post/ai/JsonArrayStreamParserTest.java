@@ -0,0 +1,93 @@
+package com.limengyuan.partner.post.ai;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonArrayStreamParserTest {
+
+    private static final String OUTPUT = """
+            ```json
+            [
+              {"activityId": 1, "reason": "你喜欢{户外}，这个活动在\\"周末\\""},
+              {"activityId": 2, "reason": "路径 C:\\\\tmp\\\\] 不影响解析", "tags": ["a", {"b": [1, 2]}]},
+              {"activityId": 3, "reason": "最后一条"}
+            ]
+            ```
+            """;
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Test
+    void wholeOutputInOneChunk() throws Exception {
+        List<String> objects = new JsonArrayStreamParser().feed(OUTPUT);
+
+        assertThat(objects).hasSize(3);
+        JsonNode first = objectMapper.readTree(objects.get(0));
+        assertThat(first.get("reason").asText()).isEqualTo("你喜欢{户外}，这个活动在\"周末\"");
+        JsonNode second = objectMapper.readTree(objects.get(1));
+        assertThat(second.get("reason").asText()).isEqualTo("路径 C:\\tmp\\] 不影响解析");
+        assertThat(second.get("tags").get(1).get("b").size()).isEqualTo(2);
+        assertThat(objectMapper.readTree(objects.get(2)).get("activityId").asLong()).isEqualTo(3);
+    }
+
+    @Test
+    void sameResultForAnyChunking() {
+        List<String> expected = new JsonArrayStreamParser().feed(OUTPUT);
+
+        // 逐字符喂入
+        JsonArrayStreamParser perChar = new JsonArrayStreamParser();
+        List<String> charByChar = new ArrayList<>();
+        for (int i = 0; i < OUTPUT.length(); i++) {
+            charByChar.addAll(perChar.feed(OUTPUT.substring(i, i + 1)));
+        }
+        assertThat(charByChar).isEqualTo(expected);
+
+        // 随机切分
+        Random random = new Random(1);
+        for (int round = 0; round < 200; round++) {
+            JsonArrayStreamParser parser = new JsonArrayStreamParser();
+            List<String> objects = new ArrayList<>();
+            int i = 0;
+            while (i < OUTPUT.length()) {
+                int end = Math.min(OUTPUT.length(), i + 1 + random.nextInt(12));
+                objects.addAll(parser.feed(OUTPUT.substring(i, end)));
+                i = end;
+            }
+            assertThat(objects).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void objectIsEmittedAsSoonAsItCloses() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+
+        assertThat(parser.feed("好的，推荐如下：[{\"activityId\": 1, \"reason\": \"不")).isEmpty();
+        assertThat(parser.feed("错\"}, {\"activityId\"")).containsExactly("{\"activityId\": 1, \"reason\": \"不错\"}");
+        assertThat(parser.feed(": 2}")).containsExactly("{\"activityId\": 2}");
+    }
+
+    @Test
+    void ignoresEverythingAfterArrayCloses() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+
+        assertThat(parser.feed("[{\"a\": 1}] 补充说明 [{\"a\": 2}]")).containsExactly("{\"a\": 1}");
+        assertThat(parser.feed("{\"a\": 3}")).isEmpty();
+    }
+
+    @Test
+    void incompleteOrMissingArrayYieldsNothing() {
+        JsonArrayStreamParser parser = new JsonArrayStreamParser();
+
+        assertThat(parser.feed(null)).isEmpty();
+        assertThat(parser.feed("{\"a\": 1} 没有数组")).isEmpty();
+        assertThat(parser.feed("[{\"a\": {\"b\": 1}")).isEmpty();
+        assertThat(parser.feed("[]")).isEmpty();
+    }
+}
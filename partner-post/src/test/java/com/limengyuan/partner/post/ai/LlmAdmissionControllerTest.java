@@ -0,0 +1,256 @@
+package com.limengyuan.partner.post.ai;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class LlmAdmissionControllerTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void grantsUpToLimitAndQueuesTheRest() throws Exception {
+        LlmAdmissionController controller = controller(fixedLimit(2));
+
+        CompletableFuture<LlmAdmissionController.Permit> first = controller.acquireAsync(interactive("polish"));
+        CompletableFuture<LlmAdmissionController.Permit> second = controller.acquireAsync(interactive("polish"));
+        CompletableFuture<LlmAdmissionController.Permit> third = controller.acquireAsync(interactive("polish"));
+
+        assertThat(first).isDone();
+        assertThat(second).isDone();
+        assertThat(third).isNotDone();
+        assertThat(gauge("inflight")).isEqualTo(2);
+        assertThat(gauge("queued")).isEqualTo(1);
+
+        first.get().release(false);
+
+        assertThat(third).isDone();
+        assertThat(gauge("inflight")).isEqualTo(2);
+        assertThat(gauge("queued")).isZero();
+    }
+
+    @Test
+    void interactiveRequestsOvertakeQueuedBackgroundRequests() throws Exception {
+        LlmAdmissionProperties properties = fixedLimit(2);
+        properties.setBackgroundShare(1.0);
+        LlmAdmissionController controller = controller(properties);
+        LlmAdmissionController.Permit held = controller.acquireAsync(interactive("polish")).get();
+        controller.acquireAsync(interactive("polish")).get();
+
+        CompletableFuture<LlmAdmissionController.Permit> background = controller.acquireAsync(background("recommend"));
+        CompletableFuture<LlmAdmissionController.Permit> online = controller.acquireAsync(interactive("recommend"));
+        held.release(false);
+
+        assertThat(online).isDone();
+        assertThat(background).isNotDone();
+    }
+
+    @Test
+    void backgroundRequestsLimitedToTheirShare() {
+        LlmAdmissionProperties properties = fixedLimit(4);
+        properties.setBackgroundShare(0.5);
+        LlmAdmissionController controller = controller(properties);
+
+        CompletableFuture<?>[] background = new CompletableFuture<?>[4];
+        for (int i = 0; i < background.length; i++) {
+            background[i] = controller.acquireAsync(background("recommend"));
+        }
+
+        assertThat(background).filteredOn(CompletableFuture::isDone).hasSize(2);
+        // 剩余名额留给在线请求
+        assertThat(controller.acquireAsync(interactive("polish"))).isDone();
+        assertThat(controller.acquireAsync(interactive("polish"))).isDone();
+        assertThat(controller.acquireAsync(interactive("polish"))).isNotDone();
+    }
+
+    @Test
+    void namespaceQuotaCapsOneScenario() throws Exception {
+        LlmAdmissionProperties properties = fixedLimit(4);
+        properties.getQuotas().put("plan-trip", 1);
+        LlmAdmissionController controller = controller(properties);
+
+        CompletableFuture<LlmAdmissionController.Permit> firstTrip = controller.acquireAsync(interactive("plan-trip"));
+        CompletableFuture<LlmAdmissionController.Permit> secondTrip = controller.acquireAsync(interactive("plan-trip"));
+        CompletableFuture<LlmAdmissionController.Permit> polish = controller.acquireAsync(interactive("polish"));
+
+        assertThat(firstTrip).isDone();
+        assertThat(secondTrip).isNotDone();
+        // 排在前面的受限场景不阻塞其他场景
+        assertThat(polish).isDone();
+
+        firstTrip.get().release(false);
+        assertThat(secondTrip).isDone();
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() {
+        LlmAdmissionProperties properties = fixedLimit(1);
+        properties.setQueueCapacity(1);
+        LlmAdmissionController controller = controller(properties);
+        controller.acquireAsync(interactive("polish"));
+        controller.acquireAsync(interactive("polish"));
+
+        CompletableFuture<LlmAdmissionController.Permit> rejected = controller.acquireAsync(interactive("polish"));
+
+        assertThat(rejectionReason(rejected)).isEqualTo("queue_full");
+        assertThat(rejectedCount("queue_full")).isEqualTo(1);
+    }
+
+    @Test
+    void rejectsAfterQueueTimeout() {
+        LlmAdmissionProperties properties = fixedLimit(1);
+        properties.setInteractiveQueueTimeout(Duration.ofMillis(100));
+        LlmAdmissionController controller = controller(properties);
+        controller.acquireAsync(interactive("polish"));
+
+        CompletableFuture<LlmAdmissionController.Permit> waiting = controller.acquireAsync(interactive("polish"));
+
+        assertThat(rejectionReason(waiting)).isEqualTo("timeout");
+        assertThat(rejectedCount("timeout")).isEqualTo(1);
+        assertThat(gauge("queued")).isZero();
+    }
+
+    @Test
+    void cancelledWaiterLeavesQueueWithoutTakingPermit() throws Exception {
+        LlmAdmissionController controller = controller(fixedLimit(1));
+        LlmAdmissionController.Permit held = controller.acquireAsync(interactive("polish")).get();
+        CompletableFuture<LlmAdmissionController.Permit> waiting = controller.acquireAsync(interactive("polish"));
+
+        waiting.cancel(false);
+        assertThat(gauge("queued")).isZero();
+        held.release(false);
+
+        assertThat(gauge("inflight")).isZero();
+        assertThat(controller.acquireAsync(interactive("polish"))).isDone();
+    }
+
+    @Test
+    void interruptedBlockingAcquireGivesUpItsPlace() throws Exception {
+        LlmAdmissionController controller = controller(fixedLimit(1));
+        LlmAdmissionController.Permit held = controller.acquireAsync(interactive("polish")).get();
+        AtomicReference<Throwable> error = new AtomicReference<>();
+        CountDownLatch queued = new CountDownLatch(1);
+
+        Thread waiter = Thread.ofVirtual().start(() -> {
+            queued.countDown();
+            try {
+                controller.acquire(interactive("polish"));
+            } catch (Throwable e) {
+                error.set(e);
+            }
+        });
+        queued.await();
+        while (gauge("queued") == 0) {
+            Thread.sleep(5);
+        }
+        waiter.interrupt();
+        waiter.join(TimeUnit.SECONDS.toMillis(5));
+
+        assertThat(error.get()).isInstanceOf(LlmRejectedException.class);
+        assertThat(((LlmRejectedException) error.get()).getReason()).isEqualTo("interrupted");
+        assertThat(gauge("queued")).isZero();
+        held.release(false);
+        assertThat(gauge("inflight")).isZero();
+    }
+
+    @Test
+    void releaseIsIdempotent() throws Exception {
+        LlmAdmissionController controller = controller(fixedLimit(2));
+        LlmAdmissionController.Permit permit = controller.acquireAsync(interactive("polish")).get();
+        controller.acquireAsync(interactive("polish")).get();
+
+        permit.release(false);
+        permit.release(false);
+
+        assertThat(gauge("inflight")).isEqualTo(1);
+    }
+
+    @Test
+    void failuresShrinkLimitButCancellationsDoNot() throws Exception {
+        LlmAdmissionProperties properties = new LlmAdmissionProperties();
+        properties.setInitialLimit(10);
+        properties.setMinLimit(2);
+        properties.setMaxLimit(32);
+        LlmAdmissionController controller = controller(properties);
+
+        // 调用方取消（如推荐理由超时后中断工作线程）按成功释放，不收缩上限
+        controller.acquireAsync(interactive("recommend")).get().release(false);
+        assertThat(gauge("limit")).isEqualTo(10);
+
+        controller.acquireAsync(interactive("recommend")).get().release(true);
+        assertThat(gauge("limit")).isEqualTo(8);
+
+        for (int i = 0; i < 20; i++) {
+            controller.acquireAsync(interactive("recommend")).get().release(true);
+        }
+        assertThat(gauge("limit")).isEqualTo(2);
+    }
+
+    @Test
+    void disabledControllerDoesNotTrackPermits() throws Exception {
+        LlmAdmissionProperties properties = fixedLimit(1);
+        properties.setEnabled(false);
+        LlmAdmissionController controller = controller(properties);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(controller.acquireAsync(interactive("polish"))).isDone();
+        }
+        controller.acquire(interactive("polish")).release(true);
+
+        assertThat(gauge("inflight")).isZero();
+        assertThat(gauge("limit")).isEqualTo(1);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private LlmAdmissionController controller(LlmAdmissionProperties properties) {
+        return new LlmAdmissionController(properties, meterRegistry);
+    }
+
+    private static LlmAdmissionProperties fixedLimit(int limit) {
+        LlmAdmissionProperties properties = new LlmAdmissionProperties();
+        properties.setInitialLimit(limit);
+        properties.setMinLimit(limit);
+        properties.setMaxLimit(limit);
+        return properties;
+    }
+
+    private static LlmRequest interactive(String namespace) {
+        return LlmRequest.of(namespace, "prompt");
+    }
+
+    private static LlmRequest background(String namespace) {
+        return LlmRequest.of(namespace, "prompt").background();
+    }
+
+    private double gauge(String name) {
+        return meterRegistry.get("partner.llm.admission." + name).gauge().value();
+    }
+
+    private double rejectedCount(String reason) {
+        return meterRegistry.get("partner.llm.admission.rejected").tag("reason", reason).functionCounter().count();
+    }
+
+    private static String rejectionReason(CompletableFuture<?> future) {
+        assertThatThrownBy(() -> future.get(5, TimeUnit.SECONDS)).isInstanceOf(ExecutionException.class);
+        try {
+            future.get();
+            return null;
+        } catch (ExecutionException e) {
+            return ((LlmRejectedException) e.getCause()).getReason();
+        } catch (InterruptedException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
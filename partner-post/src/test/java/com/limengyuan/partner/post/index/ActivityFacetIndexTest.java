@@ -0,0 +1,171 @@
+package com.limengyuan.partner.post.index;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActivityFacetIndexTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 5, 1);
+
+    private ActivityMapper activityMapper;
+    private ActivityFacetIndex index;
+
+    @BeforeEach
+    void setUp() {
+        activityMapper = mock(ActivityMapper.class);
+        index = new ActivityFacetIndex(activityMapper, new ObjectMapper());
+    }
+
+    @Test
+    void notReadyUntilFirstRebuild() {
+        assertThat(index.isReady()).isFalse();
+        when(activityMapper.selectList(any())).thenReturn(List.of());
+
+        index.rebuild();
+
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.query(new ActivityFacetQuery(), 0, 10)).isEqualTo(new ActivityFacetIndex.Page(List.of(), 0));
+    }
+
+    @Test
+    void queryMatchesBruteForce() {
+        Random random = new Random(3);
+        List<Activity> activities = new ArrayList<>();
+        // ID 分布在多个 65536 分块中，验证跨分块的倒序分页
+        for (int i = 0; i < 3000; i++) {
+            long id = 1 + (long) i * 97 + random.nextInt(50);
+            activities.add(activity(id, "[" + (1 + random.nextInt(8)) + "," + (1 + random.nextInt(8)) + "]",
+                    random.nextInt(3), random.nextInt(10) == 0 ? null : TODAY.plusDays(random.nextInt(30))));
+        }
+        when(activityMapper.selectList(any())).thenReturn(activities);
+        index.rebuild();
+
+        List<ActivityFacetQuery> queries = List.of(
+                new ActivityFacetQuery(),
+                ActivityFacetQuery.builder().categoryIds(List.of(3)).build(),
+                ActivityFacetQuery.builder().categoryIds(List.of(2, 5)).paymentTypes(List.of(0)).build(),
+                ActivityFacetQuery.builder().paymentTypes(List.of(1, 2)).startFrom(TODAY.plusDays(7)).build(),
+                ActivityFacetQuery.builder().startTo(TODAY.plusDays(3)).build(),
+                ActivityFacetQuery.builder().categoryIds(List.of(1)).startFrom(TODAY.plusDays(5))
+                        .startTo(TODAY.plusDays(9)).build(),
+                ActivityFacetQuery.builder().categoryIds(List.of(99)).build());
+        for (ActivityFacetQuery query : queries) {
+            List<Long> expected = bruteForce(activities, query);
+            for (int offset : new int[]{0, 20, expected.size() - 5, expected.size() + 10}) {
+                if (offset < 0) {
+                    continue;
+                }
+                ActivityFacetIndex.Page page = index.query(query, offset, 20);
+
+                assertThat(page.total()).as("%s", query).isEqualTo(expected.size());
+                assertThat(page.ids()).as("%s offset=%d", query, offset)
+                        .containsExactlyElementsOf(expected.subList(Math.min(offset, expected.size()),
+                                Math.min(offset + 20, expected.size())));
+            }
+        }
+    }
+
+    @Test
+    void invertedDateRangeMatchesNothing() {
+        when(activityMapper.selectList(any())).thenReturn(List.of(activity(1, "[1]", 0, TODAY)));
+        index.rebuild();
+
+        ActivityFacetQuery query = ActivityFacetQuery.builder()
+                .startFrom(TODAY.plusDays(1)).startTo(TODAY.minusDays(1)).build();
+
+        assertThat(index.query(query, 0, 10).total()).isZero();
+    }
+
+    @Test
+    void refreshMovesActivityBetweenFacets() {
+        when(activityMapper.selectList(any())).thenReturn(List.of(
+                activity(1, "[1,2]", 0, TODAY), activity(2, "[2]", 1, TODAY.plusDays(1))));
+        index.rebuild();
+
+        when(activityMapper.selectById(1L)).thenReturn(activity(1, "[3]", 1, TODAY.plusDays(2)));
+        index.refresh(1L);
+
+        assertThat(ids(ActivityFacetQuery.builder().categoryIds(List.of(1)).build())).isEmpty();
+        assertThat(ids(ActivityFacetQuery.builder().categoryIds(List.of(2)).build())).containsExactly(2L);
+        assertThat(ids(ActivityFacetQuery.builder().categoryIds(List.of(3)).build())).containsExactly(1L);
+        assertThat(ids(ActivityFacetQuery.builder().paymentTypes(List.of(1)).build())).containsExactly(2L, 1L);
+        assertThat(ids(ActivityFacetQuery.builder().startTo(TODAY).build())).isEmpty();
+    }
+
+    @Test
+    void refreshRemovesActivityThatStoppedRecruiting() {
+        when(activityMapper.selectList(any())).thenReturn(List.of(activity(1, "[1]", 0, TODAY)));
+        index.rebuild();
+
+        Activity cancelled = activity(1, "[1]", 0, TODAY);
+        cancelled.setStatus(3);
+        when(activityMapper.selectById(1L)).thenReturn(cancelled);
+        index.refresh(1L);
+        assertThat(index.query(new ActivityFacetQuery(), 0, 10).total()).isZero();
+
+        // 已删除的活动
+        when(activityMapper.selectById(1L)).thenReturn(null);
+        index.refresh(1L);
+        assertThat(index.query(new ActivityFacetQuery(), 0, 10).total()).isZero();
+
+        // 恢复招募后重新出现
+        when(activityMapper.selectById(1L)).thenReturn(activity(1, "[1]", 0, TODAY));
+        index.refresh(1L);
+        assertThat(ids(ActivityFacetQuery.builder().categoryIds(List.of(1)).build())).containsExactly(1L);
+    }
+
+    @Test
+    void malformedCategoryJsonIsIgnored() {
+        when(activityMapper.selectList(any())).thenReturn(List.of(
+                activity(1, "not-json", 0, TODAY), activity(2, null, 0, TODAY)));
+        index.rebuild();
+
+        assertThat(ids(new ActivityFacetQuery())).containsExactly(2L, 1L);
+        assertThat(ids(ActivityFacetQuery.builder().paymentTypes(List.of(0)).build())).containsExactly(2L, 1L);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private List<Long> ids(ActivityFacetQuery query) {
+        return index.query(query, 0, 100).ids();
+    }
+
+    private static List<Long> bruteForce(List<Activity> activities, ActivityFacetQuery query) {
+        return activities.stream()
+                .filter(a -> query.getCategoryIds() == null || query.getCategoryIds().stream()
+                        .anyMatch(c -> a.getCategoryIds().matches(".*\\b" + c + "\\b.*")))
+                .filter(a -> query.getPaymentTypes() == null || query.getPaymentTypes().contains(a.getPaymentType()))
+                .filter(a -> query.getStartFrom() == null && query.getStartTo() == null || a.getStartTime() != null
+                        && (query.getStartFrom() == null || !a.getStartTime().toLocalDate().isBefore(query.getStartFrom()))
+                        && (query.getStartTo() == null || !a.getStartTime().toLocalDate().isAfter(query.getStartTo())))
+                .map(Activity::getActivityId)
+                .sorted(Comparator.reverseOrder())
+                .toList();
+    }
+
+    private static Activity activity(long id, String categoryIds, Integer paymentType, LocalDate startDay) {
+        Activity activity = new Activity();
+        activity.setActivityId(id);
+        activity.setCategoryIds(categoryIds);
+        activity.setPaymentType(paymentType);
+        activity.setStartTime(startDay != null ? startDay.atTime(14, 30) : null);
+        activity.setStatus(0);
+        return activity;
+    }
+}
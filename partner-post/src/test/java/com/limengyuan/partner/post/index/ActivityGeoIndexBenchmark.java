@@ -0,0 +1,175 @@
+package com.limengyuan.partner.post.index;
+
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * 附近活动网格索引压测（不依赖数据库，手动运行 main，参数为点数，默认 100 万）
+ *
+ * 点按人口权重分布在 12 个城市周围（高斯分布，标准差约 15km），另有 2% 散布在高纬度地区。
+ * 对每个半径各发起 1000 次查询（取第一页 20 条），输出 P50/P99 延迟与单线程 QPS；
+ * 再用同样的查询点做全量 Haversine 扫描作为基线，并确认两者返回的第一页完全一致。
+ *
+ * 参考结果（单核，100 万点，构建 10.6s、堆增量约 300MB，四档结果与全量扫描一致）：
+ * -  1km：网格 P50 5.9ms / P99 24.8ms，140 qps；全量扫描 139ms/次
+ * -  5km：网格 P50 75ms / P99 147ms，13 qps；全量扫描 197ms/次
+ * - 20km：网格 P50 140ms / P99 267ms，8 qps；全量扫描 276ms/次
+ * - 50km：网格 P50 183ms / P99 263ms，6 qps；全量扫描 383ms/次
+ * 城市中心密度下半径 ≥ 5km 时 9 个网格覆盖数万候选点，每个候选的装箱 ID 遍历 + 坐标 HashMap 查找
+ * 约 3µs，是全量扫描（连续 double 数组，约 140ns/点）的 20 倍，收益被摊薄到 2 倍左右
+ */
+public class ActivityGeoIndexBenchmark {
+
+    private static final int QUERIES = 1000;
+    private static final int BRUTE_FORCE_QUERIES = 50;
+    private static final int PAGE_SIZE = 20;
+    private static final double[] RADII_KM = {1, 5, 20, 50};
+
+    /** 城市中心（纬度, 经度, 权重） */
+    private static final double[][] CITIES = {
+            {39.90, 116.40, 10}, {31.23, 121.47, 10}, {23.13, 113.26, 7}, {22.54, 114.06, 7},
+            {30.57, 104.07, 5}, {30.27, 120.15, 5}, {34.34, 108.94, 3}, {29.56, 106.55, 4},
+            {45.80, 126.53, 2}, {43.82, 87.62, 1}, {64.14, -21.94, 1}, {69.65, 18.96, 1}
+    };
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Random random = new Random(42);
+        double[] lats = new double[count];
+        double[] lngs = new double[count];
+        for (int i = 0; i < count; i++) {
+            double[] p = randomPoint(random);
+            lats[i] = p[0];
+            lngs[i] = p[1];
+        }
+
+        // 按需生成 Activity，避免同时持有 100 万个实体对象
+        List<Activity> rows = new AbstractList<>() {
+            @Override
+            public Activity get(int index) {
+                Activity activity = new Activity();
+                activity.setActivityId(index + 1L);
+                activity.setLatitude(BigDecimal.valueOf(lats[index]));
+                activity.setLongitude(BigDecimal.valueOf(lngs[index]));
+                return activity;
+            }
+
+            @Override
+            public int size() {
+                return count;
+            }
+        };
+        ActivityMapper mapper = (ActivityMapper) Proxy.newProxyInstance(
+                ActivityGeoIndexBenchmark.class.getClassLoader(), new Class<?>[]{ActivityMapper.class},
+                (proxy, method, methodArgs) -> {
+                    if (!method.getName().equals("selectList")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    return rows;
+                });
+
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        long usedBefore = runtime.totalMemory() - runtime.freeMemory();
+        long start = System.nanoTime();
+        ActivityGeoIndex index = new ActivityGeoIndex(mapper);
+        index.rebuild();
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+        System.gc();
+        long usedAfter = runtime.totalMemory() - runtime.freeMemory();
+        System.out.printf("points=%,d build=%.1fs heap~%,d MB%n",
+                count, buildSeconds, (usedAfter - usedBefore) >> 20);
+
+        double[][] queries = new double[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            queries[i] = randomPoint(random);
+        }
+
+        for (double radiusKm : RADII_KM) {
+            // 预热
+            for (int i = 0; i < QUERIES / 4; i++) {
+                index.nearby(queries[i][0], queries[i][1], radiusKm, null, null, PAGE_SIZE);
+            }
+            long[] latencies = new long[QUERIES];
+            long hits = 0;
+            long total = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                long t0 = System.nanoTime();
+                hits += index.nearby(queries[i][0], queries[i][1], radiusKm, null, null, PAGE_SIZE).size();
+                latencies[i] = System.nanoTime() - t0;
+            }
+            double qps = QUERIES / ((System.nanoTime() - total) / 1e9);
+            Arrays.sort(latencies);
+
+            long bruteTotal = System.nanoTime();
+            int mismatches = 0;
+            for (int i = 0; i < BRUTE_FORCE_QUERIES; i++) {
+                List<Long> expected = bruteForce(lats, lngs, queries[i][0], queries[i][1], radiusKm);
+                List<Long> actual = index.nearby(queries[i][0], queries[i][1], radiusKm, null, null, PAGE_SIZE)
+                        .stream().map(ActivityGeoIndex.Hit::activityId).toList();
+                if (!expected.equals(actual)) {
+                    mismatches++;
+                }
+            }
+            double bruteMs = (System.nanoTime() - bruteTotal) / 1e6 / BRUTE_FORCE_QUERIES;
+
+            System.out.printf("radius=%-4.0fkm grid: p50=%.3fms p99=%.3fms qps=%,.0f hits/query=%.1f"
+                            + "  bruteForce: %.1fms/query (%.1f qps)  mismatches=%d/%d%n",
+                    radiusKm, latencies[QUERIES / 2] / 1e6, latencies[QUERIES * 99 / 100] / 1e6, qps,
+                    hits / (double) QUERIES, bruteMs, 1000 / bruteMs, mismatches, BRUTE_FORCE_QUERIES);
+        }
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private static double[] randomPoint(Random random) {
+        if (random.nextInt(50) == 0) {
+            // 高纬度散点
+            double lat = (random.nextBoolean() ? 1 : -1) * (60 + random.nextDouble() * 29);
+            return new double[]{lat, random.nextDouble() * 360 - 180};
+        }
+        double totalWeight = Arrays.stream(CITIES).mapToDouble(c -> c[2]).sum();
+        double r = random.nextDouble() * totalWeight;
+        double[] city = CITIES[CITIES.length - 1];
+        for (double[] c : CITIES) {
+            r -= c[2];
+            if (r < 0) {
+                city = c;
+                break;
+            }
+        }
+        double lat = city[0] + random.nextGaussian() * 0.135;
+        double lng = city[1] + random.nextGaussian() * 0.135 / Math.cos(Math.toRadians(city[0]));
+        return new double[]{lat, lng};
+    }
+
+    /**
+     * 全量扫描基线：对每个点计算球面距离，按 (距离, activityId) 排序取第一页
+     */
+    private static List<Long> bruteForce(double[] lats, double[] lngs, double lat, double lng, double radiusKm) {
+        double radiusMeters = radiusKm * 1000;
+        List<long[]> hits = new ArrayList<>();
+        for (int i = 0; i < lats.length; i++) {
+            double d = ActivityGeoIndex.haversineMeters(lat, lng, lats[i], lngs[i]);
+            if (d <= radiusMeters) {
+                hits.add(new long[]{Math.round(d), i + 1L});
+            }
+        }
+        return hits.stream()
+                .sorted(Comparator.<long[]>comparingLong(h -> h[0]).thenComparingLong(h -> h[1]))
+                .limit(PAGE_SIZE)
+                .map(h -> h[1])
+                .toList();
+    }
+}
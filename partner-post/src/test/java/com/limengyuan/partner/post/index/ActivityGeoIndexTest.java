@@ -0,0 +1,176 @@
+package com.limengyuan.partner.post.index;
+
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ActivityGeoIndexTest {
+
+    @Test
+    void haversineMatchesKnownDistances() {
+        // 北京天安门 → 上海人民广场约 1067 km
+        assertThat(ActivityGeoIndex.haversineMeters(39.9087, 116.3975, 31.2304, 121.4737))
+                .isCloseTo(1_067_000, within(5_000.0));
+        assertThat(ActivityGeoIndex.haversineMeters(30, 120, 30, 120)).isZero();
+        // 对跖点为半个周长
+        assertThat(ActivityGeoIndex.haversineMeters(0, 0, 0, 180))
+                .isCloseTo(Math.PI * 6_371_008.8, within(1.0));
+    }
+
+    @Test
+    void choosesFinestPrecisionCoveringRadius() {
+        // 赤道附近：精度 6 网格约 1.2km × 0.6km，精度 5 约 4.9km × 4.9km
+        assertThat(ActivityGeoIndex.choosePrecision(0, 0.5)).isEqualTo(6);
+        assertThat(ActivityGeoIndex.choosePrecision(0, 1)).isEqualTo(5);
+        assertThat(ActivityGeoIndex.choosePrecision(0, 4)).isEqualTo(5);
+        assertThat(ActivityGeoIndex.choosePrecision(0, 10)).isEqualTo(4);
+        assertThat(ActivityGeoIndex.choosePrecision(0, 500)).isEqualTo(3);
+        // 纬度 60° 时东西宽度减半，同样半径需要更粗的精度
+        assertThat(ActivityGeoIndex.choosePrecision(60, 4)).isEqualTo(4);
+        assertThat(ActivityGeoIndex.choosePrecision(-60, 4)).isEqualTo(4);
+    }
+
+    @Test
+    void lonRingsWidenAtHighLatitudes() {
+        assertThat(ActivityGeoIndex.lonRings(5, 0, 4)).isEqualTo(1);
+        assertThat(ActivityGeoIndex.lonRings(3, 80, 200)).isGreaterThan(1);
+        assertThat(ActivityGeoIndex.lonRings(3, 85, 200))
+                .isGreaterThan(ActivityGeoIndex.lonRings(3, 80, 200));
+        // 查询圆触及极点时扫描整圈
+        assertThat(ActivityGeoIndex.lonRings(3, 89.9, 50)).isEqualTo(1L << 8);
+    }
+
+    @Test
+    void nearbyMatchesBruteForceAtAllLatitudes() {
+        Random random = new Random(7);
+        List<Activity> activities = new ArrayList<>();
+        double[] centers = {0, 31.2, 60, 75, 85, -88};
+        long id = 1;
+        for (double lat : centers) {
+            for (int i = 0; i < 400; i++) {
+                double pointLat = Math.max(-90, Math.min(90, lat + (random.nextDouble() - 0.5) * 4));
+                double pointLng = (random.nextDouble() - 0.5) * 40 + 120;
+                activities.add(activity(id++, pointLat, pointLng));
+            }
+        }
+        ActivityGeoIndex index = index(activities);
+
+        for (double lat : centers) {
+            for (double radiusKm : new double[]{0.5, 3, 20, 120}) {
+                double queryLat = Math.max(-89.9, Math.min(89.9, lat + (random.nextDouble() - 0.5)));
+                double queryLng = 120 + (random.nextDouble() - 0.5) * 10;
+
+                List<Long> found = index.nearby(queryLat, queryLng, radiusKm, null, null, Integer.MAX_VALUE)
+                        .stream().map(ActivityGeoIndex.Hit::activityId).toList();
+
+                assertThat(found)
+                        .as("lat=%s radius=%s", queryLat, radiusKm)
+                        .containsExactlyElementsOf(bruteForce(activities, queryLat, queryLng, radiusKm));
+            }
+        }
+    }
+
+    @Test
+    void nearbyWrapsAroundAntimeridian() {
+        ActivityGeoIndex index = index(List.of(activity(1, 10, 179.99), activity(2, 10, -179.5)));
+
+        assertThat(index.nearby(10, -179.99, 5, null, null, 10))
+                .extracting(ActivityGeoIndex.Hit::activityId).containsExactly(1L);
+    }
+
+    @Test
+    void cursorPagesCoverAllHitsOnce() {
+        Random random = new Random(11);
+        List<Activity> activities = new ArrayList<>();
+        for (long id = 1; id <= 300; id++) {
+            activities.add(activity(id, 31.2 + random.nextGaussian() * 0.02, 121.47 + random.nextGaussian() * 0.02));
+        }
+        // 两个完全重合的点，距离相同时按 activityId 区分
+        activities.add(activity(1000, 31.2, 121.47));
+        activities.add(activity(1001, 31.2, 121.47));
+        ActivityGeoIndex index = index(activities);
+
+        List<Long> paged = new ArrayList<>();
+        Long afterDistance = null;
+        Long afterId = null;
+        while (true) {
+            List<ActivityGeoIndex.Hit> page = index.nearby(31.2, 121.47, 3, afterDistance, afterId, 7);
+            if (page.isEmpty()) {
+                break;
+            }
+            page.forEach(h -> paged.add(h.activityId()));
+            afterDistance = page.get(page.size() - 1).distanceMeters();
+            afterId = page.get(page.size() - 1).activityId();
+        }
+
+        assertThat(paged).doesNotHaveDuplicates()
+                .containsExactlyElementsOf(bruteForce(activities, 31.2, 121.47, 3));
+    }
+
+    @Test
+    void refreshRemovesActivityThatStoppedRecruiting() {
+        ActivityMapper mapper = mock(ActivityMapper.class);
+        when(mapper.selectList(any())).thenReturn(List.of(activity(1, 31.2, 121.47)));
+        ActivityGeoIndex index = new ActivityGeoIndex(mapper);
+        index.rebuild();
+        assertThat(index.isReady()).isTrue();
+        assertThat(index.nearby(31.2, 121.47, 1, null, null, 10)).hasSize(1);
+
+        Activity full = activity(1, 31.2, 121.47);
+        full.setStatus(1);
+        when(mapper.selectById(1L)).thenReturn(full);
+        index.refresh(1L);
+
+        assertThat(index.nearby(31.2, 121.47, 1, null, null, 10)).isEmpty();
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private static ActivityGeoIndex index(List<Activity> activities) {
+        ActivityMapper mapper = mock(ActivityMapper.class);
+        when(mapper.selectList(any())).thenReturn(activities);
+        ActivityGeoIndex index = new ActivityGeoIndex(mapper);
+        index.rebuild();
+        return index;
+    }
+
+    private static List<Long> bruteForce(List<Activity> activities, double lat, double lng, double radiusKm) {
+        record Candidate(long id, long meters) {
+        }
+        List<Candidate> candidates = new ArrayList<>();
+        for (Activity a : activities) {
+            double d = ActivityGeoIndex.haversineMeters(lat, lng,
+                    a.getLatitude().doubleValue(), a.getLongitude().doubleValue());
+            if (d <= radiusKm * 1000) {
+                candidates.add(new Candidate(a.getActivityId(), Math.round(d)));
+            }
+        }
+        return candidates.stream()
+                .sorted(Comparator.comparingLong(Candidate::meters).thenComparingLong(Candidate::id))
+                .map(Candidate::id)
+                .toList();
+    }
+
+    private static Activity activity(long id, double lat, double lng) {
+        Activity activity = new Activity();
+        activity.setActivityId(id);
+        activity.setLatitude(BigDecimal.valueOf(lat));
+        activity.setLongitude(BigDecimal.valueOf(lng));
+        activity.setStatus(0);
+        return activity;
+    }
+}
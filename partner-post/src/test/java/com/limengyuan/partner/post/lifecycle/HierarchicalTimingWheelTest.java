@@ -0,0 +1,147 @@
+package com.limengyuan.partner.post.lifecycle;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HierarchicalTimingWheelTest {
+
+    /** 第一层 10ms × 8 格 = 80ms，第二层 80ms × 8 格 = 640ms，第三层 5120ms */
+    private static final long TICK_MS = 10;
+    private static final int WHEEL_SIZE = 8;
+    /** 到期后最晚多久被取出（容忍测试机调度抖动） */
+    private static final long MAX_LATENESS_MS = 300;
+
+    @Test
+    void expiredTaskIsRejected() {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+
+        assertThat(wheel.add(now - 1000, "past")).isFalse();
+        assertThat(wheel.add(now, "now")).isFalse();
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void pollTimesOutWhenNothingIsDue() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+        wheel.add(now + 5000, "later");
+
+        long start = System.currentTimeMillis();
+        assertThat(wheel.poll(50)).isEmpty();
+        assertThat(System.currentTimeMillis() - start).isGreaterThanOrEqualTo(40);
+        assertThat(wheel.size()).isEqualTo(1);
+    }
+
+    @Test
+    void tasksFireAroundDeadlineAcrossAllLevels() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<Long> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+        // 依次落在第一层、第二层和第三层
+        long[] offsets = {25, 60, 150, 500, 700, 1300};
+        for (long offset : offsets) {
+            assertThat(wheel.add(now + offset, now + offset)).isTrue();
+        }
+        assertThat(wheel.size()).isEqualTo(offsets.length);
+
+        Map<Long, Long> firedAt = drain(wheel, offsets.length, 3000);
+
+        assertThat(firedAt).hasSize(offsets.length);
+        firedAt.forEach((deadline, fired) -> {
+            // 格子的到期时间向下取整到 tick，最多提前一格
+            assertThat(fired).isGreaterThanOrEqualTo(deadline - TICK_MS);
+            assertThat(fired).isLessThanOrEqualTo(deadline + MAX_LATENESS_MS);
+        });
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void tasksInSameBucketAreReturnedTogether() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+        long deadline = (now / TICK_MS + 5) * TICK_MS;
+        for (int i = 0; i < 1000; i++) {
+            wheel.add(deadline + (i % TICK_MS), i);
+        }
+
+        List<Integer> batch = wheel.poll(1000);
+
+        assertThat(batch).hasSize(1000);
+        assertThat(wheel.size()).isZero();
+    }
+
+    @Test
+    void bucketIsReusedInNextRound() throws InterruptedException {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<String> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+        wheel.add(now + 30, "first");
+        assertThat(wheel.poll(1000)).containsExactly("first");
+
+        // 一整圈之后映射到同一个格子
+        long next = System.currentTimeMillis() + TICK_MS * WHEEL_SIZE;
+        assertThat(wheel.add(next, "second")).isTrue();
+
+        Map<String, Long> firedAt = new HashMap<>();
+        long timeout = System.currentTimeMillis() + 2000;
+        while (firedAt.isEmpty() && System.currentTimeMillis() < timeout) {
+            for (String payload : wheel.poll(100)) {
+                firedAt.put(payload, System.currentTimeMillis());
+            }
+        }
+        assertThat(firedAt).containsKey("second");
+        assertThat(firedAt.get("second")).isGreaterThanOrEqualTo(next - TICK_MS);
+    }
+
+    @Test
+    void concurrentAddsWhilePolling() throws Exception {
+        long now = System.currentTimeMillis();
+        HierarchicalTimingWheel<Integer> wheel = new HierarchicalTimingWheel<>(TICK_MS, WHEEL_SIZE, now);
+        int perThread = 500;
+        List<Thread> producers = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            int base = t * perThread;
+            producers.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < perThread; i++) {
+                    long deadline = System.currentTimeMillis() + 20 + (i % 400);
+                    if (!wheel.add(deadline, base + i)) {
+                        throw new IllegalStateException("未来任务不应被拒绝");
+                    }
+                }
+            }));
+        }
+
+        List<Integer> fired = new ArrayList<>();
+        long timeout = System.currentTimeMillis() + 5000;
+        while (fired.size() < 4 * perThread && System.currentTimeMillis() < timeout) {
+            fired.addAll(wheel.poll(100));
+        }
+        for (Thread producer : producers) {
+            producer.join();
+        }
+
+        assertThat(fired).hasSize(4 * perThread).doesNotHaveDuplicates();
+        assertThat(wheel.size()).isZero();
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private static Map<Long, Long> drain(HierarchicalTimingWheel<Long> wheel, int expected, long timeoutMs)
+            throws InterruptedException {
+        Map<Long, Long> firedAt = new HashMap<>();
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (firedAt.size() < expected && System.currentTimeMillis() < deadline) {
+            for (Long payload : wheel.poll(100)) {
+                firedAt.put(payload, System.currentTimeMillis());
+            }
+        }
+        return firedAt;
+    }
+}
@@ -0,0 +1,170 @@
+package com.limengyuan.partner.post.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.service.ActivityVectorService.VectorFilter;
+import com.limengyuan.partner.post.vector.HnswVectorStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.BatchingStrategy;
+import org.springframework.ai.embedding.EmbeddingModel;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 向量召回的结构化过滤：VectorFilter 生成的表达式经进程内 HNSW 向量库求值
+ *
+ * 向量按活动ID构造，离查询向量的远近可控；城市由发起人决定
+ */
+class ActivityVectorServiceFilterTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2026, 10, 1, 12, 0);
+    private static final String QUERY = "兴趣:徒步 城市:杭州";
+
+    private static final long HANGZHOU_USER = 1L;
+    private static final long SHANGHAI_USER = 2L;
+    private static final long UNKNOWN_CITY_USER = 3L;
+
+    /** activityId → 与查询向量的偏离程度，越大越远 */
+    private final Map<Long, Double> offsets = new HashMap<>();
+
+    private ActivityVectorService service;
+
+    @BeforeEach
+    void setUp() {
+        EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+        when(embeddingModel.embed(anyString())).thenReturn(vector(0));
+        when(embeddingModel.embed(anyList(), any(), any())).thenAnswer(inv -> {
+            List<Document> documents = inv.getArgument(0);
+            return documents.stream()
+                    .map(d -> vector(offsets.get(((Number) d.getMetadata().get("activityId")).longValue())))
+                    .toList();
+        });
+
+        ActivityMapper activityMapper = mock(ActivityMapper.class);
+        when(activityMapper.findCitiesByUserIds(anyCollection())).thenReturn(List.of(
+                Map.of("user_id", HANGZHOU_USER, "city", "杭州"),
+                Map.of("user_id", SHANGHAI_USER, "city", "上海")));
+
+        HnswVectorStore vectorStore = new HnswVectorStore(embeddingModel, mock(BatchingStrategy.class),
+                new ObjectMapper(), null, 16, 100, 16);
+        service = new ActivityVectorService(vectorStore, activityMapper, new ObjectMapper(), "default", "vector_store");
+    }
+
+    @Test
+    void statusFilterKeepsOnlyRecruiting() {
+        add(activity(1, 0.1, 0, HANGZHOU_USER, NOW.plusDays(1), "[1]"),
+                activity(2, 0.2, 1, HANGZHOU_USER, NOW.plusDays(1), "[1]"),
+                activity(3, 0.3, 0, HANGZHOU_USER, NOW.plusDays(1), "[1]"));
+
+        assertThat(search(10, new VectorFilter(0, null, null, null))).containsExactly(1L, 3L);
+    }
+
+    @Test
+    void cityFilterAlsoKeepsUnknownCity() {
+        add(activity(1, 0.1, 0, HANGZHOU_USER, NOW.plusDays(1), "[1]"),
+                activity(2, 0.2, 0, SHANGHAI_USER, NOW.plusDays(1), "[1]"),
+                activity(3, 0.3, 0, UNKNOWN_CITY_USER, NOW.plusDays(1), "[1]"));
+
+        assertThat(search(10, new VectorFilter(null, "杭州", null, null))).containsExactly(1L, 3L);
+        assertThat(search(10, new VectorFilter(null, "上海", null, null))).containsExactly(2L, 3L);
+        // 城市为空白时不限城市
+        assertThat(search(10, new VectorFilter(null, " ", null, null))).containsExactly(1L, 2L, 3L);
+    }
+
+    @Test
+    void startTimeFilterDropsStartedActivities() {
+        add(activity(1, 0.1, 0, HANGZHOU_USER, NOW.minusHours(1), "[1]"),
+                activity(2, 0.2, 0, HANGZHOU_USER, NOW.plusHours(1), "[1]"),
+                activity(3, 0.3, 0, HANGZHOU_USER, null, "[1]"));
+
+        // 没有开始时间的活动写入 startTime=0，不会被"晚于"条件命中
+        assertThat(search(10, new VectorFilter(null, null, NOW, null))).containsExactly(2L);
+    }
+
+    @Test
+    void categoryFilterMatchesPrimaryCategory() {
+        add(activity(1, 0.1, 0, HANGZHOU_USER, NOW.plusDays(1), "[3, 7]"),
+                activity(2, 0.2, 0, HANGZHOU_USER, NOW.plusDays(1), "[7, 3]"),
+                activity(3, 0.3, 0, HANGZHOU_USER, NOW.plusDays(1), null));
+
+        assertThat(search(10, new VectorFilter(null, null, null, List.of(3)))).containsExactly(1L);
+        assertThat(search(10, new VectorFilter(null, null, null, List.of(3, 7)))).containsExactly(1L, 2L);
+    }
+
+    @Test
+    void combinedFilterIsConjunction() {
+        add(activity(1, 0.1, 0, HANGZHOU_USER, NOW.plusDays(1), "[3]"),
+                activity(2, 0.2, 0, SHANGHAI_USER, NOW.plusDays(1), "[3]"),
+                activity(3, 0.3, 1, HANGZHOU_USER, NOW.plusDays(1), "[3]"),
+                activity(4, 0.4, 0, HANGZHOU_USER, NOW.minusDays(1), "[3]"),
+                activity(5, 0.5, 0, UNKNOWN_CITY_USER, NOW.plusDays(1), "[4]"),
+                activity(6, 0.6, 0, UNKNOWN_CITY_USER, NOW.plusDays(2), "[3]"));
+
+        VectorFilter filter = new VectorFilter(0, "杭州", NOW, List.of(3));
+        assertThat(search(10, filter)).containsExactly(1L, 6L);
+    }
+
+    @Test
+    void fewMatchesWidenCandidatesInsteadOfReturningShort() {
+        // 离查询最近的 300 个活动都已满员，5 个招募中的活动远在候选集（efSearch=16）之外
+        List<ActivityVO> activities = new ArrayList<>();
+        LongStream.rangeClosed(1, 300).forEach(id ->
+                activities.add(activity(id, id / 1000.0, 1, HANGZHOU_USER, NOW.plusDays(1), "[1]")));
+        LongStream.rangeClosed(1001, 1005).forEach(id ->
+                activities.add(activity(id, 1 + (id - 1000) / 100.0, 0, HANGZHOU_USER, NOW.plusDays(1), "[1]")));
+        add(activities.toArray(ActivityVO[]::new));
+
+        List<Long> result = search(5, new VectorFilter(0, "杭州", NOW, List.of(1)));
+
+        assertThat(result).containsExactly(1001L, 1002L, 1003L, 1004L, 1005L);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private List<Long> search(int topK, VectorFilter filter) {
+        return service.searchSimilar(QUERY, topK, filter);
+    }
+
+    private void add(ActivityVO... activities) {
+        assertThat(service.addActivities(List.of(activities))).isTrue();
+    }
+
+    private ActivityVO activity(long id, double offset, int status, long initiatorId,
+                                LocalDateTime startTime, String categoryIds) {
+        offsets.put(id, offset);
+        ActivityVO activity = new ActivityVO();
+        activity.setActivityId(id);
+        activity.setTitle("活动" + id);
+        activity.setStatus(status);
+        activity.setInitiatorId(initiatorId);
+        activity.setStartTime(startTime);
+        activity.setCategoryIds(categoryIds);
+        activity.setUpdatedAt(NOW);
+        return activity;
+    }
+
+    /**
+     * 在二维平面上偏离查询方向 offset 弧度的单位向量
+     */
+    private static float[] vector(double offset) {
+        return new float[]{(float) Math.cos(offset), (float) Math.sin(offset)};
+    }
+}
@@ -0,0 +1,169 @@
+package com.limengyuan.partner.post.service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 关注时间线推 / 拉 / 推拉结合的模拟压测（不依赖 Redis 与数据库，手动运行 main）
+ *
+ * 收件箱用 TreeSet 模拟 ZSet（保留最新 {@link #INBOX_CAPACITY} 条），作者动态列表模拟 idx_user_moment。
+ * 作者热度服从 Zipf 分布：每个用户 20% 的关注指向热门作者，其余随机；20% 的发布来自热门作者。
+ * 统计每次发布写入的收件箱条目数、每次读取需要合并的来源数（收件箱 + 每个大 V 作者）及耗时。
+ *
+ * 参考结果（2 万用户，每人关注 100 人，5 千次发布，2 万次读取）：
+ * push 每次发布写 1223 条 / 读 1.0 个来源；pull 写 0 / 读 27.4 个来源；
+ * 推拉结合 T=5000 写 177 / 读 5.1；T=1000 写 97 / 读 8.5
+ */
+public class FollowingTimelineBenchmark {
+
+    private static final int USERS = 20_000;
+    private static final int FOLLOWS_PER_USER = 100;
+    private static final int PUBLISHES = 5_000;
+    private static final int READS = 20_000;
+    private static final int PAGE_SIZE = 20;
+    private static final int INBOX_CAPACITY = 800;
+
+    public static void main(String[] args) {
+        Random random = new Random(42);
+        double[] cdf = zipfCdf(USERS, 1.1);
+
+        int[][] following = new int[USERS][];
+        List<List<Integer>> followers = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            followers.add(new ArrayList<>());
+        }
+        for (int u = 0; u < USERS; u++) {
+            Set<Integer> followees = new HashSet<>();
+            for (int k = 0; k < FOLLOWS_PER_USER / 5; k++) {
+                int x = sample(cdf, random);
+                if (x != u) {
+                    followees.add(x);
+                }
+            }
+            while (followees.size() < FOLLOWS_PER_USER) {
+                int x = random.nextInt(USERS);
+                if (x != u) {
+                    followees.add(x);
+                }
+            }
+            following[u] = followees.stream().mapToInt(Integer::intValue).toArray();
+            for (int f : following[u]) {
+                followers.get(f).add(u);
+            }
+        }
+        int maxFollowers = followers.stream().mapToInt(List::size).max().orElse(0);
+        System.out.printf("users=%d follows/user=%d maxFollowers=%d%n", USERS, FOLLOWS_PER_USER, maxFollowers);
+
+        int[] publishers = new int[PUBLISHES];
+        for (int i = 0; i < PUBLISHES; i++) {
+            publishers[i] = random.nextInt(5) == 0 ? sample(cdf, random) : random.nextInt(USERS);
+        }
+        int[] readers = new int[READS];
+        for (int i = 0; i < READS; i++) {
+            readers[i] = random.nextInt(USERS);
+        }
+
+        run("push", Integer.MAX_VALUE, following, followers, publishers, readers);
+        run("pull", 0, following, followers, publishers, readers);
+        run("hybrid(T=5000)", 5000, following, followers, publishers, readers);
+        run("hybrid(T=1000)", 1000, following, followers, publishers, readers);
+    }
+
+    /**
+     * @param threshold 粉丝数达到该值的作者不推送，读时拉取
+     */
+    private static void run(String mode, int threshold, int[][] following, List<List<Integer>> followers,
+                            int[] publishers, int[] readers) {
+        Map<Integer, TreeSet<Long>> inbox = new HashMap<>();
+        long[][] byAuthor = new long[USERS][8];
+        int[] counts = new int[USERS];
+        boolean[] big = new boolean[USERS];
+        for (int i = 0; i < USERS; i++) {
+            big[i] = followers.get(i).size() >= threshold;
+        }
+
+        long writes = 0;
+        long writeStart = System.nanoTime();
+        for (int i = 0; i < publishers.length; i++) {
+            int author = publishers[i];
+            long momentId = i + 1;
+            if (counts[author] == byAuthor[author].length) {
+                byAuthor[author] = Arrays.copyOf(byAuthor[author], counts[author] * 2);
+            }
+            byAuthor[author][counts[author]++] = momentId;
+            if (big[author]) {
+                continue;
+            }
+            for (int f : followers.get(author)) {
+                TreeSet<Long> box = inbox.computeIfAbsent(f, k -> new TreeSet<>());
+                box.add(momentId);
+                if (box.size() > INBOX_CAPACITY) {
+                    box.pollFirst();
+                }
+                writes++;
+            }
+        }
+        long writeNanos = System.nanoTime() - writeStart;
+
+        long sources = 0;
+        long items = 0;
+        long readStart = System.nanoTime();
+        for (int u : readers) {
+            List<Long> page = new ArrayList<>(PAGE_SIZE);
+            TreeSet<Long> box = inbox.get(u);
+            if (box != null) {
+                sources++;
+                Iterator<Long> it = box.descendingIterator();
+                for (int k = 0; k < PAGE_SIZE && it.hasNext(); k++) {
+                    page.add(it.next());
+                }
+            }
+            for (int f : following[u]) {
+                if (!big[f] || counts[f] == 0) {
+                    continue;
+                }
+                sources++;
+                for (int k = counts[f] - 1, n = 0; k >= 0 && n < PAGE_SIZE; k--, n++) {
+                    page.add(byAuthor[f][k]);
+                }
+            }
+            page.sort(Comparator.reverseOrder());
+            items += Math.min(PAGE_SIZE, page.size());
+        }
+        long readNanos = System.nanoTime() - readStart;
+
+        long inboxEntries = inbox.values().stream().mapToLong(TreeSet::size).sum();
+        System.out.printf("%-16s writes=%,d (%.0f/publish, %.0f ms)  read: %.1f sources/read, %.2f us/read"
+                        + "  inboxEntries=%,d items/read=%.1f%n",
+                mode, writes, writes / (double) publishers.length, writeNanos / 1e6,
+                sources / (double) readers.length, readNanos / 1e3 / readers.length,
+                inboxEntries, items / (double) readers.length);
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1.0 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) {
+            cdf[i] /= sum;
+        }
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int x = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(x < 0 ? -x - 1 : x, cdf.length - 1);
+    }
+}
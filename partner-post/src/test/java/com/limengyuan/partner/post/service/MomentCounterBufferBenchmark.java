@@ -0,0 +1,105 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.post.mapper.MomentMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 动态计数写缓冲压测（不依赖数据库，手动运行 main，参数为写线程数，默认 8）
+ *
+ * 多个线程对一条热点动态和 3000 条普通动态持续点赞/取消点赞/评论，后台每 100ms 刷写一次，
+ * 其中 20% 的刷写模拟数据库故障。结束后确认写入"数据库"的总增量与产生的增量完全一致，
+ * 并输出每秒计数次数与实际执行的 UPDATE 语句数（逐条写库时两者相等）。
+ */
+public class MomentCounterBufferBenchmark {
+
+    private static final long DURATION_MS = 3000;
+    private static final long HOT_MOMENT_ID = 1L;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+
+        AtomicLong dbLikes = new AtomicLong();
+        AtomicLong dbComments = new AtomicLong();
+        AtomicLong statements = new AtomicLong();
+        AtomicBoolean databaseDown = new AtomicBoolean();
+        MomentMapper mapper = (MomentMapper) Proxy.newProxyInstance(
+                MomentCounterBufferBenchmark.class.getClassLoader(), new Class<?>[]{MomentMapper.class},
+                (proxy, method, methodArgs) -> {
+                    if (!method.getName().equals("applyCounterDeltas")) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    if (databaseDown.get()) {
+                        throw new IllegalStateException("database unavailable");
+                    }
+                    statements.incrementAndGet();
+                    @SuppressWarnings("unchecked")
+                    List<MomentMapper.CounterDelta> deltas = (List<MomentMapper.CounterDelta>) methodArgs[0];
+                    for (MomentMapper.CounterDelta d : deltas) {
+                        dbLikes.addAndGet(d.getLikes());
+                        dbComments.addAndGet(d.getComments());
+                    }
+                    return deltas.size();
+                });
+        MomentCounterBuffer buffer = new MomentCounterBuffer(mapper, new SimpleMeterRegistry());
+
+        ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor();
+        flusher.scheduleWithFixedDelay(() -> {
+            databaseDown.set(ThreadLocalRandom.current().nextInt(5) == 0);
+            buffer.flush();
+        }, 100, 100, TimeUnit.MILLISECONDS);
+
+        LongAdder operations = new LongAdder();
+        LongAdder expectedLikes = new LongAdder();
+        LongAdder expectedComments = new LongAdder();
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(DURATION_MS);
+        List<Thread> workers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            Thread worker = new Thread(() -> {
+                long n = 0;
+                while (System.nanoTime() < deadline) {
+                    buffer.incrementLike(HOT_MOMENT_ID);
+                    expectedLikes.increment();
+                    if ((n & 15) == 0) {
+                        buffer.incrementComment(1000L + n % 3000);
+                        expectedComments.increment();
+                    }
+                    if ((n & 1023) == 0) {
+                        buffer.decrementLike(HOT_MOMENT_ID);
+                        expectedLikes.decrement();
+                    }
+                    n++;
+                }
+                operations.add(n);
+            });
+            worker.start();
+            workers.add(worker);
+        }
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        databaseDown.set(false);
+        buffer.flush();
+
+        boolean match = expectedLikes.sum() == dbLikes.get() && expectedComments.sum() == dbComments.get();
+        System.out.printf("threads=%d hot-moment likes/s=%,.0f UPDATE statements=%d%n",
+                threads, operations.sum() / (DURATION_MS / 1000.0), statements.get());
+        System.out.printf("expected likes=%d comments=%d, flushed likes=%d comments=%d, match=%s%n",
+                expectedLikes.sum(), expectedComments.sum(), dbLikes.get(), dbComments.get(), match);
+        if (!match) {
+            System.exit(1);
+        }
+    }
+}
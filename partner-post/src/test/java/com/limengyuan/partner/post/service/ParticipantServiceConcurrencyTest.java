@@ -0,0 +1,242 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.entity.Activity;
+import com.limengyuan.partner.common.entity.Participant;
+import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.mapper.ParticipantMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 并发审核压测：1000 个审核请求同时到达时不会超员
+ *
+ * 不依赖 MySQL：activities / participants 两张表用内存行模拟，每条条件 UPDATE 在行上加锁执行，
+ * 与 InnoDB 对同一行的 UPDATE 串行执行、WHERE 条件基于最新已提交值判断的语义一致。
+ */
+class ParticipantServiceConcurrencyTest {
+
+    private static final long ACTIVITY_ID = 1L;
+    private static final long INITIATOR_ID = 100L;
+    private static final int MAX_PARTICIPANTS = 11;
+    private static final int REQUESTS = 1000;
+
+    private final ActivityRow activity = new ActivityRow();
+    private final Map<Long, Participant> participants = new ConcurrentHashMap<>();
+
+    private ParticipantService participantService;
+    private ParticipantMapper participantMapper;
+    private ActivityVectorService activityVectorService;
+
+    @BeforeEach
+    void setUp() {
+        ActivityMapper activityMapper = mock(ActivityMapper.class);
+        participantMapper = mock(ParticipantMapper.class);
+        activityVectorService = mock(ActivityVectorService.class);
+
+        when(activityMapper.selectById(ACTIVITY_ID)).thenAnswer(inv -> activity.snapshot());
+        when(activityMapper.tryIncrementApprovedCount(ACTIVITY_ID)).thenAnswer(inv -> activity.tryIncrement());
+        when(activityMapper.markFullIfReached(ACTIVITY_ID)).thenAnswer(inv -> activity.markFullIfReached());
+        when(activityMapper.decrementApprovedCount(ACTIVITY_ID)).thenAnswer(inv -> activity.decrement());
+        when(activityMapper.reopenIfAvailable(ACTIVITY_ID)).thenAnswer(inv -> activity.reopenIfAvailable());
+
+        when(participantMapper.selectById(anyLong())).thenAnswer(inv -> copy(participants.get(inv.<Long>getArgument(0))));
+        when(participantMapper.updateStatusIfMatch(anyLong(), anyInt(), anyInt())).thenAnswer(inv -> {
+            Participant row = participants.get(inv.<Long>getArgument(0));
+            synchronized (row) {
+                if (row.getStatus() != inv.<Integer>getArgument(1)) {
+                    return 0;
+                }
+                row.setStatus(inv.getArgument(2));
+                return 1;
+            }
+        });
+
+        participantService = new ParticipantService();
+        ReflectionTestUtils.setField(participantService, "participantMapper", participantMapper);
+        ReflectionTestUtils.setField(participantService, "activityMapper", activityMapper);
+        ReflectionTestUtils.setField(participantService, "activityVectorService", activityVectorService);
+        ReflectionTestUtils.setField(participantService, "activitySlotReserver", new ActivitySlotReserver(activityMapper));
+        ReflectionTestUtils.setField(participantService, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(participantService, "userHydrator", mock(UserHydrator.class));
+    }
+
+    @Test
+    void concurrentApprovalsNeverExceedCapacity() throws Exception {
+        for (long id = 1; id <= REQUESTS; id++) {
+            participants.put(id, pending(id));
+        }
+
+        List<Result<Void>> results = runConcurrently(REQUESTS, i -> participantService.approveParticipant((long) i + 1, INITIATOR_ID));
+
+        long approved = results.stream().filter(r -> r.getCode() == 200).count();
+        assertThat(approved).isEqualTo(MAX_PARTICIPANTS - 1);
+        assertThat(activity.approvedCount).isEqualTo(MAX_PARTICIPANTS - 1);
+        assertThat(activity.status).isEqualTo(1);
+        assertThat(participants.values().stream().filter(p -> p.getStatus() == Participant.STATUS_APPROVED))
+                .hasSize(MAX_PARTICIPANTS - 1);
+        // 占用失败的申请全部回到待审核，可以在有人退出后再次审核
+        assertThat(participants.values().stream().filter(p -> p.getStatus() == Participant.STATUS_PENDING))
+                .hasSize(REQUESTS - (MAX_PARTICIPANTS - 1));
+        // 只有完成满员标记的那一次请求移除向量
+        verify(activityVectorService, times(1)).removeActivity(ACTIVITY_ID);
+    }
+
+    @Test
+    void concurrentApprovalsOfSameApplicationReserveOneSlot() throws Exception {
+        participants.put(1L, pending(1L));
+
+        List<Result<Void>> results = runConcurrently(REQUESTS, i -> participantService.approveParticipant(1L, INITIATOR_ID));
+
+        assertThat(results.stream().filter(r -> r.getCode() == 200)).hasSize(1);
+        assertThat(activity.approvedCount).isEqualTo(1);
+        assertThat(participants.get(1L).getStatus()).isEqualTo(Participant.STATUS_APPROVED);
+    }
+
+    @Test
+    void leavingReopensSlotForPendingApplications() throws Exception {
+        for (long id = 1; id <= REQUESTS; id++) {
+            participants.put(id, pending(id));
+        }
+        runConcurrently(REQUESTS, i -> participantService.approveParticipant((long) i + 1, INITIATOR_ID));
+        Participant member = participants.values().stream()
+                .filter(p -> p.getStatus() == Participant.STATUS_APPROVED).findFirst().orElseThrow();
+        // 退出流程按 (activityId, userId) 查询参与记录
+        when(participantMapper.selectOne(any())).thenAnswer(inv -> copy(member));
+
+        assertThat(participantService.leaveActivity(ACTIVITY_ID, member.getUserId()).getCode()).isEqualTo(200);
+        assertThat(activity.approvedCount).isEqualTo(MAX_PARTICIPANTS - 2);
+        assertThat(activity.status).isEqualTo(0);
+
+        List<Long> pendingIds = participants.values().stream()
+                .filter(p -> p.getStatus() == Participant.STATUS_PENDING)
+                .map(Participant::getParticipantId).toList();
+        List<Result<Void>> results = runConcurrently(pendingIds.size(),
+                i -> participantService.approveParticipant(pendingIds.get(i), INITIATOR_ID));
+
+        assertThat(results.stream().filter(r -> r.getCode() == 200)).hasSize(1);
+        assertThat(activity.approvedCount).isEqualTo(MAX_PARTICIPANTS - 1);
+        assertThat(activity.status).isEqualTo(1);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private interface Call {
+        Result<Void> run(int index);
+    }
+
+    private static List<Result<Void>> runConcurrently(int count, Call call) throws Exception {
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Result<Void>>> futures = new ArrayList<>(count);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < count; i++) {
+                int index = i;
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return call.run(index);
+                }));
+            }
+            start.countDown();
+        }
+        List<Result<Void>> results = new ArrayList<>(count);
+        for (Future<Result<Void>> future : futures) {
+            results.add(future.get());
+        }
+        return results;
+    }
+
+    private static Participant pending(long id) {
+        Participant p = new Participant();
+        p.setParticipantId(id);
+        p.setActivityId(ACTIVITY_ID);
+        p.setUserId(1000 + id);
+        p.setStatus(Participant.STATUS_PENDING);
+        return p;
+    }
+
+    private static Participant copy(Participant source) {
+        if (source == null) {
+            return null;
+        }
+        synchronized (source) {
+            Participant p = new Participant();
+            p.setParticipantId(source.getParticipantId());
+            p.setActivityId(source.getActivityId());
+            p.setUserId(source.getUserId());
+            p.setStatus(source.getStatus());
+            return p;
+        }
+    }
+
+    /**
+     * activities 表中的一行，各方法对应 ActivityMapper 中的条件 UPDATE
+     */
+    private static class ActivityRow {
+        int approvedCount;
+        int status;
+
+        synchronized Activity snapshot() {
+            Activity a = new Activity();
+            a.setActivityId(ACTIVITY_ID);
+            a.setInitiatorId(INITIATOR_ID);
+            a.setMaxParticipants(MAX_PARTICIPANTS);
+            a.setApprovedCount(approvedCount);
+            a.setStatus(status);
+            return a;
+        }
+
+        synchronized int tryIncrement() {
+            if (approvedCount < MAX_PARTICIPANTS - 1) {
+                approvedCount++;
+                return 1;
+            }
+            return 0;
+        }
+
+        synchronized int decrement() {
+            if (approvedCount > 0) {
+                approvedCount--;
+                return 1;
+            }
+            return 0;
+        }
+
+        synchronized int markFullIfReached() {
+            if (status == 0 && approvedCount >= MAX_PARTICIPANTS - 1) {
+                status = 1;
+                return 1;
+            }
+            return 0;
+        }
+
+        synchronized int reopenIfAvailable() {
+            if (status == 1 && approvedCount < MAX_PARTICIPANTS - 1) {
+                status = 0;
+                return 1;
+            }
+            return 0;
+        }
+    }
+}
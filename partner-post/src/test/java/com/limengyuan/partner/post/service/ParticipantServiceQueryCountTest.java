@@ -0,0 +1,180 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.CursorPage;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.common.dto.vo.ActivityWithApplicationsVO;
+import com.limengyuan.partner.common.dto.vo.ParticipantVO;
+import com.limengyuan.partner.common.entity.User;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import com.limengyuan.partner.post.mapper.ParticipantMapper;
+import com.limengyuan.partner.post.mapper.UserSnapshotMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoMoreInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * "我发布的活动及申请"的查询次数：无论活动多少，申请预览和申请总数都只查固定次数
+ */
+class ParticipantServiceQueryCountTest {
+
+    private static final long INITIATOR_ID = 100L;
+    private static final int APPLICATIONS_PER_ACTIVITY = 10;
+    private static final int PREVIEW_SIZE = 7;
+
+    private ParticipantService participantService;
+    private ActivityMapper activityMapper;
+    private ParticipantMapper participantMapper;
+    private UserSnapshotMapper userSnapshotMapper;
+
+    @BeforeEach
+    void setUp() {
+        activityMapper = mock(ActivityMapper.class);
+        participantMapper = mock(ParticipantMapper.class);
+        userSnapshotMapper = mock(UserSnapshotMapper.class);
+
+        when(participantMapper.findTopByActivityIds(anyCollection(), anyInt()))
+                .thenAnswer(inv -> previews(inv.getArgument(0), inv.getArgument(1)));
+        when(participantMapper.countGroupByActivityIds(anyCollection()))
+                .thenAnswer(inv -> totals(inv.getArgument(0)));
+        when(userSnapshotMapper.findByIds(anyCollection()))
+                .thenAnswer(inv -> users(inv.getArgument(0)));
+
+        participantService = new ParticipantService();
+        ReflectionTestUtils.setField(participantService, "participantMapper", participantMapper);
+        ReflectionTestUtils.setField(participantService, "activityMapper", activityMapper);
+        ReflectionTestUtils.setField(participantService, "activityVectorService", mock(ActivityVectorService.class));
+        ReflectionTestUtils.setField(participantService, "activitySlotReserver", new ActivitySlotReserver(activityMapper));
+        ReflectionTestUtils.setField(participantService, "eventPublisher", mock(ApplicationEventPublisher.class));
+        ReflectionTestUtils.setField(participantService, "userHydrator", new UserHydrator(userSnapshotMapper));
+    }
+
+    @ParameterizedTest
+    @ValueSource(ints = {1, 20, 200})
+    void queryCountDoesNotGrowWithActivities(int activityCount) {
+        when(activityMapper.findByInitiatorIdWithUser(INITIATOR_ID)).thenReturn(activities(activityCount));
+
+        List<ActivityWithApplicationsVO> result =
+                participantService.getMyActivitiesWithApplications(INITIATOR_ID).getData();
+
+        assertThat(result).hasSize(activityCount);
+        assertThat(result).allSatisfy(a -> {
+            assertThat(a.getApplications()).hasSize(PREVIEW_SIZE)
+                    .allSatisfy(p -> assertThat(p.getActivityId()).isEqualTo(a.getActivityId()));
+            assertThat(a.getTotalApplications()).isEqualTo(APPLICATIONS_PER_ACTIVITY);
+        });
+
+        verify(activityMapper, times(1)).findByInitiatorIdWithUser(INITIATOR_ID);
+        verify(participantMapper, times(1)).findTopByActivityIds(anyCollection(), eq(PREVIEW_SIZE));
+        verify(participantMapper, times(1)).countGroupByActivityIds(anyCollection());
+        verifyNoMoreInteractions(participantMapper);
+        // 发起人与申请人的用户信息各最多回源一次，之后命中快照
+        verify(userSnapshotMapper, times(2)).findByIds(anyCollection());
+    }
+
+    @Test
+    void cursorPageUsesSameFixedQueries() {
+        when(activityMapper.findByInitiatorIdByCursor(eq(INITIATOR_ID), any(), any(), anyInt()))
+                .thenReturn(activities(21));
+
+        CursorPage<ActivityWithApplicationsVO> page =
+                participantService.getMyActivitiesWithApplicationsByCursor(INITIATOR_ID, null, 20).getData();
+
+        assertThat(page.getList()).hasSize(20);
+        assertThat(page.isHasMore()).isTrue();
+        verify(participantMapper, times(1)).findTopByActivityIds(anyCollection(), eq(PREVIEW_SIZE));
+        verify(participantMapper, times(1)).countGroupByActivityIds(anyCollection());
+        verifyNoMoreInteractions(participantMapper);
+    }
+
+    @Test
+    void activitiesWithoutApplicationsGetEmptyPreview() {
+        when(activityMapper.findByInitiatorIdWithUser(INITIATOR_ID)).thenReturn(activities(3));
+        when(participantMapper.findTopByActivityIds(anyCollection(), anyInt())).thenReturn(new ArrayList<>());
+        when(participantMapper.countGroupByActivityIds(anyCollection())).thenReturn(new ArrayList<>());
+
+        List<ActivityWithApplicationsVO> result =
+                participantService.getMyActivitiesWithApplications(INITIATOR_ID).getData();
+
+        assertThat(result).hasSize(3).allSatisfy(a -> {
+            assertThat(a.getApplications()).isEmpty();
+            assertThat(a.getTotalApplications()).isZero();
+        });
+    }
+
+    @Test
+    void noActivitiesSkipsApplicationQueries() {
+        when(activityMapper.findByInitiatorIdWithUser(INITIATOR_ID)).thenReturn(new ArrayList<>());
+
+        assertThat(participantService.getMyActivitiesWithApplications(INITIATOR_ID).getData()).isEmpty();
+        verifyNoMoreInteractions(participantMapper);
+        verify(userSnapshotMapper, never()).findByIds(anyCollection());
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private static List<ActivityVO> activities(int count) {
+        List<ActivityVO> activities = new ArrayList<>(count);
+        LocalDateTime now = LocalDateTime.now();
+        for (long id = count; id >= 1; id--) {
+            activities.add(ActivityVO.builder()
+                    .activityId(id)
+                    .initiatorId(INITIATOR_ID)
+                    .title("活动" + id)
+                    .createdAt(now.minusMinutes(count - id))
+                    .build());
+        }
+        return activities;
+    }
+
+    /**
+     * 模拟窗口函数：每个活动取最早的 limit 条申请
+     */
+    private static List<ParticipantVO> previews(Collection<Long> activityIds, int limit) {
+        List<ParticipantVO> rows = new ArrayList<>();
+        for (Long activityId : activityIds) {
+            for (int i = 0; i < Math.min(limit, APPLICATIONS_PER_ACTIVITY); i++) {
+                rows.add(ParticipantVO.builder()
+                        .participantId(activityId * 1000 + i)
+                        .activityId(activityId)
+                        .userId(1000L + i)
+                        .build());
+            }
+        }
+        return rows;
+    }
+
+    private static List<Map<String, Object>> totals(Collection<Long> activityIds) {
+        return activityIds.stream()
+                .map(id -> Map.<String, Object>of("activity_id", id, "total", (long) APPLICATIONS_PER_ACTIVITY))
+                .toList();
+    }
+
+    private static List<User> users(Collection<Long> userIds) {
+        return userIds.stream()
+                .map(id -> User.builder().userId(id).nickname("用户" + id).build())
+                .toList();
+    }
+}
@@ -0,0 +1,256 @@
+package com.limengyuan.partner.post.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.common.dto.vo.RecommendedActivityVO;
+import com.limengyuan.partner.common.result.Result;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 推荐缓存的单飞与旧值返回：Redis 用内存 Map 模拟，loader 计数
+ */
+class RecommendationCacheTest {
+
+    private static final long USER_ID = 42L;
+    private static final String CACHE_KEY = "recommend:user:" + USER_ID;
+    private static final String LOCK_KEY = "recommend:lock:" + USER_ID;
+    private static final Duration WAIT_TIMEOUT = Duration.ofMillis(800);
+
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    /** 模拟 Redis */
+    private final Map<String, String> redis = new ConcurrentHashMap<>();
+    private final AtomicInteger loads = new AtomicInteger();
+    private final ExecutorService callers = Executors.newVirtualThreadPerTaskExecutor();
+
+    private SimpleMeterRegistry meterRegistry;
+    private RecommendationCache cache;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenAnswer(inv -> redis.get(inv.<String>getArgument(0)));
+        when(ops.setIfAbsent(anyString(), anyString(), any(Duration.class)))
+                .thenAnswer(inv -> redis.putIfAbsent(inv.getArgument(0), inv.getArgument(1)) == null);
+        doAnswer(inv -> redis.put(inv.getArgument(0), inv.getArgument(1)))
+                .when(ops).set(anyString(), anyString(), any(Duration.class));
+        when(redisTemplate.hasKey(anyString())).thenAnswer(inv -> redis.containsKey(inv.<String>getArgument(0)));
+        // 释放锁脚本：仅当锁仍属于自己时删除
+        when(redisTemplate.execute(any(RedisScript.class), anyList(), any())).thenAnswer(inv -> {
+            List<String> keys = inv.getArgument(1);
+            return redis.remove(keys.get(0), inv.<String>getArgument(2)) ? 1L : 0L;
+        });
+
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new RecommendationCache(redisTemplate, objectMapper, meterRegistry, WAIT_TIMEOUT);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+        cache.shutdown();
+    }
+
+    @Test
+    void concurrentMissesShareOneLoad() throws Exception {
+        int callerCount = 50;
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Result<List<RecommendedActivityVO>>> loader = () -> {
+            loads.incrementAndGet();
+            await(release);
+            return Result.success(items("new"));
+        };
+
+        List<Future<Result<List<RecommendedActivityVO>>>> results = new ArrayList<>();
+        for (int i = 0; i < callerCount; i++) {
+            results.add(callers.submit(() -> cache.get(USER_ID, loader)));
+        }
+        // 全部请求都进入等待后才放行计算，确保没有请求是在写回后才到达的
+        waitUntil(() -> coalesced("local") == callerCount - 1);
+        release.countDown();
+
+        for (Future<Result<List<RecommendedActivityVO>>> result : results) {
+            assertThat(reasons(result.get(5, TimeUnit.SECONDS))).containsExactly("new");
+        }
+        assertThat(loads).hasValue(1);
+        assertThat(requests("miss")).isEqualTo(callerCount);
+        assertThat(redis).doesNotContainKey(LOCK_KEY);
+        assertThat(reasons(cache.get(USER_ID, loader))).containsExactly("new");
+        assertThat(requests("fresh")).isEqualTo(1);
+    }
+
+    @Test
+    void staleHitReturnsOldValueAndRefreshesOnce() throws Exception {
+        long age = Duration.ofMinutes(40).toMillis();
+        cacheEntry(System.currentTimeMillis() - age, "old");
+        CountDownLatch release = new CountDownLatch(1);
+        Supplier<Result<List<RecommendedActivityVO>>> loader = () -> {
+            loads.incrementAndGet();
+            await(release);
+            return Result.success(items("new"));
+        };
+
+        for (int i = 0; i < 10; i++) {
+            // 刷新被阻塞，旧值仍然立即返回
+            assertThat(reasons(cache.get(USER_ID, loader))).containsExactly("old");
+        }
+        waitUntil(() -> loads.get() == 1);
+        release.countDown();
+        waitUntil(() -> redis.get(CACHE_KEY).contains("new"));
+
+        assertThat(loads).hasValue(1);
+        assertThat(requests("stale")).isEqualTo(10);
+        assertThat(coalesced("local")).isEqualTo(9);
+        assertThat(meterRegistry.get("partner.recommend.cache.staleness").summary().count()).isEqualTo(10);
+        assertThat(meterRegistry.get("partner.recommend.cache.staleness").summary().mean())
+                .isBetween(age / 1000.0, age / 1000.0 + 5);
+        assertThat(reasons(cache.get(USER_ID, loader))).containsExactly("new");
+        assertThat(requests("fresh")).isEqualTo(1);
+    }
+
+    @Test
+    void missWaitsForInstanceHoldingTheLock() throws Exception {
+        redis.put(LOCK_KEY, "other-instance");
+        Future<Result<List<RecommendedActivityVO>>> result =
+                callers.submit(() -> cache.get(USER_ID, counting("local")));
+
+        waitUntil(() -> coalesced("remote") == 1);
+        // 其他实例算完：写回结果并释放锁
+        cacheEntry(System.currentTimeMillis(), "remote");
+        redis.remove(LOCK_KEY);
+
+        assertThat(reasons(result.get(5, TimeUnit.SECONDS))).containsExactly("remote");
+        assertThat(loads).hasValue(0);
+    }
+
+    @Test
+    void missComputesLocallyWhenRemoteWaitTimesOut() {
+        redis.put(LOCK_KEY, "stuck-instance");
+
+        long start = System.nanoTime();
+        Result<List<RecommendedActivityVO>> result = cache.get(USER_ID, counting("local"));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertThat(reasons(result)).containsExactly("local");
+        assertThat(waitedMs).isGreaterThanOrEqualTo(WAIT_TIMEOUT.toMillis());
+        assertThat(loads).hasValue(1);
+        assertThat(coalesced("remote")).isEqualTo(1);
+        // 没有持锁也照样写回，其他实例的锁不被误删
+        assertThat(redis.get(CACHE_KEY)).contains("local");
+        assertThat(redis).containsEntry(LOCK_KEY, "stuck-instance");
+    }
+
+    @Test
+    void staleRefreshGivesUpWhenAnotherInstanceHoldsTheLock() throws Exception {
+        cacheEntry(System.currentTimeMillis() - Duration.ofHours(1).toMillis(), "old");
+        redis.put(LOCK_KEY, "other-instance");
+
+        assertThat(reasons(cache.get(USER_ID, counting("local")))).containsExactly("old");
+
+        waitUntil(() -> coalesced("remote") == 1);
+        assertThat(loads).hasValue(0);
+        assertThat(redis.get(CACHE_KEY)).contains("old");
+    }
+
+    @Test
+    void legacyListEntryIsServedAsStale() throws Exception {
+        redis.put(CACHE_KEY, objectMapper.writeValueAsString(items("legacy")));
+
+        assertThat(reasons(cache.get(USER_ID, counting("new")))).containsExactly("legacy");
+
+        waitUntil(() -> redis.get(CACHE_KEY).startsWith("{"));
+        assertThat(requests("stale")).isEqualTo(1);
+        assertThat(loads).hasValue(1);
+        assertThat(reasons(cache.get(USER_ID, counting("unused")))).containsExactly("new");
+    }
+
+    @Test
+    void emptyResultIsNotCached() {
+        Result<List<RecommendedActivityVO>> result = cache.get(USER_ID, () -> {
+            loads.incrementAndGet();
+            return Result.success(List.of());
+        });
+
+        assertThat(result.getData()).isEmpty();
+        assertThat(redis).doesNotContainKey(CACHE_KEY).doesNotContainKey(LOCK_KEY);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private Supplier<Result<List<RecommendedActivityVO>>> counting(String reason) {
+        return () -> {
+            loads.incrementAndGet();
+            return Result.success(items(reason));
+        };
+    }
+
+    private void cacheEntry(long computedAt, String reason) throws Exception {
+        redis.put(CACHE_KEY, objectMapper.writeValueAsString(new RecommendationCache.Entry(computedAt, items(reason))));
+    }
+
+    private static List<RecommendedActivityVO> items(String reason) {
+        ActivityVO activity = new ActivityVO();
+        activity.setActivityId(1L);
+        return List.of(new RecommendedActivityVO(activity, reason));
+    }
+
+    private static List<String> reasons(Result<List<RecommendedActivityVO>> result) {
+        return result.getData().stream().map(RecommendedActivityVO::getReason).toList();
+    }
+
+    private double requests(String result) {
+        return meterRegistry.get("partner.recommend.cache.requests").tag("result", result).counter().count();
+    }
+
+    private double coalesced(String scope) {
+        return meterRegistry.get("partner.recommend.cache.coalesced").tag("scope", scope).counter().count();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertThat(System.nanoTime()).as("等待条件超时").isLessThan(deadline);
+            Thread.sleep(10);
+        }
+    }
+}
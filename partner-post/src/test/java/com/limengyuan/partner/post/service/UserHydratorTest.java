@@ -0,0 +1,168 @@
+package com.limengyuan.partner.post.service;
+
+import com.limengyuan.partner.common.dto.vo.MomentCommentVO;
+import com.limengyuan.partner.common.dto.vo.ParticipantVO;
+import com.limengyuan.partner.common.dto.vo.ReviewVO;
+import com.limengyuan.partner.common.entity.User;
+import com.limengyuan.partner.post.mapper.UserSnapshotMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用户快照增量刷新：水位回看与分页追平
+ */
+class UserHydratorTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 10, 1, 12, 0);
+
+    /** 模拟 users 表 */
+    private final Map<Long, User> table = new ConcurrentHashMap<>();
+    private final List<Integer> pageSizes = new ArrayList<>();
+
+    private UserSnapshotMapper mapper;
+    private UserHydrator hydrator;
+
+    @BeforeEach
+    void setUp() {
+        mapper = mock(UserSnapshotMapper.class);
+        when(mapper.findBatchAfter(anyLong(), anyInt())).thenAnswer(inv -> {
+            long afterId = inv.getArgument(0);
+            int limit = inv.getArgument(1);
+            return table.values().stream()
+                    .filter(u -> u.getUserId() > afterId)
+                    .sorted(Comparator.comparing(User::getUserId))
+                    .limit(limit)
+                    .toList();
+        });
+        when(mapper.findByIds(anyCollection())).thenAnswer(inv -> {
+            Collection<Long> ids = inv.getArgument(0);
+            return ids.stream().map(table::get).toList();
+        });
+        when(mapper.findUpdatedSince(any(), anyLong(), anyInt())).thenAnswer(inv -> {
+            LocalDateTime since = inv.getArgument(0);
+            long afterId = inv.getArgument(1);
+            int limit = inv.getArgument(2);
+            List<User> page = table.values().stream()
+                    .filter(u -> u.getUpdatedAt().isAfter(since)
+                            || (u.getUpdatedAt().isEqual(since) && u.getUserId() > afterId))
+                    .sorted(Comparator.comparing(User::getUpdatedAt).thenComparing(User::getUserId))
+                    .limit(limit)
+                    .toList();
+            pageSizes.add(page.size());
+            return page;
+        });
+        hydrator = new UserHydrator(mapper);
+    }
+
+    @Test
+    void lateCommitInsideLagIsPickedUp() {
+        put(1, "alice", BASE);
+        put(2, "bob", BASE.plusMinutes(10));
+        hydrator.onStartup();
+
+        // 事务在 updated_at 取值后很久才提交：时间戳落后于已推进的水位
+        put(1, "alice-renamed", BASE.plusMinutes(9));
+        hydrator.refreshChanged();
+
+        assertThat(nicknameOf(1)).isEqualTo("alice-renamed");
+    }
+
+    @Test
+    void lookBackIsBoundedByCommitLag() {
+        put(1, "alice", BASE);
+        put(2, "bob", BASE.plusMinutes(10));
+        hydrator.onStartup();
+
+        hydrator.refreshChanged();
+
+        verify(mapper).findUpdatedSince(eq(BASE.plusMinutes(8)), eq(0L), anyInt());
+        // 只重读回看窗口内的 bob
+        assertThat(pageSizes).containsExactly(1);
+    }
+
+    @Test
+    void refreshAfterFailedStartupPagesThroughTable() {
+        when(mapper.findBatchAfter(anyLong(), anyInt())).thenThrow(new IllegalStateException("db down"));
+        // 12001 个用户，多数共享同一个 updated_at，验证游标在相同时间戳内按 user_id 推进
+        LongStream.rangeClosed(1, 12_001).forEach(id ->
+                put(id, "user-" + id, id % 3 == 0 ? BASE.plusSeconds(id) : BASE));
+        hydrator.onStartup();
+
+        hydrator.refreshChanged();
+
+        assertThat(pageSizes).containsExactly(5000, 5000, 2001);
+        for (long id : new long[]{1, 4999, 5000, 5001, 12_001}) {
+            assertThat(nicknameOf(id)).isEqualTo("user-" + id);
+        }
+        verify(mapper, never()).findByIds(anyCollection());
+    }
+
+    @Test
+    void fillsEveryUserReferenceWithOneFallbackQuery() {
+        put(1, "alice", BASE);
+        put(2, "bob", BASE);
+        put(3, "carol", BASE);
+
+        MomentCommentVO reply = new MomentCommentVO();
+        reply.setUserId(2L);
+        reply.setReplyToId(1L);
+        MomentCommentVO comment = new MomentCommentVO();
+        comment.setUserId(1L);
+        comment.setReplies(List.of(reply));
+        ReviewVO review = new ReviewVO();
+        review.setReviewerId(3L);
+        review.setRevieweeId(2L);
+
+        // 快照为空：评论与回复中的 2 个用户一次回源，评价中新出现的 carol 再一次回源
+        hydrator.fillComments(List.of(comment));
+        hydrator.fillReviews(List.of(review));
+
+        assertThat(comment.getUserNickname()).isEqualTo("alice");
+        assertThat(reply.getUserNickname()).isEqualTo("bob");
+        assertThat(reply.getReplyToNickname()).isEqualTo("alice");
+        assertThat(review.getReviewerNickname()).isEqualTo("carol");
+        assertThat(review.getRevieweeNickname()).isEqualTo("bob");
+        verify(mapper).findByIds(Set.of(1L, 2L));
+        verify(mapper).findByIds(Set.of(3L));
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void put(long userId, String nickname, LocalDateTime updatedAt) {
+        User user = new User();
+        user.setUserId(userId);
+        user.setNickname(nickname);
+        user.setUpdatedAt(updatedAt);
+        table.put(userId, user);
+    }
+
+    private String nicknameOf(long userId) {
+        ParticipantVO participant = new ParticipantVO();
+        participant.setUserId(userId);
+        hydrator.fillParticipants(List.of(participant));
+        return participant.getNickname();
+    }
+}
@@ -0,0 +1,192 @@
+package com.limengyuan.partner.post.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.limengyuan.partner.common.dto.vo.ActivityVO;
+import com.limengyuan.partner.post.mapper.ActivityMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.VectorStore;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.ValueOperations;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 增量同步的水位推进：向量库写入失败时水位不前进，恢复后补齐失败的活动
+ */
+class VectorSyncTaskTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 5, 1, 10, 0);
+
+    private final List<ActivityVO> activities = new ArrayList<>();
+    /** 向量库中的文档ID */
+    private final Set<String> stored = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean addFails = new AtomicBoolean();
+    private final AtomicBoolean deleteFails = new AtomicBoolean();
+    /** 第几次 add 开始失败（用于模拟第二页失败），0 表示由 addFails 控制 */
+    private int failFromAddCall;
+    private int addCalls;
+    private final AtomicReference<String> watermark = new AtomicReference<>();
+
+    private VectorSyncTask task;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        ActivityMapper activityMapper = mock(ActivityMapper.class);
+        when(activityMapper.findChangedSince(any(), any(), any(), anyInt())).thenAnswer(inv -> changedSince(
+                inv.getArgument(0), inv.getArgument(1), inv.getArgument(2), inv.getArgument(3)));
+        when(activityMapper.findCitiesByUserIds(anyCollection())).thenReturn(List.of());
+
+        VectorStore vectorStore = mock(VectorStore.class);
+        doAnswer(inv -> {
+            addCalls++;
+            if (addFails.get() || (failFromAddCall > 0 && addCalls >= failFromAddCall)) {
+                throw new IllegalStateException("Milvus 不可用");
+            }
+            List<Document> documents = inv.getArgument(0);
+            documents.forEach(d -> stored.add(d.getId()));
+            return null;
+        }).when(vectorStore).add(anyList());
+        doAnswer(inv -> {
+            if (deleteFails.get()) {
+                throw new IllegalStateException("Milvus 不可用");
+            }
+            List<String> ids = inv.getArgument(0);
+            ids.forEach(stored::remove);
+            return null;
+        }).when(vectorStore).delete(anyList());
+
+        StringRedisTemplate redisTemplate = mock(StringRedisTemplate.class);
+        ValueOperations<String, String> ops = mock(ValueOperations.class);
+        when(redisTemplate.opsForValue()).thenReturn(ops);
+        when(ops.get(anyString())).thenAnswer(inv -> watermark.get());
+        doAnswer(inv -> {
+            watermark.set(inv.getArgument(1));
+            return null;
+        }).when(ops).set(anyString(), anyString());
+
+        ActivityVectorService vectorService = new ActivityVectorService(vectorStore, activityMapper,
+                new ObjectMapper(), "default", "vector_store");
+        task = new VectorSyncTask(activityMapper, vectorService, redisTemplate);
+    }
+
+    @Test
+    void failedWriteDoesNotAdvanceWatermark() {
+        addActivities(50, 0);
+        addFails.set(true);
+
+        task.syncDelta();
+
+        assertThat(watermark.get()).isNull();
+        assertThat(stored).isEmpty();
+
+        addFails.set(false);
+        task.syncDelta();
+
+        assertThat(stored).hasSize(50);
+        assertThat(watermark.get()).endsWith("|50");
+    }
+
+    @Test
+    void failedDeleteDoesNotAdvanceWatermark() {
+        addActivities(10, 0);
+        task.syncDelta();
+        String before = watermark.get();
+
+        ActivityVO cancelled = activities.get(3);
+        cancelled.setStatus(3);
+        cancelled.setUpdatedAt(BASE.plusMinutes(30));
+        deleteFails.set(true);
+        task.syncDelta();
+
+        assertThat(watermark.get()).isEqualTo(before);
+        assertThat(stored).contains("4");
+
+        deleteFails.set(false);
+        task.syncDelta();
+        assertThat(stored).doesNotContain("4").hasSize(9);
+        assertThat(watermark.get()).endsWith("|4");
+    }
+
+    @Test
+    void watermarkStopsAtLastSuccessfulPage() {
+        // 每页 200 条，第二页写入失败
+        addActivities(450, 0);
+        failFromAddCall = 2;
+
+        task.syncDelta();
+
+        assertThat(stored).hasSize(200);
+        assertThat(watermark.get()).endsWith("|200");
+
+        failFromAddCall = 0;
+        task.syncDelta();
+        assertThat(stored).hasSize(450);
+        assertThat(watermark.get()).endsWith("|450");
+    }
+
+    @Test
+    void overwriteThatFailsAfterDeleteIsRepairedOnRetry() {
+        addActivities(5, 0);
+        task.syncDelta();
+
+        // 活动被修改：覆盖时删除成功、写入失败，此时向量暂时缺失
+        activities.get(0).setTitle("改过的标题");
+        activities.get(0).setUpdatedAt(BASE.plusMinutes(30));
+        addFails.set(true);
+        task.syncDelta();
+        assertThat(stored).doesNotContain("1");
+
+        addFails.set(false);
+        task.syncDelta();
+        assertThat(stored).contains("1").hasSize(5);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private void addActivities(int count, int status) {
+        for (long id = 1; id <= count; id++) {
+            ActivityVO activity = new ActivityVO();
+            activity.setActivityId(id);
+            activity.setInitiatorId(100L);
+            activity.setTitle("活动" + id);
+            activity.setStatus(status);
+            activity.setUpdatedAt(BASE.plusSeconds(id / 10));
+            activities.add(activity);
+        }
+    }
+
+    /**
+     * 与 findChangedSince 的 SQL 语义一致：按 (updated_at, activity_id) 升序取水位之后的一页
+     */
+    private List<ActivityVO> changedSince(LocalDateTime sinceTime, Long sinceId, LocalDateTime until, int limit) {
+        return activities.stream()
+                .filter(a -> a.getUpdatedAt().isBefore(until))
+                .filter(a -> sinceTime == null || a.getUpdatedAt().isAfter(sinceTime)
+                        || (a.getUpdatedAt().isEqual(sinceTime) && a.getActivityId() > sinceId))
+                .sorted(Comparator.comparing(ActivityVO::getUpdatedAt).thenComparing(ActivityVO::getActivityId))
+                .limit(limit)
+                .toList();
+    }
+}
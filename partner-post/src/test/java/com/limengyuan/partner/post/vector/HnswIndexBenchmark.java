@@ -0,0 +1,132 @@
+package com.limengyuan.partner.post.vector;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * HNSW 召回率与吞吐压测（手动运行 main，参数依次为向量数、维度，默认 50000、256）
+ *
+ * 数据模拟文本嵌入：向量围绕 200 个主题中心分布。先构建索引，再对 500 条查询分别用不同的 efSearch 检索，
+ * 与暴力检索的 Top10 对比得到 recall@10，并输出单线程 QPS；最后输出暴力检索的 QPS 作为基线。
+ */
+public class HnswIndexBenchmark {
+
+    private static final int K = 10;
+    private static final int QUERIES = 500;
+    private static final int[] EF_SEARCH = {16, 32, 64, 128, 256};
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 50_000;
+        int dimensions = args.length > 1 ? Integer.parseInt(args[1]) : 256;
+
+        float[][] data = clustered(count, dimensions, 1);
+        float[][] queries = clustered(QUERIES, dimensions, 2);
+        for (float[] v : data) {
+            normalize(v);
+        }
+        for (float[] q : queries) {
+            normalize(q);
+        }
+
+        long start = System.nanoTime();
+        HnswIndex index = new HnswIndex(16, 200);
+        Arrays.stream(data).parallel().forEach(index::add);
+        double buildSeconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("vectors=%,d dims=%d m=16 efConstruction=200 build=%.1fs (%,.0f inserts/s)%n",
+                count, dimensions, buildSeconds, count / buildSeconds);
+
+        // 并行插入时节点 ID 与 data 下标不一致，按 ID 取回向量再做暴力检索
+        float[][] byId = new float[count][];
+        for (int id = 0; id < count; id++) {
+            byId[id] = index.vector(id);
+        }
+        start = System.nanoTime();
+        int[][] truth = new int[QUERIES][];
+        for (int i = 0; i < QUERIES; i++) {
+            truth[i] = bruteForce(byId, queries[i]);
+        }
+        double bruteQps = QUERIES / ((System.nanoTime() - start) / 1e9);
+
+        for (int ef : EF_SEARCH) {
+            for (float[] q : queries) {
+                index.search(q, K, ef, id -> true);
+            }
+            long hits = 0;
+            start = System.nanoTime();
+            for (int i = 0; i < QUERIES; i++) {
+                List<HnswIndex.Candidate> found = index.search(queries[i], K, ef, id -> true);
+                for (HnswIndex.Candidate c : found) {
+                    for (int t : truth[i]) {
+                        if (t == c.id()) {
+                            hits++;
+                            break;
+                        }
+                    }
+                }
+            }
+            double qps = QUERIES / ((System.nanoTime() - start) / 1e9);
+            System.out.printf("efSearch=%-4d recall@%d=%.3f qps=%,.0f%n", ef, K, hits / (double) (QUERIES * K), qps);
+        }
+        System.out.printf("bruteForce   recall@%d=1.000 qps=%,.0f%n", K, bruteQps);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    private static int[] bruteForce(float[][] data, float[] q) {
+        int[] ids = new int[K];
+        float[] scores = new float[K];
+        Arrays.fill(scores, Float.NEGATIVE_INFINITY);
+        for (int id = 0; id < data.length; id++) {
+            float s = 0;
+            float[] v = data[id];
+            for (int d = 0; d < v.length; d++) {
+                s += v[d] * q[d];
+            }
+            if (s <= scores[K - 1]) {
+                continue;
+            }
+            int pos = K - 1;
+            while (pos > 0 && scores[pos - 1] < s) {
+                scores[pos] = scores[pos - 1];
+                ids[pos] = ids[pos - 1];
+                pos--;
+            }
+            scores[pos] = s;
+            ids[pos] = id;
+        }
+        return ids;
+    }
+
+    private static float[][] clustered(int count, int dimensions, long seed) {
+        Random random = new Random(seed);
+        Random centerRandom = new Random(0);
+        float[][] centers = new float[200][dimensions];
+        for (float[] c : centers) {
+            for (int d = 0; d < dimensions; d++) {
+                c[d] = (float) centerRandom.nextGaussian();
+            }
+        }
+        float[][] data = new float[count][dimensions];
+        for (float[] v : data) {
+            float[] c = centers[random.nextInt(centers.length)];
+            for (int d = 0; d < dimensions; d++) {
+                v[d] = c[d] + (float) (random.nextGaussian() * 0.6);
+            }
+        }
+        return data;
+    }
+
+    private static void normalize(float[] v) {
+        double norm = 0;
+        for (float x : v) {
+            norm += x * x;
+        }
+        norm = Math.sqrt(norm);
+        for (int i = 0; i < v.length; i++) {
+            v[i] = (float) (v[i] / norm);
+        }
+    }
+}
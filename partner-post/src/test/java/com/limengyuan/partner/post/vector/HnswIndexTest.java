@@ -0,0 +1,237 @@
+package com.limengyuan.partner.post.vector;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.offset;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+
+    @Test
+    void emptyIndexReturnsNothing() {
+        HnswIndex index = new HnswIndex(16, 200);
+
+        assertThat(index.search(new float[DIMENSIONS], 10, 64, id -> true)).isEmpty();
+        assertThat(index.size()).isZero();
+    }
+
+    @Test
+    void vectorsAreNormalizedAndDistanceIsCosine() {
+        HnswIndex index = new HnswIndex(16, 200);
+        int a = index.add(new float[]{3, 4});
+        index.add(new float[]{0, -5});
+
+        assertThat(index.vector(a)).containsExactly(0.6f, 0.8f);
+        List<HnswIndex.Candidate> found = index.search(new float[]{6, 8}, 2, 16, id -> true);
+        assertThat(found).extracting(HnswIndex.Candidate::id).containsExactly(a, 1);
+        assertThat(found.get(0).distance()).isCloseTo(0f, offset(1e-6f));
+        assertThat(found.get(1).distance()).isCloseTo(1.8f, offset(1e-6f));
+    }
+
+    @Test
+    void recallAgainstBruteForce() {
+        float[][] data = clustered(5000, 1);
+        HnswIndex index = build(data);
+        float[][] queries = clustered(200, 2);
+
+        double recall = recall(index, data, queries, 10, 64);
+
+        assertThat(recall).isGreaterThan(0.95);
+    }
+
+    @Test
+    void deletedNodesAreSkippedButStillNavigable() {
+        float[][] data = clustered(2000, 3);
+        HnswIndex index = build(data);
+        for (int id = 0; id < data.length; id += 2) {
+            assertThat(index.markDeleted(id)).isTrue();
+        }
+
+        assertThat(index.markDeleted(0)).isFalse();
+        assertThat(index.markDeleted(data.length)).isFalse();
+        assertThat(index.deletedCount()).isEqualTo(data.length / 2);
+        for (int q = 1; q < 200; q += 2) {
+            List<HnswIndex.Candidate> found = index.search(data[q], 10, 64, id -> true);
+            assertThat(found).hasSize(10).allSatisfy(c -> assertThat(c.id() % 2).isEqualTo(1));
+            assertThat(found.get(0).id()).isEqualTo(q);
+        }
+    }
+
+    @Test
+    void filterWidensSearchUntilEnoughResults() {
+        float[][] data = clustered(3000, 4);
+        HnswIndex index = build(data);
+
+        // 只接受 1% 的节点，初始候选集 16 远不够，需要逐步扩大候选集
+        List<HnswIndex.Candidate> found = index.search(data[0], 10, 16, id -> id % 100 == 7);
+
+        assertThat(found).hasSize(10).allSatisfy(c -> assertThat(c.id() % 100).isEqualTo(7));
+        assertThat(found).isSortedAccordingTo(Comparator.comparingDouble(HnswIndex.Candidate::distance));
+    }
+
+    @Test
+    void rejectsMismatchedDimensions() {
+        HnswIndex index = new HnswIndex(16, 200);
+        index.add(new float[DIMENSIONS]);
+
+        assertThatThrownBy(() -> index.add(new float[DIMENSIONS + 1]))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> index.search(new float[DIMENSIONS - 1], 1, 16, id -> true))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void concurrentInsertsKeepGraphSearchable() throws Exception {
+        float[][] data = clustered(4000, 5);
+        HnswIndex index = new HnswIndex(16, 100);
+        int[] ids = new int[data.length];
+        try (ExecutorService executor = Executors.newFixedThreadPool(8)) {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int from = t;
+                futures.add(executor.submit(() -> {
+                    for (int i = from; i < data.length; i += 8) {
+                        ids[i] = index.add(data[i]);
+                    }
+                    // 插入的同时搜索，不应抛异常
+                    index.search(data[from], 5, 32, id -> true);
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        }
+
+        assertThat(index.size()).isEqualTo(data.length);
+        assertThat(Arrays.stream(ids).distinct().count()).isEqualTo(data.length);
+        long selfHits = IntStream.range(0, data.length).filter(i -> i % 20 == 0)
+                .filter(i -> index.search(data[i], 1, 64, id -> true).get(0).id() == ids[i])
+                .count();
+        assertThat(selfHits).isGreaterThanOrEqualTo((long) (data.length / 20 * 0.99));
+    }
+
+    @Test
+    void snapshotRoundTrip(@TempDir Path dir) throws Exception {
+        float[][] data = clustered(2000, 6);
+        HnswIndex index = build(data);
+        index.markDeleted(5);
+        Path file = dir.resolve("index.hnsw");
+        try (MappedFile out = MappedFile.openForWrite(file)) {
+            index.writeTo(out);
+        }
+
+        HnswIndex restored;
+        try (MappedFile in = MappedFile.openForRead(file)) {
+            restored = HnswIndex.readFrom(in);
+        }
+
+        assertThat(restored.size()).isEqualTo(index.size());
+        assertThat(restored.dimensions()).isEqualTo(DIMENSIONS);
+        assertThat(restored.deletedCount()).isEqualTo(1);
+        assertThat(restored.isDeleted(5)).isTrue();
+        for (int q = 0; q < 50; q++) {
+            assertThat(restored.search(data[q], 10, 64, id -> true))
+                    .isEqualTo(index.search(data[q], 10, 64, id -> true));
+        }
+        // 恢复后可以继续写入
+        int added = restored.add(data[0]);
+        assertThat(added).isEqualTo(data.length);
+    }
+
+    // ============================
+    // 内部实现
+    // ============================
+
+    static HnswIndex build(float[][] data) {
+        HnswIndex index = new HnswIndex(16, 100);
+        for (float[] v : data) {
+            index.add(v);
+        }
+        return index;
+    }
+
+    /**
+     * 返回 search 结果与暴力检索结果的平均重合比例
+     */
+    static double recall(HnswIndex index, float[][] data, float[][] queries, int k, int ef) {
+        long hits = 0;
+        for (float[] q : queries) {
+            int[] truth = bruteForce(data, q, k);
+            List<HnswIndex.Candidate> found = index.search(q, k, ef, id -> true);
+            for (HnswIndex.Candidate c : found) {
+                if (Arrays.stream(truth).anyMatch(id -> id == c.id())) {
+                    hits++;
+                }
+            }
+        }
+        return hits / (double) (queries.length * k);
+    }
+
+    static int[] bruteForce(float[][] data, float[] query, int k) {
+        float[] q = normalize(query);
+        double[] similarity = new double[data.length];
+        for (int i = 0; i < data.length; i++) {
+            similarity[i] = dot(q, normalize(data[i]));
+        }
+        return IntStream.range(0, data.length)
+                .boxed()
+                .sorted(Comparator.comparingDouble(i -> -similarity[i]))
+                .limit(k)
+                .mapToInt(Integer::intValue)
+                .toArray();
+    }
+
+    /**
+     * 模拟文本嵌入：向量围绕若干主题中心分布
+     */
+    static float[][] clustered(int count, long seed) {
+        Random random = new Random(seed);
+        Random centerRandom = new Random(0);
+        float[][] centers = new float[50][DIMENSIONS];
+        for (float[] c : centers) {
+            for (int d = 0; d < DIMENSIONS; d++) {
+                c[d] = (float) centerRandom.nextGaussian();
+            }
+        }
+        float[][] data = new float[count][DIMENSIONS];
+        for (float[] v : data) {
+            float[] c = centers[random.nextInt(centers.length)];
+            for (int d = 0; d < DIMENSIONS; d++) {
+                v[d] = c[d] + (float) (random.nextGaussian() * 0.5);
+            }
+        }
+        return data;
+    }
+
+    private static float[] normalize(float[] v) {
+        double norm = Math.sqrt(dot(v, v));
+        float[] n = new float[v.length];
+        for (int i = 0; i < v.length; i++) {
+            n[i] = (float) (v[i] / norm);
+        }
+        return n;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -2,6 +2,7 @@ package com.limengyuan.partner.user.controller;
 
 import com.alibaba.csp.sentinel.annotation.SentinelResource;
 import com.alibaba.csp.sentinel.slots.block.BlockException;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.dto.request.UpdateUserRequest;
 import com.limengyuan.partner.common.dto.response.UserMeResponse;
@@ -238,6 +239,74 @@ public class UserController {
         return userFollowService.getFollowersList(userId, page, size);
     }
 
+    /**
+     * 游标分页获取关注列表（我关注的人）
+     * GET /api/user/following/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/following/cursor")
+    public Result<CursorPage<UserProfileVO>> getFollowingListByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        Long currentUserId = UserContextHolder.getPrincipalId();
+        if (currentUserId == null) {
+            return Result.error("未登录或 Token 无效");
+        }
+
+        size = PageHelper.safeSize(size);
+
+        return userFollowService.getFollowingListByCursor(currentUserId, cursor, size);
+    }
+
+    /**
+     * 游标分页获取粉丝列表（关注我的人）
+     * GET /api/user/followers/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/followers/cursor")
+    public Result<CursorPage<UserProfileVO>> getFollowersListByCursor(
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        Long currentUserId = UserContextHolder.getPrincipalId();
+        if (currentUserId == null) {
+            return Result.error("未登录或 Token 无效");
+        }
+
+        size = PageHelper.safeSize(size);
+
+        return userFollowService.getFollowersListByCursor(currentUserId, cursor, size);
+    }
+
+    /**
+     * 游标分页获取指定用户的关注列表
+     * GET /api/user/{userId}/following/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/{userId}/following/cursor")
+    public Result<CursorPage<UserProfileVO>> getUserFollowingListByCursor(
+            @PathVariable("userId") Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        size = PageHelper.safeSize(size);
+
+        return userFollowService.getFollowingListByCursor(userId, cursor, size);
+    }
+
+    /**
+     * 游标分页获取指定用户的粉丝列表
+     * GET /api/user/{userId}/followers/cursor?cursor=xxx&size=10
+     */
+    @GetMapping("/{userId}/followers/cursor")
+    public Result<CursorPage<UserProfileVO>> getUserFollowersListByCursor(
+            @PathVariable("userId") Long userId,
+            @RequestParam(value = "cursor", required = false) String cursor,
+            @RequestParam(value = "size", defaultValue = "10") int size) {
+
+        size = PageHelper.safeSize(size);
+
+        return userFollowService.getFollowersListByCursor(userId, cursor, size);
+    }
+
     /**
      * 获取关注统计信息
      * GET /api/user/{userId}/follow-stats
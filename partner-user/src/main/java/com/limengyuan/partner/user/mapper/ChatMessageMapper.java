@@ -62,15 +62,14 @@ public interface ChatMessageMapper extends BaseMapper<ChatMessage> {
     /**
      * 查询用户参与的所有群聊列表
      * 包括：用户发起的活动 + 用户参与并已通过审核的活动
-     * 通过子查询获取每个群聊的最后一条消息和成员数
+     * 通过窗口函数获取每个群聊的最后一条消息，成员数直接读取冗余的已通过人数 + 发起人
      */
     @Select("""
             SELECT a.activity_id,
                    a.title AS activity_title,
                    a.images AS activity_images,
                    a.status AS activity_status,
-                   (SELECT COUNT(*) + 1 FROM participants p2
-                    WHERE p2.activity_id = a.activity_id AND p2.status = 1) AS member_count,
+                   a.approved_count + 1 AS member_count,
                    last_msg.content AS last_message_content,
                    last_msg.sender_nickname AS last_message_sender_nickname,
                    last_msg.created_at AS last_message_time
@@ -7,6 +7,7 @@ import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -49,4 +50,45 @@ public interface UserFollowMapper extends BaseMapper<UserFollow> {
     List<User> getFollowersList(@Param("userId") Long userId,
                                 @Param("offset") int offset,
                                 @Param("limit") int limit);
+
+    /**
+     * 游标分页获取关注关系（我关注的人），按 (created_at, follow_id) 倒序定位
+     * 只查关系表，用户详情由调用方按 ID 批量回查；cursorTime 为 null 表示第一页
+     */
+    @Select("""
+            <script>
+            SELECT * FROM user_follows
+            WHERE follower_id = #{userId}
+            <if test="cursorTime != null">
+                AND (created_at &lt; #{cursorTime}
+                     OR (created_at = #{cursorTime} AND follow_id &lt; #{cursorId}))
+            </if>
+            ORDER BY created_at DESC, follow_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<UserFollow> findFollowingByCursor(@Param("userId") Long userId,
+                                           @Param("cursorTime") LocalDateTime cursorTime,
+                                           @Param("cursorId") Long cursorId,
+                                           @Param("limit") int limit);
+
+    /**
+     * 游标分页获取关注关系（关注我的人），按 (created_at, follow_id) 倒序定位
+     */
+    @Select("""
+            <script>
+            SELECT * FROM user_follows
+            WHERE followee_id = #{userId}
+            <if test="cursorTime != null">
+                AND (created_at &lt; #{cursorTime}
+                     OR (created_at = #{cursorTime} AND follow_id &lt; #{cursorId}))
+            </if>
+            ORDER BY created_at DESC, follow_id DESC
+            LIMIT #{limit}
+            </script>
+            """)
+    List<UserFollow> findFollowersByCursor(@Param("userId") Long userId,
+                                           @Param("cursorTime") LocalDateTime cursorTime,
+                                           @Param("cursorId") Long cursorId,
+                                           @Param("limit") int limit);
 }
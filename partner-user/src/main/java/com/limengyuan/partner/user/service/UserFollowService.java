@@ -1,11 +1,13 @@
 package com.limengyuan.partner.user.service;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.limengyuan.partner.common.dto.CursorPage;
 import com.limengyuan.partner.common.dto.PageResult;
 import com.limengyuan.partner.common.dto.vo.UserProfileVO;
 import com.limengyuan.partner.common.entity.User;
 import com.limengyuan.partner.common.entity.UserFollow;
 import com.limengyuan.partner.common.result.Result;
+import com.limengyuan.partner.common.util.CursorHelper;
 import com.limengyuan.partner.user.mapper.UserFollowMapper;
 import com.limengyuan.partner.user.mapper.UserMapper;
 import org.springframework.stereotype.Service;
@@ -14,6 +16,9 @@ import org.springframework.transaction.annotation.Transactional;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
 
 /**
  * 用户关注服务层
@@ -141,6 +146,37 @@ public class UserFollowService {
         return Result.success(pageResult);
     }
 
+    /**
+     * 游标分页获取关注列表（我关注的人）
+     * 先在关系表上按游标定位本页，再按 ID 批量回查用户，避免深翻页时 JOIN 扫描
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<UserProfileVO>> getFollowingListByCursor(Long userId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<UserFollow> rows = userFollowMapper.findFollowingByCursor(userId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<UserFollow> page = CursorPage.of(rows, size,
+                f -> CursorHelper.encode(f.getCreatedAt(), f.getFollowId()));
+        return Result.success(page.mapList(list -> toProfileVOs(list, UserFollow::getFolloweeId)));
+    }
+
+    /**
+     * 游标分页获取粉丝列表（关注我的人）
+     *
+     * @param cursor 上一页返回的 nextCursor，为空表示第一页
+     */
+    public Result<CursorPage<UserProfileVO>> getFollowersListByCursor(Long userId, String cursor, int size) {
+        CursorHelper.Cursor c = CursorHelper.decode(cursor);
+
+        List<UserFollow> rows = userFollowMapper.findFollowersByCursor(userId,
+                c != null ? c.time() : null, c != null ? c.id() : null, size + 1);
+        CursorPage<UserFollow> page = CursorPage.of(rows, size,
+                f -> CursorHelper.encode(f.getCreatedAt(), f.getFollowId()));
+        return Result.success(page.mapList(list -> toProfileVOs(list, UserFollow::getFollowerId)));
+    }
+
     /**
      * 获取关注统计信息
      */
@@ -155,6 +191,23 @@ public class UserFollowService {
     // 内部辅助方法（使用 QueryWrapper）
     // ============================
 
+    /**
+     * 按关注关系的顺序批量回查用户并转换为 VO（已注销的用户会被跳过）
+     */
+    private List<UserProfileVO> toProfileVOs(List<UserFollow> follows, Function<UserFollow, Long> userIdOf) {
+        if (follows.isEmpty()) {
+            return List.of();
+        }
+        List<Long> userIds = follows.stream().map(userIdOf).toList();
+        Map<Long, User> userMap = userMapper.selectBatchIds(userIds).stream()
+                .collect(Collectors.toMap(User::getUserId, u -> u));
+        return userIds.stream()
+                .map(userMap::get)
+                .filter(Objects::nonNull)
+                .map(userService::toProfileVO)
+                .collect(Collectors.toList());
+    }
+
     /**
      * 检查是否已关注
      */
@@ -36,14 +36,18 @@ CREATE TABLE `activities`  (
   `end_time` datetime NULL DEFAULT NULL COMMENT '活动结束时间',
   `registration_end_time` datetime NULL DEFAULT NULL COMMENT '报名结束时间',
   `max_participants` int NOT NULL DEFAULT 2 COMMENT '最大参与人数 (含发起人)',
+  `approved_count` int UNSIGNED NOT NULL DEFAULT 0 COMMENT '已通过的参与人数 (冗余字段，不含发起人)',
+  `view_count` int UNSIGNED NOT NULL DEFAULT 0 COMMENT '浏览人数 (按 Redis HyperLogLog 去重的近似值，定期合并)',
   `payment_type` tinyint NULL DEFAULT 1 COMMENT '费用方式: 1-AA制, 2-发起人请客, 3-免费, 4-各付各的',
   `status` tinyint NULL DEFAULT 0 COMMENT '状态: 0-招募中, 1-已满员, 2-活动结束(群聊禁言), 3-已取消',
   `created_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
   `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (`activity_id`) USING BTREE,
-  INDEX `idx_initiator`(`initiator_id` ASC) USING BTREE,
+  INDEX `idx_initiator`(`initiator_id` ASC, `created_at` DESC, `activity_id` DESC) USING BTREE COMMENT '我发布的活动（游标分页）',
   INDEX `idx_start_time`(`start_time` ASC) USING BTREE,
-  INDEX `idx_geo`(`latitude` ASC, `longitude` ASC) USING BTREE COMMENT '简单的地理位置索引'
+  INDEX `idx_geo`(`latitude` ASC, `longitude` ASC) USING BTREE COMMENT '简单的地理位置索引',
+  INDEX `idx_status_created`(`status` ASC, `created_at` DESC, `activity_id` DESC) USING BTREE COMMENT '活动列表游标分页',
+  INDEX `idx_updated_at`(`updated_at` ASC) USING BTREE COMMENT '按更新时间水位增量同步（全文检索、生命周期引擎、向量同步）'
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '搭子活动表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -123,7 +127,8 @@ CREATE TABLE `participants`  (
   `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (`participant_id`) USING BTREE,
   UNIQUE INDEX `uniq_activity_user`(`activity_id` ASC, `user_id` ASC) USING BTREE COMMENT '防止重复报名',
-  INDEX `idx_user_status`(`user_id` ASC, `status` ASC) USING BTREE
+  INDEX `idx_user_status`(`user_id` ASC, `status` ASC) USING BTREE,
+  INDEX `idx_activity_created`(`activity_id` ASC, `created_at` ASC, `participant_id` ASC) USING BTREE COMMENT '参与者列表游标分页'
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '活动参与记录表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -141,7 +146,7 @@ CREATE TABLE `reviews`  (
   `created_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP,
   PRIMARY KEY (`review_id`) USING BTREE,
   UNIQUE INDEX `uk_activity_reviewer_reviewee`(`activity_id` ASC, `reviewer_id` ASC, `reviewee_id` ASC) USING BTREE COMMENT '防止重复评价',
-  INDEX `idx_reviewee`(`reviewee_id` ASC) USING BTREE,
+  INDEX `idx_reviewee`(`reviewee_id` ASC, `created_at` DESC, `review_id` DESC) USING BTREE COMMENT '收到的评价游标分页',
   INDEX `idx_reviewer`(`reviewer_id` ASC) USING BTREE,
   INDEX `idx_activity`(`activity_id` ASC) USING BTREE
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '用户评价表' ROW_FORMAT = Dynamic;
@@ -157,8 +162,8 @@ CREATE TABLE `user_follows`  (
   `created_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '关注时间',
   PRIMARY KEY (`follow_id`) USING BTREE,
   UNIQUE INDEX `uniq_follow`(`follower_id` ASC, `followee_id` ASC) USING BTREE COMMENT '防止重复关注',
-  INDEX `idx_follower`(`follower_id` ASC) USING BTREE COMMENT '查询某用户的关注列表',
-  INDEX `idx_followee`(`followee_id` ASC) USING BTREE COMMENT '查询某用户的粉丝列表'
+  INDEX `idx_follower`(`follower_id` ASC, `created_at` DESC, `follow_id` DESC) USING BTREE COMMENT '查询某用户的关注列表（游标分页）',
+  INDEX `idx_followee`(`followee_id` ASC, `created_at` DESC, `follow_id` DESC) USING BTREE COMMENT '查询某用户的粉丝列表（游标分页）'
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '用户关注关系表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -182,7 +187,8 @@ CREATE TABLE `users`  (
   `updated_at` timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   PRIMARY KEY (`user_id`) USING BTREE,
   UNIQUE INDEX `uniq_username`(`username` ASC) USING BTREE,
-  INDEX `idx_city`(`city` ASC) USING BTREE
+  INDEX `idx_city`(`city` ASC) USING BTREE,
+  INDEX `idx_updated_at`(`updated_at` ASC) USING BTREE
 ) ENGINE = InnoDB AUTO_INCREMENT = 3 CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '用户表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------
@@ -199,12 +205,13 @@ CREATE TABLE `moments`  (
   `visibility`    tinyint NULL DEFAULT 0 COMMENT '可见范围: 0-公开, 1-仅关注者, 2-仅自己',
   `like_count`    int UNSIGNED NULL DEFAULT 0 COMMENT '点赞数 (冗余字段，提升查询性能)',
   `comment_count` int UNSIGNED NULL DEFAULT 0 COMMENT '评论数 (冗余字段)',
-  `view_count`    int UNSIGNED NULL DEFAULT 0 COMMENT '浏览数 (冗余字段)',
+  `view_count`    int UNSIGNED NULL DEFAULT 0 COMMENT '浏览人数 (按 Redis HyperLogLog 去重的近似值，定期合并；改为去重统计前按请求次数累计的历史值保留为下限)',
   `status`        tinyint NULL DEFAULT 1 COMMENT '状态: 0-已删除, 1-正常, 2-审核屏蔽',
   `created_at`    timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '发布时间',
   `updated_at`    timestamp NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP,
   PRIMARY KEY (`moment_id`) USING BTREE,
   INDEX `idx_user_created`(`user_id` ASC, `created_at` DESC) USING BTREE COMMENT '查询某人动态列表',
+  INDEX `idx_user_moment`(`user_id` ASC, `moment_id` DESC) USING BTREE COMMENT '关注时间线按作者拉取最新动态',
   INDEX `idx_status_created`(`status` ASC, `created_at` DESC) USING BTREE COMMENT '广场/时间线查询'
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '用户动态表' ROW_FORMAT = Dynamic;
 
@@ -237,7 +244,7 @@ CREATE TABLE `moment_comments`  (
   `created_at`  timestamp NULL DEFAULT CURRENT_TIMESTAMP COMMENT '评论时间',
   PRIMARY KEY (`comment_id`) USING BTREE,
   INDEX `idx_moment_created`(`moment_id` ASC, `created_at` ASC) USING BTREE COMMENT '查询动态下的所有评论',
-  INDEX `idx_parent`(`parent_id` ASC) USING BTREE COMMENT '查询某条评论下的回复'
+  INDEX `idx_parent_created`(`parent_id` ASC, `created_at` ASC) USING BTREE COMMENT '查询某条评论下的回复 (按时间分页)'
 ) ENGINE = InnoDB CHARACTER SET = utf8mb4 COLLATE = utf8mb4_unicode_ci COMMENT = '动态评论表' ROW_FORMAT = Dynamic;
 
 -- ----------------------------